@@ -0,0 +1,606 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.geometry;
+
+import java.util.Arrays;
+
+/**
+ * Delaunay triangulation of a set of points, computed in O(n log n) with a
+ * radial sweep. The points are inserted by increasing distance from a seed
+ * triangle, connected to the visible part of the convex hull, and the new
+ * edges are legalised by flipping.
+ * <p>
+ * The points are packed in an array, where the i-th point is stored at
+ * positions 2i (x) and 2i+1 (y). The triangulation is described by half
+ * edges: the half edge e belongs to the triangle e / 3, starts from the
+ * point triangles()[e] and ends at the start of the next half edge of the
+ * same triangle. All triangles have the same orientation. Points that
+ * coincide with previously inserted ones are not part of the triangulation.
+ */
+public class DelaunayTriangulation {
+
+    private static final double epsilon = Math.pow(2, -52);
+
+    private final double[] points;
+    private final int pointCount;
+    private int[] triangles;
+    private int[] halfedges;
+    private int trianglesLength;
+
+    private final int hashSize;
+    private final int[] hullPrev;
+    private final int[] hullNext;
+    private final int[] hullTri;
+    private final int[] hullHash;
+    private int hullStart;
+    private double centerX;
+    private double centerY;
+    private int[] edgeStack = new int[512];
+
+    /**
+     * Computes the Delaunay triangulation of the given points.
+     *
+     * @param points the packed point coordinates.
+     */
+    public DelaunayTriangulation(double[] points) {
+        if (points.length % 2 != 0) {
+            throw new IllegalArgumentException("The points array must contain pairs of coordinates.");
+        }
+        this.points = points;
+        this.pointCount = points.length / 2;
+        int maxTriangles = Math.max(2 * pointCount - 5, 0);
+        this.triangles = new int[maxTriangles * 3];
+        this.halfedges = new int[maxTriangles * 3];
+        this.hashSize = (int) Math.ceil(Math.sqrt(pointCount));
+        this.hullPrev = new int[pointCount];
+        this.hullNext = new int[pointCount];
+        this.hullTri = new int[pointCount];
+        this.hullHash = new int[Math.max(hashSize, 1)];
+        triangulate();
+        this.triangles = Arrays.copyOf(triangles, trianglesLength);
+        this.halfedges = Arrays.copyOf(halfedges, trianglesLength);
+    }
+
+    /**
+     * Returns, for each half edge, the index of its starting point.
+     *
+     * @return the triangle point indices, three per triangle.
+     */
+    public int[] triangles() {
+        return triangles;
+    }
+
+    /**
+     * Returns, for each half edge, the opposite half edge in the adjacent
+     * triangle, or -1 for the half edges on the convex hull.
+     *
+     * @return the opposite half edges.
+     */
+    public int[] halfedges() {
+        return halfedges;
+    }
+
+    /**
+     * Returns the number of triangles.
+     *
+     * @return the number of triangles.
+     */
+    public int triangleCount() {
+        return triangles.length / 3;
+    }
+
+    /**
+     * Returns the next half edge in the same triangle.
+     *
+     * @param halfedge the half edge.
+     * @return the next half edge.
+     */
+    public static int next(int halfedge) {
+        return halfedge % 3 == 2 ? halfedge - 2 : halfedge + 1;
+    }
+
+    /**
+     * Returns the previous half edge in the same triangle.
+     *
+     * @param halfedge the half edge.
+     * @return the previous half edge.
+     */
+    public static int previous(int halfedge) {
+        return halfedge % 3 == 0 ? halfedge + 2 : halfedge - 1;
+    }
+
+    /**
+     * Computes the circumcenter of a triangle.
+     *
+     * @param triangle the triangle index.
+     * @return the circumcenter.
+     */
+    public Coordinates circumcenter(int triangle) {
+        int a = triangles[3 * triangle];
+        int b = triangles[3 * triangle + 1];
+        int c = triangles[3 * triangle + 2];
+        return circumcenter(points[2 * a], points[2 * a + 1], points[2 * b], points[2 * b + 1], points[2 * c], points[2 * c + 1]);
+    }
+
+    /**
+     * Computes the triangulation.
+     */
+    private void triangulate() {
+        if (pointCount < 3) {
+            return;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        int[] ids = new int[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            minX = Math.min(minX, points[2 * i]);
+            minY = Math.min(minY, points[2 * i + 1]);
+            maxX = Math.max(maxX, points[2 * i]);
+            maxY = Math.max(maxY, points[2 * i + 1]);
+            ids[i] = i;
+        }
+        double boxCenterX = (minX + maxX) / 2;
+        double boxCenterY = (minY + maxY) / 2;
+
+        int i0 = -1;
+        double minDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < pointCount; i++) {
+            double distance = squaredDistance(boxCenterX, boxCenterY, points[2 * i], points[2 * i + 1]);
+            if (distance < minDistance) {
+                i0 = i;
+                minDistance = distance;
+            }
+        }
+        double i0x = points[2 * i0];
+        double i0y = points[2 * i0 + 1];
+
+        int i1 = -1;
+        minDistance = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < pointCount; i++) {
+            double distance = squaredDistance(i0x, i0y, points[2 * i], points[2 * i + 1]);
+            if (i != i0 && distance < minDistance && distance > 0) {
+                i1 = i;
+                minDistance = distance;
+            }
+        }
+        if (i1 < 0) {
+            return;
+        }
+        double i1x = points[2 * i1];
+        double i1y = points[2 * i1 + 1];
+
+        int i2 = -1;
+        double minRadius = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < pointCount; i++) {
+            if (i == i0 || i == i1) {
+                continue;
+            }
+            double radius = circumradius(i0x, i0y, i1x, i1y, points[2 * i], points[2 * i + 1]);
+            if (radius < minRadius) {
+                i2 = i;
+                minRadius = radius;
+            }
+        }
+        if (i2 < 0 || minRadius == Double.POSITIVE_INFINITY) {
+            return;
+        }
+        double i2x = points[2 * i2];
+        double i2y = points[2 * i2 + 1];
+
+        if (orient(i0x, i0y, i1x, i1y, i2x, i2y)) {
+            int i = i1;
+            double x = i1x;
+            double y = i1y;
+            i1 = i2;
+            i1x = i2x;
+            i1y = i2y;
+            i2 = i;
+            i2x = x;
+            i2y = y;
+        }
+
+        Coordinates center = circumcenter(i0x, i0y, i1x, i1y, i2x, i2y);
+        centerX = center.x();
+        centerY = center.y();
+        final double[] distances = new double[pointCount];
+        for (int i = 0; i < pointCount; i++) {
+            distances[i] = squaredDistance(points[2 * i], points[2 * i + 1], centerX, centerY);
+        }
+        sortByDistance(ids, distances, 0, pointCount - 1);
+
+        hullStart = i0;
+        hullNext[i0] = hullPrev[i2] = i1;
+        hullNext[i1] = hullPrev[i0] = i2;
+        hullNext[i2] = hullPrev[i1] = i0;
+        hullTri[i0] = 0;
+        hullTri[i1] = 1;
+        hullTri[i2] = 2;
+        Arrays.fill(hullHash, -1);
+        hullHash[hashKey(i0x, i0y)] = i0;
+        hullHash[hashKey(i1x, i1y)] = i1;
+        hullHash[hashKey(i2x, i2y)] = i2;
+
+        trianglesLength = 0;
+        addTriangle(i0, i1, i2, -1, -1, -1);
+
+        double previousX = 0;
+        double previousY = 0;
+        for (int k = 0; k < pointCount; k++) {
+            int i = ids[k];
+            double x = points[2 * i];
+            double y = points[2 * i + 1];
+            if (k > 0 && Math.abs(x - previousX) <= epsilon && Math.abs(y - previousY) <= epsilon) {
+                continue;
+            }
+            previousX = x;
+            previousY = y;
+            if (i == i0 || i == i1 || i == i2) {
+                continue;
+            }
+
+            int start = 0;
+            int key = hashKey(x, y);
+            for (int j = 0; j < hashSize; j++) {
+                start = hullHash[(key + j) % hashSize];
+                if (start != -1 && start != hullNext[start]) {
+                    break;
+                }
+            }
+            start = hullPrev[start];
+            int e = start;
+            int q = hullNext[e];
+            while (!orient(x, y, points[2 * e], points[2 * e + 1], points[2 * q], points[2 * q + 1])) {
+                e = q;
+                if (e == start) {
+                    e = -1;
+                    break;
+                }
+                q = hullNext[e];
+            }
+            if (e == -1) {
+                continue;
+            }
+
+            int t = addTriangle(e, i, hullNext[e], -1, -1, hullTri[e]);
+            hullTri[i] = legalize(t + 2);
+            hullTri[e] = t;
+
+            int n = hullNext[e];
+            q = hullNext[n];
+            while (orient(x, y, points[2 * n], points[2 * n + 1], points[2 * q], points[2 * q + 1])) {
+                t = addTriangle(n, i, q, hullTri[i], -1, hullTri[n]);
+                hullTri[i] = legalize(t + 2);
+                hullNext[n] = n;
+                n = q;
+                q = hullNext[n];
+            }
+
+            if (e == start) {
+                q = hullPrev[e];
+                while (orient(x, y, points[2 * q], points[2 * q + 1], points[2 * e], points[2 * e + 1])) {
+                    t = addTriangle(q, i, e, -1, hullTri[e], hullTri[q]);
+                    legalize(t + 2);
+                    hullTri[q] = t;
+                    hullNext[e] = e;
+                    e = q;
+                    q = hullPrev[e];
+                }
+            }
+
+            hullStart = hullPrev[i] = e;
+            hullNext[e] = hullPrev[n] = i;
+            hullNext[i] = n;
+            hullHash[hashKey(x, y)] = i;
+            hullHash[hashKey(points[2 * e], points[2 * e + 1])] = e;
+        }
+    }
+
+    /**
+     * Restores the Delaunay condition by flipping the illegal edges reachable
+     * from the given half edge.
+     *
+     * @param halfedge the half edge.
+     * @return the half edge that replaces the given one in its triangle.
+     */
+    private int legalize(int halfedge) {
+        int a = halfedge;
+        int stackSize = 0;
+        int ar;
+        while (true) {
+            int b = halfedges[a];
+            int a0 = a - a % 3;
+            ar = a0 + (a + 2) % 3;
+            if (b == -1) {
+                if (stackSize == 0) {
+                    break;
+                }
+                a = edgeStack[--stackSize];
+                continue;
+            }
+
+            int b0 = b - b % 3;
+            int al = a0 + (a + 1) % 3;
+            int bl = b0 + (b + 2) % 3;
+            int p0 = triangles[ar];
+            int pr = triangles[a];
+            int pl = triangles[al];
+            int p1 = triangles[bl];
+
+            boolean illegal = inCircle(points[2 * p0], points[2 * p0 + 1], points[2 * pr], points[2 * pr + 1],
+                    points[2 * pl], points[2 * pl + 1], points[2 * p1], points[2 * p1 + 1]);
+            if (illegal) {
+                triangles[a] = p1;
+                triangles[b] = p0;
+                int hbl = halfedges[bl];
+                if (hbl == -1) {
+                    int e = hullStart;
+                    do {
+                        if (hullTri[e] == bl) {
+                            hullTri[e] = a;
+                            break;
+                        }
+                        e = hullPrev[e];
+                    } while (e != hullStart);
+                }
+                link(a, hbl);
+                link(b, halfedges[ar]);
+                link(ar, bl);
+                int br = b0 + (b + 1) % 3;
+                if (stackSize == edgeStack.length) {
+                    edgeStack = Arrays.copyOf(edgeStack, edgeStack.length * 2);
+                }
+                edgeStack[stackSize++] = br;
+            } else {
+                if (stackSize == 0) {
+                    break;
+                }
+                a = edgeStack[--stackSize];
+            }
+        }
+        return ar;
+    }
+
+    /**
+     * Links two opposite half edges.
+     *
+     * @param a the first half edge.
+     * @param b the second half edge, or -1.
+     */
+    private void link(int a, int b) {
+        halfedges[a] = b;
+        if (b != -1) {
+            halfedges[b] = a;
+        }
+    }
+
+    /**
+     * Adds a triangle.
+     *
+     * @param i0 the first point.
+     * @param i1 the second point.
+     * @param i2 the third point.
+     * @param a the half edge opposite to the first half edge, or -1.
+     * @param b the half edge opposite to the second half edge, or -1.
+     * @param c the half edge opposite to the third half edge, or -1.
+     * @return the first half edge of the triangle.
+     */
+    private int addTriangle(int i0, int i1, int i2, int a, int b, int c) {
+        int t = trianglesLength;
+        triangles[t] = i0;
+        triangles[t + 1] = i1;
+        triangles[t + 2] = i2;
+        link(t, a);
+        link(t + 1, b);
+        link(t + 2, c);
+        trianglesLength += 3;
+        return t;
+    }
+
+    /**
+     * Computes the hull hash key of a point, based on its angle around the
+     * seed circumcenter.
+     *
+     * @param x the point x coordinate.
+     * @param y the point y coordinate.
+     * @return the hash key.
+     */
+    private int hashKey(double x, double y) {
+        double dx = x - centerX;
+        double dy = y - centerY;
+        double p = dx / (Math.abs(dx) + Math.abs(dy));
+        double angle = (dy > 0 ? 3 - p : 1 + p) / 4;
+        return (int) Math.floor(angle * hashSize) % hashSize;
+    }
+
+    /**
+     * Sorts the point indices by distance, with a quicksort that falls back
+     * to insertion sort on short ranges.
+     *
+     * @param ids the point indices.
+     * @param distances the point distances.
+     * @param left the first index of the range.
+     * @param right the last index of the range.
+     */
+    private static void sortByDistance(int[] ids, double[] distances, int left, int right) {
+        while (right - left > 20) {
+            int median = (left + right) >>> 1;
+            int i = left + 1;
+            int j = right;
+            swap(ids, median, i);
+            if (distances[ids[left]] > distances[ids[right]]) {
+                swap(ids, left, right);
+            }
+            if (distances[ids[i]] > distances[ids[right]]) {
+                swap(ids, i, right);
+            }
+            if (distances[ids[left]] > distances[ids[i]]) {
+                swap(ids, left, i);
+            }
+            int pivot = ids[i];
+            double pivotDistance = distances[pivot];
+            while (true) {
+                do {
+                    i++;
+                } while (distances[ids[i]] < pivotDistance);
+                do {
+                    j--;
+                } while (distances[ids[j]] > pivotDistance);
+                if (j < i) {
+                    break;
+                }
+                swap(ids, i, j);
+            }
+            ids[left + 1] = ids[j];
+            ids[j] = pivot;
+            if (right - i + 1 >= j - left) {
+                sortByDistance(ids, distances, i, right);
+                right = j - 1;
+            } else {
+                sortByDistance(ids, distances, left, j - 1);
+                left = i;
+            }
+        }
+        for (int i = left + 1; i <= right; i++) {
+            int id = ids[i];
+            double distance = distances[id];
+            int j = i - 1;
+            while (j >= left && distances[ids[j]] > distance) {
+                ids[j + 1] = ids[j];
+                j--;
+            }
+            ids[j + 1] = id;
+        }
+    }
+
+    /**
+     * Swaps two elements of an array.
+     *
+     * @param array the array.
+     * @param i the first position.
+     * @param j the second position.
+     */
+    private static void swap(int[] array, int i, int j) {
+        int temporary = array[i];
+        array[i] = array[j];
+        array[j] = temporary;
+    }
+
+    /**
+     * Computes the squared distance between two points.
+     *
+     * @param ax the x coordinate of the first point.
+     * @param ay the y coordinate of the first point.
+     * @param bx the x coordinate of the second point.
+     * @param by the y coordinate of the second point.
+     * @return the squared distance.
+     */
+    private static double squaredDistance(double ax, double ay, double bx, double by) {
+        double dx = ax - bx;
+        double dy = ay - by;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Verifies the orientation of three points.
+     *
+     * @param px the x coordinate of the first point.
+     * @param py the y coordinate of the first point.
+     * @param qx the x coordinate of the second point.
+     * @param qy the y coordinate of the second point.
+     * @param rx the x coordinate of the third point.
+     * @param ry the y coordinate of the third point.
+     * @return true if the points are in the orientation opposite to the one
+     * of the triangles.
+     */
+    private static boolean orient(double px, double py, double qx, double qy, double rx, double ry) {
+        return (qy - py) * (rx - qx) - (qx - px) * (ry - qy) < 0;
+    }
+
+    /**
+     * Verifies if a point is strictly inside the circumcircle of a triangle.
+     *
+     * @param ax the x coordinate of the first triangle point.
+     * @param ay the y coordinate of the first triangle point.
+     * @param bx the x coordinate of the second triangle point.
+     * @param by the y coordinate of the second triangle point.
+     * @param cx the x coordinate of the third triangle point.
+     * @param cy the y coordinate of the third triangle point.
+     * @param px the x coordinate of the point.
+     * @param py the y coordinate of the point.
+     * @return true if the point is inside the circumcircle.
+     */
+    private static boolean inCircle(double ax, double ay, double bx, double by, double cx, double cy, double px, double py) {
+        double dx = ax - px;
+        double dy = ay - py;
+        double ex = bx - px;
+        double ey = by - py;
+        double fx = cx - px;
+        double fy = cy - py;
+        double ap = dx * dx + dy * dy;
+        double bp = ex * ex + ey * ey;
+        double cp = fx * fx + fy * fy;
+        return dx * (ey * cp - bp * fy) - dy * (ex * cp - bp * fx) + ap * (ex * fy - ey * fx) < 0;
+    }
+
+    /**
+     * Computes the squared circumradius of a triangle.
+     *
+     * @param ax the x coordinate of the first point.
+     * @param ay the y coordinate of the first point.
+     * @param bx the x coordinate of the second point.
+     * @param by the y coordinate of the second point.
+     * @param cx the x coordinate of the third point.
+     * @param cy the y coordinate of the third point.
+     * @return the squared circumradius, or infinity for collinear points.
+     */
+    private static double circumradius(double ax, double ay, double bx, double by, double cx, double cy) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double ex = cx - ax;
+        double ey = cy - ay;
+        double bl = dx * dx + dy * dy;
+        double cl = ex * ex + ey * ey;
+        double d = 0.5 / (dx * ey - dy * ex);
+        double x = (ey * bl - dy * cl) * d;
+        double y = (dx * cl - ex * bl) * d;
+        double radius = x * x + y * y;
+        return Double.isNaN(radius) ? Double.POSITIVE_INFINITY : radius;
+    }
+
+    /**
+     * Computes the circumcenter of a triangle.
+     *
+     * @param ax the x coordinate of the first point.
+     * @param ay the y coordinate of the first point.
+     * @param bx the x coordinate of the second point.
+     * @param by the y coordinate of the second point.
+     * @param cx the x coordinate of the third point.
+     * @param cy the y coordinate of the third point.
+     * @return the circumcenter.
+     */
+    private static Coordinates circumcenter(double ax, double ay, double bx, double by, double cx, double cy) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double ex = cx - ax;
+        double ey = cy - ay;
+        double bl = dx * dx + dy * dy;
+        double cl = ex * ex + ey * ey;
+        double d = 0.5 / (dx * ey - dy * ex);
+        return new Coordinates(ax + (ey * bl - dy * cl) * d, ay + (dx * cl - ex * bl) * d);
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.geometry;
+
+import java.util.Collection;
+
+/**
+ * Collects batch versions of the 2D geometry methods. The methods operate on
+ * packed arrays, where the i-th point is stored at positions 2i (x) and 2i+1
+ * (y), and the i-th segment at positions 4i to 4i+3 (x1, y1, x2, y2). The
+ * results are written in arrays provided by the caller, so that no object is
+ * allocated per element.
+ * <p>
+ * The loops are kept free of allocations, calls and data dependent branches
+ * so that the JIT compiler can unroll and vectorise them. Differently from
+ * Geom2D, the tests are exact and do not use a tolerance.
+ */
+public class Geom2DBatch {
+
+    /**
+     * Packs a collection of coordinates in an array.
+     *
+     * @param points the points.
+     * @return the packed coordinates.
+     */
+    public static double[] pack(Collection<Coordinates> points) {
+        double[] packed = new double[points.size() * 2];
+        int i = 0;
+        for (Coordinates point : points) {
+            packed[i++] = point.x();
+            packed[i++] = point.y();
+        }
+        return packed;
+    }
+
+    /**
+     * Computes the distances between several points and a segment.
+     *
+     * @param points the packed points.
+     * @param ax the x coordinate of the first segment extremity.
+     * @param ay the y coordinate of the first segment extremity.
+     * @param bx the x coordinate of the second segment extremity.
+     * @param by the y coordinate of the second segment extremity.
+     * @param distances the array where to write the distance of each point.
+     */
+    public static void pointToSegmentDistances(double[] points, double ax, double ay, double bx, double by, double[] distances) {
+        checkSizes(points.length / 2, distances.length);
+        double dx = bx - ax;
+        double dy = by - ay;
+        double squaredLength = dx * dx + dy * dy;
+        double inverseLength = squaredLength > 0 ? 1.0 / squaredLength : 0;
+        int n = distances.length;
+        for (int i = 0; i < n; i++) {
+            double px = points[2 * i] - ax;
+            double py = points[2 * i + 1] - ay;
+            double t = Math.min(1.0, Math.max(0.0, (px * dx + py * dy) * inverseLength));
+            double ex = px - t * dx;
+            double ey = py - t * dy;
+            distances[i] = Math.sqrt(ex * ex + ey * ey);
+        }
+    }
+
+    /**
+     * Computes the distances between points and segments, pairing the i-th
+     * point with the i-th segment.
+     *
+     * @param points the packed points.
+     * @param segments the packed segments.
+     * @param distances the array where to write the distance of each pair.
+     */
+    public static void pointToSegmentDistances(double[] points, double[] segments, double[] distances) {
+        checkSizes(points.length / 2, distances.length);
+        checkSizes(segments.length / 4, distances.length);
+        int n = distances.length;
+        for (int i = 0; i < n; i++) {
+            double ax = segments[4 * i];
+            double ay = segments[4 * i + 1];
+            double dx = segments[4 * i + 2] - ax;
+            double dy = segments[4 * i + 3] - ay;
+            double squaredLength = dx * dx + dy * dy;
+            double inverseLength = squaredLength > 0 ? 1.0 / squaredLength : 0;
+            double px = points[2 * i] - ax;
+            double py = points[2 * i + 1] - ay;
+            double t = Math.min(1.0, Math.max(0.0, (px * dx + py * dy) * inverseLength));
+            double ex = px - t * dx;
+            double ey = py - t * dy;
+            distances[i] = Math.sqrt(ex * ex + ey * ey);
+        }
+    }
+
+    /**
+     * Computes the closest segment point to each of several points.
+     *
+     * @param points the packed points.
+     * @param ax the x coordinate of the first segment extremity.
+     * @param ay the y coordinate of the first segment extremity.
+     * @param bx the x coordinate of the second segment extremity.
+     * @param by the y coordinate of the second segment extremity.
+     * @param closestPoints the array where to write the packed closest points.
+     */
+    public static void closestSegmentPoints(double[] points, double ax, double ay, double bx, double by, double[] closestPoints) {
+        checkSizes(points.length, closestPoints.length);
+        double dx = bx - ax;
+        double dy = by - ay;
+        double squaredLength = dx * dx + dy * dy;
+        double inverseLength = squaredLength > 0 ? 1.0 / squaredLength : 0;
+        int n = closestPoints.length / 2;
+        for (int i = 0; i < n; i++) {
+            double px = points[2 * i] - ax;
+            double py = points[2 * i + 1] - ay;
+            double t = Math.min(1.0, Math.max(0.0, (px * dx + py * dy) * inverseLength));
+            closestPoints[2 * i] = ax + t * dx;
+            closestPoints[2 * i + 1] = ay + t * dy;
+        }
+    }
+
+    /**
+     * Computes the orthogonal projections of several points on the line
+     * passing through two other points.
+     *
+     * @param points the packed points.
+     * @param ax the x coordinate of the first line point.
+     * @param ay the y coordinate of the first line point.
+     * @param bx the x coordinate of the second line point.
+     * @param by the y coordinate of the second line point.
+     * @param projections the array where to write the packed projections.
+     */
+    public static void pointOnLineProjections(double[] points, double ax, double ay, double bx, double by, double[] projections) {
+        checkSizes(points.length, projections.length);
+        double dx = bx - ax;
+        double dy = by - ay;
+        double squaredLength = dx * dx + dy * dy;
+        if (squaredLength == 0) {
+            throw new IllegalArgumentException("The line points coincide.");
+        }
+        double inverseLength = 1.0 / squaredLength;
+        int n = projections.length / 2;
+        for (int i = 0; i < n; i++) {
+            double t = ((points[2 * i] - ax) * dx + (points[2 * i + 1] - ay) * dy) * inverseLength;
+            projections[2 * i] = ax + t * dx;
+            projections[2 * i + 1] = ay + t * dy;
+        }
+    }
+
+    /**
+     * Tests whether several segments intersect a given one. Segments that
+     * touch or overlap are considered intersecting.
+     *
+     * @param segments the packed segments.
+     * @param ax the x coordinate of the first extremity of the given segment.
+     * @param ay the y coordinate of the first extremity of the given segment.
+     * @param bx the x coordinate of the second extremity of the given segment.
+     * @param by the y coordinate of the second extremity of the given segment.
+     * @param intersect the array where to write the result for each segment.
+     */
+    public static void segmentIntersectionTests(double[] segments, double ax, double ay, double bx, double by, boolean[] intersect) {
+        checkSizes(segments.length / 4, intersect.length);
+        double minX = Math.min(ax, bx);
+        double maxX = Math.max(ax, bx);
+        double minY = Math.min(ay, by);
+        double maxY = Math.max(ay, by);
+        double dx = bx - ax;
+        double dy = by - ay;
+        int n = intersect.length;
+        for (int i = 0; i < n; i++) {
+            double cx = segments[4 * i];
+            double cy = segments[4 * i + 1];
+            double ex = segments[4 * i + 2];
+            double ey = segments[4 * i + 3];
+            double o1 = dx * (cy - ay) - dy * (cx - ax);
+            double o2 = dx * (ey - ay) - dy * (ex - ax);
+            double o3 = (ex - cx) * (ay - cy) - (ey - cy) * (ax - cx);
+            double o4 = (ex - cx) * (by - cy) - (ey - cy) * (bx - cx);
+            boolean boxesOverlap = Math.max(cx, ex) >= minX & Math.min(cx, ex) <= maxX
+                    & Math.max(cy, ey) >= minY & Math.min(cy, ey) <= maxY;
+            intersect[i] = boxesOverlap & o1 * o2 <= 0 & o3 * o4 <= 0;
+        }
+    }
+
+    /**
+     * Tests whether segments intersect, pairing the i-th segment of the first
+     * array with the i-th segment of the second one. Segments that touch or
+     * overlap are considered intersecting.
+     *
+     * @param segmentsA the first packed segments.
+     * @param segmentsB the second packed segments.
+     * @param intersect the array where to write the result for each pair.
+     */
+    public static void segmentIntersectionTests(double[] segmentsA, double[] segmentsB, boolean[] intersect) {
+        checkSizes(segmentsA.length / 4, intersect.length);
+        checkSizes(segmentsB.length / 4, intersect.length);
+        int n = intersect.length;
+        for (int i = 0; i < n; i++) {
+            double ax = segmentsA[4 * i];
+            double ay = segmentsA[4 * i + 1];
+            double bx = segmentsA[4 * i + 2];
+            double by = segmentsA[4 * i + 3];
+            double cx = segmentsB[4 * i];
+            double cy = segmentsB[4 * i + 1];
+            double ex = segmentsB[4 * i + 2];
+            double ey = segmentsB[4 * i + 3];
+            double o1 = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+            double o2 = (bx - ax) * (ey - ay) - (by - ay) * (ex - ax);
+            double o3 = (ex - cx) * (ay - cy) - (ey - cy) * (ax - cx);
+            double o4 = (ex - cx) * (by - cy) - (ey - cy) * (bx - cx);
+            boolean boxesOverlap = Math.max(cx, ex) >= Math.min(ax, bx) & Math.min(cx, ex) <= Math.max(ax, bx)
+                    & Math.max(cy, ey) >= Math.min(ay, by) & Math.min(cy, ey) <= Math.max(ay, by);
+            intersect[i] = boxesOverlap & o1 * o2 <= 0 & o3 * o4 <= 0;
+        }
+    }
+
+    /**
+     * Tests whether several points are inside a polygon or on its boundary.
+     * The polygon edges are processed one at a time against all the points,
+     * so that the inner loop runs on the points.
+     *
+     * @param points the packed points.
+     * @param polygon the packed polygon vertices.
+     * @param inside the array where to write the result for each point.
+     */
+    public static void pointsInPolygon(double[] points, double[] polygon, boolean[] inside) {
+        checkSizes(points.length / 2, inside.length);
+        int n = inside.length;
+        int vertices = polygon.length / 2;
+        boolean[] onBoundary = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            inside[i] = false;
+        }
+        for (int v = 0; v < vertices; v++) {
+            int w = v == 0 ? vertices - 1 : v - 1;
+            double x1 = polygon[2 * w];
+            double y1 = polygon[2 * w + 1];
+            double x2 = polygon[2 * v];
+            double y2 = polygon[2 * v + 1];
+            double direction = y2 > y1 ? 1.0 : -1.0;
+            double minX = Math.min(x1, x2);
+            double maxX = Math.max(x1, x2);
+            double minY = Math.min(y1, y2);
+            double maxY = Math.max(y1, y2);
+            for (int i = 0; i < n; i++) {
+                double px = points[2 * i];
+                double py = points[2 * i + 1];
+                double cross = (x2 - x1) * (py - y1) - (y2 - y1) * (px - x1);
+                boolean straddles = (y1 > py) != (y2 > py);
+                inside[i] ^= straddles & cross * direction > 0;
+                onBoundary[i] |= cross == 0 & px >= minX & px <= maxX & py >= minY & py <= maxY;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            inside[i] |= onBoundary[i];
+        }
+    }
+
+    /**
+     * Verifies that the input and output arrays have compatible sizes.
+     *
+     * @param inputElements the number of input elements.
+     * @param outputElements the number of output elements.
+     */
+    private static void checkSizes(int inputElements, int outputElements) {
+        if (inputElements < outputElements) {
+            throw new IllegalArgumentException("The input arrays contain " + inputElements
+                    + " elements, while the output array requires " + outputElements + ".");
+        }
+    }
+}
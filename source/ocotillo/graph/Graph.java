@@ -21,6 +21,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A graph.
@@ -40,8 +41,8 @@ public class Graph {
     private final Map<String, NodeAttribute<?>> nodeAttributeMap = new HashMap<>();
     private final Map<String, EdgeAttribute<?>> edgeAttributeMap = new HashMap<>();
 
-    private static long nodeIdIndex = 0;
-    private static long edgeIdIndex = 0;
+    private static final AtomicLong nodeIdIndex = new AtomicLong();
+    private static final AtomicLong edgeIdIndex = new AtomicLong();
 
     private final Set<GraphObserver> observers = new HashSet<>();
     private final Set<Element> changedElements = new HashSet<>();
@@ -92,7 +93,7 @@ public class Graph {
     public Node newNode(String id) {
         if (id == null) {
             do {
-                id = (++nodeIdIndex) + "n";
+                id = nodeIdIndex.incrementAndGet() + "n";
             } while (rootGraph().hasNode(id));
         }
 
@@ -161,7 +162,7 @@ public class Graph {
     public Edge newEdge(String id, Node source, Node target) {
         if (id == null) {
             do {
-                id = (++edgeIdIndex) + "e";
+                id = edgeIdIndex.incrementAndGet() + "e";
             } while (rootGraph().hasEdge(id));
         }
 
@@ -28,6 +28,7 @@ import ocotillo.graph.StdAttribute;
 import ocotillo.graph.StdAttribute.ControlPoints;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -448,6 +449,22 @@ public class BendExplicitGraphSynchroniser {
         }
     }
 
+    /**
+     * Handles the updates from mirror graph to original for the given original
+     * nodes and edges only, as in updateOriginal.
+     *
+     * @param nodes the original nodes to update.
+     * @param edges the original edges to update.
+     */
+    public void updateOriginal(Collection<Node> nodes, Collection<Edge> edges) {
+        for (Node node : nodes) {
+            mirrorAttributesToOriginal(node);
+        }
+        for (Edge edge : edges) {
+            mirrorAttributesToOriginal(directEdgeMap.get(edge));
+        }
+    }
+
     /**
      * Copies the mirror attribute of a node to the original graph.
      *
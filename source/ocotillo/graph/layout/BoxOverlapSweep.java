@@ -0,0 +1,260 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Detects the overlapping pairs in a set of axis aligned boxes with a plane
+ * sweep. The boxes are swept from left to right, and the boxes currently
+ * intersected by the sweep line are indexed on the vertical axis by a segment
+ * tree (to find the boxes that contain the bottom of the new box) and by an
+ * ordered set (to find the boxes that start within the vertical span of the new
+ * box). The computation takes O(n log n + k) time, where k is the number of
+ * overlapping pairs. Boxes that only touch on their border are considered
+ * overlapping.
+ */
+class BoxOverlapSweep {
+
+    /**
+     * Receives the pairs of overlapping boxes.
+     */
+    interface PairVisitor {
+
+        /**
+         * Visits a pair of overlapping boxes.
+         *
+         * @param first the index of the box already swept.
+         * @param second the index of the box being swept.
+         * @return true to continue the sweep, false to stop it.
+         */
+        boolean visit(int first, int second);
+    }
+
+    private final double[] left;
+    private final double[] right;
+    private final double[] bottom;
+    private final double[] top;
+
+    private double[] yValues;
+    private List<List<Integer>> treeLists;
+    private boolean[] active;
+
+    /**
+     * Prepares the sweep for the given boxes.
+     *
+     * @param left the left side of each box.
+     * @param right the right side of each box.
+     * @param bottom the bottom side of each box.
+     * @param top the top side of each box.
+     */
+    BoxOverlapSweep(double[] left, double[] right, double[] bottom, double[] top) {
+        assert (left.length == right.length && left.length == bottom.length && left.length == top.length) : "The box sides have different lengths.";
+        this.left = left;
+        this.right = right;
+        this.bottom = bottom;
+        this.top = top;
+    }
+
+    /**
+     * Runs the sweep.
+     *
+     * @param visitor the visitor of the overlapping pairs.
+     */
+    void run(PairVisitor visitor) {
+        int n = left.length;
+        initializeVerticalIndex();
+
+        Integer[] byLeft = sortedIndexes(left);
+        Integer[] byRight = sortedIndexes(right);
+        Integer[] byBottom = sortedIndexes(bottom);
+        double[] sortedBottoms = new double[n];
+        int[] bottomRank = new int[n];
+        for (int rank = 0; rank < n; rank++) {
+            sortedBottoms[rank] = bottom[byBottom[rank]];
+            bottomRank[byBottom[rank]] = rank;
+        }
+
+        TreeSet<Integer> activeBottomRanks = new TreeSet<>();
+        int nextToRemove = 0;
+        for (int current : byLeft) {
+            while (nextToRemove < n && right[byRight[nextToRemove]] < left[current]) {
+                int removed = byRight[nextToRemove++];
+                if (active[removed]) {
+                    active[removed] = false;
+                    activeBottomRanks.remove(bottomRank[removed]);
+                }
+            }
+
+            int bottomIdx = Arrays.binarySearch(yValues, bottom[current]);
+            if (!stab(1, 0, yValues.length - 1, bottomIdx, current, visitor)) {
+                return;
+            }
+
+            int firstRank = upperBound(sortedBottoms, bottom[current]);
+            int lastRank = upperBound(sortedBottoms, top[current]) - 1;
+            if (firstRank <= lastRank) {
+                for (int rank : activeBottomRanks.subSet(firstRank, true, lastRank, true)) {
+                    if (!visitor.visit(byBottom[rank], current)) {
+                        return;
+                    }
+                }
+            }
+
+            active[current] = true;
+            activeBottomRanks.add(bottomRank[current]);
+            insert(1, 0, yValues.length - 1, bottomIdx, Arrays.binarySearch(yValues, top[current]), current);
+        }
+    }
+
+    /**
+     * Initializes the segment tree on the distinct vertical coordinates.
+     */
+    private void initializeVerticalIndex() {
+        int n = left.length;
+        double[] allYValues = new double[2 * n];
+        System.arraycopy(bottom, 0, allYValues, 0, n);
+        System.arraycopy(top, 0, allYValues, n, n);
+        Arrays.sort(allYValues);
+        int uniqueCount = 0;
+        for (int i = 0; i < allYValues.length; i++) {
+            if (i == 0 || allYValues[i] != allYValues[i - 1]) {
+                allYValues[uniqueCount++] = allYValues[i];
+            }
+        }
+        yValues = Arrays.copyOf(allYValues, uniqueCount);
+        int treeSize = 4 * Math.max(1, uniqueCount);
+        treeLists = new ArrayList<>(treeSize);
+        for (int i = 0; i < treeSize; i++) {
+            treeLists.add(null);
+        }
+        active = new boolean[n];
+    }
+
+    /**
+     * Inserts a vertical span in the segment tree.
+     *
+     * @param treeNode the current tree node.
+     * @param from the first y index covered by the tree node.
+     * @param to the last y index covered by the tree node.
+     * @param spanFrom the first y index of the span.
+     * @param spanTo the last y index of the span.
+     * @param box the box index.
+     */
+    private void insert(int treeNode, int from, int to, int spanFrom, int spanTo, int box) {
+        if (spanTo < from || to < spanFrom) {
+            return;
+        }
+        if (spanFrom <= from && to <= spanTo) {
+            List<Integer> list = treeLists.get(treeNode);
+            if (list == null) {
+                list = new ArrayList<>(2);
+                treeLists.set(treeNode, list);
+            }
+            list.add(box);
+            return;
+        }
+        int middle = (from + to) / 2;
+        insert(2 * treeNode, from, middle, spanFrom, spanTo, box);
+        insert(2 * treeNode + 1, middle + 1, to, spanFrom, spanTo, box);
+    }
+
+    /**
+     * Visits the active boxes whose vertical span contains the given y index.
+     * Inactive boxes found during the visit are discarded from the tree.
+     *
+     * @param treeNode the current tree node.
+     * @param from the first y index covered by the tree node.
+     * @param to the last y index covered by the tree node.
+     * @param yIdx the y index to stab.
+     * @param current the box being swept.
+     * @param visitor the pair visitor.
+     * @return false if the visitor stopped the sweep, true otherwise.
+     */
+    private boolean stab(int treeNode, int from, int to, int yIdx, int current, PairVisitor visitor) {
+        List<Integer> list = treeLists.get(treeNode);
+        if (list != null) {
+            int i = 0;
+            while (i < list.size()) {
+                int box = list.get(i);
+                if (active[box]) {
+                    if (!visitor.visit(box, current)) {
+                        return false;
+                    }
+                    i++;
+                } else {
+                    list.set(i, list.get(list.size() - 1));
+                    list.remove(list.size() - 1);
+                }
+            }
+        }
+        if (from == to) {
+            return true;
+        }
+        int middle = (from + to) / 2;
+        if (yIdx <= middle) {
+            return stab(2 * treeNode, from, middle, yIdx, current, visitor);
+        } else {
+            return stab(2 * treeNode + 1, middle + 1, to, yIdx, current, visitor);
+        }
+    }
+
+    /**
+     * Returns the box indexes sorted by the given values.
+     *
+     * @param values the values.
+     * @return the sorted indexes.
+     */
+    private static Integer[] sortedIndexes(final double[] values) {
+        Integer[] indexes = new Integer[values.length];
+        for (int i = 0; i < values.length; i++) {
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(values[a], values[b]);
+            }
+        });
+        return indexes;
+    }
+
+    /**
+     * Returns the index of the first value strictly greater than the given
+     * one.
+     *
+     * @param sortedValues the values, in ascending order.
+     * @param value the value.
+     * @return the index of the first greater value.
+     */
+    private static int upperBound(double[] sortedValues, double value) {
+        int low = 0;
+        int high = sortedValues.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sortedValues[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
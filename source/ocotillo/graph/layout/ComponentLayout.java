@@ -0,0 +1,409 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout;
+
+import ocotillo.geometry.Box;
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Element;
+import ocotillo.graph.ElementAttribute;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.StdAttribute.ControlPoints;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Lays out the connected components of a graph independently. Each component
+ * is copied into a standalone graph, with all the attributes that affect the
+ * layout, and laid out by the given engine on a thread pool. The
+ * component drawings are then packed in rows, from the tallest to the
+ * lowest, so that the rows have approximately the same width. Components
+ * made of a single node are not passed to the engine.
+ */
+public class ComponentLayout {
+
+    private final Engine engine;
+    private final double spacing;
+    private final int threads;
+
+    /**
+     * A layout algorithm applied to each component. The components are laid
+     * out concurrently, so the engine must be thread-safe.
+     */
+    public interface Engine {
+
+        /**
+         * Computes the layout of a connected component, setting the node
+         * positions and, optionally, the edge bends of the given graph.
+         *
+         * @param component the component graph.
+         */
+        public void execute(Graph component);
+    }
+
+    /**
+     * Builder for component layouts.
+     */
+    public static class ComponentLayoutBuilder {
+
+        private final Engine engine;
+        private double spacing = 1;
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Constructs a component layout builder.
+         *
+         * @param engine the layout engine used for each component.
+         */
+        public ComponentLayoutBuilder(Engine engine) {
+            this.engine = engine;
+        }
+
+        /**
+         * Indicates the space left between the component drawings.
+         *
+         * @param spacing the spacing.
+         * @return the builder.
+         */
+        public ComponentLayoutBuilder withSpacing(double spacing) {
+            this.spacing = spacing;
+            return this;
+        }
+
+        /**
+         * Indicates the number of threads used to lay out the components.
+         *
+         * @param threads the number of threads.
+         * @return the builder.
+         */
+        public ComponentLayoutBuilder withThreads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Builds the component layout.
+         *
+         * @return the component layout.
+         */
+        public ComponentLayout build() {
+            if (engine == null || spacing < 0 || threads < 1) {
+                throw new IllegalArgumentException("Invalid component layout parameters.");
+            }
+            return new ComponentLayout(engine, spacing, threads);
+        }
+    }
+
+    /**
+     * Constructs a component layout.
+     *
+     * @param engine the layout engine.
+     * @param spacing the spacing between components.
+     * @param threads the number of threads.
+     */
+    private ComponentLayout(Engine engine, double spacing, int threads) {
+        this.engine = engine;
+        this.spacing = spacing;
+        this.threads = threads;
+    }
+
+    /**
+     * Computes the layout of a graph, setting its node positions and edge
+     * bends.
+     *
+     * @param graph the graph.
+     */
+    public void execute(Graph graph) {
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        EdgeAttribute<ControlPoints> bends = graph.edgeAttribute(StdAttribute.edgePoints);
+        List<Graph> components = new ArrayList<>();
+        for (Set<Node> nodes : connectedComponents(graph)) {
+            components.add(copyComponent(graph, nodes));
+        }
+
+        layoutComponents(components);
+
+        List<Box> boxes = new ArrayList<>();
+        for (Graph component : components) {
+            boxes.add(Layout2D.graphBox(component, component.<Coordinates>nodeAttribute(StdAttribute.nodePosition),
+                    component.<Coordinates>nodeAttribute(StdAttribute.nodeSize),
+                    component.<ControlPoints>edgeAttribute(StdAttribute.edgePoints),
+                    component.<Double>edgeAttribute(StdAttribute.edgeWidth)));
+        }
+        List<Coordinates> offsets = packBoxes(boxes, spacing);
+
+        positions.startBulkNotification();
+        bends.startBulkNotification();
+        for (int i = 0; i < components.size(); i++) {
+            Graph component = components.get(i);
+            Coordinates offset = offsets.get(i);
+            NodeAttribute<Coordinates> componentPositions = component.nodeAttribute(StdAttribute.nodePosition);
+            EdgeAttribute<ControlPoints> componentBends = component.edgeAttribute(StdAttribute.edgePoints);
+            for (Node node : component.nodes()) {
+                positions.set(graph.getNode(node.id()), componentPositions.get(node).plus(offset));
+            }
+            for (Edge edge : component.edges()) {
+                Edge original = graph.getEdge(edge.id());
+                if (componentBends.isDefault(edge)) {
+                    if (!bends.isDefault(original)) {
+                        bends.clear(original);
+                    }
+                } else {
+                    ControlPoints points = new ControlPoints();
+                    for (Coordinates point : componentBends.get(edge)) {
+                        points.add(point.plus(offset));
+                    }
+                    bends.set(original, points);
+                }
+            }
+        }
+        bends.stopBulkNotification();
+        positions.stopBulkNotification();
+    }
+
+    /**
+     * Lays out the components, from the largest to the smallest, in parallel
+     * when there are more than one.
+     *
+     * @param components the components.
+     */
+    private void layoutComponents(List<Graph> components) {
+        List<Graph> sortedComponents = new ArrayList<>();
+        for (Graph component : components) {
+            if (component.nodeCount() > 1) {
+                sortedComponents.add(component);
+            }
+        }
+        if (sortedComponents.size() <= 1 || threads == 1) {
+            for (Graph component : sortedComponents) {
+                engine.execute(component);
+            }
+            return;
+        }
+
+        Collections.sort(sortedComponents, new Comparator<Graph>() {
+            @Override
+            public int compare(Graph a, Graph b) {
+                return Integer.compare(b.nodeCount(), a.nodeCount());
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, sortedComponents.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (final Graph component : sortedComponents) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        engine.execute(component);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The component layout has been interrupted.");
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Error while computing the component layout.", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Copies a connected component in a standalone graph. The copied nodes
+     * and edges keep the original ids, and all the attributes that affect the
+     * layout, including their default values.
+     *
+     * @param graph the original graph.
+     * @param nodes the component nodes.
+     * @return the component graph.
+     */
+    private static Graph copyComponent(Graph graph, Set<Node> nodes) {
+        Graph component = new Graph();
+        List<Edge> edges = new ArrayList<>();
+        for (Node node : nodes) {
+            component.newNode(node.id());
+        }
+        for (Node node : nodes) {
+            for (Edge edge : graph.outEdges(node)) {
+                component.newEdge(edge.id(), component.getNode(edge.source().id()), component.getNode(edge.target().id()));
+                edges.add(edge);
+            }
+        }
+        copyLayoutAttributes(graph, component, nodes, edges);
+        return component;
+    }
+
+    /**
+     * Copies all the attributes that affect the layout, including their
+     * default values, from a graph to a standalone copy of part of it. The
+     * copy must contain an element with the same id for each of the given
+     * nodes and edges.
+     *
+     * @param graph the original graph.
+     * @param copy the copy.
+     * @param nodes the original nodes to copy the values of.
+     * @param edges the original edges to copy the values of.
+     */
+    public static void copyLayoutAttributes(Graph graph, Graph copy, Collection<Node> nodes, Collection<Edge> edges) {
+        Iterator<NodeAttribute<?>> copyNodeAttributes = StdAttribute.thatAffectlayout.nodeAttributes(copy).iterator();
+        for (NodeAttribute<?> attribute : StdAttribute.thatAffectlayout.nodeAttributes(graph)) {
+            copyAttribute(attribute, copyNodeAttributes.next(), nodes, copy);
+        }
+        Iterator<EdgeAttribute<?>> copyEdgeAttributes = StdAttribute.thatAffectlayout.edgeAttributes(copy).iterator();
+        for (EdgeAttribute<?> attribute : StdAttribute.thatAffectlayout.edgeAttributes(graph)) {
+            copyAttribute(attribute, copyEdgeAttributes.next(), edges, copy);
+        }
+    }
+
+    /**
+     * Copies the default and the values of an attribute on the corresponding
+     * elements of a component graph, where elements have the same ids.
+     *
+     * @param <K> the element type.
+     * @param attribute the original attribute.
+     * @param componentAttribute the component attribute.
+     * @param elements the original elements.
+     * @param component the component graph.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K extends Element> void copyAttribute(ElementAttribute<K, ?> attribute, ElementAttribute<K, ?> componentAttribute, Collection<? extends K> elements, Graph component) {
+        ElementAttribute<K, Object> target = (ElementAttribute<K, Object>) componentAttribute;
+        target.setDefault(copyValue(attribute.getDefault()));
+        for (K element : elements) {
+            if (!attribute.isDefault(element)) {
+                K copy = element instanceof Node ? (K) component.getNode(element.id()) : (K) component.getEdge(element.id());
+                target.set(copy, copyValue(attribute.get(element)));
+            }
+        }
+    }
+
+    /**
+     * Copies an attribute value, so that the component does not share the
+     * mutable values of the original graph.
+     *
+     * @param value the value.
+     * @return the copied value.
+     */
+    private static Object copyValue(Object value) {
+        if (value instanceof Coordinates) {
+            return new Coordinates((Coordinates) value);
+        }
+        if (value instanceof ControlPoints) {
+            ControlPoints points = new ControlPoints();
+            for (Coordinates point : (ControlPoints) value) {
+                points.add(new Coordinates(point));
+            }
+            return points;
+        }
+        return value;
+    }
+
+    /**
+     * Computes the connected components of a graph.
+     *
+     * @param graph the graph.
+     * @return the node sets of the components.
+     */
+    public static List<Set<Node>> connectedComponents(Graph graph) {
+        List<Set<Node>> components = new ArrayList<>();
+        Set<Node> visited = new HashSet<>();
+        for (Node start : graph.nodes()) {
+            if (!visited.add(start)) {
+                continue;
+            }
+            Set<Node> component = new HashSet<>();
+            Deque<Node> queue = new ArrayDeque<>();
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                Node node = queue.poll();
+                component.add(node);
+                for (Edge edge : graph.inOutEdges(node)) {
+                    Node neighbour = edge.otherEnd(node);
+                    if (visited.add(neighbour)) {
+                        queue.add(neighbour);
+                    }
+                }
+            }
+            components.add(component);
+        }
+        return components;
+    }
+
+    /**
+     * Places a list of boxes in rows, from the tallest to the lowest, so that
+     * the rows have approximately the same width.
+     *
+     * @param boxes the boxes.
+     * @param spacing the space left between boxes.
+     * @return the translation to apply to each box.
+     */
+    public static List<Coordinates> packBoxes(final List<Box> boxes, double spacing) {
+        List<Integer> order = new ArrayList<>();
+        double totalArea = 0;
+        double maxWidth = 0;
+        for (int i = 0; i < boxes.size(); i++) {
+            order.add(i);
+            totalArea += (boxes.get(i).width() + spacing) * (boxes.get(i).height() + spacing);
+            maxWidth = Math.max(maxWidth, boxes.get(i).width());
+        }
+        Collections.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Double.compare(boxes.get(b).height(), boxes.get(a).height());
+            }
+        });
+
+        double rowWidth = Math.max(maxWidth, Math.sqrt(totalArea));
+        List<Coordinates> offsets = new ArrayList<>(Collections.nCopies(boxes.size(), (Coordinates) null));
+        double x = 0;
+        double y = 0;
+        double rowHeight = 0;
+        for (int index : order) {
+            Box box = boxes.get(index);
+            if (x > 0 && x + box.width() > rowWidth) {
+                x = 0;
+                y -= rowHeight + spacing;
+                rowHeight = 0;
+            }
+            offsets.set(index, new Coordinates(x - box.left, y - box.top));
+            x += box.width() + spacing;
+            rowHeight = Math.max(rowHeight, box.height());
+        }
+        return offsets;
+    }
+}
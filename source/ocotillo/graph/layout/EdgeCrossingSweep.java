@@ -0,0 +1,409 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute.ControlPoints;
+import ocotillo.graph.layout.Layout2D.EdgeCrossing;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Finds the crossings between the poly-line edges of a graph. The edges are
+ * decomposed in segments, the candidate segment pairs are obtained with a
+ * plane sweep on the segment boxes, and each candidate is verified with exact
+ * orientation tests. The computation takes O((m + c) log m) time, where m is
+ * the number of segments and c the number of segment pairs with overlapping
+ * boxes. This is not an output sensitive Bentley-Ottmann sweep: c is bounded
+ * by the number of crossings k only when the segment boxes are small compared
+ * to their spacing. Long diagonal segments can have overlapping boxes without
+ * crossing, and in the worst case c, and thus the running time, is quadratic
+ * in m even when k is zero.
+ * <p>
+ * The following rules apply:
+ * <ul>
+ * <li>segments of the same edge are never compared;</li>
+ * <li>edges touching at one of their end nodes do not cross there;</li>
+ * <li>a crossing placed on a bend is counted once, and only if the two edges
+ * actually pass through each other at that point;</li>
+ * <li>each pair of collinear segments overlapping for a positive length counts
+ * as a crossing.</li>
+ * </ul>
+ */
+class EdgeCrossingSweep {
+
+    private static final int interior = 0;
+    private static final int start = 1;
+    private static final int end = 2;
+
+    private final Edge[] edges;
+    private final double[][] xs;
+    private final double[][] ys;
+    private final boolean[] selected;
+
+    private final int[] segEdge;
+    private final int[] segStart;
+
+    /**
+     * Receives the crossings found.
+     */
+    interface CrossingVisitor {
+
+        /**
+         * Visits a crossing.
+         *
+         * @param crossing the crossing.
+         */
+        void visit(EdgeCrossing crossing);
+    }
+
+    /**
+     * Prepares the crossing computation.
+     *
+     * @param edges the edges to consider.
+     * @param selectedEdges the edges whose crossings are of interest. If null,
+     * all crossings are reported.
+     * @param positions the node positions.
+     * @param edgePoints the edge control points. If null, all edges have no
+     * bends.
+     */
+    EdgeCrossingSweep(Collection<Edge> edges, Collection<Edge> selectedEdges, NodeAttribute<Coordinates> positions, EdgeAttribute<ControlPoints> edgePoints) {
+        this.edges = edges.toArray(new Edge[edges.size()]);
+        this.xs = new double[this.edges.length][];
+        this.ys = new double[this.edges.length][];
+        this.selected = selectedEdges != null ? new boolean[this.edges.length] : null;
+        Set<Edge> selectedSet = selectedEdges != null ? new HashSet<>(selectedEdges) : null;
+
+        int segmentCount = 0;
+        for (int i = 0; i < this.edges.length; i++) {
+            List<Coordinates> points = LayoutXD.edgePoints(this.edges[i], positions, edgePoints);
+            double[] x = new double[points.size()];
+            double[] y = new double[points.size()];
+            int size = 0;
+            for (Coordinates point : points) {
+                if (size == 0 || point.x() != x[size - 1] || point.y() != y[size - 1]) {
+                    x[size] = point.x();
+                    y[size] = point.y();
+                    size++;
+                }
+            }
+            xs[i] = x.length == size ? x : Arrays.copyOf(x, size);
+            ys[i] = y.length == size ? y : Arrays.copyOf(y, size);
+            segmentCount += size - 1;
+            if (selected != null) {
+                selected[i] = selectedSet.contains(this.edges[i]);
+            }
+        }
+
+        this.segEdge = new int[segmentCount];
+        this.segStart = new int[segmentCount];
+        int segment = 0;
+        for (int i = 0; i < this.edges.length; i++) {
+            for (int j = 0; j < xs[i].length - 1; j++) {
+                segEdge[segment] = i;
+                segStart[segment] = j;
+                segment++;
+            }
+        }
+    }
+
+    /**
+     * Runs the computation.
+     *
+     * @param visitor the visitor of the crossings.
+     */
+    void run(final CrossingVisitor visitor) {
+        int m = segEdge.length;
+        double[] left = new double[m];
+        double[] right = new double[m];
+        double[] bottom = new double[m];
+        double[] top = new double[m];
+        for (int s = 0; s < m; s++) {
+            double[] x = xs[segEdge[s]];
+            double[] y = ys[segEdge[s]];
+            int i = segStart[s];
+            left[s] = Math.min(x[i], x[i + 1]);
+            right[s] = Math.max(x[i], x[i + 1]);
+            bottom[s] = Math.min(y[i], y[i + 1]);
+            top[s] = Math.max(y[i], y[i + 1]);
+        }
+
+        new BoxOverlapSweep(left, right, bottom, top).run(new BoxOverlapSweep.PairVisitor() {
+            @Override
+            public boolean visit(int first, int second) {
+                int firstEdge = segEdge[first];
+                int secondEdge = segEdge[second];
+                if (firstEdge == secondEdge) {
+                    return true;
+                }
+                if (selected != null && !selected[firstEdge] && !selected[secondEdge]) {
+                    return true;
+                }
+                EdgeCrossing crossing = intersect(first, second);
+                if (crossing != null) {
+                    visitor.visit(crossing);
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Computes all the crossings.
+     *
+     * @return the crossings.
+     */
+    List<EdgeCrossing> crossings() {
+        final List<EdgeCrossing> crossings = new ArrayList<>();
+        run(new CrossingVisitor() {
+            @Override
+            public void visit(EdgeCrossing crossing) {
+                crossings.add(crossing);
+            }
+        });
+        return crossings;
+    }
+
+    /**
+     * Verifies whether two segments of different edges cross.
+     *
+     * @param s the first segment.
+     * @param t the second segment.
+     * @return the crossing, or null if the segments do not cross.
+     */
+    private EdgeCrossing intersect(int s, int t) {
+        double[] sx = xs[segEdge[s]];
+        double[] sy = ys[segEdge[s]];
+        double[] tx = xs[segEdge[t]];
+        double[] ty = ys[segEdge[t]];
+        int i = segStart[s];
+        int j = segStart[t];
+
+        double o1 = orientation(tx[j], ty[j], tx[j + 1], ty[j + 1], sx[i], sy[i]);
+        double o2 = orientation(tx[j], ty[j], tx[j + 1], ty[j + 1], sx[i + 1], sy[i + 1]);
+        double o3 = orientation(sx[i], sy[i], sx[i + 1], sy[i + 1], tx[j], ty[j]);
+        double o4 = orientation(sx[i], sy[i], sx[i + 1], sy[i + 1], tx[j + 1], ty[j + 1]);
+
+        if (o1 == 0 && o2 == 0 && o3 == 0 && o4 == 0) {
+            return intersectCollinear(s, t);
+        }
+        if ((o1 > 0 && o2 > 0) || (o1 < 0 && o2 < 0) || (o3 > 0 && o4 > 0) || (o3 < 0 && o4 < 0)) {
+            return null;
+        }
+        if (o1 != 0 && o2 != 0 && o3 != 0 && o4 != 0) {
+            double ratio = o1 / (o1 - o2);
+            Coordinates point = new Coordinates(sx[i] + (sx[i + 1] - sx[i]) * ratio, sy[i] + (sy[i + 1] - sy[i]) * ratio);
+            return new EdgeCrossing(edges[segEdge[s]], edges[segEdge[t]], point, false);
+        }
+
+        double px, py;
+        if (o1 == 0 && inBox(t, sx[i], sy[i])) {
+            px = sx[i];
+            py = sy[i];
+        } else if (o2 == 0 && inBox(t, sx[i + 1], sy[i + 1])) {
+            px = sx[i + 1];
+            py = sy[i + 1];
+        } else if (o3 == 0 && inBox(s, tx[j], ty[j])) {
+            px = tx[j];
+            py = ty[j];
+        } else if (o4 == 0 && inBox(s, tx[j + 1], ty[j + 1])) {
+            px = tx[j + 1];
+            py = ty[j + 1];
+        } else {
+            return null;
+        }
+        return intersectAtPoint(s, t, px, py);
+    }
+
+    /**
+     * Verifies whether two segments of different edges that touch in a given
+     * point cross in that point.
+     *
+     * @param s the first segment.
+     * @param t the second segment.
+     * @param px the x coordinate of the touching point.
+     * @param py the y coordinate of the touching point.
+     * @return the crossing, or null if the edges do not cross in the point.
+     */
+    private EdgeCrossing intersectAtPoint(int s, int t, double px, double py) {
+        int sLocation = locate(s, px, py);
+        int tLocation = locate(t, px, py);
+        if (sLocation == end || tLocation == end) {
+            return null;
+        }
+        if ((sLocation == start && segStart[s] == 0) || (tLocation == start && segStart[t] == 0)) {
+            return null;
+        }
+
+        double sBefore = directionBefore(s, sLocation, px, py);
+        double sAfter = directionAfter(s, px, py);
+        double tBefore = directionBefore(t, tLocation, px, py);
+        double tAfter = directionAfter(t, px, py);
+        if (tBefore == sBefore || tBefore == sAfter || tAfter == sBefore || tAfter == sAfter) {
+            return null;
+        }
+        if (isInArc(tBefore, sBefore, sAfter) == isInArc(tAfter, sBefore, sAfter)) {
+            return null;
+        }
+        return new EdgeCrossing(edges[segEdge[s]], edges[segEdge[t]], new Coordinates(px, py), false);
+    }
+
+    /**
+     * Verifies whether two collinear segments of different edges overlap.
+     *
+     * @param s the first segment.
+     * @param t the second segment.
+     * @return the crossing, or null if the segments do not overlap.
+     */
+    private EdgeCrossing intersectCollinear(int s, int t) {
+        double[] sx = xs[segEdge[s]];
+        double[] sy = ys[segEdge[s]];
+        double[] tx = xs[segEdge[t]];
+        double[] ty = ys[segEdge[t]];
+        int i = segStart[s];
+        int j = segStart[t];
+
+        boolean useX = Math.abs(sx[i + 1] - sx[i]) >= Math.abs(sy[i + 1] - sy[i]);
+        double[] sv = useX ? sx : sy;
+        double[] tv = useX ? tx : ty;
+        double overlapStart = Math.max(Math.min(sv[i], sv[i + 1]), Math.min(tv[j], tv[j + 1]));
+        double overlapEnd = Math.min(Math.max(sv[i], sv[i + 1]), Math.max(tv[j], tv[j + 1]));
+        if (overlapStart > overlapEnd) {
+            return null;
+        }
+
+        double ratio = (overlapStart - sv[i]) / (sv[i + 1] - sv[i]);
+        double px = overlapStart == sv[i] ? sx[i] : overlapStart == sv[i + 1] ? sx[i + 1] : sx[i] + (sx[i + 1] - sx[i]) * ratio;
+        double py = overlapStart == sv[i] ? sy[i] : overlapStart == sv[i + 1] ? sy[i + 1] : sy[i] + (sy[i + 1] - sy[i]) * ratio;
+        if (overlapStart == overlapEnd) {
+            return intersectAtPoint(s, t, px, py);
+        }
+        return new EdgeCrossing(edges[segEdge[s]], edges[segEdge[t]], new Coordinates(px, py), true);
+    }
+
+    /**
+     * Locates a point lying on a segment.
+     *
+     * @param segment the segment.
+     * @param px the x coordinate of the point.
+     * @param py the y coordinate of the point.
+     * @return whether the point is the segment start, end, or is in its
+     * interior.
+     */
+    private int locate(int segment, double px, double py) {
+        double[] x = xs[segEdge[segment]];
+        double[] y = ys[segEdge[segment]];
+        int i = segStart[segment];
+        if (x[i] == px && y[i] == py) {
+            return start;
+        }
+        if (x[i + 1] == px && y[i + 1] == py) {
+            return end;
+        }
+        return interior;
+    }
+
+    /**
+     * Computes the angle of the edge direction going backward from a point.
+     *
+     * @param segment the segment containing the point.
+     * @param location the location of the point in the segment.
+     * @param px the x coordinate of the point.
+     * @param py the y coordinate of the point.
+     * @return the angle of the backward direction.
+     */
+    private double directionBefore(int segment, int location, double px, double py) {
+        double[] x = xs[segEdge[segment]];
+        double[] y = ys[segEdge[segment]];
+        int i = location == start ? segStart[segment] - 1 : segStart[segment];
+        return Math.atan2(y[i] - py, x[i] - px);
+    }
+
+    /**
+     * Computes the angle of the edge direction going forward from a point.
+     *
+     * @param segment the segment containing the point.
+     * @param px the x coordinate of the point.
+     * @param py the y coordinate of the point.
+     * @return the angle of the forward direction.
+     */
+    private double directionAfter(int segment, double px, double py) {
+        double[] x = xs[segEdge[segment]];
+        double[] y = ys[segEdge[segment]];
+        int i = segStart[segment] + 1;
+        return Math.atan2(y[i] - py, x[i] - px);
+    }
+
+    /**
+     * Verifies if a point is in the box of a segment.
+     *
+     * @param segment the segment.
+     * @param px the x coordinate of the point.
+     * @param py the y coordinate of the point.
+     * @return true if the point is in the box, false otherwise.
+     */
+    private boolean inBox(int segment, double px, double py) {
+        double[] x = xs[segEdge[segment]];
+        double[] y = ys[segEdge[segment]];
+        int i = segStart[segment];
+        return Math.min(x[i], x[i + 1]) <= px && px <= Math.max(x[i], x[i + 1])
+                && Math.min(y[i], y[i + 1]) <= py && py <= Math.max(y[i], y[i + 1]);
+    }
+
+    /**
+     * Checks if an angle lies in the counter-clockwise arc that goes from a
+     * first angle to a second one.
+     *
+     * @param angle the angle.
+     * @param from the arc start.
+     * @param to the arc end.
+     * @return true if the angle is in the arc, false otherwise.
+     */
+    private static boolean isInArc(double angle, double from, double to) {
+        double arc = to - from;
+        double relative = angle - from;
+        if (arc < 0) {
+            arc += 2 * Math.PI;
+        }
+        if (relative < 0) {
+            relative += 2 * Math.PI;
+        }
+        return relative < arc;
+    }
+
+    /**
+     * Computes the orientation of a point with respect to a directed line.
+     *
+     * @param ax the x coordinate of the first line point.
+     * @param ay the y coordinate of the first line point.
+     * @param bx the x coordinate of the second line point.
+     * @param by the y coordinate of the second line point.
+     * @param cx the x coordinate of the point.
+     * @param cy the y coordinate of the point.
+     * @return positive if the point is on the left, negative if on the right,
+     * zero if on the line.
+     */
+    private static double orientation(double ax, double ay, double bx, double by, double cx, double cy) {
+        return (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+    }
+}
@@ -0,0 +1,338 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout;
+
+import ocotillo.geometry.Box;
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Attribute;
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Element;
+import ocotillo.graph.ElementAttributeObserver;
+import ocotillo.graph.Graph;
+import ocotillo.graph.GraphObserver;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.Observer;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.StdAttribute.ControlPoints;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the box of a graph updated while the graph and its layout attributes
+ * change. The tracker stores the box of each node and edge, and counts the
+ * occurrences of each box side value in sorted maps. Reading the graph box
+ * takes constant time when nothing changed, and logarithmic time otherwise,
+ * while a change in a node position only updates the boxes of the node and of
+ * its incident edges. The returned box is the same of
+ * {@link Layout2D#graphBox(Graph, NodeAttribute, NodeAttribute, EdgeAttribute, EdgeAttribute)}.
+ */
+public class GraphBoxTracker {
+
+    private final Graph graph;
+    private final NodeAttribute<Coordinates> positions;
+    private final NodeAttribute<Coordinates> nodeSizes;
+    private final EdgeAttribute<ControlPoints> edgePoints;
+    private final EdgeAttribute<Double> edgeWidths;
+
+    private final Map<Element, Box> elementBoxes = new HashMap<>();
+    private final TreeMap<Double, Integer> lefts = new TreeMap<>();
+    private final TreeMap<Double, Integer> rights = new TreeMap<>();
+    private final TreeMap<Double, Integer> bottoms = new TreeMap<>();
+    private final TreeMap<Double, Integer> tops = new TreeMap<>();
+    private Box graphBox;
+
+    private final List<Observer> observers = new ArrayList<>();
+
+    /**
+     * Constructs a tracker for the box of a graph. Uses the default attributes
+     * for position, size, control points and edge width.
+     *
+     * @param graph the graph.
+     */
+    public GraphBoxTracker(Graph graph) {
+        if (!graph.hasNodeAttribute(StdAttribute.nodePosition)) {
+            throw new IllegalStateException("The node positions are not defined");
+        }
+        this.graph = graph;
+        this.positions = graph.<Coordinates>nodeAttribute(StdAttribute.nodePosition);
+        this.nodeSizes = graph.hasNodeAttribute(StdAttribute.nodeSize) ? graph.<Coordinates>nodeAttribute(StdAttribute.nodeSize) : null;
+        this.edgePoints = graph.hasEdgeAttribute(StdAttribute.edgePoints) ? graph.<ControlPoints>edgeAttribute(StdAttribute.edgePoints) : null;
+        this.edgeWidths = graph.hasEdgeAttribute(StdAttribute.edgeWidth) ? graph.<Double>edgeAttribute(StdAttribute.edgeWidth) : null;
+        build();
+    }
+
+    /**
+     * Constructs a tracker for the box of a graph.
+     *
+     * @param graph the graph.
+     * @param positions the position attribute to use.
+     * @param nodeSizes the node size attribute to use. If null, all nodes have
+     * size 0.
+     * @param edgePoints the edge control points attribute to use. If null, all
+     * edges have none.
+     * @param edgeWidths the edge width attribute to use. It null, all edges have
+     * size 0.
+     */
+    public GraphBoxTracker(Graph graph, NodeAttribute<Coordinates> positions, NodeAttribute<Coordinates> nodeSizes, EdgeAttribute<ControlPoints> edgePoints, EdgeAttribute<Double> edgeWidths) {
+        this.graph = graph;
+        this.positions = positions;
+        this.nodeSizes = nodeSizes;
+        this.edgePoints = edgePoints;
+        this.edgeWidths = edgeWidths;
+        build();
+    }
+
+    /**
+     * Returns the current box of the graph. If the graph is empty, the box has
+     * infinite sides as in Box.combine.
+     *
+     * @return the graph box.
+     */
+    public Box box() {
+        if (graphBox == null) {
+            if (elementBoxes.isEmpty()) {
+                graphBox = Box.combine(new ArrayList<Box>());
+            } else {
+                graphBox = new Box(bottoms.firstKey(), lefts.firstKey(), tops.lastKey(), rights.lastKey());
+            }
+        }
+        return graphBox;
+    }
+
+    /**
+     * Removes the observers from the tracker. This should be called when the
+     * tracker is no more utilized, allowing it to be destroyed.
+     */
+    public void close() {
+        for (Observer observer : observers) {
+            observer.unregister();
+        }
+        observers.clear();
+    }
+
+    /**
+     * Computes the boxes of all elements and registers the observers.
+     */
+    private void build() {
+        rebuild();
+        addGraphObserver();
+        addPositionObserver();
+        if (nodeSizes != null) {
+            addSizeObserver();
+        }
+        if (edgePoints != null) {
+            addEdgeObserver(edgePoints);
+        }
+        if (edgeWidths != null) {
+            addEdgeObserver(edgeWidths);
+        }
+    }
+
+    /**
+     * Recomputes the boxes of all elements.
+     */
+    private void rebuild() {
+        elementBoxes.clear();
+        lefts.clear();
+        rights.clear();
+        bottoms.clear();
+        tops.clear();
+        graphBox = null;
+        for (Node node : graph.nodes()) {
+            update(node);
+        }
+        for (Edge edge : graph.edges()) {
+            update(edge);
+        }
+    }
+
+    /**
+     * Updates the box of an element, removing it if the element is no more in
+     * the graph.
+     *
+     * @param element the element.
+     */
+    private void update(Element element) {
+        Box previous = elementBoxes.remove(element);
+        if (previous != null) {
+            decrement(lefts, previous.left);
+            decrement(rights, previous.right);
+            decrement(bottoms, previous.bottom);
+            decrement(tops, previous.top);
+        }
+        Box current = null;
+        if (graph.has(element)) {
+            if (element instanceof Node) {
+                current = Layout2D.nodeBox((Node) element, positions, nodeSizes);
+            } else if (element instanceof Edge) {
+                current = Layout2D.edgeBox((Edge) element, positions, edgePoints, edgeWidths);
+            }
+        }
+        if (current != null) {
+            elementBoxes.put(element, current);
+            increment(lefts, current.left);
+            increment(rights, current.right);
+            increment(bottoms, current.bottom);
+            increment(tops, current.top);
+        }
+        if (previous == null || current == null || !sameSides(previous, current)) {
+            graphBox = null;
+        }
+    }
+
+    /**
+     * Updates a node box and the boxes of its incident edges.
+     *
+     * @param node the node.
+     */
+    private void updateWithEdges(Node node) {
+        update(node);
+        if (graph.has(node)) {
+            for (Edge edge : graph.inOutEdges(node)) {
+                update(edge);
+            }
+        }
+    }
+
+    /**
+     * Defines and register a graph observer.
+     */
+    private void addGraphObserver() {
+        observers.add(new GraphObserver(graph) {
+
+            @Override
+            public void updateElements(Collection<Element> changedElements) {
+                for (Element element : changedElements) {
+                    update(element);
+                }
+            }
+
+            @Override
+            public void updateSubGraphs(Collection<Graph> changedSubGraphs) {
+            }
+
+            @Override
+            public void updateAttributes(Collection<Attribute<?>> changedAttributes) {
+            }
+        });
+    }
+
+    /**
+     * Defines and register a node position observer.
+     */
+    private void addPositionObserver() {
+        observers.add(new ElementAttributeObserver<Node>(positions) {
+
+            @Override
+            public void update(Collection<Node> changedElements) {
+                for (Node node : changedElements) {
+                    updateWithEdges(node);
+                }
+            }
+
+            @Override
+            public void updateAll() {
+                rebuild();
+            }
+        });
+    }
+
+    /**
+     * Defines and register a node size observer.
+     */
+    private void addSizeObserver() {
+        observers.add(new ElementAttributeObserver<Node>(nodeSizes) {
+
+            @Override
+            public void update(Collection<Node> changedElements) {
+                for (Node node : changedElements) {
+                    GraphBoxTracker.this.update(node);
+                }
+            }
+
+            @Override
+            public void updateAll() {
+                rebuild();
+            }
+        });
+    }
+
+    /**
+     * Defines and register an observer for an edge attribute that affects the
+     * edge boxes.
+     *
+     * @param attribute the edge attribute.
+     */
+    private void addEdgeObserver(EdgeAttribute<?> attribute) {
+        observers.add(new ElementAttributeObserver<Edge>(attribute) {
+
+            @Override
+            public void update(Collection<Edge> changedElements) {
+                for (Edge edge : changedElements) {
+                    GraphBoxTracker.this.update(edge);
+                }
+            }
+
+            @Override
+            public void updateAll() {
+                rebuild();
+            }
+        });
+    }
+
+    /**
+     * Increments the count of a side value.
+     *
+     * @param counts the side value counts.
+     * @param value the side value.
+     */
+    private static void increment(TreeMap<Double, Integer> counts, double value) {
+        Integer count = counts.get(value);
+        counts.put(value, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Decrements the count of a side value.
+     *
+     * @param counts the side value counts.
+     * @param value the side value.
+     */
+    private static void decrement(TreeMap<Double, Integer> counts, double value) {
+        int count = counts.get(value);
+        if (count == 1) {
+            counts.remove(value);
+        } else {
+            counts.put(value, count - 1);
+        }
+    }
+
+    /**
+     * Checks whether two boxes have the same sides.
+     *
+     * @param a the first box.
+     * @param b the second box.
+     * @return true if the sides are equal.
+     */
+    private static boolean sameSides(Box a, Box b) {
+        return a.left == b.left && a.right == b.right && a.bottom == b.bottom && a.top == b.top;
+    }
+}
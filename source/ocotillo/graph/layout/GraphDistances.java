@@ -0,0 +1,333 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout;
+
+import ocotillo.graph.Edge;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Shortest path distances, in number of hops, from a set of source nodes to
+ * all the nodes of a graph. The graph is copied into a compact undirected
+ * adjacency structure, and the distances are stored in a matrix of unsigned
+ * 16 bit values, with one row per source.
+ */
+public class GraphDistances {
+
+    /**
+     * The value used for unreachable nodes.
+     */
+    public static final int unreachable = Character.MAX_VALUE;
+
+    private final List<Node> nodes;
+    private final Map<Node, Integer> indices;
+    private final int[] adjacencyStarts;
+    private final int[] adjacency;
+    private final int[] sources;
+    private final char[] hops;
+
+    /**
+     * Constructs the distances of a graph.
+     *
+     * @param nodes the graph nodes.
+     * @param indices the index of each node.
+     * @param adjacencyStarts the start of the neighbours of each node.
+     * @param adjacency the neighbours of the nodes.
+     * @param sources the source node indices.
+     * @param hops the distance matrix.
+     */
+    private GraphDistances(List<Node> nodes, Map<Node, Integer> indices, int[] adjacencyStarts, int[] adjacency, int[] sources, char[] hops) {
+        this.nodes = nodes;
+        this.indices = indices;
+        this.adjacencyStarts = adjacencyStarts;
+        this.adjacency = adjacency;
+        this.sources = sources;
+        this.hops = hops;
+    }
+
+    /**
+     * Computes the distances between all pairs of nodes. The breadth first
+     * visits are executed in parallel.
+     *
+     * @param graph the graph.
+     * @param threads the number of threads.
+     * @return the distances.
+     */
+    public static GraphDistances allPairs(Graph graph, int threads) {
+        Snapshot snapshot = new Snapshot(graph);
+        int nodeCount = snapshot.nodes.size();
+        if ((long) nodeCount * nodeCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The graph is too large for all pairs distances: use pivots.");
+        }
+        int[] sources = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            sources[i] = i;
+        }
+        char[] hops = new char[nodeCount * nodeCount];
+        snapshot.parallelVisits(sources, hops, threads);
+        return new GraphDistances(snapshot.nodes, snapshot.indices, snapshot.adjacencyStarts, snapshot.adjacency, sources, hops);
+    }
+
+    /**
+     * Computes the distances from a set of pivots to all nodes. Pivots are
+     * chosen by max-min selection: each new pivot is the node farthest from
+     * the pivots already chosen, so that the visits are necessarily
+     * sequential.
+     *
+     * @param graph the graph.
+     * @param pivotCount the number of pivots.
+     * @return the distances.
+     */
+    public static GraphDistances fromPivots(Graph graph, int pivotCount) {
+        Snapshot snapshot = new Snapshot(graph);
+        int nodeCount = snapshot.nodes.size();
+        pivotCount = Math.min(pivotCount, nodeCount);
+        int[] sources = new int[pivotCount];
+        char[] hops = new char[pivotCount * nodeCount];
+        int[] minHops = new int[nodeCount];
+        Arrays.fill(minHops, Integer.MAX_VALUE);
+        int[] queue = new int[nodeCount];
+        int nextPivot = 0;
+        for (int p = 0; p < pivotCount; p++) {
+            sources[p] = nextPivot;
+            snapshot.visit(nextPivot, hops, p * nodeCount, queue);
+            int farthest = -1;
+            for (int i = 0; i < nodeCount; i++) {
+                int distance = hops[p * nodeCount + i];
+                if (distance == unreachable) {
+                    distance = Integer.MAX_VALUE - 1;
+                }
+                minHops[i] = Math.min(minHops[i], distance);
+                if (farthest < 0 || minHops[i] > minHops[farthest]) {
+                    farthest = i;
+                }
+            }
+            nextPivot = farthest;
+        }
+        return new GraphDistances(snapshot.nodes, snapshot.indices, snapshot.adjacencyStarts, snapshot.adjacency, sources, hops);
+    }
+
+    /**
+     * Returns the number of nodes.
+     *
+     * @return the number of nodes.
+     */
+    public int nodeCount() {
+        return nodes.size();
+    }
+
+    /**
+     * Returns the node with the given index.
+     *
+     * @param index the node index.
+     * @return the node.
+     */
+    public Node node(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * Returns the index of a node.
+     *
+     * @param node the node.
+     * @return the node index.
+     */
+    public int index(Node node) {
+        Integer index = indices.get(node);
+        if (index == null) {
+            throw new IllegalArgumentException("The node " + node + " is not part of the graph.");
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of neighbours of a node, ignoring edge direction.
+     *
+     * @param index the node index.
+     * @return the node degree.
+     */
+    public int degree(int index) {
+        return adjacencyStarts[index + 1] - adjacencyStarts[index];
+    }
+
+    /**
+     * Returns a neighbour of a node.
+     *
+     * @param index the node index.
+     * @param k the neighbour position, lower than the node degree.
+     * @return the index of the neighbour.
+     */
+    public int neighbour(int index, int k) {
+        return adjacency[adjacencyStarts[index] + k];
+    }
+
+    /**
+     * Returns the number of source nodes.
+     *
+     * @return the number of sources.
+     */
+    public int sourceCount() {
+        return sources.length;
+    }
+
+    /**
+     * Returns the index of a source node.
+     *
+     * @param source the source position.
+     * @return the node index.
+     */
+    public int source(int source) {
+        return sources[source];
+    }
+
+    /**
+     * Returns the number of hops from a source to a node.
+     *
+     * @param source the source position.
+     * @param index the node index.
+     * @return the hops, or unreachable.
+     */
+    public int hops(int source, int index) {
+        return hops[source * nodes.size() + index];
+    }
+
+    /**
+     * Compact undirected adjacency structure of a graph.
+     */
+    private static class Snapshot {
+
+        final List<Node> nodes;
+        final Map<Node, Integer> indices = new HashMap<>();
+        final int[] adjacencyStarts;
+        final int[] adjacency;
+
+        /**
+         * Copies the adjacency of a graph. Self loops are ignored.
+         *
+         * @param graph the graph.
+         */
+        Snapshot(Graph graph) {
+            nodes = new ArrayList<>(graph.nodes());
+            for (Node node : nodes) {
+                indices.put(node, indices.size());
+            }
+            adjacencyStarts = new int[nodes.size() + 1];
+            for (Edge edge : graph.edges()) {
+                if (edge.source() != edge.target()) {
+                    adjacencyStarts[indices.get(edge.source()) + 1]++;
+                    adjacencyStarts[indices.get(edge.target()) + 1]++;
+                }
+            }
+            for (int i = 0; i < nodes.size(); i++) {
+                adjacencyStarts[i + 1] += adjacencyStarts[i];
+            }
+            adjacency = new int[adjacencyStarts[nodes.size()]];
+            int[] filled = Arrays.copyOf(adjacencyStarts, nodes.size());
+            for (Edge edge : graph.edges()) {
+                if (edge.source() != edge.target()) {
+                    int source = indices.get(edge.source());
+                    int target = indices.get(edge.target());
+                    adjacency[filled[source]++] = target;
+                    adjacency[filled[target]++] = source;
+                }
+            }
+        }
+
+        /**
+         * Executes a breadth first visit, writing the hops in a row of the
+         * distance matrix.
+         *
+         * @param source the source node index.
+         * @param hops the distance matrix.
+         * @param offset the start of the row.
+         * @param queue a buffer as large as the number of nodes.
+         */
+        void visit(int source, char[] hops, int offset, int[] queue) {
+            Arrays.fill(hops, offset, offset + nodes.size(), (char) unreachable);
+            hops[offset + source] = 0;
+            queue[0] = source;
+            int head = 0;
+            int tail = 1;
+            while (head < tail) {
+                int current = queue[head++];
+                int nextHops = hops[offset + current] + 1;
+                if (nextHops >= unreachable) {
+                    throw new IllegalStateException("The graph diameter exceeds the supported distances.");
+                }
+                for (int k = adjacencyStarts[current]; k < adjacencyStarts[current + 1]; k++) {
+                    int neighbour = adjacency[k];
+                    if (hops[offset + neighbour] == unreachable) {
+                        hops[offset + neighbour] = (char) nextHops;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Executes the visits from the given sources in parallel.
+         *
+         * @param sources the source node indices.
+         * @param hops the distance matrix.
+         * @param threads the number of threads.
+         */
+        void parallelVisits(final int[] sources, final char[] hops, int threads) {
+            int chunkCount = Math.max(1, Math.min(threads, sources.length));
+            final int chunkSize = (sources.length + chunkCount - 1) / Math.max(1, chunkCount);
+            ExecutorService executor = Executors.newFixedThreadPool(chunkCount);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int c = 0; c < chunkCount; c++) {
+                    final int start = c * chunkSize;
+                    final int end = Math.min(sources.length, start + chunkSize);
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            int[] queue = new int[nodes.size()];
+                            for (int s = start; s < end; s++) {
+                                visit(sources[s], hops, s * nodes.size(), queue);
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("The distance computation has been interrupted.");
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                throw new IllegalStateException("Error while computing the graph distances.", ex.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+}
@@ -31,6 +31,8 @@ import ocotillo.graph.StdAttribute.NodeShape;
 import static ocotillo.graph.layout.LayoutXD.edgePoints;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -523,18 +525,403 @@ public class Layout2D {
      * @return true if they overlap, false otherwise.
      */
     public static boolean doNodesOverlap(Graph graph, NodeAttribute<Coordinates> positions, NodeAttribute<Coordinates> nodeSizes) {
-        for (Node node : graph.nodes()) {
-            Box nodeBox = nodeBox(node, positions, nodeSizes);
-            for (Node otherNode : graph.nodes()) {
-                if (node.compareTo(otherNode) < 0) {
-                    Box otherNodeBox = nodeBox(otherNode, positions, nodeSizes);
-                    if (nodeBox.intersect(otherNodeBox) != null) {
-                        return true;
-                    }
+        return !sweepNodeOverlaps(graph.nodes(), positions, nodeSizes, true).isEmpty();
+    }
+
+    /**
+     * Computes the overlaps between the node boxes of a graph. Uses the
+     * default attributes for position and size.
+     *
+     * @param graph the graph.
+     * @return the node overlaps.
+     */
+    public static NodeOverlaps nodeOverlaps(Graph graph) {
+        if (!graph.hasNodeAttribute(StdAttribute.nodePosition)) {
+            throw new IllegalStateException("The node positions are not defined");
+        }
+        NodeAttribute<Coordinates> positions = graph.<Coordinates>nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> nodeSizes = graph.hasNodeAttribute(StdAttribute.nodeSize) ? graph.<Coordinates>nodeAttribute(StdAttribute.nodeSize) : null;
+        return nodeOverlaps(graph, positions, nodeSizes);
+    }
+
+    /**
+     * Computes the overlaps between the node boxes of a graph. Boxes that only
+     * touch on their border are considered overlapping. The computation takes
+     * O(n log n + k) time, where k is the number of overlaps.
+     *
+     * @param graph the graph.
+     * @param positions the node positions.
+     * @param nodeSizes the node sizes.
+     * @return the node overlaps.
+     */
+    public static NodeOverlaps nodeOverlaps(Graph graph, NodeAttribute<Coordinates> positions, NodeAttribute<Coordinates> nodeSizes) {
+        return new NodeOverlaps(sweepNodeOverlaps(graph.nodes(), positions, nodeSizes, false));
+    }
+
+    /**
+     * Finds the overlapping node boxes by means of a plane sweep.
+     *
+     * @param nodes the nodes.
+     * @param positions the node positions.
+     * @param nodeSizes the node sizes.
+     * @param stopAtFirst whether to stop at the first overlap found.
+     * @return the node overlaps.
+     */
+    private static List<NodeOverlap> sweepNodeOverlaps(Collection<Node> nodes, NodeAttribute<Coordinates> positions, NodeAttribute<Coordinates> nodeSizes, final boolean stopAtFirst) {
+        final Node[] nodeArray = nodes.toArray(new Node[nodes.size()]);
+        double[] left = new double[nodeArray.length];
+        double[] right = new double[nodeArray.length];
+        double[] bottom = new double[nodeArray.length];
+        double[] top = new double[nodeArray.length];
+        for (int i = 0; i < nodeArray.length; i++) {
+            Box box = nodeBox(nodeArray[i], positions, nodeSizes);
+            left[i] = box.left;
+            right[i] = box.right;
+            bottom[i] = box.bottom;
+            top[i] = box.top;
+        }
+
+        final List<NodeOverlap> overlaps = new ArrayList<>();
+        new BoxOverlapSweep(left, right, bottom, top).run(new BoxOverlapSweep.PairVisitor() {
+            @Override
+            public boolean visit(int first, int second) {
+                overlaps.add(new NodeOverlap(nodeArray[first], nodeArray[second]));
+                return !stopAtFirst;
+            }
+        });
+        return overlaps;
+    }
+
+    /**
+     * Computes the crossings between the edges of a graph. Uses the default
+     * attributes for node positions and edge control points.
+     *
+     * @param graph the graph.
+     * @return the edge crossings.
+     */
+    public static EdgeCrossings edgeCrossings(Graph graph) {
+        return edgeCrossings(graph, null);
+    }
+
+    /**
+     * Computes the crossings that involve at least one of the selected edges.
+     * Uses the default attributes for node positions and edge control points.
+     *
+     * @param graph the graph.
+     * @param selectedEdges the edges of interest. If null, all crossings are
+     * computed.
+     * @return the edge crossings.
+     */
+    public static EdgeCrossings edgeCrossings(Graph graph, Collection<Edge> selectedEdges) {
+        if (!graph.hasNodeAttribute(StdAttribute.nodePosition)) {
+            throw new IllegalStateException("The node positions are not defined");
+        }
+        NodeAttribute<Coordinates> positions = graph.<Coordinates>nodeAttribute(StdAttribute.nodePosition);
+        EdgeAttribute<ControlPoints> edgePoints = graph.hasEdgeAttribute(StdAttribute.edgePoints) ? graph.<ControlPoints>edgeAttribute(StdAttribute.edgePoints) : null;
+        return edgeCrossings(graph, selectedEdges, positions, edgePoints);
+    }
+
+    /**
+     * Computes the crossings that involve at least one of the selected edges.
+     * The edges are considered as poly-lines. Edges touching at a common node
+     * do not cross, crossings on a bend are counted only when the edges pass
+     * through each other, and each pair of collinear segments that overlap for
+     * a positive length is reported as a collinear crossing. The candidate
+     * segment pairs are found with a plane sweep on the segment boxes, so the
+     * computation takes O((m + c) log m) time for m segments and c pairs of
+     * overlapping segment boxes. The number of candidates c can be quadratic
+     * in m for long diagonal edges, even if they do not cross.
+     *
+     * @param graph the graph.
+     * @param selectedEdges the edges of interest. If null, all crossings are
+     * computed.
+     * @param positions the node positions.
+     * @param edgePoints the edge control points. If null, all edges have no
+     * bends.
+     * @return the edge crossings.
+     */
+    public static EdgeCrossings edgeCrossings(Graph graph, Collection<Edge> selectedEdges, NodeAttribute<Coordinates> positions, EdgeAttribute<ControlPoints> edgePoints) {
+        return new EdgeCrossings(new EdgeCrossingSweep(graph.edges(), selectedEdges, positions, edgePoints).crossings());
+    }
+
+    /**
+     * Counts the crossings between the edges of a graph without storing them.
+     * Uses the default attributes for node positions and edge control points.
+     *
+     * @param graph the graph.
+     * @return the number of edge crossings.
+     */
+    public static int edgeCrossingCount(Graph graph) {
+        return edgeCrossingCount(graph, null);
+    }
+
+    /**
+     * Counts the crossings that involve at least one of the selected edges
+     * without storing them. Uses the default attributes for node positions and
+     * edge control points.
+     *
+     * @param graph the graph.
+     * @param selectedEdges the edges of interest. If null, all crossings are
+     * counted.
+     * @return the number of edge crossings.
+     */
+    public static int edgeCrossingCount(Graph graph, Collection<Edge> selectedEdges) {
+        if (!graph.hasNodeAttribute(StdAttribute.nodePosition)) {
+            throw new IllegalStateException("The node positions are not defined");
+        }
+        NodeAttribute<Coordinates> positions = graph.<Coordinates>nodeAttribute(StdAttribute.nodePosition);
+        EdgeAttribute<ControlPoints> edgePoints = graph.hasEdgeAttribute(StdAttribute.edgePoints) ? graph.<ControlPoints>edgeAttribute(StdAttribute.edgePoints) : null;
+        return edgeCrossingCount(graph, selectedEdges, positions, edgePoints);
+    }
+
+    /**
+     * Counts the crossings that involve at least one of the selected edges
+     * without storing them. The crossings are defined as in
+     * {@link #edgeCrossings(Graph, Collection, NodeAttribute, EdgeAttribute)}.
+     *
+     * @param graph the graph.
+     * @param selectedEdges the edges of interest. If null, all crossings are
+     * counted.
+     * @param positions the node positions.
+     * @param edgePoints the edge control points. If null, all edges have no
+     * bends.
+     * @return the number of edge crossings.
+     */
+    public static int edgeCrossingCount(Graph graph, Collection<Edge> selectedEdges, NodeAttribute<Coordinates> positions, EdgeAttribute<ControlPoints> edgePoints) {
+        final int[] count = new int[1];
+        new EdgeCrossingSweep(graph.edges(), selectedEdges, positions, edgePoints).run(new EdgeCrossingSweep.CrossingVisitor() {
+            @Override
+            public void visit(EdgeCrossing crossing) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * A pair of nodes whose boxes overlap.
+     */
+    public static class NodeOverlap {
+
+        private final Node first;
+        private final Node second;
+
+        /**
+         * Constructs a node overlap.
+         *
+         * @param first the first node.
+         * @param second the second node.
+         */
+        public NodeOverlap(Node first, Node second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        /**
+         * Returns the first node of the pair.
+         *
+         * @return the first node.
+         */
+        public Node first() {
+            return first;
+        }
+
+        /**
+         * Returns the second node of the pair.
+         *
+         * @return the second node.
+         */
+        public Node second() {
+            return second;
+        }
+
+        /**
+         * Checks if a node is part of the pair.
+         *
+         * @param node the node.
+         * @return true if the node is one of the two, false otherwise.
+         */
+        public boolean involves(Node node) {
+            return first.equals(node) || second.equals(node);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + first + ", " + second + ")";
+        }
+    }
+
+    /**
+     * The overlaps found between the nodes of a graph.
+     */
+    public static class NodeOverlaps {
+
+        private final List<NodeOverlap> pairs;
+
+        /**
+         * Constructs the node overlaps.
+         *
+         * @param pairs the overlapping pairs.
+         */
+        private NodeOverlaps(List<NodeOverlap> pairs) {
+            this.pairs = Collections.unmodifiableList(pairs);
+        }
+
+        /**
+         * Indicates whether there is at least an overlap.
+         *
+         * @return true if some nodes overlap, false otherwise.
+         */
+        public boolean exist() {
+            return !pairs.isEmpty();
+        }
+
+        /**
+         * Returns the number of overlapping pairs.
+         *
+         * @return the number of overlaps.
+         */
+        public int count() {
+            return pairs.size();
+        }
+
+        /**
+         * Returns the overlapping pairs.
+         *
+         * @return the overlapping pairs.
+         */
+        public List<NodeOverlap> pairs() {
+            return pairs;
+        }
+    }
+
+    /**
+     * A crossing between two edges.
+     */
+    public static class EdgeCrossing {
+
+        private final Edge first;
+        private final Edge second;
+        private final Coordinates point;
+        private final boolean collinear;
+
+        /**
+         * Constructs an edge crossing.
+         *
+         * @param first the first edge.
+         * @param second the second edge.
+         * @param point the crossing point.
+         * @param collinear whether the edges overlap on a collinear stretch.
+         */
+        public EdgeCrossing(Edge first, Edge second, Coordinates point, boolean collinear) {
+            this.first = first;
+            this.second = second;
+            this.point = point;
+            this.collinear = collinear;
+        }
+
+        /**
+         * Returns the first edge.
+         *
+         * @return the first edge.
+         */
+        public Edge first() {
+            return first;
+        }
+
+        /**
+         * Returns the second edge.
+         *
+         * @return the second edge.
+         */
+        public Edge second() {
+            return second;
+        }
+
+        /**
+         * Returns the crossing point. For collinear overlaps, this is one of
+         * the extremities of the overlapping stretch.
+         *
+         * @return the crossing point.
+         */
+        public Coordinates point() {
+            return point;
+        }
+
+        /**
+         * Indicates whether the edges overlap on a collinear stretch rather
+         * than crossing in a point.
+         *
+         * @return true for collinear overlaps, false otherwise.
+         */
+        public boolean isCollinear() {
+            return collinear;
+        }
+
+        /**
+         * Checks if an edge is part of the crossing.
+         *
+         * @param edge the edge.
+         * @return true if the edge is one of the two, false otherwise.
+         */
+        public boolean involves(Edge edge) {
+            return first.equals(edge) || second.equals(edge);
+        }
+
+        @Override
+        public String toString() {
+            return "(" + first + ", " + second + ") at " + point;
+        }
+    }
+
+    /**
+     * The crossings found between the edges of a graph.
+     */
+    public static class EdgeCrossings {
+
+        private final List<EdgeCrossing> crossings;
+
+        /**
+         * Constructs the edge crossings.
+         *
+         * @param crossings the crossings.
+         */
+        private EdgeCrossings(List<EdgeCrossing> crossings) {
+            this.crossings = Collections.unmodifiableList(crossings);
+        }
+
+        /**
+         * Returns the number of crossings.
+         *
+         * @return the number of crossings.
+         */
+        public int count() {
+            return crossings.size();
+        }
+
+        /**
+         * Returns the number of collinear overlaps among the crossings.
+         *
+         * @return the number of collinear overlaps.
+         */
+        public int collinearCount() {
+            int count = 0;
+            for (EdgeCrossing crossing : crossings) {
+                if (crossing.isCollinear()) {
+                    count++;
                 }
             }
+            return count;
+        }
+
+        /**
+         * Returns the crossings.
+         *
+         * @return the crossings.
+         */
+        public List<EdgeCrossing> crossings() {
+            return crossings;
         }
-        return false;
     }
 
 }
@@ -0,0 +1,685 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Element;
+import ocotillo.graph.ElementAttribute;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.StdAttribute.ControlPoints;
+import ocotillo.graph.StdAttribute.StdAttributeSet;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of computed layouts, addressed by the content of the input graph. The
+ * key of a layout is a 128 bit hash of the node and edge ids, of the graph
+ * adjacency, of the values of the attributes that affect the layout, and of a
+ * string identifying the layout engine and its arguments. By default, the
+ * node positions and edge bends are left out of the key, as they are the
+ * output of the layout and would change the key of a graph once it has been
+ * laid out. The hash does not
+ * depend on the iteration order of the graph elements, and is computed in
+ * linear time.
+ * <p>
+ * The node positions and edge bends of the computed layouts are kept in a
+ * bounded in-memory tier, where the least recently used layout is evicted
+ * first, and optionally in a directory, one compact binary file per layout.
+ * The layouts found on disk are promoted to the memory tier.
+ */
+public class LayoutCache {
+
+    /**
+     * The attributes that affect the layout, except the node positions and
+     * edge bends computed by the layout engines.
+     */
+    public static final StdAttributeSet layoutInputs = new StdAttributeSet(
+            Arrays.<StdAttribute>asList(),
+            Arrays.asList(StdAttribute.nodeSize, StdAttribute.nodeShape),
+            Arrays.asList(StdAttribute.edgeWidth, StdAttribute.edgeShape));
+
+    private static final int fileMagic = 0x4f434c43;
+    private static final int fileVersion = 1;
+    private static final String fileExtension = ".layout";
+
+    private final int maxEntries;
+    private final File directory;
+    private final StdAttributeSet keyAttributes;
+    private final Map<String, CachedLayout> memory;
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Builder for layout caches.
+     */
+    public static class LayoutCacheBuilder {
+
+        private int maxEntries = 64;
+        private File directory = null;
+        private StdAttributeSet keyAttributes = layoutInputs;
+
+        /**
+         * Indicates the maximum number of layouts kept in memory.
+         *
+         * @param maxEntries the maximum number of layouts.
+         * @return the builder.
+         */
+        public LayoutCacheBuilder withMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Indicates the directory where the layouts are saved. The directory
+         * is created if it does not exist.
+         *
+         * @param directory the cache directory.
+         * @return the builder.
+         */
+        public LayoutCacheBuilder withDirectory(File directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Indicates the standard attributes whose values are part of the
+         * layout key. By default, the attributes in layoutInputs are used.
+         * Engines whose result depends on the starting node positions and
+         * edge bends can include them, for instance with
+         * StdAttribute.thatAffectlayout.
+         *
+         * @param keyAttributes the key attributes.
+         * @return the builder.
+         */
+        public LayoutCacheBuilder withKeyAttributes(StdAttributeSet keyAttributes) {
+            this.keyAttributes = keyAttributes;
+            return this;
+        }
+
+        /**
+         * Builds the layout cache.
+         *
+         * @return the layout cache.
+         */
+        public LayoutCache build() {
+            if (maxEntries < 0 || keyAttributes == null) {
+                throw new IllegalArgumentException("Invalid layout cache parameters.");
+            }
+            if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+                throw new IllegalArgumentException("Cannot create the layout cache directory " + directory + ".");
+            }
+            return new LayoutCache(maxEntries, directory, keyAttributes);
+        }
+    }
+
+    /**
+     * Constructs a layout cache.
+     *
+     * @param maxEntries the maximum number of layouts kept in memory.
+     * @param directory the cache directory, or null.
+     * @param keyAttributes the key attributes.
+     */
+    private LayoutCache(final int maxEntries, File directory, StdAttributeSet keyAttributes) {
+        this.maxEntries = maxEntries;
+        this.directory = directory;
+        this.keyAttributes = keyAttributes;
+        this.memory = new LinkedHashMap<String, CachedLayout>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedLayout> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Computes the layout of a graph, or applies the cached one. When the
+     * layout is not in the cache, the engine is executed and its result is
+     * stored.
+     *
+     * @param graph the graph.
+     * @param engineKey the string identifying the engine and its arguments.
+     * @param engine the layout engine.
+     * @return true if the layout has been found in the cache.
+     */
+    public boolean execute(Graph graph, String engineKey, ComponentLayout.Engine engine) {
+        String key = key(graph, engineKey);
+        if (apply(graph, key)) {
+            return true;
+        }
+        misses.incrementAndGet();
+        engine.execute(graph);
+        store(key, new CachedLayout(graph));
+        return false;
+    }
+
+    /**
+     * Applies the cached layout with the given key, if present.
+     *
+     * @param graph the graph.
+     * @param key the layout key.
+     * @return true if the layout has been found and applied.
+     */
+    private boolean apply(Graph graph, String key) {
+        CachedLayout layout;
+        synchronized (memory) {
+            layout = memory.get(key);
+        }
+        if (layout != null && layout.fits(graph)) {
+            memoryHits.incrementAndGet();
+            layout.applyTo(graph);
+            return true;
+        }
+        layout = readFile(key);
+        if (layout != null && layout.fits(graph)) {
+            diskHits.incrementAndGet();
+            synchronized (memory) {
+                if (maxEntries > 0) {
+                    memory.put(key, layout);
+                }
+            }
+            layout.applyTo(graph);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stores a layout in the memory tier and, if enabled, on disk.
+     *
+     * @param key the layout key.
+     * @param layout the layout.
+     */
+    private void store(String key, CachedLayout layout) {
+        synchronized (memory) {
+            if (maxEntries > 0) {
+                memory.put(key, layout);
+            }
+        }
+        writeFile(key, layout);
+    }
+
+    /**
+     * Computes the key of a graph layout.
+     *
+     * @param graph the graph.
+     * @param engineKey the string identifying the engine and its arguments.
+     * @return the layout key, as a 32 digit hexadecimal string.
+     */
+    public String key(Graph graph, String engineKey) {
+        Collection<NodeAttribute<?>> nodeAttributes = keyAttributes.nodeAttributes(graph);
+        Collection<EdgeAttribute<?>> edgeAttributes = keyAttributes.edgeAttributes(graph);
+
+        long first = 0;
+        long second = 0;
+        for (Node node : graph.nodes()) {
+            Hasher hasher = new Hasher();
+            hasher.add(node.id());
+            addValues(hasher, node, nodeAttributes);
+            first += hasher.first;
+            second += hasher.second;
+        }
+        for (Edge edge : graph.edges()) {
+            Hasher hasher = new Hasher();
+            hasher.add(edge.id());
+            hasher.add(edge.source().id());
+            hasher.add(edge.target().id());
+            addValues(hasher, edge, edgeAttributes);
+            first += hasher.first;
+            second += hasher.second;
+        }
+
+        Hasher hasher = new Hasher();
+        hasher.add(first);
+        hasher.add(second);
+        hasher.add(graph.nodeCount());
+        hasher.add(graph.edgeCount());
+        hasher.add(engineKey);
+        return String.format("%016x%016x", hasher.first, hasher.second);
+    }
+
+    /**
+     * Adds the attribute values of an element to a hash.
+     *
+     * @param <K> the element type.
+     * @param hasher the hasher.
+     * @param element the element.
+     * @param attributes the attributes.
+     */
+    private static <K extends Element> void addValues(Hasher hasher, K element, Collection<? extends ElementAttribute<K, ?>> attributes) {
+        for (ElementAttribute<K, ?> attribute : attributes) {
+            hasher.addValue(attribute.get(element));
+        }
+    }
+
+    /**
+     * Returns the number of layouts found in memory.
+     *
+     * @return the number of memory hits.
+     */
+    public long memoryHits() {
+        return memoryHits.get();
+    }
+
+    /**
+     * Returns the number of layouts found on disk but not in memory.
+     *
+     * @return the number of disk hits.
+     */
+    public long diskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Returns the number of layouts found in the cache.
+     *
+     * @return the number of hits.
+     */
+    public long hits() {
+        return memoryHits.get() + diskHits.get();
+    }
+
+    /**
+     * Returns the number of layouts that had to be computed.
+     *
+     * @return the number of misses.
+     */
+    public long misses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the fraction of requested layouts that were found in the cache.
+     *
+     * @return the hit ratio, or 0 if no layout has been requested.
+     */
+    public double hitRatio() {
+        long hits = hits();
+        long requests = hits + misses();
+        return requests > 0 ? (double) hits / requests : 0;
+    }
+
+    /**
+     * Returns the number of layouts kept in memory.
+     *
+     * @return the number of layouts in memory.
+     */
+    public int memorySize() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    /**
+     * Removes all layouts from the memory tier. The disk tier is not
+     * affected.
+     */
+    public void clearMemory() {
+        synchronized (memory) {
+            memory.clear();
+        }
+    }
+
+    /**
+     * Returns the file that contains the layout with given key.
+     *
+     * @param key the layout key.
+     * @return the layout file.
+     */
+    private File file(String key) {
+        return new File(directory, key + fileExtension);
+    }
+
+    /**
+     * Reads a layout from the disk tier. Missing, truncated or corrupted
+     * files are treated as cache misses.
+     *
+     * @param key the layout key.
+     * @return the layout, or null if not available.
+     */
+    private CachedLayout readFile(String key) {
+        if (directory == null) {
+            return null;
+        }
+        File file = file(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != fileMagic || input.readInt() != fileVersion || !input.readUTF().equals(key)) {
+                return null;
+            }
+            return new CachedLayout(input);
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes a layout in the disk tier. The file is written under a temporary
+     * name and then moved, so that concurrent readers never see partial
+     * files.
+     *
+     * @param key the layout key.
+     * @param layout the layout.
+     */
+    private void writeFile(String key, CachedLayout layout) {
+        if (directory == null) {
+            return;
+        }
+        File temporary = null;
+        try {
+            temporary = File.createTempFile(key, ".tmp", directory);
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                output.writeInt(fileMagic);
+                output.writeInt(fileVersion);
+                output.writeUTF(key);
+                layout.write(output);
+            }
+            Files.move(temporary.toPath(), file(key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            if (temporary != null) {
+                temporary.delete();
+            }
+            throw new IllegalStateException("Cannot write the layout cache file for " + key + ".", ex);
+        }
+    }
+
+    /**
+     * The node positions and edge bends of a layout, indexed by element id.
+     */
+    private static class CachedLayout {
+
+        private final String[] nodeIds;
+        private final Coordinates[] positions;
+        private final String[] edgeIds;
+        private final ControlPoints[] bends;
+
+        /**
+         * Copies the current layout of a graph.
+         *
+         * @param graph the graph.
+         */
+        CachedLayout(Graph graph) {
+            NodeAttribute<Coordinates> graphPositions = graph.nodeAttribute(StdAttribute.nodePosition);
+            EdgeAttribute<ControlPoints> graphBends = graph.edgeAttribute(StdAttribute.edgePoints);
+            nodeIds = new String[graph.nodeCount()];
+            positions = new Coordinates[graph.nodeCount()];
+            int index = 0;
+            for (Node node : graph.nodes()) {
+                nodeIds[index] = node.id();
+                positions[index] = new Coordinates(graphPositions.get(node));
+                index++;
+            }
+            List<Edge> bentEdges = new ArrayList<>();
+            for (Edge edge : graph.edges()) {
+                if (!graphBends.isDefault(edge)) {
+                    bentEdges.add(edge);
+                }
+            }
+            edgeIds = new String[bentEdges.size()];
+            bends = new ControlPoints[bentEdges.size()];
+            for (int i = 0; i < bentEdges.size(); i++) {
+                edgeIds[i] = bentEdges.get(i).id();
+                bends[i] = copy(graphBends.get(bentEdges.get(i)));
+            }
+        }
+
+        /**
+         * Reads a layout from a cache file.
+         *
+         * @param input the file input.
+         * @throws IOException if the file cannot be read.
+         */
+        CachedLayout(DataInputStream input) throws IOException {
+            int nodeCount = input.readInt();
+            nodeIds = new String[nodeCount];
+            positions = new Coordinates[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                nodeIds[i] = input.readUTF();
+                positions[i] = readCoordinates(input);
+            }
+            int edgeCount = input.readInt();
+            edgeIds = new String[edgeCount];
+            bends = new ControlPoints[edgeCount];
+            for (int i = 0; i < edgeCount; i++) {
+                edgeIds[i] = input.readUTF();
+                int pointCount = input.readInt();
+                bends[i] = new ControlPoints();
+                for (int j = 0; j < pointCount; j++) {
+                    bends[i].add(readCoordinates(input));
+                }
+            }
+        }
+
+        /**
+         * Writes the layout in a cache file.
+         *
+         * @param output the file output.
+         * @throws IOException if the file cannot be written.
+         */
+        void write(DataOutputStream output) throws IOException {
+            output.writeInt(nodeIds.length);
+            for (int i = 0; i < nodeIds.length; i++) {
+                output.writeUTF(nodeIds[i]);
+                writeCoordinates(output, positions[i]);
+            }
+            output.writeInt(edgeIds.length);
+            for (int i = 0; i < edgeIds.length; i++) {
+                output.writeUTF(edgeIds[i]);
+                output.writeInt(bends[i].size());
+                for (Coordinates point : bends[i]) {
+                    writeCoordinates(output, point);
+                }
+            }
+        }
+
+        /**
+         * Checks that the layout refers to the elements of the given graph.
+         * This protects against hash collisions.
+         *
+         * @param graph the graph.
+         * @return true if the layout can be applied to the graph.
+         */
+        boolean fits(Graph graph) {
+            if (nodeIds.length != graph.nodeCount()) {
+                return false;
+            }
+            for (String id : nodeIds) {
+                if (!graph.hasNode(id)) {
+                    return false;
+                }
+            }
+            for (String id : edgeIds) {
+                if (!graph.hasEdge(id)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Sets the node positions and edge bends of a graph.
+         *
+         * @param graph the graph.
+         */
+        void applyTo(Graph graph) {
+            NodeAttribute<Coordinates> graphPositions = graph.nodeAttribute(StdAttribute.nodePosition);
+            EdgeAttribute<ControlPoints> graphBends = graph.edgeAttribute(StdAttribute.edgePoints);
+            graphPositions.startBulkNotification();
+            graphBends.startBulkNotification();
+            for (int i = 0; i < nodeIds.length; i++) {
+                graphPositions.set(graph.getNode(nodeIds[i]), new Coordinates(positions[i]));
+            }
+            for (Edge edge : graph.edges()) {
+                if (!graphBends.isDefault(edge)) {
+                    graphBends.clear(edge);
+                }
+            }
+            for (int i = 0; i < edgeIds.length; i++) {
+                graphBends.set(graph.getEdge(edgeIds[i]), copy(bends[i]));
+            }
+            graphBends.stopBulkNotification();
+            graphPositions.stopBulkNotification();
+        }
+
+        /**
+         * Copies a list of control points.
+         *
+         * @param points the control points.
+         * @return the copy.
+         */
+        private static ControlPoints copy(ControlPoints points) {
+            ControlPoints copy = new ControlPoints();
+            for (Coordinates point : points) {
+                copy.add(new Coordinates(point));
+            }
+            return copy;
+        }
+
+        /**
+         * Reads coordinates from a cache file.
+         *
+         * @param input the file input.
+         * @return the coordinates.
+         * @throws IOException if the file cannot be read.
+         */
+        private static Coordinates readCoordinates(DataInputStream input) throws IOException {
+            Coordinates coordinates = new Coordinates(input.readByte());
+            for (int i = 0; i < coordinates.dim(); i++) {
+                coordinates.setAt(i, input.readDouble());
+            }
+            return coordinates;
+        }
+
+        /**
+         * Writes coordinates in a cache file.
+         *
+         * @param output the file output.
+         * @param coordinates the coordinates.
+         * @throws IOException if the file cannot be written.
+         */
+        private static void writeCoordinates(DataOutputStream output, Coordinates coordinates) throws IOException {
+            output.writeByte(coordinates.dim());
+            for (int i = 0; i < coordinates.dim(); i++) {
+                output.writeDouble(coordinates.get(i));
+            }
+        }
+    }
+
+    /**
+     * Two lane 64 bit hash, mixing each value with the MurmurHash3 finaliser.
+     */
+    private static class Hasher {
+
+        private long first = 0x243f6a8885a308d3L;
+        private long second = 0x13198a2e03707344L;
+
+        /**
+         * Adds a number to the hash.
+         *
+         * @param value the number.
+         */
+        void add(long value) {
+            first = Long.rotateLeft(first ^ mix(value), 27) * 0x9e3779b97f4a7c15L + 0x52dce729L;
+            second = Long.rotateLeft(second ^ mix(value ^ 0xc2b2ae3d27d4eb4fL), 31) * 0xff51afd7ed558ccdL + 0x38495ab5L;
+        }
+
+        /**
+         * Adds a string to the hash, packing four characters per number.
+         *
+         * @param value the string.
+         */
+        void add(String value) {
+            add(value.length());
+            long packed = 0;
+            for (int i = 0; i < value.length(); i++) {
+                packed = (packed << 16) | value.charAt(i);
+                if (i % 4 == 3) {
+                    add(packed);
+                    packed = 0;
+                }
+            }
+            add(packed);
+        }
+
+        /**
+         * Adds an attribute value to the hash.
+         *
+         * @param value the attribute value.
+         */
+        void addValue(Object value) {
+            if (value == null) {
+                add(0x6e756c6cL);
+            } else if (value instanceof Coordinates) {
+                Coordinates coordinates = (Coordinates) value;
+                add(coordinates.dim());
+                for (int i = 0; i < coordinates.dim(); i++) {
+                    add(Double.doubleToLongBits(coordinates.get(i)));
+                }
+            } else if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                add(collection.size());
+                for (Object element : collection) {
+                    addValue(element);
+                }
+            } else if (value instanceof Number) {
+                add(Double.doubleToLongBits(((Number) value).doubleValue()));
+            } else if (value instanceof Enum) {
+                add(((Enum<?>) value).name());
+            } else {
+                add(value.toString());
+            }
+        }
+
+        /**
+         * Mixes the bits of a number.
+         *
+         * @param value the number.
+         * @return the mixed number.
+         */
+        private static long mix(long value) {
+            value ^= value >>> 33;
+            value *= 0xff51afd7ed558ccdL;
+            value ^= value >>> 33;
+            value *= 0xc4ceb9fe1a85ec53L;
+            value ^= value >>> 33;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.StdAttribute.ControlPoints;
+import java.util.Map.Entry;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable copy of the node positions and edge bends of a graph layout at a
+ * given iteration. Snapshots can be read by any thread while the layout
+ * algorithm keeps working on the graph.
+ */
+public class LayoutSnapshot {
+
+    private final Map<Node, Coordinates> positions;
+    private final Map<Edge, ControlPoints> bends;
+    private final int iteration;
+    private final boolean complete;
+
+    /**
+     * Listener for the publication of layout snapshots.
+     */
+    public interface Listener {
+
+        /**
+         * Notifies the publication of a new snapshot. It is called by the
+         * thread executing the layout, and should return quickly.
+         *
+         * @param snapshot the published snapshot.
+         */
+        void snapshotPublished(LayoutSnapshot snapshot);
+    }
+
+    /**
+     * Constructs a layout snapshot. The maps and their values are owned by
+     * the snapshot, and must not be modified after the construction.
+     *
+     * @param positions the node positions.
+     * @param bends the edge bends.
+     * @param iteration the number of iterations executed.
+     * @param complete true if the layout computation terminated.
+     */
+    public LayoutSnapshot(Map<Node, Coordinates> positions, Map<Edge, ControlPoints> bends, int iteration, boolean complete) {
+        this.positions = Collections.unmodifiableMap(positions);
+        this.bends = Collections.unmodifiableMap(bends);
+        this.iteration = iteration;
+        this.complete = complete;
+    }
+
+    /**
+     * Returns the position of a node.
+     *
+     * @param node the node.
+     * @return its position, or null if the node is not in the snapshot.
+     */
+    public Coordinates position(Node node) {
+        return positions.get(node);
+    }
+
+    /**
+     * Returns the bends of an edge.
+     *
+     * @param edge the edge.
+     * @return its bends, or null if the edge is not in the snapshot.
+     */
+    public ControlPoints bends(Edge edge) {
+        return bends.get(edge);
+    }
+
+    /**
+     * Returns the node positions.
+     *
+     * @return the node positions.
+     */
+    public Map<Node, Coordinates> positions() {
+        return positions;
+    }
+
+    /**
+     * Returns the edge bends.
+     *
+     * @return the edge bends.
+     */
+    public Map<Edge, ControlPoints> bends() {
+        return bends;
+    }
+
+    /**
+     * Returns the number of iterations executed when the snapshot was taken.
+     *
+     * @return the number of iterations.
+     */
+    public int iteration() {
+        return iteration;
+    }
+
+    /**
+     * Indicates whether the snapshot contains the final layout.
+     *
+     * @return true if the layout computation terminated.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Writes the node positions and edge bends of the snapshot in the graph
+     * that contains its elements. The graph observers are notified on the
+     * calling thread, which should therefore be the one that owns the graph,
+     * such as the event dispatch thread when the graph is displayed.
+     *
+     * @param graph the graph.
+     */
+    public void applyTo(Graph graph) {
+        NodeAttribute<Coordinates> graphPositions = graph.nodeAttribute(StdAttribute.nodePosition);
+        EdgeAttribute<ControlPoints> graphBends = graph.edgeAttribute(StdAttribute.edgePoints);
+        graphPositions.startBulkNotification();
+        graphBends.startBulkNotification();
+        for (Entry<Node, Coordinates> entry : positions.entrySet()) {
+            graphPositions.set(entry.getKey(), new Coordinates(entry.getValue()));
+        }
+        for (Entry<Edge, ControlPoints> entry : bends.entrySet()) {
+            ControlPoints points = new ControlPoints();
+            for (Coordinates point : entry.getValue()) {
+                points.add(new Coordinates(point));
+            }
+            graphBends.set(entry.getKey(), points);
+        }
+        graphBends.stopBulkNotification();
+        graphPositions.stopBulkNotification();
+    }
+}
@@ -15,12 +15,18 @@
  */
 package ocotillo.graph.layout.fdl.defragmenter;
 
+import ocotillo.geometry.Box;
 import ocotillo.geometry.Coordinates;
 import ocotillo.graph.Graph;
 import ocotillo.graph.Node;
 import ocotillo.graph.NodeAttribute;
 import ocotillo.graph.StdAttribute;
-import ocotillo.graph.layout.or.repulsion.RepulsionOverlapRemover;
+import ocotillo.graph.layout.Layout2D;
+import ocotillo.graph.layout.or.prism.PrismOverlapRemover;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 /**
  * A class implementing the placement strategy for clusters in the
@@ -44,11 +50,17 @@ public abstract class ClusterPlacer {
     /**
      * Computes the placement of the clusters according to the original layout
      * of the graph. Each cluster is placed roughly in the barycentre of the
-     * cluster nodes.
+     * cluster nodes. The overlaps are removed with PRISM and, if some are
+     * left when its passes run out, the clusters are packed in rows instead,
+     * leaving the same space between them as the PRISM margin around each
+     * node.
      */
     public static class OriginalLayoutClusterPlacer extends ClusterPlacer {
 
+        private static final double margin = 1.0;
+
         private final double desiredNodeDistance;
+        private final PrismOverlapRemover overlapRemover;
 
         /**
          * Constructs a original layout cluster placer.
@@ -56,34 +68,172 @@ public abstract class ClusterPlacer {
          * @param desiredNodeDistance the desired distance between nodes.
          */
         public OriginalLayoutClusterPlacer(double desiredNodeDistance) {
+            this(desiredNodeDistance, new PrismOverlapRemover.PrismOverlapRemoverBuilder().withMargin(margin).build());
+        }
+
+        /**
+         * Constructs a original layout cluster placer with the given overlap
+         * remover.
+         *
+         * @param desiredNodeDistance the desired distance between nodes.
+         * @param overlapRemover the overlap remover.
+         */
+        public OriginalLayoutClusterPlacer(double desiredNodeDistance, PrismOverlapRemover overlapRemover) {
             this.desiredNodeDistance = desiredNodeDistance;
+            this.overlapRemover = overlapRemover;
         }
 
         @Override
         public Graph computePlacing(Graph originalGraph) {
-            NodeAttribute<Coordinates> positions = originalGraph.<Coordinates>nodeAttribute(StdAttribute.nodePosition);
+            Graph clusterGraph = barycenterPlacing(originalGraph, desiredNodeDistance);
+            if (!overlapRemover.execute(clusterGraph)) {
+                return new PackingClusterPlacer(desiredNodeDistance, 2 * margin).computePlacing(originalGraph);
+            }
+            return clusterGraph;
+        }
+
+    }
+
+    /**
+     * Computes the placement of the clusters by packing their boxes in rows.
+     * The rows are filled with the clusters ordered by the vertical coordinate
+     * of their barycentre, and each row is ordered by the horizontal one, so
+     * that the relative position of the clusters is roughly preserved. The
+     * placement takes O(k log k) time for k clusters.
+     */
+    public static class PackingClusterPlacer extends ClusterPlacer {
+
+        private final double desiredNodeDistance;
+        private final double spacing;
+
+        /**
+         * Constructs a packing cluster placer.
+         *
+         * @param desiredNodeDistance the desired distance between nodes.
+         * @param spacing the space left between cluster boxes.
+         */
+        public PackingClusterPlacer(double desiredNodeDistance, double spacing) {
+            this.desiredNodeDistance = desiredNodeDistance;
+            this.spacing = spacing;
+        }
 
-            Graph clusterGraph = new Graph();
+        @Override
+        public Graph computePlacing(Graph originalGraph) {
+            Graph clusterGraph = barycenterPlacing(originalGraph, desiredNodeDistance);
             NodeAttribute<Coordinates> clusterPositions = clusterGraph.<Coordinates>nodeAttribute(StdAttribute.nodePosition);
             NodeAttribute<Coordinates> clusterSizes = clusterGraph.<Coordinates>nodeAttribute(StdAttribute.nodeSize);
-            NodeAttribute<String> clusterLabels = clusterGraph.<String>nodeAttribute(StdAttribute.label);
-
-            for (Graph cluster : originalGraph.subGraphs()) {
-                String clusterLabel = cluster.<String>graphAttribute(StdAttribute.label).get();
-                Node clusterNode = clusterGraph.newNode(clusterLabel);
-                Coordinates clusterBarycenter = new Coordinates(0, 0);
-                for (Node node : cluster.nodes()) {
-                    clusterBarycenter.plusIP(positions.get(node));
+            if (clusterGraph.nodeCount() == 0) {
+                return clusterGraph;
+            }
+
+            final List<Node> clusterNodes = new ArrayList<>(clusterGraph.nodes());
+            final int clusterCount = clusterNodes.size();
+            final double[] barycenterX = new double[clusterCount];
+            final double[] barycenterY = new double[clusterCount];
+            double[] widths = new double[clusterCount];
+            double[] heights = new double[clusterCount];
+            double totalArea = 0;
+            double maxWidth = 0;
+            for (int i = 0; i < clusterCount; i++) {
+                Node clusterNode = clusterNodes.get(i);
+                barycenterX[i] = clusterPositions.get(clusterNode).x();
+                barycenterY[i] = clusterPositions.get(clusterNode).y();
+                widths[i] = clusterSizes.get(clusterNode).x();
+                heights[i] = clusterSizes.get(clusterNode).y();
+                totalArea += (widths[i] + spacing) * (heights[i] + spacing);
+                maxWidth = Math.max(maxWidth, widths[i]);
+            }
+            Box barycenterBox = Layout2D.graphBox(clusterGraph, clusterPositions, null, null, null);
+            double aspectRatio = barycenterBox.height() > 0 ? barycenterBox.width() / barycenterBox.height() : 1;
+            aspectRatio = Math.min(Math.max(aspectRatio, 0.25), 4);
+            double rowWidth = Math.max(maxWidth, Math.sqrt(totalArea * aspectRatio));
+
+            Integer[] verticalOrder = new Integer[clusterCount];
+            for (int i = 0; i < clusterCount; i++) {
+                verticalOrder[i] = i;
+            }
+            Arrays.sort(verticalOrder, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    int comparison = Double.compare(barycenterY[b], barycenterY[a]);
+                    return comparison != 0 ? comparison : clusterNodes.get(a).id().compareTo(clusterNodes.get(b).id());
+                }
+            });
+            Comparator<Integer> horizontalOrder = new Comparator<Integer>() {
+                @Override
+                public int compare(Integer a, Integer b) {
+                    int comparison = Double.compare(barycenterX[a], barycenterX[b]);
+                    return comparison != 0 ? comparison : clusterNodes.get(a).id().compareTo(clusterNodes.get(b).id());
+                }
+            };
+
+            double[] centerX = new double[clusterCount];
+            double[] centerY = new double[clusterCount];
+            double packingWidth = 0;
+            double rowTop = 0;
+            int rowStart = 0;
+            while (rowStart < clusterCount) {
+                int rowEnd = rowStart;
+                double usedWidth = 0;
+                while (rowEnd < clusterCount && (rowEnd == rowStart || usedWidth + widths[verticalOrder[rowEnd]] <= rowWidth)) {
+                    usedWidth += widths[verticalOrder[rowEnd]] + spacing;
+                    rowEnd++;
+                }
+                Arrays.sort(verticalOrder, rowStart, rowEnd, horizontalOrder);
+                double rowHeight = 0;
+                for (int k = rowStart; k < rowEnd; k++) {
+                    rowHeight = Math.max(rowHeight, heights[verticalOrder[k]]);
+                }
+                double x = 0;
+                for (int k = rowStart; k < rowEnd; k++) {
+                    int index = verticalOrder[k];
+                    centerX[index] = x + widths[index] / 2;
+                    centerY[index] = rowTop - rowHeight / 2;
+                    x += widths[index] + spacing;
                 }
-                clusterPositions.set(clusterNode, clusterBarycenter.divideIP(cluster.nodeCount()));
-                double clusterNodeSize = Math.sqrt(cluster.nodeCount() * desiredNodeDistance);
-                clusterSizes.set(clusterNode, new Coordinates(clusterNodeSize, clusterNodeSize));
-                clusterLabels.set(clusterNode, clusterLabel);
+                packingWidth = Math.max(packingWidth, x - spacing);
+                rowTop -= rowHeight + spacing;
+                rowStart = rowEnd;
+            }
+
+            Coordinates shift = barycenterBox.center().minus(new Coordinates(packingWidth / 2, (rowTop + spacing) / 2));
+            for (int i = 0; i < clusterCount; i++) {
+                clusterPositions.set(clusterNodes.get(i), new Coordinates(centerX[i], centerY[i]).plusIP(shift));
             }
-            RepulsionOverlapRemover.run(clusterGraph, 1.0);
             return clusterGraph;
         }
+    }
 
+    /**
+     * Builds the cluster placement graph with each cluster node in the
+     * barycentre of the cluster nodes, and with a square glyph whose area is
+     * proportional to the number of cluster nodes.
+     *
+     * @param originalGraph the original graph.
+     * @param desiredNodeDistance the desired distance between nodes.
+     * @return the cluster placement graph, possibly with overlaps.
+     */
+    protected static Graph barycenterPlacing(Graph originalGraph, double desiredNodeDistance) {
+        NodeAttribute<Coordinates> positions = originalGraph.<Coordinates>nodeAttribute(StdAttribute.nodePosition);
+
+        Graph clusterGraph = new Graph();
+        NodeAttribute<Coordinates> clusterPositions = clusterGraph.<Coordinates>nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> clusterSizes = clusterGraph.<Coordinates>nodeAttribute(StdAttribute.nodeSize);
+        NodeAttribute<String> clusterLabels = clusterGraph.<String>nodeAttribute(StdAttribute.label);
+
+        for (Graph cluster : originalGraph.subGraphs()) {
+            String clusterLabel = cluster.<String>graphAttribute(StdAttribute.label).get();
+            Node clusterNode = clusterGraph.newNode(clusterLabel);
+            Coordinates clusterBarycenter = new Coordinates(0, 0);
+            for (Node node : cluster.nodes()) {
+                clusterBarycenter.plusIP(positions.get(node));
+            }
+            clusterPositions.set(clusterNode, clusterBarycenter.divideIP(cluster.nodeCount()));
+            double clusterNodeSize = Math.sqrt(cluster.nodeCount() * desiredNodeDistance);
+            clusterSizes.set(clusterNode, new Coordinates(clusterNodeSize, clusterNodeSize));
+            clusterLabels.set(clusterNode, clusterLabel);
+        }
+        return clusterGraph;
     }
 
 }
@@ -23,23 +23,38 @@ import ocotillo.graph.Node;
 import ocotillo.graph.NodeAttribute;
 import ocotillo.graph.StdAttribute;
 import ocotillo.graph.StdAttribute.ControlPoints;
+import ocotillo.graph.layout.ComponentLayout;
 import ocotillo.graph.layout.fdl.impred.Impred;
 import ocotillo.graph.layout.fdl.impred.ImpredConstraint;
 import ocotillo.graph.layout.fdl.impred.ImpredForce;
 import ocotillo.graph.layout.fdl.impred.ImpredPostProcessing;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
- * Compacts the cluster nodes of a graph in a contiguous region.
+ * Compacts the cluster nodes of a graph in a contiguous region. By default, a
+ * single Impred instance relaxes the whole graph. In parallel mode, the
+ * interior of each cluster is first relaxed on its own, concurrently with the
+ * other clusters, and a shorter global pass then reconciles the boundaries.
  */
 public class Defragmenter {
 
     private final ClusterPlacer clusterPlacer;
     private final NodePlacer nodePlacer;
+    private final int clusterThreads;
+    private final int reconciliationIterations;
 
     /**
      * Builder for Defragmenter.
@@ -48,6 +63,8 @@ public class Defragmenter {
 
         private ClusterPlacer clusterPlacer;
         private NodePlacer nodePlacer;
+        private int clusterThreads = 0;
+        private int reconciliationIterations = 0;
 
         /**
          * Indicates the cluster placer to use in the defragmentation process.
@@ -71,15 +88,34 @@ public class Defragmenter {
             return this;
         }
 
+        /**
+         * Relaxes the cluster interiors concurrently before the global pass.
+         * Each cluster is copied in a standalone graph with its own boundary
+         * and relaxed by its own Impred instance.
+         *
+         * @param threads the number of threads to use.
+         * @param reconciliationIterations the number of Impred iterations of
+         * the final global pass.
+         * @return the builder.
+         */
+        public DefragmenterBuilder withParallelClusters(int threads, int reconciliationIterations) {
+            this.clusterThreads = threads;
+            this.reconciliationIterations = reconciliationIterations;
+            return this;
+        }
+
         /**
          * Builds a defragmenter.
          *
          * @return the defragmenter.
          */
         public Defragmenter build() {
+            if (clusterThreads < 0 || reconciliationIterations < 0) {
+                throw new IllegalArgumentException("Invalid defragmenter parameters.");
+            }
             clusterPlacer = clusterPlacer != null ? clusterPlacer : new ClusterPlacer.OriginalLayoutClusterPlacer(5.0);
             nodePlacer = nodePlacer != null ? nodePlacer : new NodePlacer.OriginalLayoutNodePlacer();
-            return new Defragmenter(clusterPlacer, nodePlacer);
+            return new Defragmenter(clusterPlacer, nodePlacer, clusterThreads, reconciliationIterations);
         }
     }
 
@@ -87,10 +123,17 @@ public class Defragmenter {
      * Constructor for a defragmenter.
      *
      * @param clusterPlacer the cluster placer to be used.
+     * @param nodePlacer the node placer to be used.
+     * @param clusterThreads the threads for the cluster relaxation, or 0 to
+     * relax the whole graph at once.
+     * @param reconciliationIterations the iterations of the global pass in
+     * parallel mode.
      */
-    private Defragmenter(ClusterPlacer clusterPlacer, NodePlacer nodePlacer) {
+    private Defragmenter(ClusterPlacer clusterPlacer, NodePlacer nodePlacer, int clusterThreads, int reconciliationIterations) {
         this.clusterPlacer = clusterPlacer;
         this.nodePlacer = nodePlacer;
+        this.clusterThreads = clusterThreads;
+        this.reconciliationIterations = reconciliationIterations;
     }
 
     /**
@@ -112,8 +155,30 @@ public class Defragmenter {
             positions.set(node, initialNodePlacement.get(node));
         }
 
-        Boundaries boundaries = buildBoundaries(graph, clusterPlacement);
+        int globalIterations = iterations;
+        Map<Graph, ControlPoints> clusterOutlines = new HashMap<>();
+        if (clusterThreads > 0) {
+            clusterOutlines = relaxClusters(graph, clusterPlacement, elemDistance, iterations);
+            globalIterations = reconciliationIterations;
+        }
+
+        Boundaries boundaries = buildBoundaries(graph, clusterPlacement, clusterOutlines);
+        relax(graph, boundaries, elemDistance, globalIterations);
+        removeBoundaries(graph, boundaries);
+    }
 
+    /**
+     * Relaxes a graph with the given boundaries.
+     *
+     * @param graph the graph.
+     * @param boundaries the boundaries.
+     * @param elemDistance the desired element distance.
+     * @param iterations the number of Impred iterations to perform.
+     */
+    private void relax(Graph graph, Boundaries boundaries, double elemDistance, int iterations) {
+        if (iterations == 0) {
+            return;
+        }
         Impred impred = new Impred.ImpredBuilder(graph)
                 //.withForce(new ImpredForce.EdgeAttraction(20))
                 .withForce(new SetElementsRepulsion(elemDistance, boundaries))
@@ -126,52 +191,222 @@ public class Defragmenter {
 
         impred.iterate(iterations);
         impred.close();
+    }
 
-        removeBoundaries(graph, boundaries);
+    /**
+     * Relaxes the interior of each cluster in a standalone graph, in parallel
+     * from the largest cluster to the smallest. Each node is assigned to one
+     * of its clusters, and only the edges within a cluster are copied along
+     * with all the attributes that affect the layout. The relaxed positions
+     * and bends are copied back in the graph.
+     *
+     * @param graph the graph.
+     * @param clusterPlacement the graph indicating the cluster placement.
+     * @param elemDistance the desired element distance.
+     * @param iterations the number of Impred iterations to perform.
+     * @return the relaxed outlines of the clusters.
+     */
+    private Map<Graph, ControlPoints> relaxClusters(Graph graph, Graph clusterPlacement, final double elemDistance, final int iterations) {
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        EdgeAttribute<ControlPoints> edgePoints = graph.edgeAttribute(StdAttribute.edgePoints);
+        NodeAttribute<Coordinates> clusterPositions = clusterPlacement.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> clusterSizes = clusterPlacement.nodeAttribute(StdAttribute.nodeSize);
+
+        Map<Node, Graph> nodeClusters = assignClusters(graph);
+
+        List<ClusterCopy> clusterCopies = new ArrayList<>();
+        for (Graph cluster : graph.subGraphs()) {
+            Graph copy = new Graph();
+            List<Node> originalNodes = new ArrayList<>();
+            List<Edge> originalEdges = new ArrayList<>();
+            List<Node> clusterNodes = new ArrayList<>();
+            for (Node node : cluster.nodes()) {
+                if (nodeClusters.get(node) == cluster) {
+                    originalNodes.add(node);
+                    clusterNodes.add(copy.newNode(node.id()));
+                }
+            }
+            if (clusterNodes.size() < 2) {
+                continue;
+            }
+            for (Node node : originalNodes) {
+                for (Edge edge : graph.outEdges(node)) {
+                    if (nodeClusters.get(edge.target()) == cluster) {
+                        copy.newEdge(edge.id(), copy.getNode(edge.source().id()), copy.getNode(edge.target().id()));
+                        originalEdges.add(edge);
+                    }
+                }
+            }
+            ComponentLayout.copyLayoutAttributes(graph, copy, originalNodes, originalEdges);
+            Node clusterPlaceholder = clusterPlacement.getNode(cluster.<String>graphAttribute(StdAttribute.label).get());
+            Boundaries boundaries = new Boundaries();
+            addBoundary(copy, boundaries, rectangleOutline(clusterPositions.get(clusterPlaceholder), clusterSizes.get(clusterPlaceholder)), clusterNodes);
+            boundaries.surroundingEdges.setDefault(boundaries.edges);
+            clusterCopies.add(new ClusterCopy(cluster, copy, boundaries));
+        }
+
+        Collections.sort(clusterCopies, new Comparator<ClusterCopy>() {
+            @Override
+            public int compare(ClusterCopy a, ClusterCopy b) {
+                return Integer.compare(b.graph.nodeCount(), a.graph.nodeCount());
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(clusterThreads, clusterCopies.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (final ClusterCopy copy : clusterCopies) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        relax(copy.graph, copy.boundaries, elemDistance, iterations);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The cluster relaxation has been interrupted.");
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Error while relaxing the clusters.", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<Graph, ControlPoints> clusterOutlines = new HashMap<>();
+        positions.startBulkNotification();
+        edgePoints.startBulkNotification();
+        for (ClusterCopy copy : clusterCopies) {
+            NodeAttribute<Coordinates> copyPositions = copy.graph.nodeAttribute(StdAttribute.nodePosition);
+            EdgeAttribute<ControlPoints> copyEdgePoints = copy.graph.edgeAttribute(StdAttribute.edgePoints);
+            Edge boundaryEdge = copy.boundaries.edges.iterator().next();
+            ControlPoints outline = new ControlPoints(new Coordinates(copyPositions.get(boundaryEdge.source())));
+            for (Coordinates point : copyEdgePoints.get(boundaryEdge)) {
+                outline.add(new Coordinates(point));
+            }
+            clusterOutlines.put(copy.cluster, outline);
+            removeBoundaries(copy.graph, copy.boundaries);
+
+            for (Node node : copy.graph.nodes()) {
+                positions.set(graph.getNode(node.id()), copyPositions.get(node));
+            }
+            for (Edge edge : copy.graph.edges()) {
+                Edge original = graph.getEdge(edge.id());
+                if (copyEdgePoints.isDefault(edge)) {
+                    if (!edgePoints.isDefault(original)) {
+                        edgePoints.clear(original);
+                    }
+                } else {
+                    edgePoints.set(original, copyEdgePoints.get(edge));
+                }
+            }
+        }
+        edgePoints.stopBulkNotification();
+        positions.stopBulkNotification();
+        return clusterOutlines;
+    }
+
+    /**
+     * Assigns each node to one of the clusters that contain it. A node in
+     * several clusters goes to the one with the lowest label, so that the
+     * assignment does not depend on the iteration order of the subgraphs.
+     *
+     * @param graph the graph.
+     * @return the cluster of each clustered node.
+     */
+    static Map<Node, Graph> assignClusters(Graph graph) {
+        List<Graph> clusters = new ArrayList<>(graph.subGraphs());
+        Collections.sort(clusters, new Comparator<Graph>() {
+            @Override
+            public int compare(Graph a, Graph b) {
+                return a.<String>graphAttribute(StdAttribute.label).get().compareTo(b.<String>graphAttribute(StdAttribute.label).get());
+            }
+        });
+        Map<Node, Graph> nodeClusters = new HashMap<>();
+        for (Graph cluster : clusters) {
+            for (Node node : cluster.nodes()) {
+                if (!nodeClusters.containsKey(node)) {
+                    nodeClusters.put(node, cluster);
+                }
+            }
+        }
+        return nodeClusters;
     }
 
     /**
-     * Builds the cluster boundaries.
+     * Builds the cluster boundaries. The clusters without a given outline get
+     * the rectangle indicated by the cluster placement.
      *
      * @param graph the graph.
      * @param clusterPlacement the graph indicating the cluster placement.
+     * @param clusterOutlines the outlines of the already relaxed clusters.
      * @return the boundaries.
      */
-    private Boundaries buildBoundaries(Graph graph, Graph clusterPlacement) {
+    private Boundaries buildBoundaries(Graph graph, Graph clusterPlacement, Map<Graph, ControlPoints> clusterOutlines) {
         Boundaries boundaries = new Boundaries();
         NodeAttribute<Coordinates> clusterPositions = clusterPlacement.nodeAttribute(StdAttribute.nodePosition);
         NodeAttribute<Coordinates> clusterSizes = clusterPlacement.nodeAttribute(StdAttribute.nodeSize);
-        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
-        EdgeAttribute<ControlPoints> edgePoints = graph.edgeAttribute(StdAttribute.edgePoints);
 
         for (Graph cluster : graph.subGraphs()) {
             String clusterLabel = cluster.<String>graphAttribute(StdAttribute.label).get();
             Node clusterPlaceholder = clusterPlacement.getNode(clusterLabel);
-            Coordinates clusterCenter = clusterPositions.get(clusterPlaceholder);
-            Coordinates clusterSize = clusterSizes.get(clusterPlaceholder);
-            Coordinates clusterBottomLeft = clusterCenter.minus(clusterSize.divide(2));
-
-            Node boundaryNode = graph.newNode();
-            Edge boundaryEdge = graph.newEdge(boundaryNode, boundaryNode);
-            positions.set(boundaryNode, clusterBottomLeft);
-            ControlPoints edgeBends = new ControlPoints();
-            edgeBends.add(clusterBottomLeft.plus(new Coordinates(clusterSize.x(), 0)));
-            edgeBends.add(clusterBottomLeft.plus(clusterSize));
-            edgeBends.add(clusterBottomLeft.plus(new Coordinates(0, clusterSize.y())));
-            edgePoints.set(boundaryEdge, edgeBends);
-
-            boundaries.nodes.add(boundaryNode);
-            boundaries.edges.add(boundaryEdge);
-            Collection<Edge> surroundingEdge = new HashSet<>();
-            surroundingEdge.add(boundaryEdge);
-            for (Node node : cluster.nodes()) {
-                boundaries.surroundingEdges.set(node, surroundingEdge);
+            ControlPoints outline = clusterOutlines.get(cluster);
+            if (outline == null) {
+                outline = rectangleOutline(clusterPositions.get(clusterPlaceholder), clusterSizes.get(clusterPlaceholder));
             }
+            addBoundary(graph, boundaries, outline, cluster.nodes());
         }
         boundaries.surroundingEdges.setDefault(boundaries.edges);
         return boundaries;
     }
 
+    /**
+     * Computes the rectangular outline of a cluster, starting from its bottom
+     * left corner.
+     *
+     * @param clusterCenter the centre of the cluster.
+     * @param clusterSize the size of the cluster.
+     * @return the outline.
+     */
+    private static ControlPoints rectangleOutline(Coordinates clusterCenter, Coordinates clusterSize) {
+        Coordinates clusterBottomLeft = clusterCenter.minus(clusterSize.divide(2));
+        ControlPoints outline = new ControlPoints();
+        outline.add(clusterBottomLeft);
+        outline.add(clusterBottomLeft.plus(new Coordinates(clusterSize.x(), 0)));
+        outline.add(clusterBottomLeft.plus(clusterSize));
+        outline.add(clusterBottomLeft.plus(new Coordinates(0, clusterSize.y())));
+        return outline;
+    }
+
+    /**
+     * Adds the boundary of a cluster to a graph. The boundary is a self loop
+     * on a node placed at the first outline point, bent at the others.
+     *
+     * @param graph the graph.
+     * @param boundaries the boundaries where to add the new one.
+     * @param outline the outline of the boundary.
+     * @param clusterNodes the nodes surrounded by the boundary.
+     */
+    private void addBoundary(Graph graph, Boundaries boundaries, ControlPoints outline, Collection<Node> clusterNodes) {
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        EdgeAttribute<ControlPoints> edgePoints = graph.edgeAttribute(StdAttribute.edgePoints);
+
+        Node boundaryNode = graph.newNode();
+        Edge boundaryEdge = graph.newEdge(boundaryNode, boundaryNode);
+        positions.set(boundaryNode, outline.get(0));
+        edgePoints.set(boundaryEdge, new ControlPoints(outline.subList(1, outline.size())));
+
+        boundaries.nodes.add(boundaryNode);
+        boundaries.edges.add(boundaryEdge);
+        Collection<Edge> surroundingEdge = new HashSet<>();
+        surroundingEdge.add(boundaryEdge);
+        for (Node node : clusterNodes) {
+            boundaries.surroundingEdges.set(node, surroundingEdge);
+        }
+    }
+
     /**
      * Removes the cluster boundaries.
      *
@@ -197,6 +432,29 @@ public class Defragmenter {
         NodeAttribute<Collection<Edge>> surroundingEdges = new NodeAttribute<>((Collection<Edge>) new HashSet<Edge>());
     }
 
+    /**
+     * A standalone copy of a cluster, with its boundary.
+     */
+    private static class ClusterCopy {
+
+        final Graph cluster;
+        final Graph graph;
+        final Boundaries boundaries;
+
+        /**
+         * Constructs a cluster copy.
+         *
+         * @param cluster the original cluster.
+         * @param graph the graph containing the copied cluster.
+         * @param boundaries the boundary of the cluster.
+         */
+        ClusterCopy(Graph cluster, Graph graph, Boundaries boundaries) {
+            this.cluster = cluster;
+            this.graph = graph;
+            this.boundaries = boundaries;
+        }
+    }
+
     /**
      * Impred repulsion force acting only on set elements.
      */
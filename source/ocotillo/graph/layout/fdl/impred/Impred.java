@@ -17,21 +17,37 @@ package ocotillo.graph.layout.fdl.impred;
 
 import ocotillo.geometry.Coordinates;
 import ocotillo.geometry.Geom2D;
+import ocotillo.graph.Attribute;
+import ocotillo.graph.Edge;
 import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Element;
 import ocotillo.graph.Graph;
+import ocotillo.graph.GraphObserver;
 import ocotillo.graph.Node;
 import ocotillo.graph.NodeAttribute;
 import ocotillo.graph.StdAttribute;
 import ocotillo.graph.StdAttribute.ControlPoints;
 import ocotillo.graph.extra.BendExplicitGraphSynchroniser;
 import ocotillo.graph.extra.BendExplicitGraphSynchroniser.BegsBuilder;
+import ocotillo.graph.extra.BendExplicitGraphSynchroniser.MirrorEdge;
 import ocotillo.graph.layout.locator.ElementLocator;
 import ocotillo.graph.layout.locator.bucketgrid.BucketGridLocator.BglBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 
 /**
  * A force directed algorithm that supports multiple forces and constraints.
+ * Besides the normal iterations on the whole graph, the algorithm can relax
+ * only the neighbourhood of a set of changed elements, keeping the rest of the
+ * drawing still.
  */
 public class Impred {
 
@@ -41,10 +57,15 @@ public class Impred {
     protected final NodeAttribute<Coordinates> mirrorSizes;
     protected final BendExplicitGraphSynchroniser synchronizer;
     protected final ElementLocator locator;
+    protected final ImpredGlyphCache glyphs;
+    protected Graph activeGraph;
+    protected ElementLocator activeLocator;
+    protected Random random;
     protected final ImpredThermostat thermostat;
 
     protected final NodeAttribute<Coordinates> forces = new NodeAttribute<>(new Coordinates(0, 0));
     protected final NodeAttribute<Double> constraints = new NodeAttribute<>(Double.POSITIVE_INFINITY);
+    private final ImpredConstraint.MaxMovements maxMovements = new ImpredConstraint.MaxMovements();
     protected final NodeAttribute<Coordinates> movements = new NodeAttribute<>(new Coordinates(0, 0));
 
     private final Collection<ImpredForce> forceSystem;
@@ -52,6 +73,16 @@ public class Impred {
     private final Collection<ImpredPreMovement> preMovementSteps;
     private final Collection<ImpredPostProcessing> postProcessingSteps;
 
+    protected final NodeAttribute<Coordinates> originalPositions;
+    protected final EdgeAttribute<ControlPoints> originalBends;
+    private final double locatorCellSize;
+    private final int incrementalHops;
+    private final double incrementalRadius;
+    private final NodeAttribute<Boolean> incrementalPinnedNodes = new NodeAttribute<>(false);
+    private final ImpredConstraint.PinnedNodes incrementalPinning = new ImpredConstraint.PinnedNodes(incrementalPinnedNodes);
+    private final int checkpointInterval;
+    private final ImpredCheckpoint.AsyncWriter checkpointWriter;
+
     private final double safetyMovementFactor = 0.9;
 
     /**
@@ -63,6 +94,13 @@ public class Impred {
         private NodeAttribute<Coordinates> positions;
         private EdgeAttribute<ControlPoints> bends;
         private ImpredThermostat thermostat = new ImpredThermostat.LinearCoolDown();
+        private ImpredInitialPlacement initialPlacement;
+        private double locatorCellSize = 0;
+        private int incrementalHops = 2;
+        private double incrementalRadius = 0;
+        private Random random = new Random();
+        private File checkpointFile;
+        private int checkpointInterval = 0;
         private final Collection<ImpredForce> forces = new ArrayList<>();
         private final Collection<ImpredConstraint> constraints = new ArrayList<>();
         private final Collection<ImpredPreMovement> preMovements = new ArrayList<>();
@@ -110,6 +148,75 @@ public class Impred {
             return this;
         }
 
+        /**
+         * Indicates the placement used to compute the initial node positions
+         * when the ImPrEd instance is built. The existing edge bends are
+         * removed, as they would not fit the new node positions.
+         *
+         * @param initialPlacement the initial placement.
+         * @return the builder.
+         */
+        public ImpredBuilder withInitialPlacement(ImpredInitialPlacement initialPlacement) {
+            this.initialPlacement = initialPlacement;
+            return this;
+        }
+
+        /**
+         * Indicates the cell size of the locator used to find close elements.
+         * If not specified, the cell size is derived from the graph box.
+         *
+         * @param cellSize the locator cell size.
+         * @return the builder.
+         */
+        public ImpredBuilder withLocatorCellSize(double cellSize) {
+            this.locatorCellSize = cellSize;
+            return this;
+        }
+
+        /**
+         * Indicates the neighbourhood relaxed by the incremental iterations.
+         * The nodes within the given number of hops from the changed elements
+         * are free to move. Their direct neighbours, and the nodes within the
+         * given radius from them, are kept still.
+         *
+         * @param hops the number of hops from the changed elements.
+         * @param radius the radius of the still context around the free
+         * nodes.
+         * @return the builder.
+         */
+        public ImpredBuilder withIncrementalNeighbourhood(int hops, double radius) {
+            this.incrementalHops = hops;
+            this.incrementalRadius = radius;
+            return this;
+        }
+
+        /**
+         * Indicates the seed of the random generator used by the ImPrEd
+         * elements.
+         *
+         * @param seed the random seed.
+         * @return the builder.
+         */
+        public ImpredBuilder withRandomSeed(long seed) {
+            this.random = new Random(seed);
+            return this;
+        }
+
+        /**
+         * Indicates that a checkpoint should be written in the given file
+         * every given number of iterations. Checkpoints are written on a
+         * background thread.
+         *
+         * @param file the checkpoint file.
+         * @param interval the iterations between checkpoints.
+         * @return the builder.
+         */
+        public ImpredBuilder withCheckpoints(File file, int interval) {
+            this.checkpointFile = file;
+            this.checkpointInterval = interval;
+            return this;
+        }
+
         /**
          * Inserts the given force in the ImPrEd force system.
          *
@@ -162,9 +269,25 @@ public class Impred {
         public Impred build() {
             positions = positions != null ? positions : graph.<Coordinates>nodeAttribute(StdAttribute.nodePosition);
             bends = bends != null ? bends : graph.<ControlPoints>edgeAttribute(StdAttribute.edgePoints);
-            Impred impred = new Impred(graph, positions, bends, thermostat, forces, constraints, preMovements, postProcessings);
+            if (incrementalHops < 0 || incrementalRadius < 0) {
+                throw new IllegalArgumentException("The incremental neighbourhood cannot be negative.");
+            }
+            if (checkpointFile != null && checkpointInterval <= 0) {
+                throw new IllegalArgumentException("The checkpoint interval must be positive.");
+            }
+            if (initialPlacement != null) {
+                initialPlacement.place(graph, positions, random);
+                for (Edge edge : graph.edges()) {
+                    if (!bends.isDefault(edge)) {
+                        bends.clear(edge);
+                    }
+                }
+            }
+            ImpredCheckpoint.AsyncWriter checkpointWriter = checkpointFile != null ? new ImpredCheckpoint.AsyncWriter(checkpointFile) : null;
+            Impred impred = new Impred(graph, positions, bends, locatorCellSize, incrementalHops, incrementalRadius, random, checkpointInterval, checkpointWriter, thermostat, forces, constraints, preMovements, postProcessings);
 
             thermostat.attachTo(impred);
+            impred.incrementalPinning.attachTo(impred);
             
             for (ImpredForce force : forces) {
                 force.attachTo(impred);
@@ -182,16 +305,70 @@ public class Impred {
         }
     }
 
+    /**
+     * Collects the elements added to or removed from a graph, to be passed to
+     * the incremental iterations.
+     */
+    public static class ChangeCollector extends GraphObserver {
+
+        private final Set<Element> changedElements = new HashSet<>();
+
+        /**
+         * Constructs a change collector.
+         *
+         * @param graph the observed graph.
+         */
+        public ChangeCollector(Graph graph) {
+            super(graph);
+        }
+
+        /**
+         * Returns the elements changed since the last clear.
+         *
+         * @return the changed elements.
+         */
+        public Collection<Element> changedElements() {
+            return new ArrayList<>(changedElements);
+        }
+
+        /**
+         * Forgets the collected changes.
+         */
+        public void clear() {
+            changedElements.clear();
+        }
+
+        @Override
+        public void updateElements(Collection<Element> changedElements) {
+            this.changedElements.addAll(changedElements);
+        }
+
+        @Override
+        public void updateSubGraphs(Collection<Graph> changedSubGraphs) {
+        }
+
+        @Override
+        public void updateAttributes(Collection<Attribute<?>> changedAttributes) {
+        }
+    }
+
     /**
      * Constructs an ImPrEd instance.
      *
      * @param originalGraph the original graph.
      * @param positions the node positions.
      * @param bends the edge bends.
+     * @param locatorCellSize the locator cell size, or 0 to derive it from
+     * the graph box.
+     * @param incrementalHops the hops of the incremental neighbourhood.
+     * @param incrementalRadius the radius of the incremental still context.
+     * @param random the random generator.
+     * @param checkpointInterval the iterations between checkpoints.
+     * @param checkpointWriter the checkpoint writer, or null.
      * @param forces the force system.
      * @param constraints the constraint system.
      */
-    private Impred(Graph originalGraph, NodeAttribute<Coordinates> positions, EdgeAttribute<ControlPoints> bends, ImpredThermostat thermostat, Collection<ImpredForce> forces, Collection<ImpredConstraint> constraints, Collection<ImpredPreMovement> preMovements, Collection<ImpredPostProcessing> postProcessings) {
+    private Impred(Graph originalGraph, NodeAttribute<Coordinates> positions, EdgeAttribute<ControlPoints> bends, double locatorCellSize, int incrementalHops, double incrementalRadius, Random random, int checkpointInterval, ImpredCheckpoint.AsyncWriter checkpointWriter, ImpredThermostat thermostat, Collection<ImpredForce> forces, Collection<ImpredConstraint> constraints, Collection<ImpredPreMovement> preMovements, Collection<ImpredPostProcessing> postProcessings) {
         if (!originalGraph.hasNodeAttribute(StdAttribute.nodeSize)) {
             originalGraph.nodeAttribute(StdAttribute.nodeSize);
         }
@@ -205,7 +382,18 @@ public class Impred {
         this.mirrorPositions = synchronizer.getMirrorPositions();
         this.mirrorSizes = mirrorGraph.nodeAttribute(StdAttribute.nodeSize);
 
-        this.locator = new BglBuilder(mirrorGraph).withNodePositions(mirrorPositions).withNodeSizes(mirrorSizes).build();
+        this.locator = new BglBuilder(mirrorGraph).withNodePositions(mirrorPositions).withNodeSizes(mirrorSizes).withCellSize(locatorCellSize).build();
+        this.glyphs = new ImpredGlyphCache(mirrorGraph, mirrorPositions);
+        this.activeGraph = mirrorGraph;
+        this.activeLocator = locator;
+        this.originalPositions = positions;
+        this.originalBends = bends;
+        this.random = random;
+        this.checkpointInterval = checkpointInterval;
+        this.checkpointWriter = checkpointWriter;
+        this.locatorCellSize = locatorCellSize;
+        this.incrementalHops = incrementalHops;
+        this.incrementalRadius = incrementalRadius;
         this.thermostat = thermostat;
         this.forceSystem = forces;
         this.constraintSystem = constraints;
@@ -220,31 +408,331 @@ public class Impred {
      */
     public void iterate(int numberOfIterations) {
         synchronizer.updateMirror();
-        for (int i = 0; i < numberOfIterations; i++) {
+        iterate(0, numberOfIterations);
+    }
+
+    /**
+     * Executes the remaining iterations of a computation, writing the
+     * checkpoints if required.
+     *
+     * @param firstIteration the first iteration to execute.
+     * @param numberOfIterations the number of iterations of the computation.
+     */
+    private void iterate(int firstIteration, int numberOfIterations) {
+        for (int i = firstIteration; i < numberOfIterations; i++) {
+            executeIteration(i, numberOfIterations);
+            synchronizer.updateOriginal();
+            if (checkpointWriter != null && (i + 1) % checkpointInterval == 0) {
+                checkpointWriter.submit(captureCheckpoint(i + 1, numberOfIterations));
+            }
+        }
+    }
+
+    /**
+     * Writes a checkpoint of the current state, as reached at the end of the
+     * last computation.
+     *
+     * @param output the output stream.
+     */
+    public void writeCheckpoint(OutputStream output) {
+        try {
+            output.write(captureCheckpoint(0, 0));
+            output.flush();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot write the ImPrEd checkpoint.", ex);
+        }
+    }
+
+    /**
+     * Restores the state saved in a checkpoint and executes the remaining
+     * iterations of the computation that was running when the checkpoint was
+     * taken. The ImPrEd instance must have been built with the same elements,
+     * on a graph with the same node and edge ids.
+     *
+     * @param input the checkpoint input stream.
+     */
+    public void resume(InputStream input) {
+        ImpredCheckpoint.Progress progress;
+        try {
+            progress = ImpredCheckpoint.restore(this, input);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot read the ImPrEd checkpoint.", ex);
+        }
+        iterate(progress.iteration, progress.numberOfIterations);
+    }
 
-            mirrorPositions.startBulkNotification();
-            forces.reset();
-            constraints.reset(Double.POSITIVE_INFINITY);
+    /**
+     * Captures the current state in a checkpoint.
+     *
+     * @param iteration the iterations executed.
+     * @param numberOfIterations the number of iterations of the computation.
+     * @return the checkpoint data.
+     */
+    private byte[] captureCheckpoint(int iteration, int numberOfIterations) {
+        try {
+            return ImpredCheckpoint.capture(this, new ImpredCheckpoint.Progress(iteration, numberOfIterations));
+        } catch (IOException ex) {
+            throw new IllegalStateException("Cannot capture the ImPrEd checkpoint.", ex);
+        }
+    }
+
+    /**
+     * Returns the ImPrEd elements in a fixed order.
+     *
+     * @return the thermostat, forces, constraints, pre-movements and
+     * post-processings.
+     */
+    List<ImpredElement> elements() {
+        List<ImpredElement> elements = new ArrayList<>();
+        elements.add(thermostat);
+        elements.addAll(forceSystem);
+        elements.addAll(constraintSystem);
+        elements.addAll(preMovementSteps);
+        elements.addAll(postProcessingSteps);
+        return elements;
+    }
+
+    /**
+     * Execute the ImPrEd main cycle only on the neighbourhood of the given
+     * changed elements. New nodes without an assigned position are first
+     * placed at the barycentre of their placed neighbours. The nodes within
+     * the incremental hops from the changed elements are then relaxed, while
+     * the surrounding nodes are pinned. The cost of each iteration depends on
+     * the size of the relaxed neighbourhood rather than on the graph size.
+     *
+     * @param changedElements the elements added or modified since the last
+     * iterations. Removed elements are ignored, but the end nodes of removed
+     * edges are considered changed.
+     * @param numberOfIterations the number of iterations.
+     */
+    public void iterateIncrementally(Collection<? extends Element> changedElements, int numberOfIterations) {
+        synchronizer.updateMirror();
+        Set<Node> changedNodes = changedMirrorNodes(changedElements);
+        if (changedNodes.isEmpty()) {
+            return;
+        }
+        placeNewNodes(changedNodes);
+
+        Set<Node> freeNodes = neighbourhood(changedNodes, incrementalHops);
+        Set<Node> regionNodes = neighbourhood(freeNodes, 1);
+        if (incrementalRadius > 0) {
             locator.rebuild();
-            thermostat.updateTemperature(i, numberOfIterations);
-            
-            computeForces();
-            computeConstraints();
-            computeMovements();
+            for (Node node : freeNodes) {
+                regionNodes.addAll(locator.getCloseNodes(node, incrementalRadius));
+            }
+        }
+        for (Node node : regionNodes) {
+            if (!freeNodes.contains(node)) {
+                incrementalPinnedNodes.set(node, true);
+            }
+        }
 
-            for (ImpredPreMovement preMovement : preMovementSteps) {
-                preMovement.execute();
+        Graph regionGraph = mirrorGraph.newInducedSubGraph(regionNodes);
+        ElementLocator regionLocator = new BglBuilder(regionGraph).withNodePositions(mirrorPositions).withNodeSizes(mirrorSizes).withCellSize(locatorCellSize).build();
+        activeGraph = regionGraph;
+        activeLocator = regionLocator;
+        try {
+            for (int i = 0; i < numberOfIterations; i++) {
+                executeIteration(i, numberOfIterations);
             }
+        } finally {
+            activeGraph = mirrorGraph;
+            activeLocator = locator;
+            regionLocator.close();
+            mirrorGraph.removeSubGraph(regionGraph);
+            incrementalPinnedNodes.reset();
+        }
+        updateOriginalRegion(regionNodes);
+    }
 
-            moveNodes();
+    /**
+     * Executes a single iteration of the ImPrEd main cycle on the active
+     * graph.
+     *
+     * @param iteration the current iteration.
+     * @param numberOfIterations the number of iterations.
+     */
+    void executeIteration(int iteration, int numberOfIterations) {
+        mirrorPositions.startBulkNotification();
+        forces.reset();
+        constraints.reset(Double.POSITIVE_INFINITY);
+        activeLocator.rebuild();
+        if (activeGraph == mirrorGraph) {
+            glyphs.refresh();
+        } else {
+            glyphs.refresh(activeGraph.nodes());
+        }
+        thermostat.updateTemperature(iteration, numberOfIterations);
+
+        computeForces();
+        computeConstraints();
+        computeMovements();
+
+        for (ImpredPreMovement preMovement : preMovementSteps) {
+            preMovement.execute();
+        }
 
-            for (ImpredPostProcessing postProcessing : postProcessingSteps) {
-                postProcessing.execute();
+        moveNodes();
+
+        for (ImpredPostProcessing postProcessing : postProcessingSteps) {
+            postProcessing.execute();
+        }
+
+        mirrorPositions.stopBulkNotification();
+    }
+
+    /**
+     * Collects the mirror nodes affected by the given changed elements of the
+     * original graph.
+     *
+     * @param changedElements the changed elements.
+     * @return the affected mirror nodes.
+     */
+    private Set<Node> changedMirrorNodes(Collection<? extends Element> changedElements) {
+        Set<Node> changedNodes = new HashSet<>();
+        for (Element element : changedElements) {
+            if (element instanceof Node) {
+                if (mirrorGraph.has(element)) {
+                    changedNodes.add((Node) element);
+                }
+            } else if (element instanceof Edge) {
+                Edge edge = (Edge) element;
+                if (originalGraph.has(edge)) {
+                    MirrorEdge mirrorEdge = synchronizer.getMirrorEdge(edge);
+                    changedNodes.add(mirrorEdge.source());
+                    changedNodes.add(mirrorEdge.target());
+                    changedNodes.addAll(mirrorEdge.bends());
+                } else {
+                    if (mirrorGraph.has(edge.source())) {
+                        changedNodes.add(edge.source());
+                    }
+                    if (mirrorGraph.has(edge.target())) {
+                        changedNodes.add(edge.target());
+                    }
+                }
             }
+        }
+        return changedNodes;
+    }
 
-            mirrorPositions.stopBulkNotification();
-            synchronizer.updateOriginal();
+    /**
+     * Places the changed nodes that do not have an assigned position at the
+     * barycentre of their placed neighbours. Nodes with a single placed
+     * neighbour are placed at the typical edge length from it in a random
+     * direction, while the others receive a small random offset so that they
+     * do not overlap.
+     *
+     * @param changedNodes the changed nodes.
+     */
+    private void placeNewNodes(Set<Node> changedNodes) {
+        Set<Node> unplacedNodes = new HashSet<>();
+        for (Node node : changedNodes) {
+            if (originalGraph.has(node) && originalPositions.isDefault(node)) {
+                unplacedNodes.add(node);
+            }
+        }
+
+        boolean progress = true;
+        while (!unplacedNodes.isEmpty() && progress) {
+            progress = false;
+            for (Node node : new ArrayList<>(unplacedNodes)) {
+                List<Node> placedNeighbours = new ArrayList<>();
+                for (Edge edge : mirrorGraph.inOutEdges(node)) {
+                    Node neighbour = edge.otherEnd(node);
+                    if (neighbour != node && !unplacedNodes.contains(neighbour)) {
+                        placedNeighbours.add(neighbour);
+                    }
+                }
+                if (!placedNeighbours.isEmpty()) {
+                    placeAtBarycentre(node, placedNeighbours, unplacedNodes);
+                    unplacedNodes.remove(node);
+                    progress = true;
+                }
+            }
+        }
+        for (Node node : unplacedNodes) {
+            Coordinates offset = Geom2D.unitVector(random.nextDouble() * 2 * Math.PI);
+            mirrorPositions.set(node, mirrorPositions.get(node).plus(offset));
+        }
+    }
+
+    /**
+     * Places a node at the barycentre of the given neighbours.
+     *
+     * @param node the node.
+     * @param neighbours the placed neighbours.
+     * @param unplacedNodes the nodes still to be placed.
+     */
+    private void placeAtBarycentre(Node node, List<Node> neighbours, Set<Node> unplacedNodes) {
+        Coordinates barycentre = new Coordinates(0, 0);
+        for (Node neighbour : neighbours) {
+            barycentre.plusIP(mirrorPositions.get(neighbour));
+        }
+        barycentre.divideIP(neighbours.size());
+
+        double lengthSum = 0;
+        int lengthCount = 0;
+        for (Node neighbour : neighbours) {
+            for (Edge edge : mirrorGraph.inOutEdges(neighbour)) {
+                Node other = edge.otherEnd(neighbour);
+                if (other != neighbour && !unplacedNodes.contains(other)) {
+                    lengthSum += Geom2D.magnitude(mirrorPositions.get(other).minus(mirrorPositions.get(neighbour)));
+                    lengthCount++;
+                }
+            }
         }
+        double typicalLength = lengthCount > 0 && lengthSum > 0 ? lengthSum / lengthCount : 1;
+        double offsetLength = neighbours.size() == 1 ? typicalLength : typicalLength * 0.1;
+        Coordinates offset = Geom2D.unitVector(random.nextDouble() * 2 * Math.PI).timesIP(offsetLength);
+        mirrorPositions.set(node, barycentre.plusIP(offset));
+    }
+
+    /**
+     * Computes the nodes within the given number of hops from a set of nodes
+     * in the mirror graph.
+     *
+     * @param startNodes the starting nodes.
+     * @param hops the number of hops.
+     * @return the nodes in the neighbourhood, including the starting ones.
+     */
+    private Set<Node> neighbourhood(Set<Node> startNodes, int hops) {
+        Set<Node> visited = new HashSet<>(startNodes);
+        Collection<Node> frontier = startNodes;
+        for (int hop = 0; hop < hops && !frontier.isEmpty(); hop++) {
+            List<Node> nextFrontier = new ArrayList<>();
+            for (Node node : frontier) {
+                for (Edge edge : mirrorGraph.inOutEdges(node)) {
+                    Node neighbour = edge.otherEnd(node);
+                    if (visited.add(neighbour)) {
+                        nextFrontier.add(neighbour);
+                    }
+                }
+            }
+            frontier = nextFrontier;
+        }
+        return visited;
+    }
+
+    /**
+     * Copies the positions of the relaxed region back to the original graph.
+     *
+     * @param regionNodes the mirror nodes of the relaxed region.
+     */
+    private void updateOriginalRegion(Set<Node> regionNodes) {
+        Set<Node> nodes = new HashSet<>();
+        Set<Edge> edges = new HashSet<>();
+        for (Node node : regionNodes) {
+            if (!mirrorGraph.has(node)) {
+                continue;
+            }
+            Edge originalEdge = synchronizer.getOriginalEdge(node);
+            if (originalEdge != null) {
+                edges.add(originalEdge);
+            } else {
+                nodes.add(node);
+            }
+        }
+        synchronizer.updateOriginal(nodes, edges);
     }
 
     /**
@@ -255,7 +743,7 @@ public class Impred {
     private void computeForces() {
         for (ImpredForce forceDefinition : forceSystem) {
             NodeAttribute<Coordinates> computedForces = forceDefinition.computeForces();
-            for (Node node : mirrorGraph.nodes()) {
+            for (Node node : activeGraph.nodes()) {
                 forces.set(node, computedForces.get(node).plus(forces.get(node)));
             }
         }
@@ -267,15 +755,23 @@ public class Impred {
      * @param temperature the system temperature.
      */
     private void computeConstraints() {
+        boolean incremental = activeGraph != mirrorGraph;
+        if (constraintSystem.isEmpty() && !incremental) {
+            return;
+        }
+        maxMovements.reset(activeGraph.nodes());
         for (ImpredConstraint constraintDefinition : constraintSystem) {
-            NodeAttribute<Double> computedconstraint = constraintDefinition.computeConstraints();
-            constraints.setDefault(Math.min(constraints.getDefault(), computedconstraint.getDefault()));
-            for (Node node : mirrorGraph.nodes()) {
-                double nodeMovement = Math.min(constraints.get(node), constraints.getDefault());
-                nodeMovement = Math.min(nodeMovement, computedconstraint.get(node));
-                constraints.set(node, nodeMovement);
+            constraintDefinition.computeConstraints(maxMovements);
+            if (maxMovements.global() < constraints.getDefault()) {
+                constraints.setDefault(maxMovements.global());
             }
         }
+        if (incremental) {
+            incrementalPinning.computeConstraints(maxMovements);
+        }
+        for (int nodeIndex = 0; nodeIndex < maxMovements.size(); nodeIndex++) {
+            constraints.set(maxMovements.node(nodeIndex), maxMovements.get(nodeIndex));
+        }
     }
 
     /**
@@ -283,7 +779,7 @@ public class Impred {
      */
     private void computeMovements() {
         movements.reset();
-        for (Node node : mirrorGraph.nodes()) {
+        for (Node node : activeGraph.nodes()) {
             Coordinates force = forces.get(node);
             double constraint = constraints.get(node) * safetyMovementFactor;
             double magnitude = Geom2D.magnitude(force);
@@ -301,7 +797,7 @@ public class Impred {
      * Moves the graph nodes.
      */
     private void moveNodes() {
-        for (Node node : mirrorGraph.nodes()) {
+        for (Node node : activeGraph.nodes()) {
             mirrorPositions.set(node, movements.get(node).plus(mirrorPositions.get(node)));
         }
     }
@@ -311,5 +807,8 @@ public class Impred {
      */
     public void close() {
         locator.close();
+        if (checkpointWriter != null) {
+            checkpointWriter.close();
+        }
     }
 }
@@ -0,0 +1,407 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.impred;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Edge;
+import ocotillo.graph.Node;
+import ocotillo.graph.StdAttribute.ControlPoints;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Binary checkpoints of an ImPrEd computation. A checkpoint contains the
+ * iteration counter, the node positions and edge bends, the random generator
+ * and the state of each ImPrEd element, so that an interrupted computation can
+ * be resumed on a graph with the same node and edge ids.
+ */
+public class ImpredCheckpoint {
+
+    private static final int magicNumber = 0x494d5052;
+    private static final int formatVersion = 1;
+
+    /**
+     * The position of a computation within its iterations.
+     */
+    static class Progress {
+
+        final int iteration;
+        final int numberOfIterations;
+
+        /**
+         * Constructs a progress.
+         *
+         * @param iteration the iterations executed.
+         * @param numberOfIterations the total number of iterations.
+         */
+        Progress(int iteration, int numberOfIterations) {
+            this.iteration = iteration;
+            this.numberOfIterations = numberOfIterations;
+        }
+    }
+
+    /**
+     * Output stream for the state of ImPrEd elements. Nodes are written as
+     * indices, valid across different runs on the same graph.
+     */
+    public static class StateOutput extends DataOutputStream {
+
+        private final Map<Node, Integer> nodeIndices;
+
+        /**
+         * Constructs a state output.
+         *
+         * @param output the underlying stream.
+         * @param nodeIndices the index of each mirror node.
+         */
+        StateOutput(OutputStream output, Map<Node, Integer> nodeIndices) {
+            super(output);
+            this.nodeIndices = nodeIndices;
+        }
+
+        /**
+         * Writes a mirror node.
+         *
+         * @param node the node.
+         * @throws IOException if the writing fails.
+         */
+        public void writeNode(Node node) throws IOException {
+            Integer index = nodeIndices.get(node);
+            if (index == null) {
+                throw new IllegalArgumentException("The node " + node + " is not part of the mirror graph.");
+            }
+            writeInt(index);
+        }
+
+        /**
+         * Writes an array of doubles, preceded by its length.
+         *
+         * @param values the values.
+         * @throws IOException if the writing fails.
+         */
+        public void writeDoubles(double[] values) throws IOException {
+            writeInt(values.length);
+            for (double value : values) {
+                writeDouble(value);
+            }
+        }
+    }
+
+    /**
+     * Input stream for the state of ImPrEd elements.
+     */
+    public static class StateInput extends DataInputStream {
+
+        private final List<Node> nodes;
+
+        /**
+         * Constructs a state input.
+         *
+         * @param input the underlying stream.
+         * @param nodes the mirror nodes by index.
+         */
+        StateInput(InputStream input, List<Node> nodes) {
+            super(input);
+            this.nodes = nodes;
+        }
+
+        /**
+         * Reads a mirror node.
+         *
+         * @return the node.
+         * @throws IOException if the reading fails.
+         */
+        public Node readNode() throws IOException {
+            int index = readInt();
+            if (index < 0 || index >= nodes.size()) {
+                throw new IOException("Invalid node index in checkpoint.");
+            }
+            return nodes.get(index);
+        }
+
+        /**
+         * Reads an array of doubles written with writeDoubles.
+         *
+         * @return the values.
+         * @throws IOException if the reading fails.
+         */
+        public double[] readDoubles() throws IOException {
+            double[] values = new double[readInt()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = readDouble();
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Captures the state of an ImPrEd instance. The original graph must be
+     * synchronised with the mirror one.
+     *
+     * @param impred the ImPrEd instance.
+     * @param progress the computation progress.
+     * @return the checkpoint data.
+     * @throws IOException if the serialisation fails.
+     */
+    static byte[] capture(Impred impred, Progress progress) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(magicNumber);
+        output.writeInt(formatVersion);
+        output.writeInt(progress.iteration);
+        output.writeInt(progress.numberOfIterations);
+
+        List<Node> nodes = new ArrayList<>(impred.originalGraph.nodes());
+        List<Edge> edges = new ArrayList<>(impred.originalGraph.edges());
+        output.writeInt(nodes.size());
+        for (Node node : nodes) {
+            Coordinates position = impred.mirrorPositions.get(node);
+            output.writeUTF(node.id());
+            output.writeDouble(position.x());
+            output.writeDouble(position.y());
+        }
+        output.writeInt(edges.size());
+        for (Edge edge : edges) {
+            List<Node> bends = impred.synchronizer.getMirrorEdge(edge).bends();
+            output.writeUTF(edge.id());
+            output.writeInt(bends.size());
+            for (Node bend : bends) {
+                Coordinates position = impred.mirrorPositions.get(bend);
+                output.writeDouble(position.x());
+                output.writeDouble(position.y());
+            }
+        }
+
+        ByteArrayOutputStream randomBytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream randomOutput = new ObjectOutputStream(randomBytes)) {
+            randomOutput.writeObject(impred.random);
+        }
+        output.writeInt(randomBytes.size());
+        randomBytes.writeTo(output);
+
+        Map<Node, Integer> nodeIndices = new HashMap<>();
+        for (Node node : mirrorNodes(impred, nodes, edges)) {
+            nodeIndices.put(node, nodeIndices.size());
+        }
+        List<ImpredElement> elements = impred.elements();
+        output.writeInt(elements.size());
+        for (ImpredElement element : elements) {
+            ByteArrayOutputStream elementBytes = new ByteArrayOutputStream();
+            try (StateOutput elementOutput = new StateOutput(elementBytes, nodeIndices)) {
+                element.writeState(elementOutput);
+            }
+            output.writeUTF(element.getClass().getName());
+            output.writeInt(elementBytes.size());
+            elementBytes.writeTo(output);
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores the state of an ImPrEd instance. The node positions and edge
+     * bends are written in the original graph and mirrored.
+     *
+     * @param impred the ImPrEd instance.
+     * @param stream the checkpoint data.
+     * @return the computation progress.
+     * @throws IOException if the checkpoint cannot be read.
+     */
+    static Progress restore(Impred impred, InputStream stream) throws IOException {
+        DataInputStream input = new DataInputStream(stream);
+        if (input.readInt() != magicNumber || input.readInt() != formatVersion) {
+            throw new IOException("The stream does not contain an ImPrEd checkpoint.");
+        }
+        Progress progress = new Progress(input.readInt(), input.readInt());
+
+        int nodeCount = input.readInt();
+        if (nodeCount != impred.originalGraph.nodeCount()) {
+            throw new IllegalArgumentException("The checkpoint does not match the graph nodes.");
+        }
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            Node node = impred.originalGraph.getNode(input.readUTF());
+            if (node == null) {
+                throw new IllegalArgumentException("The checkpoint does not match the graph nodes.");
+            }
+            impred.originalPositions.set(node, new Coordinates(input.readDouble(), input.readDouble()));
+            nodes.add(node);
+        }
+        int edgeCount = input.readInt();
+        if (edgeCount != impred.originalGraph.edgeCount()) {
+            throw new IllegalArgumentException("The checkpoint does not match the graph edges.");
+        }
+        List<Edge> edges = new ArrayList<>(edgeCount);
+        for (int i = 0; i < edgeCount; i++) {
+            Edge edge = impred.originalGraph.getEdge(input.readUTF());
+            if (edge == null) {
+                throw new IllegalArgumentException("The checkpoint does not match the graph edges.");
+            }
+            ControlPoints bends = new ControlPoints();
+            int bendCount = input.readInt();
+            for (int j = 0; j < bendCount; j++) {
+                bends.add(new Coordinates(input.readDouble(), input.readDouble()));
+            }
+            impred.originalBends.set(edge, bends);
+            edges.add(edge);
+        }
+        impred.synchronizer.updateMirror();
+
+        byte[] randomBytes = new byte[input.readInt()];
+        input.readFully(randomBytes);
+        try (ObjectInputStream randomInput = new ObjectInputStream(new ByteArrayInputStream(randomBytes))) {
+            impred.random = (Random) randomInput.readObject();
+        } catch (ClassNotFoundException ex) {
+            throw new IOException("Invalid random generator in checkpoint.", ex);
+        }
+
+        List<Node> mirrorNodes = mirrorNodes(impred, nodes, edges);
+        List<ImpredElement> elements = impred.elements();
+        if (input.readInt() != elements.size()) {
+            throw new IllegalArgumentException("The checkpoint does not match the ImPrEd elements.");
+        }
+        for (ImpredElement element : elements) {
+            if (!input.readUTF().equals(element.getClass().getName())) {
+                throw new IllegalArgumentException("The checkpoint does not match the ImPrEd elements.");
+            }
+            byte[] elementBytes = new byte[input.readInt()];
+            input.readFully(elementBytes);
+            try (StateInput elementInput = new StateInput(new ByteArrayInputStream(elementBytes), mirrorNodes)) {
+                element.readState(elementInput);
+            }
+        }
+        return progress;
+    }
+
+    /**
+     * Lists the mirror nodes in a canonical order: the original nodes
+     * followed by the bends of each edge.
+     *
+     * @param impred the ImPrEd instance.
+     * @param nodes the original nodes.
+     * @param edges the original edges.
+     * @return the mirror nodes.
+     */
+    private static List<Node> mirrorNodes(Impred impred, List<Node> nodes, List<Edge> edges) {
+        List<Node> mirrorNodes = new ArrayList<>(nodes);
+        for (Edge edge : edges) {
+            mirrorNodes.addAll(impred.synchronizer.getMirrorEdge(edge).bends());
+        }
+        return mirrorNodes;
+    }
+
+    /**
+     * Writes checkpoints to a file on a background thread. When checkpoints
+     * are produced faster than they are written, only the latest is kept.
+     */
+    static class AsyncWriter {
+
+        private final File file;
+        private final AtomicReference<byte[]> pending = new AtomicReference<>();
+        private volatile IOException failure;
+        private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ocotillo-impred-checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        /**
+         * Constructs an asynchronous writer.
+         *
+         * @param file the checkpoint file.
+         */
+        AsyncWriter(File file) {
+            this.file = file;
+        }
+
+        /**
+         * Schedules the writing of a checkpoint.
+         *
+         * @param data the checkpoint data.
+         */
+        void submit(byte[] data) {
+            if (pending.getAndSet(data) == null) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        byte[] latest = pending.getAndSet(null);
+                        if (latest != null) {
+                            write(latest);
+                        }
+                    }
+                });
+            }
+        }
+
+        /**
+         * Writes a checkpoint to a temporary file, and then replaces the
+         * checkpoint file with it.
+         *
+         * @param data the checkpoint data.
+         */
+        private void write(byte[] data) {
+            File temporary = new File(file.getPath() + ".tmp");
+            try {
+                try (OutputStream output = new FileOutputStream(temporary)) {
+                    output.write(data);
+                }
+                Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                failure = ex;
+            }
+        }
+
+        /**
+         * Waits for the pending checkpoints to be written and stops the
+         * background thread.
+         */
+        void close() {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw new IllegalStateException("Cannot write checkpoint file " + file.getAbsolutePath(), failure);
+            }
+        }
+    }
+}
@@ -21,9 +21,13 @@ import ocotillo.geometry.GeomXD;
 import ocotillo.graph.Edge;
 import ocotillo.graph.Node;
 import ocotillo.graph.NodeAttribute;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -32,11 +36,124 @@ import java.util.Map;
 public abstract class ImpredConstraint extends ImpredElement {
 
     /**
-     * Computes the movement constraints for all the nodes in the graph.
+     * Computes the movement constraints for all the nodes in the graph. The
+     * constraints are combined with those of the other constraints by
+     * reducing the max movements passed as parameter.
      *
-     * @return the computed constraints.
+     * @param maxMovements the max movements to reduce.
      */
-    protected abstract NodeAttribute<Double> computeConstraints();
+    protected abstract void computeConstraints(MaxMovements maxMovements);
+
+    /**
+     * The max movements of the mirror graph nodes, shared by all constraints
+     * during an iteration. The values are stored in a primitive buffer
+     * indexed by the position of the nodes in the node list, and each
+     * constraint can only reduce them. A global max movement applies to all
+     * nodes without touching the per-node values.
+     */
+    public static class MaxMovements {
+
+        private final List<Node> nodes = new ArrayList<>();
+        private final Map<Node, Integer> indices = new HashMap<>();
+        private double[] values = new double[0];
+        private double globalValue;
+
+        /**
+         * Prepares the max movements for a new iteration, setting all of them
+         * to infinity.
+         *
+         * @param graphNodes the nodes of the mirror graph.
+         */
+        void reset(Collection<Node> graphNodes) {
+            nodes.clear();
+            nodes.addAll(graphNodes);
+            indices.clear();
+            if (values.length < nodes.size()) {
+                values = new double[nodes.size()];
+            }
+            Arrays.fill(values, 0, nodes.size(), Double.POSITIVE_INFINITY);
+            globalValue = Double.POSITIVE_INFINITY;
+        }
+
+        /**
+         * Returns the number of nodes.
+         *
+         * @return the number of nodes.
+         */
+        public int size() {
+            return nodes.size();
+        }
+
+        /**
+         * Returns the node with the given index.
+         *
+         * @param nodeIndex the node index.
+         * @return the node.
+         */
+        public Node node(int nodeIndex) {
+            return nodes.get(nodeIndex);
+        }
+
+        /**
+         * Returns the index of a node. The index map is only built when
+         * needed by a constraint.
+         *
+         * @param node the node.
+         * @return the node index.
+         */
+        public int index(Node node) {
+            if (indices.isEmpty()) {
+                for (int i = 0; i < nodes.size(); i++) {
+                    indices.put(nodes.get(i), i);
+                }
+            }
+            Integer index = indices.get(node);
+            if (index == null) {
+                throw new IllegalArgumentException("The node " + node + " is not in the mirror graph.");
+            }
+            return index;
+        }
+
+        /**
+         * Reduces the max movement of a node to the given value, if lower.
+         *
+         * @param nodeIndex the node index.
+         * @param value the max movement.
+         */
+        public void reduceMin(int nodeIndex, double value) {
+            if (value < values[nodeIndex]) {
+                values[nodeIndex] = value;
+            }
+        }
+
+        /**
+         * Reduces the global max movement to the given value, if lower.
+         *
+         * @param value the global max movement.
+         */
+        public void reduceGlobal(double value) {
+            globalValue = Math.min(globalValue, value);
+        }
+
+        /**
+         * Returns the max movement of a node.
+         *
+         * @param nodeIndex the node index.
+         * @return the max movement.
+         */
+        public double get(int nodeIndex) {
+            return Math.min(values[nodeIndex], globalValue);
+        }
+
+        /**
+         * Returns the global max movement.
+         *
+         * @return the global max movement.
+         */
+        public double global() {
+            return globalValue;
+        }
+    }
 
     /**
      * Constraint that gradually decreases the global max movement for that the
@@ -60,8 +177,8 @@ public abstract class ImpredConstraint extends ImpredElement {
         }
 
         @Override
-        protected NodeAttribute<Double> computeConstraints() {
-            return new NodeAttribute<>(initialMaxMovement * temperature());
+        protected void computeConstraints(MaxMovements maxMovements) {
+            maxMovements.reduceGlobal(initialMaxMovement * temperature());
         }
 
     }
@@ -89,9 +206,9 @@ public abstract class ImpredConstraint extends ImpredElement {
         }
 
         @Override
-        protected NodeAttribute<Double> computeConstraints() {
-            NodeAttribute<Double> constraints = new NodeAttribute<>(Double.POSITIVE_INFINITY);
-            for (Node node : mirrorGraph().nodes()) {
+        protected void computeConstraints(MaxMovements maxMovements) {
+            for (int nodeIndex = 0; nodeIndex < maxMovements.size(); nodeIndex++) {
+                Node node = maxMovements.node(nodeIndex);
 
                 Coordinates currentForce = forces().get(node);
                 double currentAngle = Geom2D.angle(currentForce);
@@ -116,11 +233,52 @@ public abstract class ImpredConstraint extends ImpredElement {
                         currentMovement = previousMovements.get(node) / (1 + 4 * (angleDiff / (Math.PI / 2) - 1) );
                     }
                 }
-                constraints.set(node, currentMovement);
+                maxMovements.reduceMin(nodeIndex, currentMovement);
                 previousMovements.put(node, currentMovement);
                 previousAngles.put(node, currentAngle);
             }
-            return constraints;
+        }
+
+        @Override
+        protected void writeState(ImpredCheckpoint.StateOutput output) throws IOException {
+            writeNodeValues(output, previousAngles);
+            writeNodeValues(output, previousMovements);
+        }
+
+        @Override
+        protected void readState(ImpredCheckpoint.StateInput input) throws IOException {
+            readNodeValues(input, previousAngles);
+            readNodeValues(input, previousMovements);
+        }
+
+        /**
+         * Writes a map of node values.
+         *
+         * @param output the state output.
+         * @param values the values.
+         * @throws IOException if the writing fails.
+         */
+        private static void writeNodeValues(ImpredCheckpoint.StateOutput output, Map<Node, Double> values) throws IOException {
+            output.writeInt(values.size());
+            for (Map.Entry<Node, Double> entry : values.entrySet()) {
+                output.writeNode(entry.getKey());
+                output.writeDouble(entry.getValue());
+            }
+        }
+
+        /**
+         * Reads a map of node values, replacing the current content.
+         *
+         * @param input the state input.
+         * @param values the map to fill.
+         * @throws IOException if the reading fails.
+         */
+        private static void readNodeValues(ImpredCheckpoint.StateInput input, Map<Node, Double> values) throws IOException {
+            values.clear();
+            int size = input.readInt();
+            for (int i = 0; i < size; i++) {
+                values.put(input.readNode(), input.readDouble());
+            }
         }
 
     }
@@ -186,8 +344,7 @@ public abstract class ImpredConstraint extends ImpredElement {
         }
 
         @Override
-        protected NodeAttribute<Double> computeConstraints() {
-            NodeAttribute<Double> maxMovement = new NodeAttribute<>(Double.POSITIVE_INFINITY);
+        protected void computeConstraints(MaxMovements maxMovements) {
             for (Node node : nodes()) {
                 for (Edge edge : edges(node)) {
                     if (!edge.isNodeExtremity(node)) {
@@ -196,14 +353,13 @@ public abstract class ImpredConstraint extends ImpredElement {
                         Coordinates tPos = mirrorPositions().get(edge.target());
                         Coordinates projection = Geom2D.pointOnLineProjection(nPos, sPos, tPos);
                         if (Geom2D.isPointInSegment(projection, sPos, tPos)) {
-                            computeConstraintsProjInside(node, edge, projection, maxMovement);
+                            computeConstraintsProjInside(node, edge, projection, maxMovements);
                         } else {
-                            computeConstraintsProjOutside(node, edge, maxMovement);
+                            computeConstraintsProjOutside(node, edge, maxMovements);
                         }
                     }
                 }
             }
-            return maxMovement;
         }
 
         /**
@@ -212,16 +368,16 @@ public abstract class ImpredConstraint extends ImpredElement {
          * @param node the node.
          * @param edge the edge.
          * @param projection the node projection on the edge.
-         * @param maxMovement the max movements.
+         * @param maxMovements the max movements.
          */
-        protected void computeConstraintsProjInside(Node node, Edge edge, Coordinates projection, NodeAttribute<Double> maxMovement) {
+        protected void computeConstraintsProjInside(Node node, Edge edge, Coordinates projection, MaxMovements maxMovements) {
             Coordinates pn = projection.minus(mirrorPositions().get(node));
             double nodeCollisionAngle = Geom2D.angle(pn);
             double edgeCollisionAngle = nodeCollisionAngle + Math.PI;
             double collisionDistance = Geom2D.magnitude(pn) / 2;
-            reduceMovement(node, nodeCollisionAngle, collisionDistance, maxMovement);
-            reduceMovement(edge.source(), edgeCollisionAngle, collisionDistance, maxMovement);
-            reduceMovement(edge.target(), edgeCollisionAngle, collisionDistance, maxMovement);
+            reduceMovement(node, nodeCollisionAngle, collisionDistance, maxMovements);
+            reduceMovement(edge.source(), edgeCollisionAngle, collisionDistance, maxMovements);
+            reduceMovement(edge.target(), edgeCollisionAngle, collisionDistance, maxMovements);
         }
 
         /**
@@ -230,9 +386,9 @@ public abstract class ImpredConstraint extends ImpredElement {
          *
          * @param node the node.
          * @param edge the edge.
-         * @param maxMovement the max movements.
+         * @param maxMovements the max movements.
          */
-        protected void computeConstraintsProjOutside(Node node, Edge edge, NodeAttribute<Double> maxMovement) {
+        protected void computeConstraintsProjOutside(Node node, Edge edge, MaxMovements maxMovements) {
             Coordinates nodePos = mirrorPositions().get(node);
             Coordinates sourcePos = mirrorPositions().get(edge.source());
             Coordinates targetPos = mirrorPositions().get(edge.target());
@@ -259,9 +415,9 @@ public abstract class ImpredConstraint extends ImpredElement {
             double closeExtrCollDist = nodeCollDist;
             double farExtrCollDist = Geom2D.pointToLineDistance(farPos, axisPointA, axisPointB);
 
-            reduceMovement(node, nodeAngle, nodeCollDist, maxMovement);
-            reduceMovement(closeExtremity, edgeAngle, closeExtrCollDist, maxMovement);
-            reduceMovement(farExtremity, edgeAngle, farExtrCollDist, maxMovement);
+            reduceMovement(node, nodeAngle, nodeCollDist, maxMovements);
+            reduceMovement(closeExtremity, edgeAngle, closeExtrCollDist, maxMovements);
+            reduceMovement(farExtremity, edgeAngle, farExtrCollDist, maxMovements);
         }
 
         /**
@@ -271,13 +427,13 @@ public abstract class ImpredConstraint extends ImpredElement {
          * @param collisionAngle the angle of most direct collision.
          * @param collisionDistance the collision distance when moving on the
          * collision angle.
-         * @param maxMovement the max movements.
+         * @param maxMovements the max movements.
          */
-        protected void reduceMovement(Node node, double collisionAngle, double collisionDistance, NodeAttribute<Double> maxMovement) {
+        protected void reduceMovement(Node node, double collisionAngle, double collisionDistance, MaxMovements maxMovements) {
             double forceAngle = Geom2D.angle(forces().get(node));
             double forceCollAngle = Math.abs(Geom2D.normalizeRadiansAngle(forceAngle - collisionAngle));
             if (forceCollAngle < Math.PI / 2.0) {
-                maxMovement.set(node, Math.min(maxMovement.get(node), collisionDistance / Math.cos(forceCollAngle)));
+                maxMovements.reduceMin(maxMovements.index(node), collisionDistance / Math.cos(forceCollAngle));
             }
         }
 
@@ -315,14 +471,12 @@ public abstract class ImpredConstraint extends ImpredElement {
         }
 
         @Override
-        protected NodeAttribute<Double> computeConstraints() {
-            NodeAttribute<Double> maxMovement = new NodeAttribute<>(Double.POSITIVE_INFINITY);
-            for (Node node : mirrorGraph().nodes()) {
-                if (pinnedNodes.get(node)) {
-                    maxMovement.set(node, 0.0);
+        protected void computeConstraints(MaxMovements maxMovements) {
+            for (int nodeIndex = 0; nodeIndex < maxMovements.size(); nodeIndex++) {
+                if (pinnedNodes.get(maxMovements.node(nodeIndex))) {
+                    maxMovements.reduceMin(nodeIndex, 0.0);
                 }
             }
-            return maxMovement;
         }
 
     }
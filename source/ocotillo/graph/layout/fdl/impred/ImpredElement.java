@@ -20,6 +20,8 @@ import ocotillo.graph.Graph;
 import ocotillo.graph.NodeAttribute;
 import ocotillo.graph.extra.BendExplicitGraphSynchroniser;
 import ocotillo.graph.layout.locator.ElementLocator;
+import java.io.IOException;
+import java.util.Random;
 
 public class ImpredElement {
 
@@ -39,12 +41,14 @@ public class ImpredElement {
 
     /**
      * Returns the mirror graph to be used to compute the ImPrEd elements.
+     * During incremental iterations, this is the subgraph of the mirror graph
+     * being relaxed.
      *
      * @return the mirror graph.
      */
     protected final Graph mirrorGraph() {
         assert (impred != null) : "The ImPrEd element has not been attached yet.";
-        return impred.mirrorGraph;
+        return impred.activeGraph;
     }
 
     /**
@@ -68,13 +72,54 @@ public class ImpredElement {
     }
 
     /**
-     * Returns the locator that acts on the mirror graph.
+     * Returns the locator that acts on the mirror graph, or on the subgraph
+     * being relaxed during incremental iterations.
      *
      * @return the locator.
      */
     protected final ElementLocator locator() {
         assert (impred != null) : "The ImPrEd element has not been attached yet.";
-        return impred.locator;
+        return impred.activeLocator;
+    }
+
+    /**
+     * Returns the glyph geometry cache of the mirror graph.
+     *
+     * @return the glyph cache.
+     */
+    protected final ImpredGlyphCache glyphs() {
+        assert (impred != null) : "The ImPrEd element has not been attached yet.";
+        return impred.glyphs;
+    }
+
+    /**
+     * Returns the random generator to be used by the ImPrEd elements.
+     *
+     * @return the random generator.
+     */
+    protected final Random random() {
+        assert (impred != null) : "The ImPrEd element has not been attached yet.";
+        return impred.random;
+    }
+
+    /**
+     * Writes the state that the element keeps between iterations, so that
+     * the computation can be resumed from a checkpoint. Stateless elements
+     * write nothing.
+     *
+     * @param output the state output.
+     * @throws IOException if the writing fails.
+     */
+    protected void writeState(ImpredCheckpoint.StateOutput output) throws IOException {
+    }
+
+    /**
+     * Reads the state written by writeState.
+     *
+     * @param input the state input.
+     * @throws IOException if the reading fails.
+     */
+    protected void readState(ImpredCheckpoint.StateInput input) throws IOException {
     }
 
     /**
@@ -19,13 +19,9 @@ import ocotillo.geometry.Coordinates;
 import ocotillo.geometry.Geom2D;
 import ocotillo.geometry.GeomXD;
 import ocotillo.graph.Edge;
-import ocotillo.graph.EdgeAttribute;
 import ocotillo.graph.Node;
 import ocotillo.graph.NodeAttribute;
-import ocotillo.graph.StdAttribute;
-import ocotillo.graph.StdAttribute.NodeShape;
 import ocotillo.graph.extra.BendExplicitGraphSynchroniser.MirrorEdge;
-import ocotillo.graph.layout.Layout2D;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -64,12 +60,10 @@ public abstract class ImpredForce extends ImpredElement {
      * @return the distances.
      */
     protected Distances computeDistances(Node a, Node b, double temperature) {
-        NodeAttribute<Coordinates> mirrorSizes = mirrorGraph().nodeAttribute(StdAttribute.nodeSize);
-        NodeAttribute<NodeShape> mirrorShapes = mirrorGraph().nodeAttribute(StdAttribute.nodeShape);
         Coordinates aPos = mirrorPositions().get(a);
         Coordinates bPos = mirrorPositions().get(b);
         double distanceAtZeroSize = Geom2D.magnitude(bPos.minus(aPos));
-        double distanceAtFullZize = Layout2D.nodeNodeGlyphDistance(mirrorGraph(), a, b, mirrorPositions(), mirrorSizes, mirrorShapes);
+        double distanceAtFullZize = glyphs().nodeNodeDistance(a, b);
         double elemRadiusAtFullSize = distanceAtZeroSize - distanceAtFullZize;
         double currentElemRadius = elemRadiusAtFullSize * (1 - temperature);
         double currentDistance = distanceAtZeroSize - currentElemRadius;
@@ -86,13 +80,8 @@ public abstract class ImpredForce extends ImpredElement {
      * @return the distances.
      */
     protected Distances computeDistances(Node node, Edge edge, double temperature) {
-        NodeAttribute<Coordinates> mirrorSizes = mirrorGraph().nodeAttribute(StdAttribute.nodeSize);
-        NodeAttribute<NodeShape> mirrorShapes = mirrorGraph().nodeAttribute(StdAttribute.nodeShape);
-        EdgeAttribute<Double> mirrorEdgeWidths = mirrorGraph().edgeAttribute(StdAttribute.edgeWidth);
-        Coordinates nPos = mirrorPositions().get(node);
-        Coordinates ePos = Layout2D.closestEdgePoint(mirrorGraph(), nPos, edge, mirrorPositions(), null, null);
-        double distanceAtZeroSize = Geom2D.magnitude(nPos.minus(ePos));
-        double distanceAtFullZize = Layout2D.nodeEdgeGlyphDistance(mirrorGraph(), node, edge, mirrorPositions(), mirrorSizes, mirrorShapes, mirrorEdgeWidths, null, null);
+        double distanceAtZeroSize = glyphs().centerEdgeDistance(node, edge);
+        double distanceAtFullZize = glyphs().nodeEdgeDistance(node, edge);
         double elemRadiusAtFullSize = distanceAtZeroSize - distanceAtFullZize;
         double currentElemRadius = elemRadiusAtFullSize * (1 - temperature);
         double currentDistance = distanceAtZeroSize - currentElemRadius;
@@ -273,8 +262,8 @@ public abstract class ImpredForce extends ImpredElement {
          * node.
          */
         protected Collection<Node> secondLevelNodes(Node node) {
-            Collection<Node> nodes = new HashSet<>(mirrorGraph().nodes());
-            pruneDistantNodes(nodes, node);
+            double distanceToConsider = distanceActivityFactor * nodeNodeDistance;
+            Collection<Node> nodes = new HashSet<>(locator().getCloseNodes(node, distanceToConsider));
             pruneLowerIdNodes(nodes, node);
             return nodes;
         }
@@ -862,8 +851,8 @@ public abstract class ImpredForce extends ImpredElement {
         protected NodeAttribute<Coordinates> computeForces() {
             NodeAttribute<Coordinates> forces = new NodeAttribute<>(new Coordinates(0, 0));
             for (Node node : nodes()) {
-                double magnitude = Geom2D.randomDouble(maxMagnitude);
-                double angle = Geom2D.randomDouble(2 * Math.PI);
+                double magnitude = random().nextDouble() * maxMagnitude;
+                double angle = random().nextDouble() * 2 * Math.PI;
                 Coordinates compForce = Geom2D.unitVector(angle).timesIP(magnitude);
                 forces.set(node, compForce.plusIP(forces.get(node)));
             }
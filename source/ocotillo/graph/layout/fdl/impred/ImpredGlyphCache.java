@@ -0,0 +1,296 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.impred;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.Geom2D;
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.StdAttribute.NodeShape;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caches the glyph geometry of the mirror graph nodes during an ImPrEd
+ * iteration. The shape parameters of each node are read once per iteration,
+ * and the glyph radius in a given direction is computed from the direction
+ * components, without trigonometric functions. The distances are the same of
+ * the corresponding glyph distances in Layout2D, computed on the mirror graph
+ * where edges are straight segments.
+ */
+public class ImpredGlyphCache {
+
+    private final Graph mirrorGraph;
+    private final NodeAttribute<Coordinates> mirrorPositions;
+    private NodeAttribute<Coordinates> mirrorSizes;
+    private NodeAttribute<NodeShape> mirrorShapes;
+    private EdgeAttribute<Double> mirrorEdgeWidths;
+
+    private final Map<Node, Glyph> glyphs = new HashMap<>();
+
+    /**
+     * The cached geometry of a node glyph.
+     */
+    private static class Glyph {
+
+        double halfWidth;
+        double halfHeight;
+        boolean spheroid;
+    }
+
+    /**
+     * Constructs a glyph cache.
+     *
+     * @param mirrorGraph the mirror graph.
+     * @param mirrorPositions the mirror graph positions.
+     */
+    ImpredGlyphCache(Graph mirrorGraph, NodeAttribute<Coordinates> mirrorPositions) {
+        this.mirrorGraph = mirrorGraph;
+        this.mirrorPositions = mirrorPositions;
+    }
+
+    /**
+     * Reads the attribute handles and the glyph geometry of all nodes. Should
+     * be called at the beginning of each iteration.
+     */
+    void refresh() {
+        refresh(mirrorGraph.nodes());
+        if (glyphs.size() != mirrorGraph.nodeCount()) {
+            glyphs.keySet().retainAll(mirrorGraph.nodes());
+        }
+    }
+
+    /**
+     * Reads the attribute handles and the glyph geometry of the given nodes.
+     * Used when only part of the mirror graph is being relaxed.
+     *
+     * @param nodes the nodes to refresh.
+     */
+    void refresh(Collection<Node> nodes) {
+        mirrorSizes = mirrorGraph.nodeAttribute(StdAttribute.nodeSize);
+        mirrorShapes = mirrorGraph.nodeAttribute(StdAttribute.nodeShape);
+        mirrorEdgeWidths = mirrorGraph.edgeAttribute(StdAttribute.edgeWidth);
+        for (Node node : nodes) {
+            Glyph glyph = glyphs.get(node);
+            if (glyph == null) {
+                glyph = new Glyph();
+                glyphs.put(node, glyph);
+            }
+            read(node, glyph);
+        }
+    }
+
+    /**
+     * Computes the radius of a node glyph in the given direction.
+     *
+     * @param node the node.
+     * @param dx the x component of the direction.
+     * @param dy the y component of the direction.
+     * @return the distance between glyph center and glyph boundary in the
+     * given direction.
+     */
+    public double radius(Node node, double dx, double dy) {
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            return radius(glyph(node), 1, 0, 1);
+        }
+        return radius(glyph(node), dx, dy, length);
+    }
+
+    /**
+     * Computes the approximate distance between the glyph of two nodes, as in
+     * Layout2D.nodeNodeGlyphDistance.
+     *
+     * @param a the first node.
+     * @param b the second node.
+     * @return the distance between the glyph of the nodes.
+     */
+    public double nodeNodeDistance(Node a, Node b) {
+        Coordinates posA = mirrorPositions.get(a);
+        Coordinates posB = mirrorPositions.get(b);
+        double dx = posB.x() - posA.x();
+        double dy = posB.y() - posA.y();
+        double length = Math.sqrt(dx * dx + dy * dy);
+        if (Geom2D.almostEqual(posA, posB)) {
+            return length - radius(glyph(a), 1, 0, 1) - radius(glyph(b), 1, 0, 1);
+        }
+        return length - radius(glyph(a), dx, dy, length) - radius(glyph(b), dx, dy, length);
+    }
+
+    /**
+     * Computes the distance between the center of a node and an edge.
+     *
+     * @param node the node.
+     * @param edge the edge.
+     * @return the distance between node center and edge.
+     */
+    public double centerEdgeDistance(Node node, Edge edge) {
+        Coordinates position = mirrorPositions.get(node);
+        double[] closest = new double[2];
+        closestEdgePoint(position.x(), position.y(), edge, closest);
+        double dx = closest[0] - position.x();
+        double dy = closest[1] - position.y();
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Computes the approximate distance between the glyph of a node and that
+     * of an edge, as in Layout2D.nodeEdgeGlyphDistance.
+     *
+     * @param node the node.
+     * @param edge the edge.
+     * @return the distance between a node and an edge glyph.
+     */
+    public double nodeEdgeDistance(Node node, Edge edge) {
+        Glyph glyph = glyph(node);
+        Coordinates position = mirrorPositions.get(node);
+        double x = position.x();
+        double y = position.y();
+        double halfEdgeWidth = edgeWidth(edge) / 2;
+        double[] closest = new double[2];
+        double distance = Double.POSITIVE_INFINITY;
+        for (int corner = 0; corner < 4; corner++) {
+            double cornerX;
+            double cornerY;
+            if (glyph.spheroid) {
+                cornerX = x + (corner == 0 ? glyph.halfWidth : corner == 1 ? -glyph.halfWidth : 0);
+                cornerY = y + (corner == 2 ? -glyph.halfHeight : corner == 3 ? glyph.halfHeight : 0);
+            } else {
+                cornerX = x + (corner == 0 || corner == 3 ? glyph.halfWidth : -glyph.halfWidth);
+                cornerY = y + (corner < 2 ? glyph.halfHeight : -glyph.halfHeight);
+            }
+            closestEdgePoint(cornerX, cornerY, edge, closest);
+            double dx = closest[0] - x;
+            double dy = closest[1] - y;
+            double length = Math.sqrt(dx * dx + dy * dy);
+            double radius = length == 0 ? radius(glyph, 1, 0, 1) : radius(glyph, dx, dy, length);
+            distance = Math.min(distance, length - radius - halfEdgeWidth);
+        }
+        return distance;
+    }
+
+    /**
+     * Returns the width of an edge.
+     *
+     * @param edge the edge.
+     * @return the edge width.
+     */
+    public double edgeWidth(Edge edge) {
+        if (mirrorEdgeWidths == null) {
+            mirrorEdgeWidths = mirrorGraph.edgeAttribute(StdAttribute.edgeWidth);
+        }
+        return mirrorEdgeWidths.get(edge);
+    }
+
+    /**
+     * Returns the cached glyph of a node, reading it if the node has been
+     * inserted after the last refresh.
+     *
+     * @param node the node.
+     * @return the node glyph.
+     */
+    private Glyph glyph(Node node) {
+        Glyph glyph = glyphs.get(node);
+        if (glyph == null) {
+            if (mirrorSizes == null) {
+                mirrorSizes = mirrorGraph.nodeAttribute(StdAttribute.nodeSize);
+                mirrorShapes = mirrorGraph.nodeAttribute(StdAttribute.nodeShape);
+            }
+            glyph = new Glyph();
+            read(node, glyph);
+            glyphs.put(node, glyph);
+        }
+        return glyph;
+    }
+
+    /**
+     * Reads the geometry of a node glyph.
+     *
+     * @param node the node.
+     * @param glyph the glyph to fill.
+     */
+    private void read(Node node, Glyph glyph) {
+        Coordinates size = mirrorSizes.get(node);
+        NodeShape shape = mirrorShapes.get(node);
+        switch (shape) {
+            case cuboid:
+                glyph.spheroid = false;
+                break;
+            case spheroid:
+                glyph.spheroid = true;
+                break;
+            default:
+                throw new UnsupportedOperationException("The shape " + shape + " is not supported yet.");
+        }
+        glyph.halfWidth = size.x() / 2;
+        glyph.halfHeight = size.y() / 2;
+    }
+
+    /**
+     * Computes the radius of a glyph in a given direction. For boxes, the
+     * radius is given by the side hit by the direction ray. For spheroids,
+     * the radius is that of the ellipse point at the direction angle, as in
+     * Layout2D.nodeGlyphRadiusAtAngle.
+     *
+     * @param glyph the glyph.
+     * @param dx the x component of the direction.
+     * @param dy the y component of the direction.
+     * @param length the length of the direction vector, not zero.
+     * @return the glyph radius.
+     */
+    private static double radius(Glyph glyph, double dx, double dy, double length) {
+        if (glyph.spheroid) {
+            double x = dx * glyph.halfWidth;
+            double y = dy * glyph.halfHeight;
+            return Math.sqrt(x * x + y * y) / length;
+        }
+        double absX = Math.abs(dx);
+        double absY = Math.abs(dy);
+        if (absX * glyph.halfHeight > absY * glyph.halfWidth || absY == 0) {
+            return glyph.halfWidth * length / absX;
+        } else {
+            return glyph.halfHeight * length / absY;
+        }
+    }
+
+    /**
+     * Computes the closest point of an edge to a given point. The edges of
+     * the mirror graph are straight segments.
+     *
+     * @param x the x coordinate of the point.
+     * @param y the y coordinate of the point.
+     * @param edge the edge.
+     * @param closest the array where to write the closest point.
+     */
+    private void closestEdgePoint(double x, double y, Edge edge, double[] closest) {
+        Coordinates source = mirrorPositions.get(edge.source());
+        Coordinates target = mirrorPositions.get(edge.target());
+        double dx = target.x() - source.x();
+        double dy = target.y() - source.y();
+        double squaredLength = dx * dx + dy * dy;
+        double t = 0;
+        if (squaredLength > 0) {
+            t = Math.min(1, Math.max(0, ((x - source.x()) * dx + (y - source.y()) * dy) / squaredLength));
+        }
+        closest[0] = source.x() + t * dx;
+        closest[1] = source.y() + t * dy;
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.impred;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Edge;
+import ocotillo.graph.Graph;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.layout.GraphDistances;
+import java.util.Random;
+import org.ejml.data.DenseMatrix64F;
+import org.ejml.factory.DecompositionFactory;
+import org.ejml.interfaces.decomposition.EigenDecomposition;
+
+/**
+ * Computes the node positions used as starting point by ImPrEd.
+ */
+public abstract class ImpredInitialPlacement {
+
+    /**
+     * Sets the initial position of all the graph nodes.
+     *
+     * @param graph the graph.
+     * @param positions the node positions.
+     * @param random the random generator of the ImPrEd instance.
+     */
+    public abstract void place(Graph graph, NodeAttribute<Coordinates> positions, Random random);
+
+    /**
+     * Places the nodes with Pivot MDS. The distances from a set of pivots,
+     * chosen by max-min selection, are double centred and projected on the
+     * two main eigenvectors of the resulting pivot matrix. The computation
+     * requires a breadth first visit per pivot and the decomposition of a
+     * matrix as large as the number of pivots. Nodes with identical pivot
+     * distances are slightly jittered, so that they do not coincide.
+     */
+    public static class PivotMds extends ImpredInitialPlacement {
+
+        private final int pivots;
+        private final double edgeLength;
+
+        private static final double jitterFactor = 0.01;
+
+        /**
+         * Constructs a Pivot MDS placement.
+         *
+         * @param pivots the number of pivots.
+         * @param edgeLength the desired average edge length.
+         */
+        public PivotMds(int pivots, double edgeLength) {
+            if (pivots < 2 || edgeLength <= 0) {
+                throw new IllegalArgumentException("Pivot MDS requires at least two pivots and a positive edge length.");
+            }
+            this.pivots = pivots;
+            this.edgeLength = edgeLength;
+        }
+
+        @Override
+        public void place(Graph graph, NodeAttribute<Coordinates> positions, Random random) {
+            int nodeCount = graph.nodeCount();
+            if (nodeCount == 0) {
+                return;
+            }
+            GraphDistances distances = GraphDistances.fromPivots(graph, pivots);
+            int pivotCount = distances.sourceCount();
+            double[] x = new double[nodeCount];
+            double[] y = new double[nodeCount];
+            if (pivotCount >= 2) {
+                double[][] centred = centredSquaredDistances(distances);
+                DenseMatrix64F[] axes = mainEigenvectors(centred, pivotCount);
+                for (int i = 0; i < nodeCount; i++) {
+                    for (int p = 0; p < pivotCount; p++) {
+                        x[i] += centred[i][p] * axes[0].get(p);
+                        y[i] += centred[i][p] * axes[1].get(p);
+                    }
+                }
+            }
+            double scale = edgeLength / averageEdgeLength(graph, distances, x, y);
+
+            positions.startBulkNotification();
+            for (int i = 0; i < nodeCount; i++) {
+                double jitterX = (random.nextDouble() - 0.5) * jitterFactor * edgeLength;
+                double jitterY = (random.nextDouble() - 0.5) * jitterFactor * edgeLength;
+                positions.set(distances.node(i), new Coordinates(x[i] * scale + jitterX, y[i] * scale + jitterY));
+            }
+            positions.stopBulkNotification();
+        }
+
+        /**
+         * Computes the double centred matrix of the squared pivot distances.
+         * Unreachable nodes are considered one hop farther than the farthest
+         * reachable node.
+         *
+         * @param distances the pivot distances.
+         * @return the matrix, with one row per node and one column per pivot.
+         */
+        private static double[][] centredSquaredDistances(GraphDistances distances) {
+            int nodeCount = distances.nodeCount();
+            int pivotCount = distances.sourceCount();
+            int disconnectedHops = 0;
+            for (int p = 0; p < pivotCount; p++) {
+                for (int i = 0; i < nodeCount; i++) {
+                    if (distances.hops(p, i) != GraphDistances.unreachable) {
+                        disconnectedHops = Math.max(disconnectedHops, distances.hops(p, i) + 1);
+                    }
+                }
+            }
+
+            double[][] matrix = new double[nodeCount][pivotCount];
+            double[] rowMeans = new double[nodeCount];
+            double[] columnMeans = new double[pivotCount];
+            double totalMean = 0;
+            for (int i = 0; i < nodeCount; i++) {
+                for (int p = 0; p < pivotCount; p++) {
+                    int hops = distances.hops(p, i);
+                    double distance = hops == GraphDistances.unreachable ? disconnectedHops : hops;
+                    matrix[i][p] = distance * distance;
+                    rowMeans[i] += matrix[i][p] / pivotCount;
+                    columnMeans[p] += matrix[i][p] / nodeCount;
+                    totalMean += matrix[i][p] / ((double) nodeCount * pivotCount);
+                }
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                for (int p = 0; p < pivotCount; p++) {
+                    matrix[i][p] = -0.5 * (matrix[i][p] - rowMeans[i] - columnMeans[p] + totalMean);
+                }
+            }
+            return matrix;
+        }
+
+        /**
+         * Computes the two eigenvectors with largest eigenvalues of the pivot
+         * matrix CᵀC.
+         *
+         * @param centred the centred matrix C.
+         * @param pivotCount the number of pivots.
+         * @return the two eigenvectors.
+         */
+        private static DenseMatrix64F[] mainEigenvectors(double[][] centred, int pivotCount) {
+            DenseMatrix64F product = new DenseMatrix64F(pivotCount, pivotCount);
+            for (double[] row : centred) {
+                for (int p = 0; p < pivotCount; p++) {
+                    for (int q = p; q < pivotCount; q++) {
+                        product.add(p, q, row[p] * row[q]);
+                    }
+                }
+            }
+            for (int p = 0; p < pivotCount; p++) {
+                for (int q = 0; q < p; q++) {
+                    product.set(p, q, product.get(q, p));
+                }
+            }
+
+            EigenDecomposition<DenseMatrix64F> decomposition = DecompositionFactory.eig(pivotCount, true, true);
+            if (!decomposition.decompose(product)) {
+                throw new IllegalStateException("Cannot decompose the Pivot MDS matrix.");
+            }
+            int first = -1;
+            int second = -1;
+            for (int i = 0; i < decomposition.getNumberOfEigenvalues(); i++) {
+                double value = decomposition.getEigenvalue(i).getReal();
+                if (first < 0 || value > decomposition.getEigenvalue(first).getReal()) {
+                    second = first;
+                    first = i;
+                } else if (second < 0 || value > decomposition.getEigenvalue(second).getReal()) {
+                    second = i;
+                }
+            }
+            return new DenseMatrix64F[]{decomposition.getEigenVector(first), decomposition.getEigenVector(second)};
+        }
+
+        /**
+         * Computes the average edge length of the unscaled placement.
+         *
+         * @param graph the graph.
+         * @param distances the pivot distances, providing the node indices.
+         * @param x the x coordinates.
+         * @param y the y coordinates.
+         * @return the average edge length, or 1 if it cannot be computed.
+         */
+        private static double averageEdgeLength(Graph graph, GraphDistances distances, double[] x, double[] y) {
+            double totalLength = 0;
+            int edgeCount = 0;
+            for (Edge edge : graph.edges()) {
+                int source = distances.index(edge.source());
+                int target = distances.index(edge.target());
+                if (source != target) {
+                    totalLength += Math.hypot(x[source] - x[target], y[source] - y[target]);
+                    edgeCount++;
+                }
+            }
+            return edgeCount > 0 && totalLength > 0 ? totalLength / edgeCount : 1;
+        }
+    }
+}
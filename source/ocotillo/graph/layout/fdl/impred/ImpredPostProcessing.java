@@ -23,6 +23,7 @@ import ocotillo.graph.Edge;
 import ocotillo.graph.Node;
 import ocotillo.graph.extra.BendExplicitGraphSynchroniser;
 import ocotillo.graph.layout.Layout2D;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -73,6 +74,16 @@ public abstract class ImpredPostProcessing extends ImpredElement {
             }
         }
 
+        @Override
+        protected void writeState(ImpredCheckpoint.StateOutput output) throws IOException {
+            output.writeInt(refreshCounter);
+        }
+
+        @Override
+        protected void readState(ImpredCheckpoint.StateInput input) throws IOException {
+            refreshCounter = input.readInt();
+        }
+
         /**
          * Expands the flexible segments whose length exceed the expand
          * distance.
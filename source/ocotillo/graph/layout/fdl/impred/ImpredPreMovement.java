@@ -20,9 +20,10 @@ import ocotillo.geometry.Coordinates;
 import ocotillo.geometry.Geom2D;
 import ocotillo.graph.Node;
 import ocotillo.graph.layout.Layout2D;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import org.ejml.simple.SimpleMatrix;
 
 /**
  * Pre-movement step for the ImPrEd algorithm.
@@ -48,11 +49,22 @@ public abstract class ImpredPreMovement extends ImpredElement {
         private double cellDim;
         private final List<Node> constrainedNodes = new ArrayList<>();
 
-        private SimpleMatrix A;
-        private SimpleMatrix xB;
-        private SimpleMatrix yB;
-        private SimpleMatrix xV;
-        private SimpleMatrix yV;
+        private int rowCount;
+        private int cornersCount;
+        private int[] rowStarts = new int[1];
+        private int[] columns = new int[0];
+        private double[] coefficients = new double[0];
+        private double[] xB = new double[0];
+        private double[] yB = new double[0];
+        private double[] xV = new double[0];
+        private double[] yV = new double[0];
+        private double[] rowValues = new double[0];
+        private double[] diagonal = new double[0];
+        private double[] residual = new double[0];
+        private double[] product = new double[0];
+        private double[] direction = new double[0];
+
+        private static final double solverTolerance = 1e-10;
 
         /**
          * Constructs a vector field smoothing.
@@ -71,6 +83,20 @@ public abstract class ImpredPreMovement extends ImpredElement {
             recomputeMovements();
         }
 
+        @Override
+        protected void writeState(ImpredCheckpoint.StateOutput output) throws IOException {
+            output.writeInt(cornersCount);
+            output.writeDoubles(xV);
+            output.writeDoubles(yV);
+        }
+
+        @Override
+        protected void readState(ImpredCheckpoint.StateInput input) throws IOException {
+            cornersCount = input.readInt();
+            xV = input.readDoubles();
+            yV = input.readDoubles();
+        }
+
         /**
          * Computes the matrix dimension and initialize them.
          */
@@ -90,38 +116,74 @@ public abstract class ImpredPreMovement extends ImpredElement {
                 }
             }
 
-            int cornersCount = (xDim + 1) * (yDim + 1);
-            A = new SimpleMatrix(constrainedNodes.size() + cornersCount, cornersCount);
-            xB = new SimpleMatrix(constrainedNodes.size() + cornersCount, 1);
-            yB = new SimpleMatrix(constrainedNodes.size() + cornersCount, 1);
+            int previousCornersCount = cornersCount;
+            cornersCount = (xDim + 1) * (yDim + 1);
+            rowCount = constrainedNodes.size() + cornersCount;
+            int maxNonZeros = 4 * constrainedNodes.size() + 5 * cornersCount;
+            if (rowStarts.length < rowCount + 1) {
+                rowStarts = new int[rowCount + 1];
+            }
+            if (columns.length < maxNonZeros) {
+                columns = new int[maxNonZeros];
+                coefficients = new double[maxNonZeros];
+            }
+            if (xB.length < rowCount) {
+                xB = new double[rowCount];
+                yB = new double[rowCount];
+                rowValues = new double[rowCount];
+            }
+            if (cornersCount != previousCornersCount) {
+                xV = new double[cornersCount];
+                yV = new double[cornersCount];
+            }
+            if (diagonal.length < cornersCount) {
+                diagonal = new double[cornersCount];
+                residual = new double[cornersCount];
+                product = new double[cornersCount];
+                direction = new double[cornersCount];
+            }
         }
 
         /**
-         * Fills the value in the coefficient matrixes A and B
+         * Fills the coefficient matrix A, stored by rows in sparse form, and
+         * the known term vectors B. Each node row contains the four bilinear
+         * weights of its cell corners, while each corner row asks the corner
+         * to be the average of its neighbors.
          */
         private void fillCoeffMatrixes() {
             int rowIndex = 0;
+            int entry = 0;
             for (Node node : constrainedNodes) {
                 NodeCellInfo cellInfo = getNodeCellInfo(node);
-                A.set(rowIndex, cellInfo.leftBottomCorner, (1 - cellInfo.xOffsetInCell) * (1 - cellInfo.yOffsetInCell));
-                A.set(rowIndex, cellInfo.rightBottomCorner, cellInfo.xOffsetInCell * (1 - cellInfo.yOffsetInCell));
-                A.set(rowIndex, cellInfo.leftTopCorner, (1 - cellInfo.xOffsetInCell) * cellInfo.yOffsetInCell);
-                A.set(rowIndex, cellInfo.rightTopCorner, cellInfo.xOffsetInCell * cellInfo.yOffsetInCell);
+                rowStarts[rowIndex] = entry;
+                columns[entry] = cellInfo.leftBottomCorner;
+                coefficients[entry++] = (1 - cellInfo.xOffsetInCell) * (1 - cellInfo.yOffsetInCell);
+                columns[entry] = cellInfo.rightBottomCorner;
+                coefficients[entry++] = cellInfo.xOffsetInCell * (1 - cellInfo.yOffsetInCell);
+                columns[entry] = cellInfo.leftTopCorner;
+                coefficients[entry++] = (1 - cellInfo.xOffsetInCell) * cellInfo.yOffsetInCell;
+                columns[entry] = cellInfo.rightTopCorner;
+                coefficients[entry++] = cellInfo.xOffsetInCell * cellInfo.yOffsetInCell;
 
-                xB.set(rowIndex, 0, movements().get(node).x());
-                yB.set(rowIndex, 0, movements().get(node).y());
+                xB[rowIndex] = movements().get(node).x();
+                yB[rowIndex] = movements().get(node).y();
                 rowIndex++;
             }
 
-            int cornersCount = (xDim + 1) * (yDim + 1);
             for (int corner = 0; corner < cornersCount; corner++) {
                 List<Integer> neighbourCorners = getNeighborCorners(corner);
-                A.set(rowIndex, corner, 1);
+                rowStarts[rowIndex] = entry;
+                columns[entry] = corner;
+                coefficients[entry++] = 1;
                 for (int neighbourCorner : neighbourCorners) {
-                    A.set(rowIndex, neighbourCorner, -1.0 / neighbourCorners.size());
+                    columns[entry] = neighbourCorner;
+                    coefficients[entry++] = -1.0 / neighbourCorners.size();
                 }
+                xB[rowIndex] = 0;
+                yB[rowIndex] = 0;
                 rowIndex++;
             }
+            rowStarts[rowIndex] = entry;
         }
 
         /**
@@ -189,13 +251,120 @@ public abstract class ImpredPreMovement extends ImpredElement {
 
         /**
          * Compute the value of the corners, which are the variables in the
-         * system.
+         * system. The least squares solution is obtained by solving the normal
+         * equations with a conjugate gradient, starting from the values of the
+         * previous iteration. The Jacobi preconditioner, the diagonal of AᵀA,
+         * is shared by the two solves.
          */
         private void computeCornersVectors() {
-            SimpleMatrix tranA = A.transpose();
-            SimpleMatrix tildeA = (tranA.mult(A)).invert().mult(tranA);
-            xV = tildeA.mult(xB);
-            yV = tildeA.mult(yB);
+            if (constrainedNodes.isEmpty()) {
+                Arrays.fill(xV, 0);
+                Arrays.fill(yV, 0);
+                return;
+            }
+            Arrays.fill(diagonal, 0, cornersCount, 0);
+            for (int entry = 0; entry < rowStarts[rowCount]; entry++) {
+                diagonal[columns[entry]] += coefficients[entry] * coefficients[entry];
+            }
+            solveNormalEquations(xB, xV);
+            solveNormalEquations(yB, yV);
+        }
+
+        /**
+         * Solves the normal equations AᵀA v = Aᵀb with a Jacobi preconditioned
+         * conjugate gradient. The product AᵀA is never assembled: each step
+         * multiplies by A and then by Aᵀ, so that time and memory are linear in
+         * the non-zero coefficients. The work vectors are fields, allocated
+         * only when the grid grows.
+         *
+         * @param b the known term vector.
+         * @param v the corner vector, containing the initial guess and
+         * receiving the solution.
+         */
+        private void solveNormalEquations(double[] b, double[] v) {
+            multiplyByA(v, rowValues);
+            for (int row = 0; row < rowCount; row++) {
+                rowValues[row] = b[row] - rowValues[row];
+            }
+            multiplyByATransposed(rowValues, residual);
+            multiplyByATransposed(b, product);
+            double threshold = solverTolerance * Math.max(norm(product), Double.MIN_NORMAL);
+
+            double residualProduct = 0;
+            for (int i = 0; i < cornersCount; i++) {
+                direction[i] = residual[i] / diagonal[i];
+                residualProduct += residual[i] * direction[i];
+            }
+
+            int maxIterations = Math.max(100, 2 * cornersCount);
+            for (int iteration = 0; iteration < maxIterations && norm(residual) > threshold; iteration++) {
+                multiplyByA(direction, rowValues);
+                multiplyByATransposed(rowValues, product);
+                double curvature = 0;
+                for (int i = 0; i < cornersCount; i++) {
+                    curvature += direction[i] * product[i];
+                }
+                if (curvature <= 0) {
+                    break;
+                }
+                double alpha = residualProduct / curvature;
+                double newResidualProduct = 0;
+                for (int i = 0; i < cornersCount; i++) {
+                    v[i] += alpha * direction[i];
+                    residual[i] -= alpha * product[i];
+                    newResidualProduct += residual[i] * residual[i] / diagonal[i];
+                }
+                double beta = newResidualProduct / residualProduct;
+                residualProduct = newResidualProduct;
+                for (int i = 0; i < cornersCount; i++) {
+                    direction[i] = residual[i] / diagonal[i] + beta * direction[i];
+                }
+            }
+        }
+
+        /**
+         * Multiplies the coefficient matrix by a corner vector.
+         *
+         * @param vector the corner vector.
+         * @param result the vector receiving one value per row.
+         */
+        private void multiplyByA(double[] vector, double[] result) {
+            for (int row = 0; row < rowCount; row++) {
+                double sum = 0;
+                for (int entry = rowStarts[row]; entry < rowStarts[row + 1]; entry++) {
+                    sum += coefficients[entry] * vector[columns[entry]];
+                }
+                result[row] = sum;
+            }
+        }
+
+        /**
+         * Multiplies the transposed coefficient matrix by a row vector.
+         *
+         * @param vector the vector with one value per row.
+         * @param result the corner vector receiving the result.
+         */
+        private void multiplyByATransposed(double[] vector, double[] result) {
+            Arrays.fill(result, 0, cornersCount, 0);
+            for (int row = 0; row < rowCount; row++) {
+                for (int entry = rowStarts[row]; entry < rowStarts[row + 1]; entry++) {
+                    result[columns[entry]] += coefficients[entry] * vector[row];
+                }
+            }
+        }
+
+        /**
+         * Computes the euclidean norm of a corner vector.
+         *
+         * @param vector the vector.
+         * @return its norm.
+         */
+        private double norm(double[] vector) {
+            double sum = 0;
+            for (int i = 0; i < cornersCount; i++) {
+                sum += vector[i] * vector[i];
+            }
+            return Math.sqrt(sum);
         }
 
         /**
@@ -217,11 +386,11 @@ public abstract class ImpredPreMovement extends ImpredElement {
          * @param V the V vectors corresponding to the desired component.
          * @return the movement component for the node.
          */
-        private double computeComponent(NodeCellInfo cellInfo, SimpleMatrix V) {
-            double lb = (1 - cellInfo.xOffsetInCell) * (1 - cellInfo.yOffsetInCell) * V.get(cellInfo.leftBottomCorner);
-            double rb = cellInfo.xOffsetInCell * (1 - cellInfo.yOffsetInCell) * V.get(cellInfo.rightBottomCorner);
-            double lt = (1 - cellInfo.xOffsetInCell) * cellInfo.yOffsetInCell * V.get(cellInfo.leftTopCorner);
-            double rt = cellInfo.xOffsetInCell * cellInfo.yOffsetInCell * V.get(cellInfo.rightTopCorner);
+        private double computeComponent(NodeCellInfo cellInfo, double[] V) {
+            double lb = (1 - cellInfo.xOffsetInCell) * (1 - cellInfo.yOffsetInCell) * V[cellInfo.leftBottomCorner];
+            double rb = cellInfo.xOffsetInCell * (1 - cellInfo.yOffsetInCell) * V[cellInfo.rightBottomCorner];
+            double lt = (1 - cellInfo.xOffsetInCell) * cellInfo.yOffsetInCell * V[cellInfo.leftTopCorner];
+            double rt = cellInfo.xOffsetInCell * cellInfo.yOffsetInCell * V[cellInfo.rightTopCorner];
             return lb + rb + lt + rt;
         }
 
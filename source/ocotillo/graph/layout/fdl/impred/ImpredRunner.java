@@ -0,0 +1,297 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.impred;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Edge;
+import ocotillo.graph.Node;
+import ocotillo.graph.StdAttribute.ControlPoints;
+import ocotillo.graph.layout.LayoutSnapshot;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Executes ImPrEd on a worker thread. The intermediate and final layouts are
+ * published as immutable snapshots, which are swapped atomically so that
+ * viewers can render the latest one without blocking the layout loop. The
+ * runner never writes the graph: the caller applies the final snapshot with
+ * LayoutSnapshot.applyTo on the thread that owns the graph, such as the event
+ * dispatch thread when the graph is displayed. The graph should not be
+ * modified while the runner is active.
+ */
+public class ImpredRunner {
+
+    private final Impred impred;
+    private final int numberOfIterations;
+    private final int publicationIterations;
+    private final long publicationMilliseconds;
+
+    private final AtomicReference<LayoutSnapshot> latestSnapshot = new AtomicReference<>();
+    private final List<LayoutSnapshot.Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Object pauseLock = new Object();
+    private boolean paused = false;
+    private volatile boolean cancelled = false;
+    private FutureTask<LayoutSnapshot> task;
+
+    /**
+     * Builder for ImPrEd runners.
+     */
+    public static class ImpredRunnerBuilder {
+
+        private final Impred impred;
+        private final int numberOfIterations;
+        private int publicationIterations = 10;
+        private long publicationMilliseconds = 100;
+
+        /**
+         * Constructs an ImPrEd runner builder.
+         *
+         * @param impred the ImPrEd instance to execute.
+         * @param numberOfIterations the number of iterations.
+         */
+        public ImpredRunnerBuilder(Impred impred, int numberOfIterations) {
+            this.impred = impred;
+            this.numberOfIterations = numberOfIterations;
+        }
+
+        /**
+         * Indicates how often the snapshots are published. A snapshot is
+         * published whenever either the given iterations or the given time
+         * passed since the last publication. A zero value disables the
+         * corresponding criterion.
+         *
+         * @param iterations the iterations between publications.
+         * @param milliseconds the time between publications.
+         * @return the builder.
+         */
+        public ImpredRunnerBuilder withPublicationInterval(int iterations, long milliseconds) {
+            this.publicationIterations = iterations;
+            this.publicationMilliseconds = milliseconds;
+            return this;
+        }
+
+        /**
+         * Builds the ImPrEd runner.
+         *
+         * @return the runner.
+         */
+        public ImpredRunner build() {
+            if (numberOfIterations < 0 || publicationIterations < 0 || publicationMilliseconds < 0) {
+                throw new IllegalArgumentException("Invalid ImPrEd runner parameters.");
+            }
+            return new ImpredRunner(impred, numberOfIterations, publicationIterations, publicationMilliseconds);
+        }
+    }
+
+    /**
+     * Constructs an ImPrEd runner.
+     *
+     * @param impred the ImPrEd instance.
+     * @param numberOfIterations the number of iterations.
+     * @param publicationIterations the iterations between publications.
+     * @param publicationMilliseconds the time between publications.
+     */
+    private ImpredRunner(Impred impred, int numberOfIterations, int publicationIterations, long publicationMilliseconds) {
+        this.impred = impred;
+        this.numberOfIterations = numberOfIterations;
+        this.publicationIterations = publicationIterations;
+        this.publicationMilliseconds = publicationMilliseconds;
+    }
+
+    /**
+     * Starts the computation on a new daemon thread.
+     *
+     * @return the future final snapshot, to be applied to the graph by the
+     * caller.
+     */
+    public synchronized Future<LayoutSnapshot> start() {
+        if (task != null) {
+            throw new IllegalStateException("The ImPrEd runner has already been started.");
+        }
+        task = new FutureTask<>(new Callable<LayoutSnapshot>() {
+            @Override
+            public LayoutSnapshot call() throws Exception {
+                return run();
+            }
+        });
+        Thread thread = new Thread(task, "ocotillo-impred");
+        thread.setDaemon(true);
+        thread.start();
+        return task;
+    }
+
+    /**
+     * Returns the latest published snapshot.
+     *
+     * @return the latest snapshot, or null if none has been published yet.
+     */
+    public LayoutSnapshot latestSnapshot() {
+        return latestSnapshot.get();
+    }
+
+    /**
+     * Adds a listener for the snapshot publications.
+     *
+     * @param listener the listener.
+     */
+    public void addListener(LayoutSnapshot.Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener for the snapshot publications.
+     *
+     * @param listener the listener.
+     */
+    public void removeListener(LayoutSnapshot.Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Pauses the computation at the end of the current iteration.
+     */
+    public void pause() {
+        synchronized (pauseLock) {
+            paused = true;
+        }
+    }
+
+    /**
+     * Resumes a paused computation.
+     */
+    public void resume() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    /**
+     * Indicates whether the computation is paused.
+     *
+     * @return true if paused.
+     */
+    public boolean isPaused() {
+        synchronized (pauseLock) {
+            return paused;
+        }
+    }
+
+    /**
+     * Cancels the computation at the end of the current iteration.
+     *
+     * @return false if the computation already completed, true otherwise.
+     */
+    public synchronized boolean cancel() {
+        cancelled = true;
+        resume();
+        return task == null || task.cancel(true);
+    }
+
+    /**
+     * Executes the iterations, publishing the snapshots.
+     *
+     * @return the final snapshot.
+     * @throws InterruptedException if interrupted while paused.
+     */
+    private LayoutSnapshot run() throws InterruptedException {
+        impred.synchronizer.updateMirror();
+        int lastPublishedIteration = 0;
+        long lastPublicationTime = System.nanoTime();
+        for (int i = 0; i < numberOfIterations; i++) {
+            awaitResume();
+            impred.executeIteration(i, numberOfIterations);
+
+            int iteration = i + 1;
+            boolean iterationsPassed = publicationIterations > 0 && iteration - lastPublishedIteration >= publicationIterations;
+            boolean timePassed = publicationMilliseconds > 0 && (System.nanoTime() - lastPublicationTime) / 1000000 >= publicationMilliseconds;
+            if ((iterationsPassed || timePassed) && iteration < numberOfIterations) {
+                publish(takeSnapshot(iteration, false));
+                lastPublishedIteration = iteration;
+                lastPublicationTime = System.nanoTime();
+            }
+        }
+        checkCancelled();
+        LayoutSnapshot finalSnapshot = takeSnapshot(numberOfIterations, true);
+        publish(finalSnapshot);
+        return finalSnapshot;
+    }
+
+    /**
+     * Waits while the computation is paused.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private void awaitResume() throws InterruptedException {
+        synchronized (pauseLock) {
+            while (paused && !cancelled) {
+                pauseLock.wait();
+            }
+        }
+        checkCancelled();
+    }
+
+    /**
+     * Stops the computation if it has been cancelled.
+     */
+    private void checkCancelled() {
+        if (cancelled || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("The ImPrEd computation has been cancelled.");
+        }
+    }
+
+    /**
+     * Copies the current mirror positions of the original graph elements.
+     *
+     * @param iteration the iterations executed.
+     * @param complete true if the computation terminated.
+     * @return the snapshot.
+     */
+    private LayoutSnapshot takeSnapshot(int iteration, boolean complete) {
+        Map<Node, Coordinates> positions = new HashMap<>();
+        for (Node node : impred.originalGraph.nodes()) {
+            positions.put(node, new Coordinates(impred.mirrorPositions.get(node)));
+        }
+        Map<Edge, ControlPoints> bends = new HashMap<>();
+        for (Edge edge : impred.originalGraph.edges()) {
+            ControlPoints points = new ControlPoints();
+            for (Node bend : impred.synchronizer.getMirrorEdge(edge).bends()) {
+                points.add(new Coordinates(impred.mirrorPositions.get(bend)));
+            }
+            bends.put(edge, points);
+        }
+        return new LayoutSnapshot(positions, bends, iteration, complete);
+    }
+
+    /**
+     * Swaps in a new snapshot and notifies the listeners.
+     *
+     * @param snapshot the snapshot.
+     */
+    private void publish(LayoutSnapshot snapshot) {
+        latestSnapshot.set(snapshot);
+        for (LayoutSnapshot.Listener listener : listeners) {
+            listener.snapshotPublished(snapshot);
+        }
+    }
+}
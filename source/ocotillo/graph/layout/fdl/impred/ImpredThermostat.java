@@ -15,6 +15,8 @@
  */
 package ocotillo.graph.layout.fdl.impred;
 
+import java.io.IOException;
+
 /**
  * Temperature controller for the ImPrEd algorithm.
  */
@@ -24,6 +26,16 @@ public abstract class ImpredThermostat extends ImpredElement {
 
     protected abstract void updateTemperature(int currentIteration, int numberOfIterations);
 
+    @Override
+    protected void writeState(ImpredCheckpoint.StateOutput output) throws IOException {
+        output.writeDouble(temperature);
+    }
+
+    @Override
+    protected void readState(ImpredCheckpoint.StateInput input) throws IOException {
+        temperature = input.readDouble();
+    }
+
     /**
      * Thermostat that keeps the temperature constant throughout the
      * computation.
@@ -0,0 +1,157 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.multilevel;
+
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Groups the nodes of a graph to obtain a coarser version of it.
+ */
+public abstract class Coarsener {
+
+    /**
+     * Groups the nodes of a graph. Each group is identified by one of its
+     * nodes, its representative.
+     *
+     * @param graph the graph.
+     * @param nodeWeights the number of original nodes represented by each
+     * node.
+     * @param edgeWeights the number of original edges represented by each
+     * edge.
+     * @return the representative of the group of each node. Representatives
+     * are mapped to themselves.
+     */
+    public abstract Map<Node, Node> computeGroups(Graph graph, NodeAttribute<Double> nodeWeights, EdgeAttribute<Double> edgeWeights);
+
+    /**
+     * Returns the nodes of a graph sorted by degree.
+     *
+     * @param graph the graph.
+     * @param ascending true for ascending order, false for descending.
+     * @return the sorted nodes.
+     */
+    protected static List<Node> nodesByDegree(final Graph graph, final boolean ascending) {
+        List<Node> nodes = new ArrayList<>(graph.nodes());
+        final Map<Node, Integer> degrees = new HashMap<>();
+        for (Node node : nodes) {
+            degrees.put(node, graph.degree(node));
+        }
+        Collections.sort(nodes, new Comparator<Node>() {
+            @Override
+            public int compare(Node a, Node b) {
+                int comparison = Integer.compare(degrees.get(a), degrees.get(b));
+                if (comparison == 0) {
+                    comparison = a.compareTo(b);
+                }
+                return ascending ? comparison : -comparison;
+            }
+        });
+        return nodes;
+    }
+
+    /**
+     * Coarsener that collapses the pairs of nodes of a matching. Nodes are
+     * visited by increasing degree, and each node is matched to the unmatched
+     * neighbour with the heaviest connecting edge, relative to the weights of
+     * the two nodes. The number of nodes is at most halved at each level.
+     */
+    public static class EdgeMatching extends Coarsener {
+
+        @Override
+        public Map<Node, Node> computeGroups(Graph graph, NodeAttribute<Double> nodeWeights, EdgeAttribute<Double> edgeWeights) {
+            Map<Node, Node> groups = new HashMap<>();
+            for (Node node : nodesByDegree(graph, true)) {
+                if (groups.containsKey(node)) {
+                    continue;
+                }
+                Node bestNeighbour = null;
+                double bestScore = Double.NEGATIVE_INFINITY;
+                for (Edge edge : graph.inOutEdges(node)) {
+                    Node neighbour = edge.otherEnd(node);
+                    if (neighbour == node || groups.containsKey(neighbour)) {
+                        continue;
+                    }
+                    double score = edgeWeights.get(edge) / (nodeWeights.get(node) * nodeWeights.get(neighbour));
+                    if (score > bestScore) {
+                        bestScore = score;
+                        bestNeighbour = neighbour;
+                    }
+                }
+                groups.put(node, node);
+                if (bestNeighbour != null) {
+                    groups.put(bestNeighbour, node);
+                }
+            }
+            return groups;
+        }
+    }
+
+    /**
+     * Coarsener based on a maximal independent set. The set is built greedily
+     * visiting the nodes by decreasing degree, and each node not in the set
+     * joins the group of the neighbouring set node with the heaviest
+     * connecting edge. It reduces star-like graphs that matching cannot.
+     */
+    public static class MaximalIndependentSet extends Coarsener {
+
+        @Override
+        public Map<Node, Node> computeGroups(Graph graph, NodeAttribute<Double> nodeWeights, EdgeAttribute<Double> edgeWeights) {
+            Set<Node> independentSet = new HashSet<>();
+            Set<Node> covered = new HashSet<>();
+            for (Node node : nodesByDegree(graph, false)) {
+                if (covered.contains(node)) {
+                    continue;
+                }
+                independentSet.add(node);
+                covered.add(node);
+                for (Edge edge : graph.inOutEdges(node)) {
+                    covered.add(edge.otherEnd(node));
+                }
+            }
+
+            Map<Node, Node> groups = new HashMap<>();
+            for (Node node : graph.nodes()) {
+                if (independentSet.contains(node)) {
+                    groups.put(node, node);
+                    continue;
+                }
+                Node bestRepresentative = null;
+                double bestWeight = Double.NEGATIVE_INFINITY;
+                for (Edge edge : graph.inOutEdges(node)) {
+                    Node neighbour = edge.otherEnd(node);
+                    if (independentSet.contains(neighbour) && edgeWeights.get(edge) > bestWeight) {
+                        bestWeight = edgeWeights.get(edge);
+                        bestRepresentative = neighbour;
+                    }
+                }
+                groups.put(node, bestRepresentative);
+            }
+            return groups;
+        }
+    }
+}
@@ -0,0 +1,459 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.multilevel;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.Geom2D;
+import ocotillo.geometry.GeomXD;
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.ComponentLayout;
+import ocotillo.graph.layout.Layout2D;
+import ocotillo.graph.layout.fdl.impred.Impred;
+import ocotillo.graph.layout.fdl.impred.ImpredConstraint;
+import ocotillo.graph.layout.fdl.impred.ImpredForce;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multilevel force directed layout built on ImPrEd. The graph is coarsened
+ * into a hierarchy of smaller graphs, the coarsest graph is laid out from a
+ * random placement, and the positions are then prolongated level by level
+ * towards the original graph, refining each level with a smaller number of
+ * ImPrEd iterations. The finest drawing is scaled so that its average edge
+ * length matches the desired one, as the repulsion of dense graphs stretches
+ * the edges. The connected components are laid out independently and in
+ * parallel, and are then placed side by side.
+ */
+public class MultilevelImpred {
+
+    private final Coarsener coarsener;
+    private final double edgeLength;
+    private final int coarsestSize;
+    private final int coarsestIterations;
+    private final int finestIterations;
+    private final int threads;
+
+    private static final double minReduction = 0.9;
+    private static final double repulsionRange = 3;
+    private static final int maxLevels = 40;
+
+    /**
+     * Builder for MultilevelImpred.
+     */
+    public static class MultilevelImpredBuilder {
+
+        private Coarsener coarsener = new Coarsener.EdgeMatching();
+        private double edgeLength = 1;
+        private int coarsestSize = 50;
+        private int coarsestIterations = 300;
+        private int finestIterations = 30;
+        private int threads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Indicates the coarsener used to build the graph hierarchy.
+         *
+         * @param coarsener the coarsener.
+         * @return the builder.
+         */
+        public MultilevelImpredBuilder withCoarsener(Coarsener coarsener) {
+            this.coarsener = coarsener;
+            return this;
+        }
+
+        /**
+         * Indicates the desired edge length in the final layout.
+         *
+         * @param edgeLength the edge length.
+         * @return the builder.
+         */
+        public MultilevelImpredBuilder withEdgeLength(double edgeLength) {
+            this.edgeLength = edgeLength;
+            return this;
+        }
+
+        /**
+         * Indicates the number of nodes under which the coarsening stops.
+         *
+         * @param coarsestSize the maximum size of the coarsest graph.
+         * @return the builder.
+         */
+        public MultilevelImpredBuilder withCoarsestSize(int coarsestSize) {
+            this.coarsestSize = coarsestSize;
+            return this;
+        }
+
+        /**
+         * Indicates the iterations to be used for the coarsest level and for
+         * the finest one. The iterations double at each coarser level, up to
+         * those of the coarsest level.
+         *
+         * @param coarsestIterations the iterations for the coarsest level.
+         * @param finestIterations the iterations for the original graph.
+         * @return the builder.
+         */
+        public MultilevelImpredBuilder withIterations(int coarsestIterations, int finestIterations) {
+            this.coarsestIterations = coarsestIterations;
+            this.finestIterations = finestIterations;
+            return this;
+        }
+
+        /**
+         * Indicates the number of threads used to lay out the connected
+         * components.
+         *
+         * @param threads the number of threads.
+         * @return the builder.
+         */
+        public MultilevelImpredBuilder withThreads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Builds a multilevel layout.
+         *
+         * @return the multilevel layout.
+         */
+        public MultilevelImpred build() {
+            if (edgeLength <= 0 || coarsestSize < 1 || coarsestIterations < 0 || finestIterations < 0 || threads < 1) {
+                throw new IllegalArgumentException("Invalid multilevel layout parameters.");
+            }
+            return new MultilevelImpred(coarsener, edgeLength, coarsestSize, coarsestIterations, finestIterations, threads);
+        }
+    }
+
+    /**
+     * Constructs a multilevel layout.
+     *
+     * @param coarsener the coarsener.
+     * @param edgeLength the desired edge length.
+     * @param coarsestSize the maximum size of the coarsest graph.
+     * @param coarsestIterations the iterations for the coarsest level.
+     * @param finestIterations the iterations for the original graph.
+     * @param threads the number of threads.
+     */
+    private MultilevelImpred(Coarsener coarsener, double edgeLength, int coarsestSize, int coarsestIterations, int finestIterations, int threads) {
+        this.coarsener = coarsener;
+        this.edgeLength = edgeLength;
+        this.coarsestSize = coarsestSize;
+        this.coarsestIterations = coarsestIterations;
+        this.finestIterations = finestIterations;
+        this.threads = threads;
+    }
+
+    /**
+     * A level of the graph hierarchy.
+     */
+    private static class Level {
+
+        final Graph graph = new Graph();
+        final NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        final NodeAttribute<Double> nodeWeights = new NodeAttribute<>(1.0);
+        final EdgeAttribute<Double> edgeWeights = new EdgeAttribute<>(1.0);
+        final Map<Node, Node> coarserNodes = new HashMap<>();
+    }
+
+    /**
+     * Computes the layout of a graph, setting its node positions.
+     *
+     * @param graph the graph.
+     */
+    public void execute(Graph graph) {
+        ComponentLayout.Engine engine = new ComponentLayout.Engine() {
+            @Override
+            public void execute(Graph component) {
+                Map<Node, Node> copies = new HashMap<>();
+                Level finest = copyComponent(component, component.<Coordinates>nodeAttribute(StdAttribute.nodeSize), copies);
+                layoutComponent(finest);
+                NodeAttribute<Coordinates> positions = component.nodeAttribute(StdAttribute.nodePosition);
+                for (Map.Entry<Node, Node> entry : copies.entrySet()) {
+                    positions.set(entry.getKey(), finest.positions.get(entry.getValue()));
+                }
+            }
+        };
+        new ComponentLayout.ComponentLayoutBuilder(engine)
+                .withSpacing(edgeLength)
+                .withThreads(threads)
+                .build()
+                .execute(graph);
+    }
+
+    /**
+     * Lays out a connected component through its hierarchy.
+     *
+     * @param component the finest level of the component.
+     */
+    private void layoutComponent(Level component) {
+        if (component.graph.nodeCount() == 1) {
+            return;
+        }
+        List<Level> hierarchy = buildHierarchy(component);
+        int originalSize = component.graph.nodeCount();
+
+        Level coarsest = hierarchy.get(hierarchy.size() - 1);
+        double coarsestLength = levelEdgeLength(originalSize, coarsest);
+        double side = Math.sqrt(coarsest.graph.nodeCount()) * coarsestLength;
+        for (Node node : coarsest.graph.nodes()) {
+            coarsest.positions.set(node, new Coordinates(GeomXD.randomDouble(side), GeomXD.randomDouble(side)));
+        }
+        refine(coarsest, coarsestLength, coarsestIterations);
+
+        for (int i = hierarchy.size() - 2; i >= 0; i--) {
+            Level level = hierarchy.get(i);
+            Level coarser = hierarchy.get(i + 1);
+            double length = levelEdgeLength(originalSize, level);
+            prolongate(level, coarser, length);
+            int iterations = finestIterations;
+            for (int j = 0; j < i && iterations < coarsestIterations; j++) {
+                iterations *= 2;
+            }
+            refine(level, length, Math.min(iterations, coarsestIterations));
+        }
+        scaleToEdgeLength(component);
+    }
+
+    /**
+     * Scales the drawing of a level around its barycentre, so that its
+     * average edge length matches the desired one. The drawing is not shrunk
+     * when this would make the nodes overlap.
+     *
+     * @param level the level.
+     */
+    private void scaleToEdgeLength(Level level) {
+        double totalLength = 0;
+        for (Edge edge : level.graph.edges()) {
+            totalLength += Geom2D.magnitude(level.positions.get(edge.source()).minus(level.positions.get(edge.target())));
+        }
+        if (level.graph.edgeCount() == 0 || totalLength == 0) {
+            return;
+        }
+        double scaling = edgeLength * level.graph.edgeCount() / totalLength;
+        Coordinates barycentre = new Coordinates(0, 0);
+        for (Node node : level.graph.nodes()) {
+            barycentre.plusIP(level.positions.get(node));
+        }
+        barycentre.divideIP(level.graph.nodeCount());
+        boolean overlapping = scaling < 1 && Layout2D.doNodesOverlap(level.graph);
+        Map<Node, Coordinates> previousPositions = new HashMap<>();
+        for (Node node : level.graph.nodes()) {
+            Coordinates position = level.positions.get(node);
+            previousPositions.put(node, position);
+            level.positions.set(node, barycentre.plus(position.minus(barycentre).timesIP(scaling)));
+        }
+        if (scaling < 1 && !overlapping && Layout2D.doNodesOverlap(level.graph)) {
+            for (Map.Entry<Node, Coordinates> entry : previousPositions.entrySet()) {
+                level.positions.set(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Computes the desired edge length at a given level, so that the levels
+     * cover approximately the same area.
+     *
+     * @param originalSize the number of nodes in the finest level.
+     * @param level the level.
+     * @return the edge length for the level.
+     */
+    private double levelEdgeLength(int originalSize, Level level) {
+        return edgeLength * Math.sqrt((double) originalSize / level.graph.nodeCount());
+    }
+
+    /**
+     * Builds the hierarchy of a component by repeated coarsening.
+     *
+     * @param finest the finest level.
+     * @return the levels, from the finest to the coarsest.
+     */
+    private List<Level> buildHierarchy(Level finest) {
+        List<Level> hierarchy = new ArrayList<>();
+        hierarchy.add(finest);
+        Level current = finest;
+        while (current.graph.nodeCount() > coarsestSize && hierarchy.size() < maxLevels) {
+            Level coarser = coarsen(current);
+            if (coarser.graph.nodeCount() > minReduction * current.graph.nodeCount()) {
+                current.coarserNodes.clear();
+                break;
+            }
+            hierarchy.add(coarser);
+            current = coarser;
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Builds the coarser version of a level.
+     *
+     * @param level the level.
+     * @return the coarser level.
+     */
+    private Level coarsen(Level level) {
+        Map<Node, Node> groups = coarsener.computeGroups(level.graph, level.nodeWeights, level.edgeWeights);
+        Level coarser = new Level();
+        Map<Node, Node> representativeNodes = new HashMap<>();
+        for (Node node : level.graph.nodes()) {
+            Node representative = groups.get(node);
+            Node coarseNode = representativeNodes.get(representative);
+            if (coarseNode == null) {
+                coarseNode = coarser.graph.newNode();
+                coarser.nodeWeights.set(coarseNode, 0.0);
+                representativeNodes.put(representative, coarseNode);
+            }
+            coarser.nodeWeights.set(coarseNode, coarser.nodeWeights.get(coarseNode) + level.nodeWeights.get(node));
+            level.coarserNodes.put(node, coarseNode);
+        }
+
+        Map<Node, Map<Node, Edge>> coarseEdges = new HashMap<>();
+        for (Edge edge : level.graph.edges()) {
+            Node source = level.coarserNodes.get(edge.source());
+            Node target = level.coarserNodes.get(edge.target());
+            if (source == target) {
+                continue;
+            }
+            if (source.compareTo(target) > 0) {
+                Node swap = source;
+                source = target;
+                target = swap;
+            }
+            Map<Node, Edge> sourceEdges = coarseEdges.get(source);
+            if (sourceEdges == null) {
+                sourceEdges = new HashMap<>();
+                coarseEdges.put(source, sourceEdges);
+            }
+            Edge coarseEdge = sourceEdges.get(target);
+            if (coarseEdge == null) {
+                coarseEdge = coarser.graph.newEdge(source, target);
+                coarser.edgeWeights.set(coarseEdge, 0.0);
+                sourceEdges.put(target, coarseEdge);
+            }
+            coarser.edgeWeights.set(coarseEdge, coarser.edgeWeights.get(coarseEdge) + level.edgeWeights.get(edge));
+        }
+        return coarser;
+    }
+
+    /**
+     * Places the nodes of a level around the position of their group in the
+     * coarser level.
+     *
+     * @param level the level to place.
+     * @param coarser the coarser level, already laid out.
+     * @param length the edge length of the level to place.
+     */
+    private void prolongate(Level level, Level coarser, double length) {
+        for (Node node : level.graph.nodes()) {
+            Coordinates groupPosition = coarser.positions.get(level.coarserNodes.get(node));
+            Coordinates jitter = Geom2D.unitVector(GeomXD.randomDouble(2 * Math.PI)).timesIP(length * GeomXD.randomDouble(0.5));
+            level.positions.set(node, groupPosition.plus(jitter));
+        }
+    }
+
+    /**
+     * Refines the layout of a level with ImPrEd.
+     *
+     * @param level the level.
+     * @param length the desired edge length for the level.
+     * @param iterations the number of iterations.
+     */
+    private void refine(Level level, double length, int iterations) {
+        if (iterations == 0) {
+            return;
+        }
+        Impred impred = new Impred.ImpredBuilder(level.graph)
+                .withLocatorCellSize(repulsionRange * length)
+                .withForce(new WeightedEdgeAttraction(length, level))
+                .withForce(new ImpredForce.NodeNodeRepulsion(length))
+                .withConstraint(new ImpredConstraint.DecreasingMaxMovement(length))
+                .build();
+        impred.iterate(iterations);
+        impred.close();
+    }
+
+    /**
+     * Copies a connected component in the finest level of its hierarchy.
+     *
+     * @param component the component graph.
+     * @param sizes the component node sizes.
+     * @param copies the map where to store the copy of each component node.
+     * @return the finest level of the component.
+     */
+    private static Level copyComponent(Graph component, NodeAttribute<Coordinates> sizes, Map<Node, Node> copies) {
+        Level level = new Level();
+        NodeAttribute<Coordinates> copySizes = level.graph.nodeAttribute(StdAttribute.nodeSize);
+        for (Node node : component.nodes()) {
+            Node copy = level.graph.newNode();
+            copySizes.set(copy, sizes.get(node));
+            copies.put(node, copy);
+        }
+        for (Node node : component.nodes()) {
+            for (Edge edge : component.outEdges(node)) {
+                if (edge.source() != edge.target()) {
+                    level.graph.newEdge(copies.get(edge.source()), copies.get(edge.target()));
+                }
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Edge attraction whose intensity is proportional to the number of
+     * original edges represented by each edge of the level, relative to the
+     * average one. On the finest level all the edges have the same intensity.
+     */
+    private static class WeightedEdgeAttraction extends ImpredForce.EdgeAttraction {
+
+        private final Graph graph;
+        private final EdgeAttribute<Double> weights;
+        private final double averageWeight;
+
+        /**
+         * Constructs a weighted edge attraction.
+         *
+         * @param edgeLength the desired edge length.
+         * @param level the level.
+         */
+        WeightedEdgeAttraction(double edgeLength, Level level) {
+            super(edgeLength);
+            this.graph = level.graph;
+            this.weights = level.edgeWeights;
+            double totalWeight = 0;
+            for (Edge edge : graph.edges()) {
+                totalWeight += weights.get(edge);
+            }
+            this.averageWeight = graph.edgeCount() > 0 ? totalWeight / graph.edgeCount() : 1;
+        }
+
+        @Override
+        protected NodeAttribute<Coordinates> computeForces() {
+            NodeAttribute<Coordinates> forces = new NodeAttribute<>(new Coordinates(0, 0));
+            for (Edge edge : graph.edges()) {
+                double intensity = weights.get(edge) / averageWeight;
+                for (Edge segment : synchronizer().getMirrorEdge(edge).segments()) {
+                    Coordinates[] compForces = computeForces(segment);
+                    forces.set(segment.source(), compForces[0].timesIP(intensity).plusIP(forces.get(segment.source())));
+                    forces.set(segment.target(), compForces[1].timesIP(intensity).plusIP(forces.get(segment.target())));
+                }
+            }
+            return forces;
+        }
+    }
+}
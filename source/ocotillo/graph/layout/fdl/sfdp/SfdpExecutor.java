@@ -20,6 +20,9 @@ import ocotillo.graph.Graph;
 import ocotillo.graph.Node;
 import ocotillo.graph.NodeAttribute;
 import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.ComponentLayout;
+import ocotillo.graph.layout.LayoutCache;
+import ocotillo.graph.serialization.dot.DotProcessRunner;
 import ocotillo.graph.serialization.dot.DotReader;
 import ocotillo.graph.serialization.dot.DotReader.DotReaderBuilder;
 import ocotillo.graph.serialization.dot.DotWriter;
@@ -27,23 +30,19 @@ import ocotillo.graph.serialization.dot.DotWriter.DotWriterBuilder;
 import ocotillo.graph.serialization.dot.DotValueConverter.PositionConverter;
 import ocotillo.graph.serialization.dot.DotValueConverter.SizeConverter;
 import ocotillo.graph.serialization.dot.DotValueConverter.SizeDimensionConverter;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
 import java.util.Arrays;
-import java.util.List;
-import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.DefaultExecutor;
-import org.apache.commons.exec.PumpStreamHandler;
 
 /**
- * Executor for GraphViz's Scalable Force Directed Placement algorithm.
+ * Executor for GraphViz's Scalable Force Directed Placement algorithm. The
+ * executor is thread-safe, and can be used as component layout engine.
  */
 public class SfdpExecutor {
 
-    private final String[] arguments;
+    private final DotProcessRunner runner;
     private final DotReader dotReader;
     private final DotWriter dotWriter;
+    private final LayoutCache cache;
+    private final String cacheKey;
 
     /**
      * Builds a sfdp executor.
@@ -51,8 +50,10 @@ public class SfdpExecutor {
     public static class SfdpBuilder {
 
         private String[] arguments;
+        private long timeout = 0;
         private DotReader dotReader;
         private DotWriter dotWriter;
+        private LayoutCache cache = null;
 
         /**
          * Constructs a SfdpBuilder.
@@ -85,6 +86,18 @@ public class SfdpExecutor {
             return this;
         }
 
+        /**
+         * Indicates the maximum running time of the algorithm. A zero value
+         * disables the timeout.
+         *
+         * @param milliseconds the timeout in milliseconds.
+         * @return the builder.
+         */
+        public SfdpBuilder withTimeout(long milliseconds) {
+            this.timeout = milliseconds;
+            return this;
+        }
+
         /**
          * Indicates which dot reader to use to convert the algorithm output
          * into graph positions.
@@ -109,52 +122,90 @@ public class SfdpExecutor {
             return this;
         }
 
+        /**
+         * Indicates the cache where the computed layouts are stored. Graphs
+         * whose layout is in the cache are not passed to sfdp.
+         *
+         * @param cache the layout cache.
+         * @return the builder.
+         */
+        public SfdpBuilder withCache(LayoutCache cache) {
+            this.cache = cache;
+            return this;
+        }
+
         /**
          * Builds a sfdp executor.
          *
          * @return the sfdp executor.
          */
         public SfdpExecutor build() {
-            return new SfdpExecutor(arguments, dotReader, dotWriter);
+            for (String argument : arguments) {
+                assert (argument.startsWith("-") && !argument.startsWith("-o") && !argument.startsWith("-O")) : "Arguments that control the input/ouput streams cannot be used here.";
+            }
+            DotProcessRunner.checkExecutable("sfdp -V", "sfdp");
+            DotProcessRunner runner = new DotProcessRunner.DotProcessRunnerBuilder("sfdp")
+                    .withArguments(arguments)
+                    .withTimeout(timeout)
+                    .build();
+            return build(runner);
+        }
+
+        /**
+         * Builds a sfdp executor that uses the given process runner.
+         *
+         * @param runner the process runner.
+         * @return the sfdp executor.
+         */
+        SfdpExecutor build(DotProcessRunner runner) {
+            return new SfdpExecutor(runner, dotReader, dotWriter, cache, "sfdp " + Arrays.toString(arguments));
         }
     }
 
     /**
      * Constructs a sfdp executor.
      *
-     * @param arguments the arguments.
+     * @param runner the process runner.
      * @param dotReader the dot reader.
      * @param dotWriter the dot writer.
+     * @param cache the layout cache, or null.
+     * @param cacheKey the key that identifies this executor in the cache.
      */
-    private SfdpExecutor(String[] arguments, DotReader dotReader, DotWriter dotWriter) {
-        checkExecutable();
-        this.arguments = arguments;
+    private SfdpExecutor(DotProcessRunner runner, DotReader dotReader, DotWriter dotWriter, LayoutCache cache, String cacheKey) {
+        this.runner = runner;
         this.dotReader = dotReader;
         this.dotWriter = dotWriter;
+        this.cache = cache;
+        this.cacheKey = cacheKey;
     }
 
     /**
-     * Checks if the executable exists.
+     * Runs the algorithm to compute the new positions for the given graph.
+     *
+     * @param graph the graph.
      */
-    private static void checkExecutable() {
-        try {
-            DefaultExecutor executor = new DefaultExecutor();
-            executor.setStreamHandler(new PumpStreamHandler(new ByteArrayOutputStream()));
-            executor.execute(CommandLine.parse("sfdp -V"));
-        } catch (IOException ex) {
-            throw new IllegalStateException("sfdp executable has not been found.");
+    public void execute(Graph graph) {
+        if (cache == null) {
+            compute(graph);
+        } else {
+            cache.execute(graph, cacheKey, new ComponentLayout.Engine() {
+                @Override
+                public void execute(Graph graph) {
+                    compute(graph);
+                }
+            });
         }
     }
 
     /**
-     * Runs the algorithm to compute the new positions for the given graph.
+     * Runs sfdp on the given graph and copies the computed positions. The
+     * dot reader and writer are copied, so that concurrent calls do not
+     * share their parsing state.
      *
      * @param graph the graph.
      */
-    public void execute(Graph graph) {
-        List<String> dotInput = dotWriter.writeGraph(graph);
-        List<String> dotOutput = run(dotInput);
-        Graph generatedGraph = dotReader.parseFile(dotOutput);
+    private void compute(Graph graph) {
+        Graph generatedGraph = runner.run(graph, dotWriter.copy(), dotReader.copy());
         NodeAttribute<Coordinates> newPositions = generatedGraph.nodeAttribute(StdAttribute.nodePosition);
         NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
         for(Node node : graph.nodes()){
@@ -162,61 +213,4 @@ public class SfdpExecutor {
             positions.set(node, newPositions.get(correspondingNode));
         }
     }
-
-    /**
-     * Runs the algorithm.
-     *
-     * @param dotInput the dot input.
-     * @return the dot output.
-     */
-    private List<String> run(List<String> dotInput) {
-        for (String argment : arguments) {
-            assert (argment.startsWith("-") && !argment.startsWith("-o") && !argment.startsWith("-O")) : "Arguments that control the input/ouput streams cannot be used here.";
-        }
-
-        CommandLine cmdLine = new CommandLine("sfdp");
-        cmdLine.addArguments(arguments);
-
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(listToString(dotInput).getBytes());
-        ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-        try {
-            DefaultExecutor executor = new DefaultExecutor();
-            executor.setStreamHandler(new PumpStreamHandler(outputStream, errorStream, inputStream));
-            executor.execute(cmdLine);
-        } catch (IOException ex) {
-            System.err.println("ERROR: " + errorStream.toString() + "\n");
-            System.out.println("OUTPUT: " + outputStream.toString() + "\n");
-            throw new IllegalStateException("Error while executing sfdp.");
-        }
-
-        return stringToList(outputStream.toString());
-    }
-
-    /**
-     * Converts a list of lines into a multi-line string.
-     *
-     * @param list the list of lines.
-     * @return the multi-line string.
-     */
-    private static String listToString(List<String> list) {
-        StringBuilder builder = new StringBuilder();
-        for (String string : list) {
-            builder.append(string);
-            builder.append("\n");
-        }
-        return builder.toString();
-    }
-
-    /**
-     * Converts a multi-line string into a list of lines.
-     *
-     * @param string the multi-line string.
-     * @return the list of lines.
-     */
-    private static List<String> stringToList(String string) {
-        return Arrays.asList(string.split("\n"));
-    }
-
 }
@@ -0,0 +1,752 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.sfdp;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Edge;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * In-process implementation of the Scalable Force Directed Placement
+ * algorithm. The graph is coarsened by edge matching into a hierarchy of
+ * smaller graphs, the coarsest graph is laid out from a random placement, and
+ * the positions are then prolongated level by level towards the original
+ * graph. Each level is relaxed with the spring-electrical model, using a
+ * Barnes-Hut quadtree to approximate the repulsions and an adaptive step
+ * length. The forces are computed in parallel. The final layout is scaled so
+ * that the average edge length matches the desired one.
+ */
+public class SfdpLayout {
+
+    private final double edgeLength;
+    private final int maxIterations;
+    private final double tolerance;
+    private final double theta;
+    private final int coarsestSize;
+    private final int threads;
+    private final Random random;
+
+    private static final double repulsionStrength = 0.2;
+    private static final double stepFactor = 0.9;
+    private static final int stepIncreaseProgress = 5;
+    private static final double minReduction = 0.75;
+    private static final int maxLevels = 40;
+    private static final int minChunkSize = 256;
+
+    /**
+     * Builds a sfdp layout.
+     */
+    public static class SfdpLayoutBuilder {
+
+        private double edgeLength = 1;
+        private int maxIterations = 200;
+        private double tolerance = 0.01;
+        private double theta = 1.2;
+        private int coarsestSize = 50;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private Random random = new Random();
+
+        /**
+         * Indicates the desired average edge length.
+         *
+         * @param edgeLength the edge length.
+         * @return the builder.
+         */
+        public SfdpLayoutBuilder withEdgeLength(double edgeLength) {
+            this.edgeLength = edgeLength;
+            return this;
+        }
+
+        /**
+         * Indicates when to stop relaxing a level. The relaxation terminates
+         * when the step length falls below the given fraction of the edge
+         * length, or after the maximum number of iterations.
+         *
+         * @param maxIterations the maximum iterations per level.
+         * @param tolerance the step length tolerance.
+         * @return the builder.
+         */
+        public SfdpLayoutBuilder withIterations(int maxIterations, double tolerance) {
+            this.maxIterations = maxIterations;
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * Indicates the Barnes-Hut opening criterion. A quadtree cell is
+         * approximated by its centre of mass when its width is smaller than
+         * theta times its distance. Higher values are faster but less
+         * accurate.
+         *
+         * @param theta the opening criterion.
+         * @return the builder.
+         */
+        public SfdpLayoutBuilder withTheta(double theta) {
+            this.theta = theta;
+            return this;
+        }
+
+        /**
+         * Indicates the number of nodes under which the coarsening stops.
+         *
+         * @param coarsestSize the coarsest graph size.
+         * @return the builder.
+         */
+        public SfdpLayoutBuilder withCoarsestSize(int coarsestSize) {
+            this.coarsestSize = coarsestSize;
+            return this;
+        }
+
+        /**
+         * Indicates the number of threads used to compute the forces.
+         *
+         * @param threads the number of threads.
+         * @return the builder.
+         */
+        public SfdpLayoutBuilder withThreads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Indicates the seed used for the coarsening and the initial
+         * placement.
+         *
+         * @param seed the seed.
+         * @return the builder.
+         */
+        public SfdpLayoutBuilder withRandomSeed(long seed) {
+            this.random = new Random(seed);
+            return this;
+        }
+
+        /**
+         * Builds a sfdp layout.
+         *
+         * @return the sfdp layout.
+         */
+        public SfdpLayout build() {
+            if (edgeLength <= 0 || maxIterations < 0 || tolerance <= 0 || theta < 0 || coarsestSize < 2 || threads < 1) {
+                throw new IllegalArgumentException("Invalid sfdp parameters.");
+            }
+            return new SfdpLayout(edgeLength, maxIterations, tolerance, theta, coarsestSize, threads, random);
+        }
+    }
+
+    /**
+     * Constructs a sfdp layout.
+     *
+     * @param edgeLength the desired edge length.
+     * @param maxIterations the maximum iterations per level.
+     * @param tolerance the step length tolerance.
+     * @param theta the Barnes-Hut opening criterion.
+     * @param coarsestSize the coarsest graph size.
+     * @param threads the number of threads.
+     * @param random the random number generator.
+     */
+    private SfdpLayout(double edgeLength, int maxIterations, double tolerance, double theta, int coarsestSize, int threads, Random random) {
+        this.edgeLength = edgeLength;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+        this.theta = theta;
+        this.coarsestSize = coarsestSize;
+        this.threads = threads;
+        this.random = random;
+    }
+
+    /**
+     * Computes the layout of a graph, setting its node positions.
+     *
+     * @param graph the graph.
+     */
+    public void execute(Graph graph) {
+        if (graph.nodeCount() == 0) {
+            return;
+        }
+        List<Node> nodes = new ArrayList<>(graph.nodes());
+        Level finest = new Level(graph, nodes);
+        List<Level> hierarchy = new ArrayList<>();
+        hierarchy.add(finest);
+        while (hierarchy.size() < maxLevels) {
+            Level level = hierarchy.get(hierarchy.size() - 1);
+            if (level.nodeCount <= coarsestSize) {
+                break;
+            }
+            Level coarser = level.coarsen(random);
+            if (coarser.nodeCount > minReduction * level.nodeCount) {
+                break;
+            }
+            hierarchy.add(coarser);
+        }
+
+        Level coarsest = hierarchy.get(hierarchy.size() - 1);
+        double side = Math.sqrt(coarsest.nodeCount) * edgeLength;
+        for (int i = 0; i < coarsest.nodeCount; i++) {
+            coarsest.x[i] = random.nextDouble() * side;
+            coarsest.y[i] = random.nextDouble() * side;
+        }
+
+        int chunkCount = Math.max(1, Math.min(threads, finest.nodeCount / minChunkSize));
+        ExecutorService executor = chunkCount > 1 ? Executors.newFixedThreadPool(chunkCount) : null;
+        try {
+            for (int l = hierarchy.size() - 1; l >= 0; l--) {
+                Level level = hierarchy.get(l);
+                if (l < hierarchy.size() - 1) {
+                    prolongate(level, hierarchy.get(l + 1));
+                }
+                relax(level, executor, chunkCount);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The sfdp layout has been interrupted.");
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Error while computing the sfdp layout.", ex.getCause());
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+
+        double scale = edgeLength / averageEdgeLength(finest);
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        positions.startBulkNotification();
+        for (int i = 0; i < finest.nodeCount; i++) {
+            positions.set(nodes.get(i), new Coordinates(finest.x[i] * scale, finest.y[i] * scale));
+        }
+        positions.stopBulkNotification();
+    }
+
+    /**
+     * Places the nodes of a level at the position of their coarser node,
+     * with a small random displacement.
+     *
+     * @param level the level.
+     * @param coarser the coarser level.
+     */
+    private void prolongate(Level level, Level coarser) {
+        for (int i = 0; i < level.nodeCount; i++) {
+            int parent = level.parents[i];
+            double angle = random.nextDouble() * 2 * Math.PI;
+            double distance = random.nextDouble() * 0.1 * edgeLength;
+            level.x[i] = coarser.x[parent] + Math.cos(angle) * distance;
+            level.y[i] = coarser.y[parent] + Math.sin(angle) * distance;
+        }
+    }
+
+    /**
+     * Relaxes the layout of a level with the spring-electrical model. Each
+     * node is moved by the current step length in the direction of the force
+     * acting on it. The step length grows after a sequence of iterations that
+     * reduced the energy, and shrinks otherwise.
+     *
+     * @param level the level.
+     * @param executor the executor for the force computation, or null.
+     * @param chunkCount the number of chunks in which the nodes are split.
+     * @throws InterruptedException if interrupted.
+     * @throws ExecutionException if the force computation fails.
+     */
+    private void relax(final Level level, ExecutorService executor, int chunkCount) throws InterruptedException, ExecutionException {
+        final int nodeCount = level.nodeCount;
+        final double[] forceX = new double[nodeCount];
+        final double[] forceY = new double[nodeCount];
+        final double[] chunkEnergy = new double[chunkCount];
+        final int chunkSize = (nodeCount + chunkCount - 1) / chunkCount;
+        double step = edgeLength;
+        double energy = Double.POSITIVE_INFINITY;
+        int progress = 0;
+        for (int iteration = 0; iteration < maxIterations && step > tolerance * edgeLength; iteration++) {
+            final QuadTree tree = new QuadTree(level.x, level.y, nodeCount);
+            if (executor == null || nodeCount < chunkCount * minChunkSize) {
+                Arrays.fill(chunkEnergy, 0);
+                chunkEnergy[0] = computeForces(level, tree, forceX, forceY, 0, nodeCount);
+            } else {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int c = 0; c < chunkCount; c++) {
+                    final int chunk = c;
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            int start = chunk * chunkSize;
+                            chunkEnergy[chunk] = computeForces(level, tree, forceX, forceY, start, Math.min(nodeCount, start + chunkSize));
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+
+            double newEnergy = 0;
+            for (double value : chunkEnergy) {
+                newEnergy += value;
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                double norm = Math.sqrt(forceX[i] * forceX[i] + forceY[i] * forceY[i]);
+                if (norm > 0) {
+                    level.x[i] += step * forceX[i] / norm;
+                    level.y[i] += step * forceY[i] / norm;
+                }
+            }
+
+            if (newEnergy < energy) {
+                progress++;
+                if (progress >= stepIncreaseProgress) {
+                    progress = 0;
+                    step /= stepFactor;
+                }
+            } else {
+                progress = 0;
+                step *= stepFactor;
+            }
+            energy = newEnergy;
+        }
+    }
+
+    /**
+     * Computes the forces acting on a range of nodes.
+     *
+     * @param level the level.
+     * @param tree the quadtree of the current positions.
+     * @param forceX the x components of the forces.
+     * @param forceY the y components of the forces.
+     * @param start the first node of the range.
+     * @param end the end of the range, exclusive.
+     * @return the energy of the range, as the sum of the squared forces.
+     */
+    private double computeForces(Level level, QuadTree tree, double[] forceX, double[] forceY, int start, int end) {
+        double repulsion = repulsionStrength * edgeLength * edgeLength;
+        int[] stack = new int[QuadTree.maxDepth * 4 + 4];
+        double energy = 0;
+        for (int i = start; i < end; i++) {
+            double fx = 0;
+            double fy = 0;
+            double xi = level.x[i];
+            double yi = level.y[i];
+
+            int stackSize = 0;
+            stack[stackSize++] = 0;
+            while (stackSize > 0) {
+                int cell = stack[--stackSize];
+                if (tree.counts[cell] == 0) {
+                    continue;
+                }
+                if (tree.firstChildren[cell] < 0) {
+                    for (int k = tree.starts[cell]; k < tree.starts[cell] + tree.counts[cell]; k++) {
+                        int j = tree.points[k];
+                        double dx = xi - level.x[j];
+                        double dy = yi - level.y[j];
+                        double squaredDistance = dx * dx + dy * dy;
+                        if (j != i && squaredDistance > 0) {
+                            fx += repulsion * dx / squaredDistance;
+                            fy += repulsion * dy / squaredDistance;
+                        }
+                    }
+                    continue;
+                }
+                double dx = xi - tree.massX[cell];
+                double dy = yi - tree.massY[cell];
+                double squaredDistance = dx * dx + dy * dy;
+                if (!tree.contains(cell, xi, yi) && tree.widths[cell] * tree.widths[cell] < theta * theta * squaredDistance) {
+                    fx += repulsion * tree.counts[cell] * dx / squaredDistance;
+                    fy += repulsion * tree.counts[cell] * dy / squaredDistance;
+                } else {
+                    for (int c = 0; c < 4; c++) {
+                        stack[stackSize++] = tree.firstChildren[cell] + c;
+                    }
+                }
+            }
+
+            for (int k = level.adjacencyStarts[i]; k < level.adjacencyStarts[i + 1]; k++) {
+                int j = level.adjacency[k];
+                double dx = level.x[j] - xi;
+                double dy = level.y[j] - yi;
+                double distance = Math.sqrt(dx * dx + dy * dy);
+                fx += dx * distance / edgeLength;
+                fy += dy * distance / edgeLength;
+            }
+            forceX[i] = fx;
+            forceY[i] = fy;
+            energy += fx * fx + fy * fy;
+        }
+        return energy;
+    }
+
+    /**
+     * Computes the average edge length of a level.
+     *
+     * @param level the level.
+     * @return the average edge length, or the desired edge length if the
+     * level has no edges.
+     */
+    private double averageEdgeLength(Level level) {
+        double totalLength = 0;
+        int count = 0;
+        for (int i = 0; i < level.nodeCount; i++) {
+            for (int k = level.adjacencyStarts[i]; k < level.adjacencyStarts[i + 1]; k++) {
+                int j = level.adjacency[k];
+                totalLength += Math.hypot(level.x[i] - level.x[j], level.y[i] - level.y[j]);
+                count++;
+            }
+        }
+        return count > 0 && totalLength > 0 ? totalLength / count : edgeLength;
+    }
+
+    /**
+     * A level of the graph hierarchy, stored as a compact undirected
+     * adjacency structure.
+     */
+    private static class Level {
+
+        final int nodeCount;
+        final int[] adjacencyStarts;
+        final int[] adjacency;
+        final double[] x;
+        final double[] y;
+        int[] parents;
+
+        /**
+         * Constructs a level from an adjacency structure.
+         *
+         * @param adjacencyStarts the start of the neighbours of each node.
+         * @param adjacency the neighbours of the nodes.
+         */
+        Level(int[] adjacencyStarts, int[] adjacency) {
+            this.nodeCount = adjacencyStarts.length - 1;
+            this.adjacencyStarts = adjacencyStarts;
+            this.adjacency = adjacency;
+            this.x = new double[nodeCount];
+            this.y = new double[nodeCount];
+        }
+
+        /**
+         * Constructs the finest level from a graph. Self loops are ignored.
+         *
+         * @param graph the graph.
+         * @param nodes the graph nodes, in index order.
+         */
+        Level(Graph graph, List<Node> nodes) {
+            this.nodeCount = nodes.size();
+            Map<Node, Integer> indices = new HashMap<>();
+            for (Node node : nodes) {
+                indices.put(node, indices.size());
+            }
+            adjacencyStarts = new int[nodeCount + 1];
+            for (Edge edge : graph.edges()) {
+                if (edge.source() != edge.target()) {
+                    adjacencyStarts[indices.get(edge.source()) + 1]++;
+                    adjacencyStarts[indices.get(edge.target()) + 1]++;
+                }
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                adjacencyStarts[i + 1] += adjacencyStarts[i];
+            }
+            adjacency = new int[adjacencyStarts[nodeCount]];
+            int[] filled = Arrays.copyOf(adjacencyStarts, nodeCount);
+            for (Edge edge : graph.edges()) {
+                if (edge.source() != edge.target()) {
+                    int source = indices.get(edge.source());
+                    int target = indices.get(edge.target());
+                    adjacency[filled[source]++] = target;
+                    adjacency[filled[target]++] = source;
+                }
+            }
+            this.x = new double[nodeCount];
+            this.y = new double[nodeCount];
+        }
+
+        /**
+         * Returns the number of neighbours of a node.
+         *
+         * @param node the node index.
+         * @return the node degree.
+         */
+        int degree(int node) {
+            return adjacencyStarts[node + 1] - adjacencyStarts[node];
+        }
+
+        /**
+         * Computes the coarser level by edge matching. The nodes are visited
+         * in random order, and each unmatched node is merged with its
+         * unmatched neighbour of lowest degree.
+         *
+         * @param random the random number generator.
+         * @return the coarser level.
+         */
+        Level coarsen(Random random) {
+            int[] order = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                order[i] = i;
+            }
+            for (int i = nodeCount - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+
+            parents = new int[nodeCount];
+            Arrays.fill(parents, -1);
+            int groupCount = 0;
+            for (int i : order) {
+                if (parents[i] >= 0) {
+                    continue;
+                }
+                int match = -1;
+                for (int k = adjacencyStarts[i]; k < adjacencyStarts[i + 1]; k++) {
+                    int j = adjacency[k];
+                    if (j != i && parents[j] < 0 && (match < 0 || degree(j) < degree(match))) {
+                        match = j;
+                    }
+                }
+                parents[i] = groupCount;
+                if (match >= 0) {
+                    parents[match] = groupCount;
+                }
+                groupCount++;
+            }
+
+            int[] memberStarts = new int[groupCount + 1];
+            for (int i = 0; i < nodeCount; i++) {
+                memberStarts[parents[i] + 1]++;
+            }
+            for (int g = 0; g < groupCount; g++) {
+                memberStarts[g + 1] += memberStarts[g];
+            }
+            int[] members = new int[nodeCount];
+            int[] filled = Arrays.copyOf(memberStarts, groupCount);
+            for (int i = 0; i < nodeCount; i++) {
+                members[filled[parents[i]]++] = i;
+            }
+
+            int[] marks = new int[groupCount];
+            Arrays.fill(marks, -1);
+            int[] coarseStarts = new int[groupCount + 1];
+            for (int g = 0; g < groupCount; g++) {
+                coarseStarts[g + 1] = coarseStarts[g] + coarseNeighbours(g, members, memberStarts, marks, null, 0);
+            }
+            Arrays.fill(marks, -1);
+            int[] coarseAdjacency = new int[coarseStarts[groupCount]];
+            for (int g = 0; g < groupCount; g++) {
+                coarseNeighbours(g, members, memberStarts, marks, coarseAdjacency, coarseStarts[g]);
+            }
+            return new Level(coarseStarts, coarseAdjacency);
+        }
+
+        /**
+         * Finds the distinct neighbours of a coarse node.
+         *
+         * @param group the coarse node.
+         * @param members the fine nodes, sorted by coarse node.
+         * @param memberStarts the start of the members of each coarse node.
+         * @param marks the last coarse node that visited each coarse node.
+         * @param output the array where to write the neighbours, or null.
+         * @param offset the position of the first neighbour in the output.
+         * @return the number of neighbours.
+         */
+        private int coarseNeighbours(int group, int[] members, int[] memberStarts, int[] marks, int[] output, int offset) {
+            int count = 0;
+            for (int m = memberStarts[group]; m < memberStarts[group + 1]; m++) {
+                int member = members[m];
+                for (int k = adjacencyStarts[member]; k < adjacencyStarts[member + 1]; k++) {
+                    int neighbour = parents[adjacency[k]];
+                    if (neighbour != group && marks[neighbour] != group) {
+                        marks[neighbour] = group;
+                        if (output != null) {
+                            output[offset + count] = neighbour;
+                        }
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Quadtree of the node positions used for the Barnes-Hut approximation.
+     * The cells are stored in parallel arrays, with the four children of a
+     * cell in consecutive positions. Each cell refers to a contiguous range
+     * of the permuted point indices.
+     */
+    private static class QuadTree {
+
+        static final int maxDepth = 30;
+        private static final int leafSize = 8;
+
+        final int[] points;
+        int[] starts = new int[64];
+        int[] counts = new int[64];
+        int[] firstChildren = new int[64];
+        double[] widths = new double[64];
+        double[] lefts = new double[64];
+        double[] bottoms = new double[64];
+        double[] massX = new double[64];
+        double[] massY = new double[64];
+        private int cellCount = 0;
+
+        private final double[] x;
+        private final double[] y;
+
+        /**
+         * Builds the quadtree of a set of points.
+         *
+         * @param x the x coordinates.
+         * @param y the y coordinates.
+         * @param pointCount the number of points.
+         */
+        QuadTree(double[] x, double[] y, int pointCount) {
+            this.x = x;
+            this.y = y;
+            points = new int[pointCount];
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < pointCount; i++) {
+                points[i] = i;
+                minX = Math.min(minX, x[i]);
+                minY = Math.min(minY, y[i]);
+                maxX = Math.max(maxX, x[i]);
+                maxY = Math.max(maxY, y[i]);
+            }
+            double width = Math.max(maxX - minX, maxY - minY);
+            build(newCell(), 0, pointCount, minX, minY, width, 0);
+        }
+
+        /**
+         * Allocates a new cell.
+         *
+         * @return the cell index.
+         */
+        private int newCell() {
+            if (cellCount == starts.length) {
+                int capacity = starts.length * 2;
+                starts = Arrays.copyOf(starts, capacity);
+                counts = Arrays.copyOf(counts, capacity);
+                firstChildren = Arrays.copyOf(firstChildren, capacity);
+                widths = Arrays.copyOf(widths, capacity);
+                lefts = Arrays.copyOf(lefts, capacity);
+                bottoms = Arrays.copyOf(bottoms, capacity);
+                massX = Arrays.copyOf(massX, capacity);
+                massY = Arrays.copyOf(massY, capacity);
+            }
+            return cellCount++;
+        }
+
+        /**
+         * Builds a cell and, recursively, its children.
+         *
+         * @param cell the cell index.
+         * @param start the first point of the cell.
+         * @param end the end of the cell points, exclusive.
+         * @param minX the left side of the cell.
+         * @param minY the bottom side of the cell.
+         * @param width the cell width.
+         * @param depth the cell depth.
+         */
+        private void build(int cell, int start, int end, double minX, double minY, double width, int depth) {
+            starts[cell] = start;
+            counts[cell] = end - start;
+            widths[cell] = width;
+            lefts[cell] = minX;
+            bottoms[cell] = minY;
+            firstChildren[cell] = -1;
+            double sumX = 0;
+            double sumY = 0;
+            for (int k = start; k < end; k++) {
+                sumX += x[points[k]];
+                sumY += y[points[k]];
+            }
+            massX[cell] = end > start ? sumX / (end - start) : 0;
+            massY[cell] = end > start ? sumY / (end - start) : 0;
+            if (end - start <= leafSize || depth >= maxDepth) {
+                return;
+            }
+
+            double half = width / 2;
+            double midX = minX + half;
+            double midY = minY + half;
+            int splitY = partition(start, end, midY, false);
+            int splitLowX = partition(start, splitY, midX, true);
+            int splitHighX = partition(splitY, end, midX, true);
+
+            int firstChild = cellCount;
+            for (int c = 0; c < 4; c++) {
+                newCell();
+            }
+            firstChildren[cell] = firstChild;
+            build(firstChild, start, splitLowX, minX, minY, half, depth + 1);
+            build(firstChild + 1, splitLowX, splitY, midX, minY, half, depth + 1);
+            build(firstChild + 2, splitY, splitHighX, minX, midY, half, depth + 1);
+            build(firstChild + 3, splitHighX, end, midX, midY, half, depth + 1);
+        }
+
+        /**
+         * Indicates whether a point lies within a cell.
+         *
+         * @param cell the cell index.
+         * @param pointX the x coordinate of the point.
+         * @param pointY the y coordinate of the point.
+         * @return true if the cell contains the point.
+         */
+        boolean contains(int cell, double pointX, double pointY) {
+            return pointX >= lefts[cell] && pointX <= lefts[cell] + widths[cell]
+                    && pointY >= bottoms[cell] && pointY <= bottoms[cell] + widths[cell];
+        }
+
+        /**
+         * Partitions a range of points around a coordinate value.
+         *
+         * @param start the first point of the range.
+         * @param end the end of the range, exclusive.
+         * @param value the partition value.
+         * @param horizontal true to use x coordinates, false for y.
+         * @return the first point whose coordinate is not lower than the
+         * value.
+         */
+        private int partition(int start, int end, double value, boolean horizontal) {
+            int low = start;
+            int high = end - 1;
+            while (low <= high) {
+                double coordinate = horizontal ? x[points[low]] : y[points[low]];
+                if (coordinate < value) {
+                    low++;
+                } else {
+                    int swap = points[low];
+                    points[low] = points[high];
+                    points[high] = swap;
+                    high--;
+                }
+            }
+            return low;
+        }
+    }
+}
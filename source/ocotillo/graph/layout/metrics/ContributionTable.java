@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Stores the contribution of each element to a metric, and keeps updated the
+ * sum, the sum of squares and the minimum of the contributions.
+ *
+ * @param <K> the type of element.
+ */
+class ContributionTable<K> {
+
+    private final Map<K, Double> contributions = new HashMap<>();
+    private final TreeMap<Double, Integer> sortedContributions = new TreeMap<>();
+    private double sum;
+    private double sumOfSquares;
+
+    /**
+     * Sets the contribution of an element, replacing the previous one.
+     *
+     * @param element the element.
+     * @param contribution the contribution.
+     */
+    void put(K element, double contribution) {
+        remove(element);
+        contributions.put(element, contribution);
+        sum += contribution;
+        sumOfSquares += contribution * contribution;
+        Integer count = sortedContributions.get(contribution);
+        sortedContributions.put(contribution, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Removes the contribution of an element, if present.
+     *
+     * @param element the element.
+     */
+    void remove(K element) {
+        Double previous = contributions.remove(element);
+        if (previous != null) {
+            sum -= previous;
+            sumOfSquares -= previous * previous;
+            int count = sortedContributions.get(previous);
+            if (count == 1) {
+                sortedContributions.remove(previous);
+            } else {
+                sortedContributions.put(previous, count - 1);
+            }
+        }
+    }
+
+    /**
+     * Removes all the contributions.
+     */
+    void clear() {
+        contributions.clear();
+        sortedContributions.clear();
+        sum = 0;
+        sumOfSquares = 0;
+    }
+
+    /**
+     * Returns the contribution of an element.
+     *
+     * @param element the element.
+     * @return the contribution, or null if not present.
+     */
+    Double get(K element) {
+        return contributions.get(element);
+    }
+
+    /**
+     * Returns the number of contributions.
+     *
+     * @return the number of contributions.
+     */
+    int size() {
+        return contributions.size();
+    }
+
+    /**
+     * Returns the sum of the contributions.
+     *
+     * @return the sum.
+     */
+    double sum() {
+        return sum;
+    }
+
+    /**
+     * Returns the sum of the squared contributions.
+     *
+     * @return the sum of squares.
+     */
+    double sumOfSquares() {
+        return sumOfSquares;
+    }
+
+    /**
+     * Returns the minimum contribution.
+     *
+     * @param defaultValue the value to return if there are no contributions.
+     * @return the minimum contribution.
+     */
+    double min(double defaultValue) {
+        return sortedContributions.isEmpty() ? defaultValue : sortedContributions.firstKey();
+    }
+}
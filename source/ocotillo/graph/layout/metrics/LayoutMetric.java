@@ -0,0 +1,859 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.metrics;
+
+import ocotillo.geometry.Box;
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.Geom2D;
+import ocotillo.graph.Attribute;
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Element;
+import ocotillo.graph.ElementAttributeObserver;
+import ocotillo.graph.Graph;
+import ocotillo.graph.GraphObserver;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.Observer;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.StdAttribute.ControlPoints;
+import ocotillo.graph.StdAttribute.EdgeShape;
+import ocotillo.graph.StdAttribute.NodeShape;
+import ocotillo.graph.layout.Layout2D;
+import ocotillo.graph.layout.LayoutXD;
+import ocotillo.graph.layout.locator.ElementLocator;
+import ocotillo.graph.layout.locator.bucketgrid.BucketGridLocator.BglBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A measure of the quality of a graph layout. The metric is computed from
+ * scratch every time its value is requested, unless auto-sync is enabled. In
+ * that case, the metric observes the graph and the layout attributes, and
+ * only updates the contributions of the elements that changed since the last
+ * request. The metrics evaluate their elements in parallel when computed from
+ * scratch.
+ */
+public abstract class LayoutMetric {
+
+    protected final Graph graph;
+    protected final NodeAttribute<Coordinates> positions;
+    protected final NodeAttribute<Coordinates> sizes;
+    protected final EdgeAttribute<ControlPoints> edgePoints;
+
+    private final List<Observer> observers = new ArrayList<>();
+    private final Set<Node> changedNodes = new HashSet<>();
+    private final Set<Edge> changedEdges = new HashSet<>();
+    private ElementLocator locator;
+    private boolean autoSync = false;
+    private boolean upToDate = false;
+    private double value;
+
+    /**
+     * Constructs a metric using the standard layout attributes of the graph.
+     *
+     * @param graph the graph.
+     */
+    protected LayoutMetric(Graph graph) {
+        this(graph, graph.<Coordinates>nodeAttribute(StdAttribute.nodePosition),
+                graph.<Coordinates>nodeAttribute(StdAttribute.nodeSize),
+                graph.<ControlPoints>edgeAttribute(StdAttribute.edgePoints));
+    }
+
+    /**
+     * Constructs a metric.
+     *
+     * @param graph the graph.
+     * @param positions the node positions.
+     * @param sizes the node sizes.
+     * @param edgePoints the edge control points.
+     */
+    protected LayoutMetric(Graph graph, NodeAttribute<Coordinates> positions, NodeAttribute<Coordinates> sizes, EdgeAttribute<ControlPoints> edgePoints) {
+        this.graph = graph;
+        this.positions = positions;
+        this.sizes = sizes;
+        this.edgePoints = edgePoints;
+    }
+
+    /**
+     * Returns the current value of the metric.
+     *
+     * @return the metric value.
+     */
+    public double value() {
+        if (!autoSync || !upToDate) {
+            value = computeValue();
+            upToDate = true;
+        } else if (!changedNodes.isEmpty() || !changedEdges.isEmpty()) {
+            Set<Edge> affectedEdges = new HashSet<>(changedEdges);
+            for (Node node : changedNodes) {
+                affectedEdges.addAll(graph.inOutEdges(node));
+            }
+            value = updateValue(changedNodes, affectedEdges);
+        }
+        changedNodes.clear();
+        changedEdges.clear();
+        return value;
+    }
+
+    /**
+     * Specifies whether the metric should observe the graph and update its
+     * value incrementally, or be recomputed from scratch at each request.
+     * Incremental updates are convenient when only a part of the layout
+     * changes between two requests.
+     *
+     * @param enabled indicates whether to activate or not auto-sync.
+     */
+    public void setAutoSync(boolean enabled) {
+        if (enabled == autoSync) {
+            return;
+        }
+        if (enabled) {
+            addObservers();
+        } else {
+            removeObservers();
+        }
+        autoSync = enabled;
+        upToDate = false;
+        changedNodes.clear();
+        changedEdges.clear();
+        if (locator != null) {
+            locator.close();
+            locator = null;
+        }
+    }
+
+    /**
+     * Indicates whether auto-sync is enabled.
+     *
+     * @return true if the metric updates itself incrementally.
+     */
+    public boolean isAutoSync() {
+        return autoSync;
+    }
+
+    /**
+     * Removes the observers from the metric. This should be called when the
+     * metric is no more utilized, allowing it to be destroyed.
+     */
+    public void close() {
+        setAutoSync(false);
+    }
+
+    /**
+     * Computes the metric value from scratch.
+     *
+     * @return the metric value.
+     */
+    protected abstract double computeValue();
+
+    /**
+     * Updates the metric value after some changes in the layout. This is only
+     * called when auto-sync is enabled and the graph structure did not change
+     * since the last computation.
+     *
+     * @param changedNodes the nodes whose position or size changed.
+     * @param affectedEdges the edges whose control points changed, or whose
+     * extremities changed.
+     * @return the updated metric value.
+     */
+    protected abstract double updateValue(Collection<Node> changedNodes, Collection<Edge> affectedEdges);
+
+    /**
+     * Returns a locator for the graph elements. The locator is kept
+     * synchronised with the graph when auto-sync is enabled, and rebuilt at
+     * each call otherwise.
+     *
+     * @return the element locator.
+     */
+    protected ElementLocator locator() {
+        if (locator == null) {
+            locator = new BglBuilder(graph)
+                    .withNodePositions(positions)
+                    .withNodeSizes(sizes)
+                    .withEdgePoints(edgePoints)
+                    .withAutoSync(autoSync)
+                    .build();
+        } else {
+            locator.rebuild();
+        }
+        return locator;
+    }
+
+    /**
+     * Defines and registers the graph and attribute observers.
+     */
+    private void addObservers() {
+        observers.add(new GraphObserver(graph) {
+
+            @Override
+            public void updateElements(Collection<Element> changedElements) {
+                upToDate = false;
+            }
+
+            @Override
+            public void updateSubGraphs(Collection<Graph> changedSubGraphs) {
+            }
+
+            @Override
+            public void updateAttributes(Collection<Attribute<?>> changedAttributes) {
+            }
+        });
+
+        for (NodeAttribute<Coordinates> attribute : Arrays.asList(positions, sizes)) {
+            observers.add(new ElementAttributeObserver<Node>(attribute) {
+
+                @Override
+                public void update(Collection<Node> changedElements) {
+                    changedNodes.addAll(changedElements);
+                }
+
+                @Override
+                public void updateAll() {
+                    upToDate = false;
+                }
+            });
+        }
+
+        observers.add(new ElementAttributeObserver<Edge>(edgePoints) {
+
+            @Override
+            public void update(Collection<Edge> changedElements) {
+                changedEdges.addAll(changedElements);
+            }
+
+            @Override
+            public void updateAll() {
+                upToDate = false;
+            }
+        });
+    }
+
+    /**
+     * Unregisters the graph and attribute observers.
+     */
+    private void removeObservers() {
+        for (Observer observer : observers) {
+            observer.unregister();
+        }
+        observers.clear();
+    }
+
+    /**
+     * Metric that measures how much the node distances in the layout differ
+     * from their graph theoretical distances. The stress is computed as the
+     * sum over all connected node pairs of ((||pi - pj|| - dij) / dij)^2,
+     * where dij is the number of hops in the shortest path between the nodes
+     * multiplied by the desired edge length. Edge directions are ignored.
+     */
+    public static class Stress extends LayoutMetric {
+
+        private static final double incrementalRatio = 0.125;
+
+        private final double edgeLength;
+        private List<Node> nodes;
+        private Map<Node, Integer> indexes;
+        private int[][] neighbours;
+        private double[] xs;
+        private double[] ys;
+        private double total;
+
+        /**
+         * Constructs a stress metric.
+         *
+         * @param graph the graph.
+         * @param edgeLength the desired edge length.
+         */
+        public Stress(Graph graph, double edgeLength) {
+            super(graph);
+            this.edgeLength = edgeLength;
+        }
+
+        /**
+         * Constructs a stress metric.
+         *
+         * @param graph the graph.
+         * @param positions the node positions.
+         * @param sizes the node sizes.
+         * @param edgePoints the edge control points.
+         * @param edgeLength the desired edge length.
+         */
+        public Stress(Graph graph, NodeAttribute<Coordinates> positions, NodeAttribute<Coordinates> sizes, EdgeAttribute<ControlPoints> edgePoints, double edgeLength) {
+            super(graph, positions, sizes, edgePoints);
+            this.edgeLength = edgeLength;
+        }
+
+        @Override
+        protected double computeValue() {
+            buildIndex();
+            double[] contributions = ParallelEvaluator.evaluate(nodes, new ParallelEvaluator.Task<Node>() {
+                @Override
+                public double evaluate(int index, Node node) {
+                    return pairStress(index, hops(index), index + 1);
+                }
+            });
+            total = 0;
+            for (double contribution : contributions) {
+                total += contribution;
+            }
+            return total;
+        }
+
+        @Override
+        protected double updateValue(Collection<Node> changedNodes, Collection<Edge> affectedEdges) {
+            if (changedNodes.size() > nodes.size() * incrementalRatio) {
+                return computeValue();
+            }
+            for (Node node : changedNodes) {
+                int index = indexes.get(node);
+                int[] hops = hops(index);
+                total -= pairStress(index, hops, 0);
+                Coordinates position = positions.get(node);
+                xs[index] = position.x();
+                ys[index] = position.y();
+                total += pairStress(index, hops, 0);
+            }
+            return Math.max(0, total);
+        }
+
+        /**
+         * Indexes the nodes and caches their positions and adjacencies.
+         */
+        private void buildIndex() {
+            nodes = new ArrayList<>(graph.nodes());
+            indexes = new HashMap<>();
+            xs = new double[nodes.size()];
+            ys = new double[nodes.size()];
+            for (int i = 0; i < nodes.size(); i++) {
+                indexes.put(nodes.get(i), i);
+                Coordinates position = positions.get(nodes.get(i));
+                xs[i] = position.x();
+                ys[i] = position.y();
+            }
+            neighbours = new int[nodes.size()][];
+            for (int i = 0; i < nodes.size(); i++) {
+                Collection<Edge> edges = graph.inOutEdges(nodes.get(i));
+                neighbours[i] = new int[edges.size()];
+                int j = 0;
+                for (Edge edge : edges) {
+                    neighbours[i][j++] = indexes.get(edge.otherEnd(nodes.get(i)));
+                }
+            }
+        }
+
+        /**
+         * Computes the number of hops from a node to all the others with a
+         * breadth first visit.
+         *
+         * @param source the index of the source node.
+         * @return the hops to each node, -1 for unreachable nodes.
+         */
+        private int[] hops(int source) {
+            int[] hops = new int[nodes.size()];
+            Arrays.fill(hops, -1);
+            int[] queue = new int[nodes.size()];
+            int head = 0;
+            int tail = 0;
+            hops[source] = 0;
+            queue[tail++] = source;
+            while (head < tail) {
+                int current = queue[head++];
+                for (int neighbour : neighbours[current]) {
+                    if (hops[neighbour] < 0) {
+                        hops[neighbour] = hops[current] + 1;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+            return hops;
+        }
+
+        /**
+         * Computes the stress of the pairs formed by a node and the nodes
+         * with index greater or equal than the given one.
+         *
+         * @param index the node index.
+         * @param hops the hops from the node to the others.
+         * @param from the first index of the other nodes.
+         * @return the stress of the pairs.
+         */
+        private double pairStress(int index, int[] hops, int from) {
+            double stress = 0;
+            for (int j = from; j < nodes.size(); j++) {
+                if (hops[j] > 0) {
+                    double desired = hops[j] * edgeLength;
+                    double dx = xs[index] - xs[j];
+                    double dy = ys[index] - ys[j];
+                    double difference = (Math.sqrt(dx * dx + dy * dy) - desired) / desired;
+                    stress += difference * difference;
+                }
+            }
+            return stress;
+        }
+    }
+
+    /**
+     * Metric that measures how uniform the edge lengths are. If a desired edge
+     * length is given, the metric is the root mean square of the deviations
+     * from it, divided by the desired length. Otherwise, it is the standard
+     * deviation of the edge lengths divided by their mean.
+     */
+    public static class EdgeLengthDeviation extends LayoutMetric {
+
+        private final double desiredLength;
+        private final ContributionTable<Edge> lengths = new ContributionTable<>();
+
+        /**
+         * Constructs an edge length deviation metric with respect to the mean
+         * edge length.
+         *
+         * @param graph the graph.
+         */
+        public EdgeLengthDeviation(Graph graph) {
+            this(graph, 0);
+        }
+
+        /**
+         * Constructs an edge length deviation metric.
+         *
+         * @param graph the graph.
+         * @param desiredLength the desired edge length, or zero to measure the
+         * deviation from the mean edge length.
+         */
+        public EdgeLengthDeviation(Graph graph, double desiredLength) {
+            super(graph);
+            this.desiredLength = desiredLength;
+        }
+
+        /**
+         * Constructs an edge length deviation metric.
+         *
+         * @param graph the graph.
+         * @param positions the node positions.
+         * @param sizes the node sizes.
+         * @param edgePoints the edge control points.
+         * @param desiredLength the desired edge length, or zero to measure the
+         * deviation from the mean edge length.
+         */
+        public EdgeLengthDeviation(Graph graph, NodeAttribute<Coordinates> positions, NodeAttribute<Coordinates> sizes, EdgeAttribute<ControlPoints> edgePoints, double desiredLength) {
+            super(graph, positions, sizes, edgePoints);
+            this.desiredLength = desiredLength;
+        }
+
+        @Override
+        protected double computeValue() {
+            List<Edge> edges = new ArrayList<>(graph.edges());
+            double[] values = ParallelEvaluator.evaluate(edges, new ParallelEvaluator.Task<Edge>() {
+                @Override
+                public double evaluate(int index, Edge edge) {
+                    return Layout2D.edgeLength(edge, positions, edgePoints, null);
+                }
+            });
+            lengths.clear();
+            for (int i = 0; i < edges.size(); i++) {
+                lengths.put(edges.get(i), values[i]);
+            }
+            return deviation();
+        }
+
+        @Override
+        protected double updateValue(Collection<Node> changedNodes, Collection<Edge> affectedEdges) {
+            for (Edge edge : affectedEdges) {
+                lengths.put(edge, Layout2D.edgeLength(edge, positions, edgePoints, null));
+            }
+            return deviation();
+        }
+
+        /**
+         * Computes the deviation from the current edge lengths.
+         *
+         * @return the edge length deviation.
+         */
+        private double deviation() {
+            int count = lengths.size();
+            if (count == 0) {
+                return 0;
+            }
+            double sum = lengths.sum();
+            double sumOfSquares = lengths.sumOfSquares();
+            if (desiredLength > 0) {
+                double squaredDeviations = sumOfSquares - 2 * desiredLength * sum + count * desiredLength * desiredLength;
+                return Math.sqrt(Math.max(0, squaredDeviations / count)) / desiredLength;
+            }
+            double mean = sum / count;
+            if (mean == 0) {
+                return 0;
+            }
+            return Math.sqrt(Math.max(0, sumOfSquares / count - mean * mean)) / mean;
+        }
+    }
+
+    /**
+     * Metric that measures the smallest angle (in radians) formed by two
+     * consecutive edges around a node. The edge directions are given by the
+     * first edge segment leaving the node. Nodes with less than two incident
+     * edges are not considered. If no node is considered, the metric is 2π.
+     */
+    public static class AngularResolution extends LayoutMetric {
+
+        private final ContributionTable<Node> angles = new ContributionTable<>();
+
+        /**
+         * Constructs an angular resolution metric.
+         *
+         * @param graph the graph.
+         */
+        public AngularResolution(Graph graph) {
+            super(graph);
+        }
+
+        /**
+         * Constructs an angular resolution metric.
+         *
+         * @param graph the graph.
+         * @param positions the node positions.
+         * @param sizes the node sizes.
+         * @param edgePoints the edge control points.
+         */
+        public AngularResolution(Graph graph, NodeAttribute<Coordinates> positions, NodeAttribute<Coordinates> sizes, EdgeAttribute<ControlPoints> edgePoints) {
+            super(graph, positions, sizes, edgePoints);
+        }
+
+        @Override
+        protected double computeValue() {
+            List<Node> nodes = new ArrayList<>(graph.nodes());
+            double[] values = ParallelEvaluator.evaluate(nodes, new ParallelEvaluator.Task<Node>() {
+                @Override
+                public double evaluate(int index, Node node) {
+                    return minimumAngle(node);
+                }
+            });
+            angles.clear();
+            for (int i = 0; i < nodes.size(); i++) {
+                if (!Double.isNaN(values[i])) {
+                    angles.put(nodes.get(i), values[i]);
+                }
+            }
+            return angles.min(2 * Math.PI);
+        }
+
+        @Override
+        protected double updateValue(Collection<Node> changedNodes, Collection<Edge> affectedEdges) {
+            Set<Node> affectedNodes = new HashSet<>(changedNodes);
+            for (Edge edge : affectedEdges) {
+                affectedNodes.add(edge.source());
+                affectedNodes.add(edge.target());
+            }
+            for (Node node : affectedNodes) {
+                double angle = minimumAngle(node);
+                if (Double.isNaN(angle)) {
+                    angles.remove(node);
+                } else {
+                    angles.put(node, angle);
+                }
+            }
+            return angles.min(2 * Math.PI);
+        }
+
+        /**
+         * Computes the smallest angle between consecutive edges around a node.
+         *
+         * @param node the node.
+         * @return the smallest angle, or NaN if the node has less than two
+         * edge directions.
+         */
+        private double minimumAngle(Node node) {
+            Coordinates origin = positions.get(node);
+            List<Double> directions = new ArrayList<>();
+            for (Edge edge : graph.inOutEdges(node)) {
+                List<Coordinates> points = LayoutXD.edgePoints(edge, positions, edgePoints);
+                if (edge.source() == node) {
+                    addDirection(directions, origin, points);
+                }
+                if (edge.target() == node) {
+                    List<Coordinates> reversed = new ArrayList<>(points);
+                    Collections.reverse(reversed);
+                    addDirection(directions, origin, reversed);
+                }
+            }
+            if (directions.size() < 2) {
+                return Double.NaN;
+            }
+            Collections.sort(directions);
+            double minimum = directions.get(0) + 2 * Math.PI - directions.get(directions.size() - 1);
+            for (int i = 1; i < directions.size(); i++) {
+                minimum = Math.min(minimum, directions.get(i) - directions.get(i - 1));
+            }
+            return minimum;
+        }
+
+        /**
+         * Adds the direction of the first segment of an edge that does not
+         * start in the origin.
+         *
+         * @param directions the direction list.
+         * @param origin the node position.
+         * @param points the edge points, starting from the node.
+         */
+        private static void addDirection(List<Double> directions, Coordinates origin, List<Coordinates> points) {
+            for (Coordinates point : points) {
+                Coordinates vector = point.minus(origin);
+                if (vector.x() != 0 || vector.y() != 0) {
+                    directions.add(Geom2D.angle(vector));
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Metric that measures the minimum distance between the glyph of a node
+     * and the glyph of an edge not incident to it. Only the distances smaller
+     * than a given radius are considered, and the radius is returned when no
+     * edge is that close to any node. Negative values indicate that a node
+     * overlaps an edge. The close edges are retrieved through an element
+     * locator.
+     */
+    public static class NodeEdgeClearance extends LayoutMetric {
+
+        private final double radius;
+        private final ContributionTable<Node> clearances = new ContributionTable<>();
+        private final Map<Node, Edge> closestEdges = new HashMap<>();
+        private final Map<Edge, Set<Node>> closestTo = new HashMap<>();
+        private NodeAttribute<NodeShape> shapes;
+        private EdgeAttribute<Double> edgeWidths;
+        private EdgeAttribute<EdgeShape> edgeShapes;
+
+        /**
+         * Constructs a node-edge clearance metric.
+         *
+         * @param graph the graph.
+         * @param radius the maximum distance considered.
+         */
+        public NodeEdgeClearance(Graph graph, double radius) {
+            super(graph);
+            this.radius = radius;
+        }
+
+        /**
+         * Constructs a node-edge clearance metric.
+         *
+         * @param graph the graph.
+         * @param positions the node positions.
+         * @param sizes the node sizes.
+         * @param edgePoints the edge control points.
+         * @param radius the maximum distance considered.
+         */
+        public NodeEdgeClearance(Graph graph, NodeAttribute<Coordinates> positions, NodeAttribute<Coordinates> sizes, EdgeAttribute<ControlPoints> edgePoints, double radius) {
+            super(graph, positions, sizes, edgePoints);
+            this.radius = radius;
+        }
+
+        @Override
+        protected double computeValue() {
+            shapes = graph.hasNodeAttribute(StdAttribute.nodeShape) ? graph.<NodeShape>nodeAttribute(StdAttribute.nodeShape) : null;
+            edgeWidths = graph.<Double>edgeAttribute(StdAttribute.edgeWidth);
+            edgeShapes = graph.hasEdgeAttribute(StdAttribute.edgeShape) ? graph.<EdgeShape>edgeAttribute(StdAttribute.edgeShape) : null;
+
+            final ElementLocator locator = locator();
+            final List<Node> nodes = new ArrayList<>(graph.nodes());
+            final Edge[] closest = new Edge[nodes.size()];
+            double[] values = ParallelEvaluator.evaluate(nodes, new ParallelEvaluator.Task<Node>() {
+                @Override
+                public double evaluate(int index, Node node) {
+                    return clearance(locator, node, closest, index);
+                }
+            });
+            clearances.clear();
+            closestEdges.clear();
+            closestTo.clear();
+            for (int i = 0; i < nodes.size(); i++) {
+                record(nodes.get(i), values[i], closest[i]);
+            }
+            return clearances.min(radius);
+        }
+
+        @Override
+        protected double updateValue(Collection<Node> changedNodes, Collection<Edge> affectedEdges) {
+            ElementLocator locator = locator();
+            Set<Node> affectedNodes = new HashSet<>(changedNodes);
+            for (Edge edge : affectedEdges) {
+                Set<Node> previouslyClosest = closestTo.get(edge);
+                if (previouslyClosest != null) {
+                    affectedNodes.addAll(previouslyClosest);
+                }
+                double halfWidth = edgeWidths.get(edge) / 2;
+                affectedNodes.addAll(locator.getCloseNodes(LayoutXD.edgePoints(edge, positions, edgePoints), radius + halfWidth));
+            }
+            Edge[] closest = new Edge[1];
+            for (Node node : affectedNodes) {
+                record(node, clearance(locator, node, closest, 0), closest[0]);
+            }
+            return clearances.min(radius);
+        }
+
+        /**
+         * Computes the clearance of a node.
+         *
+         * @param locator the element locator.
+         * @param node the node.
+         * @param closest the array where to store the closest edge.
+         * @param index the index where to store the closest edge.
+         * @return the node clearance.
+         */
+        private double clearance(ElementLocator locator, Node node, Edge[] closest, int index) {
+            double clearance = radius;
+            closest[index] = null;
+            for (Edge edge : locator.getCloseEdges(node, radius)) {
+                if (!edge.isNodeExtremity(node)) {
+                    double distance = Layout2D.nodeEdgeGlyphDistance(graph, node, edge, positions, sizes, shapes, edgeWidths, edgePoints, edgeShapes);
+                    if (distance < clearance) {
+                        clearance = distance;
+                        closest[index] = edge;
+                    }
+                }
+            }
+            return clearance;
+        }
+
+        /**
+         * Records the clearance of a node.
+         *
+         * @param node the node.
+         * @param clearance the clearance.
+         * @param closest the closest edge, or null if no edge is within the
+         * radius.
+         */
+        private void record(Node node, double clearance, Edge closest) {
+            Edge previous = closestEdges.remove(node);
+            if (previous != null) {
+                Set<Node> previousSet = closestTo.get(previous);
+                previousSet.remove(node);
+                if (previousSet.isEmpty()) {
+                    closestTo.remove(previous);
+                }
+            }
+            if (closest == null) {
+                clearances.remove(node);
+                return;
+            }
+            clearances.put(node, clearance);
+            closestEdges.put(node, closest);
+            if (!closestTo.containsKey(closest)) {
+                closestTo.put(closest, new HashSet<Node>());
+            }
+            closestTo.get(closest).add(node);
+        }
+    }
+
+    /**
+     * Metric that measures the total area of the intersections between node
+     * boxes. The overlapping pairs are found with a plane sweep when computed
+     * from scratch, and through an element locator when updated.
+     */
+    public static class NodeOverlapArea extends LayoutMetric {
+
+        private final Map<Node, Map<Node, Double>> overlaps = new HashMap<>();
+        private double total;
+
+        /**
+         * Constructs a node overlap area metric.
+         *
+         * @param graph the graph.
+         */
+        public NodeOverlapArea(Graph graph) {
+            super(graph);
+        }
+
+        /**
+         * Constructs a node overlap area metric.
+         *
+         * @param graph the graph.
+         * @param positions the node positions.
+         * @param sizes the node sizes.
+         * @param edgePoints the edge control points.
+         */
+        public NodeOverlapArea(Graph graph, NodeAttribute<Coordinates> positions, NodeAttribute<Coordinates> sizes, EdgeAttribute<ControlPoints> edgePoints) {
+            super(graph, positions, sizes, edgePoints);
+        }
+
+        @Override
+        protected double computeValue() {
+            overlaps.clear();
+            total = 0;
+            for (Layout2D.NodeOverlap overlap : Layout2D.nodeOverlaps(graph, positions, sizes).pairs()) {
+                record(overlap.first(), overlap.second());
+            }
+            if (isAutoSync()) {
+                locator();
+            }
+            return total;
+        }
+
+        @Override
+        protected double updateValue(Collection<Node> changedNodes, Collection<Edge> affectedEdges) {
+            ElementLocator locator = locator();
+            for (Node node : changedNodes) {
+                Map<Node, Double> nodeOverlaps = overlaps.remove(node);
+                if (nodeOverlaps != null) {
+                    for (Map.Entry<Node, Double> entry : nodeOverlaps.entrySet()) {
+                        overlaps.get(entry.getKey()).remove(node);
+                        total -= entry.getValue();
+                    }
+                }
+                for (Node other : locator.getNodesPartiallyInBox(Layout2D.nodeBox(node, positions, sizes))) {
+                    if (other != node) {
+                        record(node, other);
+                    }
+                }
+            }
+            return Math.max(0, total);
+        }
+
+        /**
+         * Records the overlap between two nodes, if their boxes intersect.
+         *
+         * @param a the first node.
+         * @param b the second node.
+         */
+        private void record(Node a, Node b) {
+            Box boxA = Layout2D.nodeBox(a, positions, sizes);
+            Box boxB = Layout2D.nodeBox(b, positions, sizes);
+            double width = Math.min(boxA.right, boxB.right) - Math.max(boxA.left, boxB.left);
+            double height = Math.min(boxA.top, boxB.top) - Math.max(boxA.bottom, boxB.bottom);
+            if (width < 0 || height < 0) {
+                return;
+            }
+            double area = width * height;
+            if (!overlaps.containsKey(a)) {
+                overlaps.put(a, new HashMap<Node, Double>());
+            }
+            if (!overlaps.containsKey(b)) {
+                overlaps.put(b, new HashMap<Node, Double>());
+            }
+            overlaps.get(a).put(b, area);
+            overlaps.get(b).put(a, area);
+            total += area;
+        }
+    }
+}
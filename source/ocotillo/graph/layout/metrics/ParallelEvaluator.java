@@ -0,0 +1,134 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Evaluates a function on a list of elements using all the available cores.
+ * The elements are split in contiguous chunks that are processed by a shared
+ * pool of daemon threads. Small lists are evaluated in the calling thread.
+ */
+final class ParallelEvaluator {
+
+    private static final int sequentialThreshold = 256;
+    private static final int threadCount = Runtime.getRuntime().availableProcessors();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ocotillo-metrics");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    /**
+     * A function to be evaluated on each element. Implementations are called
+     * concurrently and must not modify shared state, except for writing at
+     * the given index of pre-allocated arrays.
+     *
+     * @param <K> the type of element.
+     */
+    interface Task<K> {
+
+        /**
+         * Evaluates the function on an element.
+         *
+         * @param index the index of the element in the list.
+         * @param element the element.
+         * @return the function value.
+         */
+        double evaluate(int index, K element);
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ParallelEvaluator() {
+    }
+
+    /**
+     * Evaluates a task on all the elements of a list.
+     *
+     * @param <K> the type of element.
+     * @param elements the elements.
+     * @param task the task.
+     * @return the task values, in the order of the elements.
+     */
+    static <K> double[] evaluate(final List<K> elements, final Task<K> task) {
+        final double[] values = new double[elements.size()];
+        if (elements.size() < sequentialThreshold || threadCount == 1) {
+            evaluateRange(elements, task, values, 0, elements.size());
+            return values;
+        }
+
+        int chunkCount = Math.min(elements.size(), threadCount * 4);
+        int chunkSize = (elements.size() + chunkCount - 1) / chunkCount;
+        List<Future<?>> futures = new ArrayList<>(chunkCount);
+        for (int start = 0; start < elements.size(); start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(start + chunkSize, elements.size());
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    evaluateRange(elements, task, values, from, to);
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The metric evaluation has been interrupted.", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException("The metric evaluation failed.", ex.getCause());
+        }
+        return values;
+    }
+
+    /**
+     * Evaluates a task on a range of elements.
+     *
+     * @param <K> the type of element.
+     * @param elements the elements.
+     * @param task the task.
+     * @param values the array where to store the values.
+     * @param from the first index of the range, included.
+     * @param to the last index of the range, excluded.
+     */
+    private static <K> void evaluateRange(List<K> elements, Task<K> task, double[] values, int from, int to) {
+        for (int i = from; i < to; i++) {
+            values[i] = task.evaluate(i, elements.get(i));
+        }
+    }
+}
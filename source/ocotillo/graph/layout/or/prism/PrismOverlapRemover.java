@@ -0,0 +1,558 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.or.prism;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.DelaunayTriangulation;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.Layout2D;
+import ocotillo.graph.layout.Layout2D.NodeOverlap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Removes node overlaps with the PRISM algorithm (Gansner and Hu, 2008). At
+ * each pass, the Delaunay triangulation of the node centres is used as
+ * proximity graph. Each proximity edge between overlapping nodes gets an
+ * ideal length that separates them, bounded by a maximum scaling of its
+ * current length, while the other edges keep their current length. The
+ * resulting proximity stress is minimised, which removes the overlaps while
+ * preserving the relative positions of the nodes. When the proximity edges
+ * have no more overlaps, the overlapping pairs found by a plane sweep are
+ * added to the proximity graph until no overlap is left. A pass takes
+ * O(n log n + k) time, where k is the number of overlapping pairs.
+ */
+public class PrismOverlapRemover {
+
+    private static final double touchingSlack = 1e-9;
+    private static final double separationSlack = 0.01;
+
+    private final double margin;
+    private final double maxScaling;
+    private final int maxPasses;
+    private final int stressIterations;
+
+    /**
+     * Builder for PRISM overlap removers.
+     */
+    public static class PrismOverlapRemoverBuilder {
+
+        private double margin = 0;
+        private double maxScaling = 1.5;
+        private int maxPasses = 200;
+        private int stressIterations = 30;
+
+        /**
+         * Indicates the margin to leave around each node.
+         *
+         * @param margin the margin.
+         * @return the builder.
+         */
+        public PrismOverlapRemoverBuilder withMargin(double margin) {
+            this.margin = margin;
+            return this;
+        }
+
+        /**
+         * Indicates the maximum factor by which a proximity edge is stretched
+         * in a single pass.
+         *
+         * @param maxScaling the maximum scaling.
+         * @return the builder.
+         */
+        public PrismOverlapRemoverBuilder withMaxScaling(double maxScaling) {
+            this.maxScaling = maxScaling;
+            return this;
+        }
+
+        /**
+         * Indicates the maximum number of passes.
+         *
+         * @param maxPasses the maximum number of passes.
+         * @return the builder.
+         */
+        public PrismOverlapRemoverBuilder withMaxPasses(int maxPasses) {
+            this.maxPasses = maxPasses;
+            return this;
+        }
+
+        /**
+         * Indicates the maximum number of stress majorization iterations
+         * executed in each pass.
+         *
+         * @param stressIterations the number of iterations.
+         * @return the builder.
+         */
+        public PrismOverlapRemoverBuilder withStressIterations(int stressIterations) {
+            this.stressIterations = stressIterations;
+            return this;
+        }
+
+        /**
+         * Builds the PRISM overlap remover.
+         *
+         * @return the overlap remover.
+         */
+        public PrismOverlapRemover build() {
+            if (margin < 0 || maxScaling <= 1 || maxPasses < 1 || stressIterations < 1) {
+                throw new IllegalArgumentException("Invalid PRISM overlap remover parameters.");
+            }
+            return new PrismOverlapRemover(margin, maxScaling, maxPasses, stressIterations);
+        }
+    }
+
+    /**
+     * Constructs a PRISM overlap remover.
+     *
+     * @param margin the margin around each node.
+     * @param maxScaling the maximum edge scaling per pass.
+     * @param maxPasses the maximum number of passes.
+     * @param stressIterations the stress iterations per pass.
+     */
+    private PrismOverlapRemover(double margin, double maxScaling, int maxPasses, int stressIterations) {
+        this.margin = margin;
+        this.maxScaling = maxScaling;
+        this.maxPasses = maxPasses;
+        this.stressIterations = stressIterations;
+    }
+
+    /**
+     * Removes the overlaps of a graph with the default parameters.
+     *
+     * @param graph the graph.
+     * @param margin the margin to leave around each node.
+     */
+    public static void run(Graph graph, double margin) {
+        new PrismOverlapRemoverBuilder().withMargin(margin).build().execute(graph);
+    }
+
+    /**
+     * Removes the node overlaps of a graph.
+     *
+     * @param graph the graph.
+     * @return true if all overlaps have been removed within the maximum
+     * number of passes.
+     */
+    public boolean execute(Graph graph) {
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> sizes = graph.nodeAttribute(StdAttribute.nodeSize);
+        Node[] nodes = graph.nodes().toArray(new Node[graph.nodeCount()]);
+        int nodeCount = nodes.length;
+        double[] points = new double[2 * nodeCount];
+        double[] halfWidths = new double[nodeCount];
+        double[] halfHeights = new double[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            Coordinates position = positions.get(nodes[i]);
+            Coordinates size = sizes.get(nodes[i]);
+            points[2 * i] = position.x();
+            points[2 * i + 1] = position.y();
+            halfWidths[i] = size.x() / 2 + margin;
+            halfHeights[i] = size.y() / 2 + margin;
+        }
+        separateCoincidentNodes(points, halfWidths, halfHeights);
+
+        Graph overlapGraph = new Graph();
+        NodeAttribute<Coordinates> overlapPositions = overlapGraph.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> overlapSizes = overlapGraph.nodeAttribute(StdAttribute.nodeSize);
+        Node[] overlapNodes = new Node[nodeCount];
+        Map<Node, Integer> indices = new HashMap<>();
+        for (int i = 0; i < nodeCount; i++) {
+            overlapNodes[i] = overlapGraph.newNode(nodes[i].id());
+            indices.put(overlapNodes[i], i);
+            overlapSizes.set(overlapNodes[i], new Coordinates(2 * halfWidths[i], 2 * halfHeights[i]));
+        }
+
+        boolean solved = nodeCount < 2;
+        boolean sweepPhase = false;
+        for (int pass = 0; pass < maxPasses && !solved; pass++) {
+            ProximityGraph proximity = new ProximityGraph(nodeCount);
+            addDelaunayEdges(proximity, points);
+            if (sweepPhase) {
+                for (int i = 0; i < nodeCount; i++) {
+                    overlapPositions.set(overlapNodes[i], new Coordinates(points[2 * i], points[2 * i + 1]));
+                }
+                List<NodeOverlap> overlaps = Layout2D.nodeOverlaps(overlapGraph, overlapPositions, overlapSizes).pairs();
+                if (overlaps.isEmpty()) {
+                    solved = true;
+                    break;
+                }
+                for (NodeOverlap overlap : overlaps) {
+                    proximity.add(indices.get(overlap.first()), indices.get(overlap.second()));
+                }
+            }
+            boolean overlapping = proximity.computeIdealLengths(points, halfWidths, halfHeights, maxScaling);
+            if (!overlapping) {
+                sweepPhase = true;
+                continue;
+            }
+            proximity.minimiseStress(points, stressIterations);
+        }
+
+        positions.startBulkNotification();
+        for (int i = 0; i < nodeCount; i++) {
+            positions.set(nodes[i], new Coordinates(points[2 * i], points[2 * i + 1]));
+        }
+        positions.stopBulkNotification();
+        return solved;
+    }
+
+    /**
+     * Moves apart the nodes with identical centres, which would otherwise be
+     * excluded from the triangulation.
+     *
+     * @param points the packed node centres.
+     * @param halfWidths the node half widths.
+     * @param halfHeights the node half heights.
+     */
+    private static void separateCoincidentNodes(final double[] points, double[] halfWidths, double[] halfHeights) {
+        int nodeCount = points.length / 2;
+        Integer[] order = new Integer[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int comparison = Double.compare(points[2 * a], points[2 * b]);
+                return comparison != 0 ? comparison : Double.compare(points[2 * a + 1], points[2 * b + 1]);
+            }
+        });
+        int duplicates = 0;
+        for (int k = 1; k < nodeCount; k++) {
+            int previous = order[k - 1];
+            int current = order[k];
+            if (points[2 * previous] == points[2 * current] && points[2 * previous + 1] == points[2 * current + 1]) {
+                duplicates++;
+                double angle = duplicates * 2.39996;
+                double distance = 1e-3 * Math.max(Math.max(halfWidths[current], halfHeights[current]), 1e-3) * Math.sqrt(duplicates);
+                points[2 * current] += distance * Math.cos(angle);
+                points[2 * current + 1] += distance * Math.sin(angle);
+            } else {
+                duplicates = 0;
+            }
+        }
+    }
+
+    /**
+     * Adds the edges of the Delaunay triangulation of the node centres.
+     *
+     * @param proximity the proximity graph.
+     * @param points the packed node centres.
+     */
+    private static void addDelaunayEdges(ProximityGraph proximity, double[] points) {
+        int nodeCount = points.length / 2;
+        if (nodeCount == 2) {
+            proximity.add(0, 1);
+            return;
+        }
+        DelaunayTriangulation triangulation = new DelaunayTriangulation(points);
+        int[] triangles = triangulation.triangles();
+        int[] halfedges = triangulation.halfedges();
+        if (triangles.length == 0) {
+            addChainEdges(proximity, points);
+            return;
+        }
+        for (int e = 0; e < triangles.length; e++) {
+            if (e < halfedges[e] || halfedges[e] == -1) {
+                proximity.add(triangles[e], triangles[DelaunayTriangulation.next(e)]);
+            }
+        }
+    }
+
+    /**
+     * Connects collinear node centres in a chain, ordered along their line.
+     *
+     * @param proximity the proximity graph.
+     * @param points the packed node centres.
+     */
+    private static void addChainEdges(ProximityGraph proximity, final double[] points) {
+        int nodeCount = points.length / 2;
+        Integer[] order = new Integer[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int comparison = Double.compare(points[2 * a], points[2 * b]);
+                return comparison != 0 ? comparison : Double.compare(points[2 * a + 1], points[2 * b + 1]);
+            }
+        });
+        for (int k = 1; k < nodeCount; k++) {
+            proximity.add(order[k - 1], order[k]);
+        }
+    }
+
+    /**
+     * The proximity graph, with the ideal length of each edge.
+     */
+    private static class ProximityGraph {
+
+        private final int nodeCount;
+        private int[] sources = new int[16];
+        private int[] targets = new int[16];
+        private double[] idealLengths;
+        private int edgeCount = 0;
+
+        /**
+         * Constructs an empty proximity graph.
+         *
+         * @param nodeCount the number of nodes.
+         */
+        ProximityGraph(int nodeCount) {
+            this.nodeCount = nodeCount;
+        }
+
+        /**
+         * Adds an edge.
+         *
+         * @param source the first node index.
+         * @param target the second node index.
+         */
+        void add(int source, int target) {
+            if (edgeCount == sources.length) {
+                sources = Arrays.copyOf(sources, sources.length * 2);
+                targets = Arrays.copyOf(targets, targets.length * 2);
+            }
+            sources[edgeCount] = source;
+            targets[edgeCount] = target;
+            edgeCount++;
+        }
+
+        /**
+         * Computes the ideal edge lengths. An edge between overlapping nodes
+         * is stretched by the factor that separates the nodes along the most
+         * convenient axis, plus a small slack so that the stress compromise
+         * does not leave them touching, up to the maximum scaling.
+         *
+         * @param points the packed node centres.
+         * @param halfWidths the node half widths.
+         * @param halfHeights the node half heights.
+         * @param maxScaling the maximum scaling.
+         * @return true if at least one edge connects overlapping nodes.
+         */
+        boolean computeIdealLengths(double[] points, double[] halfWidths, double[] halfHeights, double maxScaling) {
+            idealLengths = new double[edgeCount];
+            boolean overlapping = false;
+            for (int e = 0; e < edgeCount; e++) {
+                int i = sources[e];
+                int j = targets[e];
+                double dx = Math.abs(points[2 * i] - points[2 * j]);
+                double dy = Math.abs(points[2 * i + 1] - points[2 * j + 1]);
+                double scaleX = dx > 0 ? (halfWidths[i] + halfWidths[j]) / dx : Double.POSITIVE_INFINITY;
+                double scaleY = dy > 0 ? (halfHeights[i] + halfHeights[j]) / dy : Double.POSITIVE_INFINITY;
+                double scale = Math.min(scaleX, scaleY);
+                double stretch = 1;
+                if (scale * (1 + touchingSlack) > 1) {
+                    overlapping = true;
+                    stretch = Math.min(scale * (1 + separationSlack), maxScaling);
+                }
+                idealLengths[e] = Math.sqrt(dx * dx + dy * dy) * stretch;
+            }
+            return overlapping;
+        }
+
+        /**
+         * Minimises the proximity stress by majorization, using weights
+         * inversely proportional to the squared ideal lengths. Each
+         * majorization step solves the weighted Laplacian system of each axis
+         * with the conjugate gradient method.
+         *
+         * @param points the packed node centres, updated in place.
+         * @param iterations the maximum number of majorization steps.
+         */
+        void minimiseStress(double[] points, int iterations) {
+            int[] offsets = new int[nodeCount + 1];
+            for (int e = 0; e < edgeCount; e++) {
+                offsets[sources[e] + 1]++;
+                offsets[targets[e] + 1]++;
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] neighbours = new int[2 * edgeCount];
+            double[] lengths = new double[2 * edgeCount];
+            double[] weights = new double[2 * edgeCount];
+            double[] degrees = new double[nodeCount];
+            int[] filled = Arrays.copyOf(offsets, nodeCount);
+            for (int e = 0; e < edgeCount; e++) {
+                double length = idealLengths[e];
+                double weight = length > 0 ? 1 / (length * length) : 0;
+                int i = sources[e];
+                int j = targets[e];
+                neighbours[filled[i]] = j;
+                lengths[filled[i]] = length;
+                weights[filled[i]++] = weight;
+                neighbours[filled[j]] = i;
+                lengths[filled[j]] = length;
+                weights[filled[j]++] = weight;
+                degrees[i] += weight;
+                degrees[j] += weight;
+            }
+            Laplacian laplacian = new Laplacian(offsets, neighbours, weights, degrees);
+
+            double[] x = new double[nodeCount];
+            double[] y = new double[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                x[i] = points[2 * i];
+                y[i] = points[2 * i + 1];
+            }
+            double[] rightX = new double[nodeCount];
+            double[] rightY = new double[nodeCount];
+            double previousStress = Double.POSITIVE_INFINITY;
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                double stress = 0;
+                for (int i = 0; i < nodeCount; i++) {
+                    double sumX = 0;
+                    double sumY = 0;
+                    for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                        int j = neighbours[k];
+                        double dx = x[i] - x[j];
+                        double dy = y[i] - y[j];
+                        double distance = Math.sqrt(dx * dx + dy * dy);
+                        if (distance > 0) {
+                            sumX += weights[k] * lengths[k] * dx / distance;
+                            sumY += weights[k] * lengths[k] * dy / distance;
+                        }
+                        double difference = distance - lengths[k];
+                        stress += weights[k] * difference * difference;
+                    }
+                    rightX[i] = sumX;
+                    rightY[i] = sumY;
+                }
+                if (previousStress - stress < 1e-3 * stress) {
+                    break;
+                }
+                previousStress = stress;
+                laplacian.solve(rightX, x);
+                laplacian.solve(rightY, y);
+            }
+            for (int i = 0; i < nodeCount; i++) {
+                points[2 * i] = x[i];
+                points[2 * i + 1] = y[i];
+            }
+        }
+    }
+
+    /**
+     * A weighted graph Laplacian in compressed row format.
+     */
+    private static class Laplacian {
+
+        private static final int maxSolverIterations = 100;
+        private static final double solverTolerance = 1e-1;
+        private static final double negligibleResidual = 1e-9;
+
+        private final int[] offsets;
+        private final int[] neighbours;
+        private final double[] weights;
+        private final double[] degrees;
+
+        /**
+         * Constructs a Laplacian.
+         *
+         * @param offsets the row offsets.
+         * @param neighbours the column indices.
+         * @param weights the edge weights.
+         * @param degrees the weighted degrees.
+         */
+        Laplacian(int[] offsets, int[] neighbours, double[] weights, double[] degrees) {
+            this.offsets = offsets;
+            this.neighbours = neighbours;
+            this.weights = weights;
+            this.degrees = degrees;
+        }
+
+        /**
+         * Multiplies the Laplacian by a vector.
+         *
+         * @param vector the vector.
+         * @param result the vector where to store the result.
+         */
+        void multiply(double[] vector, double[] result) {
+            for (int i = 0; i < degrees.length; i++) {
+                double value = degrees[i] * vector[i];
+                for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                    value -= weights[k] * vector[neighbours[k]];
+                }
+                result[i] = value;
+            }
+        }
+
+        /**
+         * Solves the Laplacian system with the Jacobi preconditioned conjugate
+         * gradient method, starting from the given solution and stopping when
+         * the initial residual has been sufficiently reduced. A residual that
+         * is negligible compared to the right hand side is not reduced further,
+         * as its rounding errors would move the solution along the null
+         * space.
+         *
+         * @param right the right hand side, with zero sum.
+         * @param solution the initial solution, updated in place.
+         */
+        void solve(double[] right, double[] solution) {
+            int size = degrees.length;
+            double[] residual = new double[size];
+            double[] preconditioned = new double[size];
+            double[] direction = new double[size];
+            double[] product = new double[size];
+            multiply(solution, product);
+            double rightNorm = 0;
+            double residualNorm = 0;
+            double alignment = 0;
+            for (int i = 0; i < size; i++) {
+                rightNorm += right[i] * right[i];
+                residual[i] = right[i] - product[i];
+                preconditioned[i] = degrees[i] > 0 ? residual[i] / degrees[i] : residual[i];
+                direction[i] = preconditioned[i];
+                residualNorm += residual[i] * residual[i];
+                alignment += residual[i] * preconditioned[i];
+            }
+            double threshold = Math.max(solverTolerance * solverTolerance * residualNorm, negligibleResidual * negligibleResidual * rightNorm);
+            for (int iteration = 0; iteration < maxSolverIterations && residualNorm > threshold; iteration++) {
+                multiply(direction, product);
+                double curvature = 0;
+                for (int i = 0; i < size; i++) {
+                    curvature += direction[i] * product[i];
+                }
+                if (curvature <= 0) {
+                    break;
+                }
+                double step = alignment / curvature;
+                double newAlignment = 0;
+                residualNorm = 0;
+                for (int i = 0; i < size; i++) {
+                    solution[i] += step * direction[i];
+                    residual[i] -= step * product[i];
+                    preconditioned[i] = degrees[i] > 0 ? residual[i] / degrees[i] : residual[i];
+                    residualNorm += residual[i] * residual[i];
+                    newAlignment += residual[i] * preconditioned[i];
+                }
+                double ratio = newAlignment / alignment;
+                for (int i = 0; i < size; i++) {
+                    direction[i] = preconditioned[i] + ratio * direction[i];
+                }
+                alignment = newAlignment;
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ import ocotillo.graph.Graph;
 import ocotillo.graph.GraphAttribute;
 import ocotillo.graph.StdAttribute;
 import ocotillo.graph.rendering.GraphicsTools;
+import ocotillo.graph.serialization.dot.DotProcessRunner;
 import ocotillo.graph.serialization.dot.DotReader;
 import ocotillo.graph.serialization.dot.DotReader.DotReaderBuilder;
 import ocotillo.graph.serialization.dot.DotTools;
@@ -28,23 +29,16 @@ import ocotillo.graph.serialization.dot.DotWriter.DotWriterBuilder;
 import ocotillo.graph.serialization.dot.DotValueConverter.PositionConverter;
 import ocotillo.graph.serialization.dot.DotValueConverter.SizeConverter;
 import ocotillo.graph.serialization.dot.DotValueConverter.SizeDimensionConverter;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import org.apache.commons.exec.CommandLine;
-import org.apache.commons.exec.DefaultExecutor;
-import org.apache.commons.exec.PumpStreamHandler;
 
 /**
  * Executor for GraphViz's graph as maps algorithm.
  */
 public class GmapExecutor {
 
-    private final String[] arguments;
+    private final DotProcessRunner runner;
     private final DotReader dotReader;
     private final DotWriter dotWriter;
 
@@ -54,6 +48,7 @@ public class GmapExecutor {
     public static class GmapBuilder {
 
         private String[] arguments;
+        private long timeout = 0;
         private DotReader dotReader;
         private DotWriter dotWriter;
 
@@ -92,6 +87,18 @@ public class GmapExecutor {
             return this;
         }
 
+        /**
+         * Indicates the maximum running time of the algorithm. A zero value
+         * disables the timeout.
+         *
+         * @param milliseconds the timeout in milliseconds.
+         * @return the builder.
+         */
+        public GmapBuilder withTimeout(long milliseconds) {
+            this.timeout = milliseconds;
+            return this;
+        }
+
         /**
          * Indicates which dot reader to use to convert the algorithm output
          * into graph positions.
@@ -122,37 +129,31 @@ public class GmapExecutor {
          * @return the sfdp executor.
          */
         public GmapExecutor build() {
-            return new GmapExecutor(arguments, dotReader, dotWriter);
+            for (String argument : arguments) {
+                assert (argument.startsWith("-") && !argument.startsWith("-o") && !argument.startsWith("-O")) : "Arguments that control the input/ouput streams cannot be used here.";
+            }
+            DotProcessRunner runner = new DotProcessRunner.DotProcessRunnerBuilder("gvmap")
+                    .withArguments(arguments)
+                    .withTimeout(timeout)
+                    .build();
+            return new GmapExecutor(runner, dotReader, dotWriter);
         }
     }
 
     /**
      * Constructs a sfdp executor.
      *
-     * @param arguments the arguments.
+     * @param runner the process runner.
      * @param dotReader the dot reader.
      * @param dotWriter the dot writer.
      */
-    private GmapExecutor(String[] arguments, DotReader dotReader, DotWriter dotWriter) {
-        checkExecutable();
-        this.arguments = arguments;
+    private GmapExecutor(DotProcessRunner runner, DotReader dotReader, DotWriter dotWriter) {
+        DotProcessRunner.checkExecutable("gvmap -?", "gvmap");
+        this.runner = runner;
         this.dotReader = dotReader;
         this.dotWriter = dotWriter;
     }
 
-    /**
-     * Checks if the executable exists.
-     */
-    private static void checkExecutable() {
-        try {
-            DefaultExecutor executor = new DefaultExecutor();
-            executor.setStreamHandler(new PumpStreamHandler(new ByteArrayOutputStream()));
-            executor.execute(CommandLine.parse("gvmap -?"));
-        } catch (IOException ex) {
-            throw new IllegalStateException("gvmap executable has not been found.");
-        }
-    }
-
     /**
      * Runs the algorithm to compute the new positions for the given graph.
      *
@@ -168,9 +169,7 @@ public class GmapExecutor {
             clusterIdx++;
         }
 
-        List<String> dotInput = dotWriter.writeGraph(graph);
-        List<String> dotOutput = run(dotInput);
-        Graph generatedGraph = dotReader.parseFile(dotOutput);
+        Graph generatedGraph = runner.run(graph, dotWriter, dotReader);
 
         Map<String, Graph> clusterMap = new HashMap<>();
         for (Graph cluster : graph.subGraphs()) {
@@ -191,61 +190,4 @@ public class GmapExecutor {
             }
         }
     }
-
-    /**
-     * Runs the algorithm.
-     *
-     * @param dotInput the dot input.
-     * @return the dot output.
-     */
-    private List<String> run(List<String> dotInput) {
-        for (String argment : arguments) {
-            assert (argment.startsWith("-") && !argment.startsWith("-o") && !argment.startsWith("-O")) : "Arguments that control the input/ouput streams cannot be used here.";
-        }
-
-        CommandLine cmdLine = new CommandLine("gvmap");
-        cmdLine.addArguments(arguments);
-
-        ByteArrayInputStream inputStream = new ByteArrayInputStream(listToString(dotInput).getBytes());
-        ByteArrayOutputStream errorStream = new ByteArrayOutputStream();
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-        try {
-            DefaultExecutor executor = new DefaultExecutor();
-            executor.setStreamHandler(new PumpStreamHandler(outputStream, errorStream, inputStream));
-            executor.execute(cmdLine);
-        } catch (IOException ex) {
-            System.err.println("ERROR: " + errorStream.toString() + "\n");
-            System.out.println("OUTPUT: " + outputStream.toString() + "\n");
-            throw new IllegalStateException("Error while executing gvmap.");
-        }
-
-        return stringToList(outputStream.toString());
-    }
-
-    /**
-     * Converts a list of lines into a multi-line string.
-     *
-     * @param list the list of lines.
-     * @return the multi-line string.
-     */
-    private static String listToString(List<String> list) {
-        StringBuilder builder = new StringBuilder();
-        for (String string : list) {
-            builder.append(string);
-            builder.append("\n");
-        }
-        return builder.toString();
-    }
-
-    /**
-     * Converts a multi-line string into a list of lines.
-     *
-     * @param string the multi-line string.
-     * @return the list of lines.
-     */
-    private static List<String> stringToList(String string) {
-        return Arrays.asList(string.split("\n"));
-    }
-
 }
@@ -0,0 +1,840 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.other.gmap;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.DelaunayTriangulation;
+import ocotillo.geometry.Polygon;
+import ocotillo.graph.Edge;
+import ocotillo.graph.Graph;
+import ocotillo.graph.GraphAttribute;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.rendering.GraphicsTools;
+import ocotillo.graph.rendering.svg.SvgElement.SvgPolygon;
+import ocotillo.graph.serialization.dot.DotTools;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Computes the cluster regions of a graph as maps in process, as an
+ * alternative to the gvmap executable used by GmapExecutor. Each node is
+ * surrounded by sample points, at twice the margin distance, that belong to
+ * the sea. The Voronoi cells of the nodes, obtained from the Delaunay
+ * triangulation of nodes and samples, are merged by cluster and their
+ * boundaries smoothed. Nodes closer than four times the margin are therefore
+ * connected by land.
+ * <p>
+ * The results are stored as in GmapExecutor: the polygons of each cluster in
+ * its local attribute DotTools.polygonIdAttr, and their SVG representation
+ * at the beginning of its local graphics. Clusters are the direct subgraphs
+ * of the graph, and are coloured with their local color attribute, if any.
+ * Holes in a region are not represented.
+ * <p>
+ * The computation is incremental: the regions of the previous execution are
+ * kept together with the neighbourhood of each cluster, that is the
+ * positions and clusters of the nodes close enough to affect its region. Only
+ * the nodes around the clusters whose neighbourhood changed are triangulated,
+ * and only the regions of those clusters are traced. Their polygons and
+ * graphics are then updated if the raw boundaries changed, regardless of the
+ * vertex they start from and of their direction. When few nodes move between
+ * executions, as in an animation, most clusters are left untouched.
+ */
+public class GmapRegions {
+
+    private static final Color[] palette = {
+        new Color(0xfb, 0xb4, 0xae), new Color(0xb3, 0xcd, 0xe3), new Color(0xcc, 0xeb, 0xc5),
+        new Color(0xde, 0xcb, 0xe4), new Color(0xfe, 0xd9, 0xa6), new Color(0xff, 0xff, 0xcc),
+        new Color(0xe5, 0xd8, 0xbd), new Color(0xfd, 0xda, 0xec)};
+    private static final int seaSite = -2;
+    private static final int unclusteredSite = -1;
+    private static final double sampleAngleOffset = 0.3;
+    private static final double neighbourhoodFactor = 8;
+    private static final double toleranceFactor = 1e-6;
+
+    private final double margin;
+    private final int samples;
+    private final int smoothing;
+    private final Map<Graph, ClusterRegion> previousRegions = new WeakHashMap<>();
+    private final Map<Graph, Double> defaultMargins = new WeakHashMap<>();
+
+    /**
+     * Builder for GMap regions.
+     */
+    public static class GmapRegionsBuilder {
+
+        private double margin = 0;
+        private int samples = 8;
+        private int smoothing = 2;
+
+        /**
+         * Indicates the distance between the nodes and the coast. A
+         * non-positive value sets it to half the average edge length, computed
+         * on the first execution on a graph and then kept, so that moving the
+         * nodes does not invalidate all the regions.
+         *
+         * @param margin the margin.
+         * @return the builder.
+         */
+        public GmapRegionsBuilder withMargin(double margin) {
+            this.margin = margin;
+            return this;
+        }
+
+        /**
+         * Indicates the number of sea samples placed around each node.
+         *
+         * @param samples the number of samples.
+         * @return the builder.
+         */
+        public GmapRegionsBuilder withSamples(int samples) {
+            this.samples = samples;
+            return this;
+        }
+
+        /**
+         * Indicates the number of corner cutting iterations applied to the
+         * region boundaries.
+         *
+         * @param smoothing the number of smoothing iterations.
+         * @return the builder.
+         */
+        public GmapRegionsBuilder withSmoothing(int smoothing) {
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        /**
+         * Builds the GMap regions.
+         *
+         * @return the GMap regions.
+         */
+        public GmapRegions build() {
+            if (samples < 3 || smoothing < 0) {
+                throw new IllegalArgumentException("Invalid GMap regions parameters.");
+            }
+            return new GmapRegions(margin, samples, smoothing);
+        }
+    }
+
+    /**
+     * Constructs a GMap regions computation.
+     *
+     * @param margin the margin, or a non-positive value.
+     * @param samples the number of samples per node.
+     * @param smoothing the number of smoothing iterations.
+     */
+    private GmapRegions(double margin, int samples, int smoothing) {
+        this.margin = margin;
+        this.samples = samples;
+        this.smoothing = smoothing;
+    }
+
+    /**
+     * Computes the cluster regions of a graph.
+     *
+     * @param graph the graph.
+     */
+    public void execute(Graph graph) {
+        List<Graph> clusters = new ArrayList<>(graph.subGraphs());
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        double actualMargin = margin;
+        if (actualMargin <= 0) {
+            if (!defaultMargins.containsKey(graph)) {
+                defaultMargins.put(graph, defaultMargin(graph, positions));
+            }
+            actualMargin = defaultMargins.get(graph);
+        }
+
+        Map<Node, Integer> nodeToCluster = new HashMap<>();
+        for (int c = 0; c < clusters.size(); c++) {
+            for (Node node : clusters.get(c).nodes()) {
+                if (!nodeToCluster.containsKey(node)) {
+                    nodeToCluster.put(node, c);
+                }
+            }
+        }
+
+        double reach = neighbourhoodFactor * actualMargin;
+        Map<Long, List<Node>> grid = nodeGrid(graph, positions, reach);
+        List<Neighbourhood> neighbourhoods = new ArrayList<>();
+        boolean[] changed = new boolean[clusters.size()];
+        Set<Node> localNodes = new HashSet<>();
+        for (int c = 0; c < clusters.size(); c++) {
+            Graph cluster = clusters.get(c);
+            Neighbourhood neighbourhood = neighbourhood(cluster, graph, positions, nodeToCluster, grid, reach, actualMargin);
+            neighbourhoods.add(neighbourhood);
+            ClusterRegion previous = previousRegions.get(cluster);
+            changed[c] = previous == null || !previous.neighbourhood.equals(neighbourhood)
+                    || !cluster.hasLocalGraphAttribute(DotTools.polygonIdAttr);
+            if (changed[c]) {
+                localNodes.addAll(neighbourhood.positions.keySet());
+            }
+        }
+
+        Sites sites = new Sites(localNodes.size() * (samples + 1) + 4);
+        for (Node node : graph.nodes()) {
+            if (!localNodes.contains(node)) {
+                continue;
+            }
+            Coordinates position = positions.get(node);
+            Integer cluster = nodeToCluster.get(node);
+            sites.add(position.x(), position.y(), cluster != null ? cluster : unclusteredSite);
+        }
+        addSeaSamples(sites, localNodes.size(), actualMargin);
+
+        List<List<double[]>> rawRegions = new ArrayList<>();
+        for (int c = 0; c < clusters.size(); c++) {
+            rawRegions.add(new ArrayList<double[]>());
+        }
+        double tolerance = toleranceFactor * actualMargin;
+        if (sites.count >= 3) {
+            traceRegions(sites, actualMargin, tolerance, changed, rawRegions);
+        }
+
+        for (int c = 0; c < clusters.size(); c++) {
+            if (changed[c]) {
+                updateCluster(clusters.get(c), c, rawRegions.get(c), neighbourhoods.get(c), tolerance);
+            }
+        }
+    }
+
+    /**
+     * Places the nodes in a grid of square cells.
+     *
+     * @param graph the graph.
+     * @param positions the node positions.
+     * @param cellSize the cell size.
+     * @return the nodes of each non-empty cell.
+     */
+    private static Map<Long, List<Node>> nodeGrid(Graph graph, NodeAttribute<Coordinates> positions, double cellSize) {
+        Map<Long, List<Node>> grid = new HashMap<>();
+        for (Node node : graph.nodes()) {
+            Coordinates position = positions.get(node);
+            long key = cellKey(Math.floor(position.x() / cellSize), Math.floor(position.y() / cellSize));
+            if (!grid.containsKey(key)) {
+                grid.put(key, new ArrayList<Node>());
+            }
+            grid.get(key).add(node);
+        }
+        return grid;
+    }
+
+    /**
+     * Computes the neighbourhood of a cluster, that is the nodes in the
+     * bounding box of the cluster enlarged by the given reach. The cells of
+     * the cluster nodes are bounded by their sea samples, and only depend on
+     * the sites in this box.
+     *
+     * @param cluster the cluster.
+     * @param graph the graph.
+     * @param positions the node positions.
+     * @param nodeToCluster the cluster index of the clustered nodes.
+     * @param grid the grid of the nodes, with cells as large as the reach.
+     * @param reach the reach.
+     * @param margin the margin.
+     * @return the neighbourhood.
+     */
+    private static Neighbourhood neighbourhood(Graph cluster, Graph graph, NodeAttribute<Coordinates> positions, Map<Node, Integer> nodeToCluster, Map<Long, List<Node>> grid, double reach, double margin) {
+        Neighbourhood neighbourhood = new Neighbourhood(margin);
+        if (cluster.nodeCount() == 0) {
+            return neighbourhood;
+        }
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (Node node : cluster.nodes()) {
+            Coordinates position = positions.get(node);
+            minX = Math.min(minX, position.x() - reach);
+            minY = Math.min(minY, position.y() - reach);
+            maxX = Math.max(maxX, position.x() + reach);
+            maxY = Math.max(maxY, position.y() + reach);
+        }
+
+        double minCellX = Math.floor(minX / reach);
+        double minCellY = Math.floor(minY / reach);
+        double maxCellX = Math.floor(maxX / reach);
+        double maxCellY = Math.floor(maxY / reach);
+        Collection<Node> candidates = new ArrayList<>();
+        if ((maxCellX - minCellX + 1) * (maxCellY - minCellY + 1) > grid.size()) {
+            candidates = graph.nodes();
+        } else {
+            for (double cellX = minCellX; cellX <= maxCellX; cellX++) {
+                for (double cellY = minCellY; cellY <= maxCellY; cellY++) {
+                    List<Node> cell = grid.get(cellKey(cellX, cellY));
+                    if (cell != null) {
+                        candidates.addAll(cell);
+                    }
+                }
+            }
+        }
+        for (Node node : candidates) {
+            Coordinates position = positions.get(node);
+            if (position.x() >= minX && position.x() <= maxX && position.y() >= minY && position.y() <= maxY) {
+                Integer nodeCluster = nodeToCluster.get(node);
+                neighbourhood.positions.put(node, new Coordinates(position.x(), position.y()));
+                neighbourhood.clusters.put(node, nodeCluster != null ? nodeCluster : unclusteredSite);
+            }
+        }
+        return neighbourhood;
+    }
+
+    /**
+     * Computes the default margin as half the average edge length.
+     *
+     * @param graph the graph.
+     * @param positions the node positions.
+     * @return the default margin.
+     */
+    private static double defaultMargin(Graph graph, NodeAttribute<Coordinates> positions) {
+        double totalLength = 0;
+        int edgeCount = 0;
+        for (Edge edge : graph.edges()) {
+            Coordinates source = positions.get(edge.source());
+            Coordinates target = positions.get(edge.target());
+            double length = Math.hypot(source.x() - target.x(), source.y() - target.y());
+            if (length > 0) {
+                totalLength += length;
+                edgeCount++;
+            }
+        }
+        return edgeCount > 0 ? totalLength / edgeCount / 2 : 1;
+    }
+
+    /**
+     * Adds the sea samples around the nodes, discarding those closer than
+     * twice the margin to any node, and the four corners of a frame that
+     * keeps all nodes and samples inside the convex hull.
+     *
+     * @param sites the sites, containing the nodes.
+     * @param nodeCount the number of nodes.
+     * @param margin the margin.
+     */
+    private void addSeaSamples(Sites sites, int nodeCount, double margin) {
+        double radius = 2 * margin;
+        Map<Long, List<Integer>> grid = new HashMap<>();
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < nodeCount; i++) {
+            long key = cellKey(Math.floor(sites.x(i) / radius), Math.floor(sites.y(i) / radius));
+            if (!grid.containsKey(key)) {
+                grid.put(key, new ArrayList<Integer>());
+            }
+            grid.get(key).add(i);
+            minX = Math.min(minX, sites.x(i));
+            minY = Math.min(minY, sites.y(i));
+            maxX = Math.max(maxX, sites.x(i));
+            maxY = Math.max(maxY, sites.y(i));
+        }
+
+        double minSquaredDistance = radius * radius * (1 - 1e-9);
+        for (int i = 0; i < nodeCount; i++) {
+            for (int k = 0; k < samples; k++) {
+                double angle = sampleAngleOffset + 2 * Math.PI * k / samples;
+                double x = sites.x(i) + radius * Math.cos(angle);
+                double y = sites.y(i) + radius * Math.sin(angle);
+                if (isFarFromNodes(x, y, i, radius, minSquaredDistance, sites, grid)) {
+                    sites.add(x, y, seaSite);
+                }
+            }
+        }
+
+        if (nodeCount > 0) {
+            double frame = 4 * radius;
+            sites.add(minX - frame, minY - frame, seaSite);
+            sites.add(maxX + frame, minY - frame, seaSite);
+            sites.add(maxX + frame, maxY + frame, seaSite);
+            sites.add(minX - frame, maxY + frame, seaSite);
+        }
+    }
+
+    /**
+     * Verifies that a sample is far enough from all nodes other than the one
+     * that generated it.
+     *
+     * @param x the sample x coordinate.
+     * @param y the sample y coordinate.
+     * @param owner the node that generated the sample.
+     * @param radius the grid cell size.
+     * @param minSquaredDistance the minimum squared distance.
+     * @param sites the sites.
+     * @param grid the grid of node indices.
+     * @return true if the sample is far from the other nodes.
+     */
+    private static boolean isFarFromNodes(double x, double y, int owner, double radius, double minSquaredDistance, Sites sites, Map<Long, List<Integer>> grid) {
+        double cellX = Math.floor(x / radius);
+        double cellY = Math.floor(y / radius);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                List<Integer> cell = grid.get(cellKey(cellX + dx, cellY + dy));
+                if (cell == null) {
+                    continue;
+                }
+                for (int j : cell) {
+                    double distanceX = sites.x(j) - x;
+                    double distanceY = sites.y(j) - y;
+                    if (j != owner && distanceX * distanceX + distanceY * distanceY < minSquaredDistance) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Computes the key of a grid cell.
+     *
+     * @param cellX the cell x index.
+     * @param cellY the cell y index.
+     * @return the cell key.
+     */
+    private static long cellKey(double cellX, double cellY) {
+        return ((long) cellX << 32) ^ ((long) cellY & 0xffffffffL);
+    }
+
+    /**
+     * Traces the boundaries of the cluster regions. A Voronoi edge is on the
+     * boundary of a cluster when it separates a site of the cluster from a
+     * site outside it. The boundary is followed through the circumcenters of
+     * the Delaunay triangles, each having exactly two such edges. Consecutive
+     * vertices closer than the tolerance, such as the circumcenters of
+     * triangles on the same circle, are merged.
+     *
+     * @param sites the sites.
+     * @param margin the margin.
+     * @param tolerance the tolerance on the vertex coordinates.
+     * @param traced the clusters whose boundaries are traced.
+     * @param rawRegions the list where to store the boundaries of each
+     * cluster.
+     */
+    private static void traceRegions(Sites sites, double margin, double tolerance, boolean[] traced, List<List<double[]>> rawRegions) {
+        DelaunayTriangulation triangulation = new DelaunayTriangulation(Arrays.copyOf(sites.coordinates, 2 * sites.count));
+        int[] triangles = triangulation.triangles();
+        int[] halfedges = triangulation.halfedges();
+        double[] vertices = new double[triangles.length / 3 * 2];
+        Arrays.fill(vertices, Double.NaN);
+        boolean[] visited = new boolean[triangles.length];
+
+        for (int e = 0; e < triangles.length; e++) {
+            int cluster = sites.cluster(triangles[e]);
+            if (visited[e] || cluster < 0 || !traced[cluster] || sites.cluster(triangles[DelaunayTriangulation.next(e)]) == cluster) {
+                continue;
+            }
+            List<Double> loop = new ArrayList<>();
+            int halfedge = e;
+            boolean closed = true;
+            do {
+                visited[halfedge] = true;
+                int triangle = halfedge / 3;
+                double[] vertex = vertex(triangulation, sites, triangle, margin, vertices);
+                int size = loop.size();
+                if (size == 0 || !isClose(loop.get(size - 2), loop.get(size - 1), vertex[0], vertex[1], tolerance)) {
+                    loop.add(vertex[0]);
+                    loop.add(vertex[1]);
+                }
+                int previous = DelaunayTriangulation.previous(halfedge);
+                int third = triangles[previous];
+                int exit = sites.cluster(third) == cluster ? DelaunayTriangulation.next(halfedge) : previous;
+                halfedge = halfedges[exit];
+                if (halfedge == -1) {
+                    closed = false;
+                    break;
+                }
+            } while (halfedge != e);
+
+            if (closed && loop.size() >= 6) {
+                double[] points = new double[loop.size()];
+                for (int i = 0; i < points.length; i++) {
+                    points[i] = loop.get(i);
+                }
+                if (isClose(points[0], points[1], points[points.length - 2], points[points.length - 1], tolerance)) {
+                    points = Arrays.copyOf(points, points.length - 2);
+                }
+                int site = triangles[e];
+                if (points.length >= 6 && isInside(sites.x(site), sites.y(site), points)) {
+                    rawRegions.get(cluster).add(points);
+                }
+            }
+        }
+    }
+
+    /**
+     * Verifies if two points are closer than the tolerance on each
+     * coordinate.
+     *
+     * @param x1 the first point x coordinate.
+     * @param y1 the first point y coordinate.
+     * @param x2 the second point x coordinate.
+     * @param y2 the second point y coordinate.
+     * @param tolerance the tolerance.
+     * @return true if the points are close.
+     */
+    private static boolean isClose(double x1, double y1, double x2, double y2, double tolerance) {
+        return Math.abs(x1 - x2) <= tolerance && Math.abs(y1 - y2) <= tolerance;
+    }
+
+    /**
+     * Returns the Voronoi vertex of a triangle, that is its circumcenter,
+     * clamped around the triangle sites for nearly degenerate triangles.
+     *
+     * @param triangulation the triangulation.
+     * @param sites the sites.
+     * @param triangle the triangle.
+     * @param margin the margin.
+     * @param vertices the cache of the computed vertices.
+     * @return the vertex coordinates.
+     */
+    private static double[] vertex(DelaunayTriangulation triangulation, Sites sites, int triangle, double margin, double[] vertices) {
+        if (Double.isNaN(vertices[2 * triangle])) {
+            Coordinates center = triangulation.circumcenter(triangle);
+            double minX = Double.POSITIVE_INFINITY;
+            double minY = Double.POSITIVE_INFINITY;
+            double maxX = Double.NEGATIVE_INFINITY;
+            double maxY = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < 3; i++) {
+                int site = triangulation.triangles()[3 * triangle + i];
+                minX = Math.min(minX, sites.x(site));
+                minY = Math.min(minY, sites.y(site));
+                maxX = Math.max(maxX, sites.x(site));
+                maxY = Math.max(maxY, sites.y(site));
+            }
+            double reach = 2 * margin;
+            vertices[2 * triangle] = clamp(center.x(), minX - reach, maxX + reach);
+            vertices[2 * triangle + 1] = clamp(center.y(), minY - reach, maxY + reach);
+        }
+        return new double[]{vertices[2 * triangle], vertices[2 * triangle + 1]};
+    }
+
+    /**
+     * Clamps a value in an interval. Not a number values are mapped to the
+     * interval center.
+     *
+     * @param value the value.
+     * @param min the interval minimum.
+     * @param max the interval maximum.
+     * @return the clamped value.
+     */
+    private static double clamp(double value, double min, double max) {
+        if (Double.isNaN(value)) {
+            return (min + max) / 2;
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Verifies if a point is inside a polygon with the even-odd rule.
+     *
+     * @param x the point x coordinate.
+     * @param y the point y coordinate.
+     * @param polygon the packed polygon points.
+     * @return true if the point is inside.
+     */
+    private static boolean isInside(double x, double y, double[] polygon) {
+        boolean inside = false;
+        int n = polygon.length / 2;
+        for (int i = 0, j = n - 1; i < n; j = i++) {
+            double xi = polygon[2 * i];
+            double yi = polygon[2 * i + 1];
+            double xj = polygon[2 * j];
+            double yj = polygon[2 * j + 1];
+            if ((yi > y) != (yj > y) && x < (xj - xi) * (y - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Updates the polygons and graphics of a cluster, if its raw boundaries
+     * changed since the previous execution.
+     *
+     * @param cluster the cluster.
+     * @param index the cluster index.
+     * @param rawLoops the raw boundaries.
+     * @param neighbourhood the cluster neighbourhood.
+     * @param tolerance the tolerance on the vertex coordinates.
+     */
+    private void updateCluster(Graph cluster, int index, List<double[]> rawLoops, Neighbourhood neighbourhood, double tolerance) {
+        ClusterRegion previous = previousRegions.get(cluster);
+        if (previous != null && previous.hasSameBoundaries(rawLoops, tolerance) && cluster.hasLocalGraphAttribute(DotTools.polygonIdAttr)) {
+            previousRegions.put(cluster, new ClusterRegion(previous.rawLoops, previous.graphics, neighbourhood));
+            return;
+        }
+
+        List<Polygon> polygons = new ArrayList<>();
+        for (double[] rawLoop : rawLoops) {
+            polygons.add(smooth(rawLoop));
+        }
+
+        Color color = cluster.hasLocalGraphAttribute(StdAttribute.color)
+                ? cluster.<Color>graphAttribute(StdAttribute.color).get() : palette[index % palette.length];
+        String label = cluster.<String>graphAttribute(StdAttribute.label).get();
+        StringBuilder graphics = new StringBuilder();
+        for (int i = 0; i < polygons.size(); i++) {
+            SvgPolygon svgPolygon = new SvgPolygon(label + "_GmapPolygon" + (i + 1), polygons.get(i), color, 0.1, Color.BLACK);
+            if (graphics.length() > 0) {
+                graphics.append(" ");
+            }
+            graphics.append(svgPolygon.toString());
+        }
+
+        if (cluster.hasLocalGraphAttribute(DotTools.polygonIdAttr)) {
+            cluster.<List<Polygon>>graphAttribute(DotTools.polygonIdAttr).set(polygons);
+        } else {
+            cluster.newLocalGraphAttribute(DotTools.polygonIdAttr, polygons);
+        }
+        GraphAttribute<String> localGraphics = GraphicsTools.getLocalGraphics(cluster);
+        String otherGraphics = localGraphics.get();
+        if (previous != null && !previous.graphics.isEmpty() && otherGraphics.startsWith(previous.graphics)) {
+            otherGraphics = otherGraphics.substring(previous.graphics.length()).trim();
+        }
+        if (graphics.length() == 0) {
+            localGraphics.set(otherGraphics);
+        } else if (otherGraphics.isEmpty()) {
+            localGraphics.set(graphics.toString());
+        } else {
+            localGraphics.set(graphics + " " + otherGraphics);
+        }
+        previousRegions.put(cluster, new ClusterRegion(rawLoops, graphics.toString(), neighbourhood));
+    }
+
+    /**
+     * Smooths a closed boundary with corner cutting.
+     *
+     * @param rawLoop the packed boundary points.
+     * @return the smoothed polygon.
+     */
+    private Polygon smooth(double[] rawLoop) {
+        double[] points = rawLoop;
+        for (int iteration = 0; iteration < smoothing; iteration++) {
+            int n = points.length / 2;
+            double[] smoothed = new double[points.length * 2];
+            for (int i = 0; i < n; i++) {
+                int j = (i + 1) % n;
+                smoothed[4 * i] = 0.75 * points[2 * i] + 0.25 * points[2 * j];
+                smoothed[4 * i + 1] = 0.75 * points[2 * i + 1] + 0.25 * points[2 * j + 1];
+                smoothed[4 * i + 2] = 0.25 * points[2 * i] + 0.75 * points[2 * j];
+                smoothed[4 * i + 3] = 0.25 * points[2 * i + 1] + 0.75 * points[2 * j + 1];
+            }
+            points = smoothed;
+        }
+        Polygon polygon = new Polygon();
+        for (int i = 0; i < points.length / 2; i++) {
+            polygon.add(new Coordinates(points[2 * i], points[2 * i + 1]));
+        }
+        return polygon;
+    }
+
+    /**
+     * The packed coordinates of the triangulation sites and the cluster of
+     * each of them.
+     */
+    private static class Sites {
+
+        private double[] coordinates;
+        private int[] clusters;
+        private int count = 0;
+
+        /**
+         * Constructs an empty set of sites.
+         *
+         * @param capacity the expected number of sites.
+         */
+        Sites(int capacity) {
+            coordinates = new double[2 * Math.max(capacity, 1)];
+            clusters = new int[Math.max(capacity, 1)];
+        }
+
+        /**
+         * Adds a site.
+         *
+         * @param x the x coordinate.
+         * @param y the y coordinate.
+         * @param cluster the cluster index, or a negative value for sea and
+         * unclustered nodes.
+         */
+        void add(double x, double y, int cluster) {
+            if (count == clusters.length) {
+                coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+                clusters = Arrays.copyOf(clusters, clusters.length * 2);
+            }
+            coordinates[2 * count] = x;
+            coordinates[2 * count + 1] = y;
+            clusters[count] = cluster;
+            count++;
+        }
+
+        /**
+         * Returns the x coordinate of a site.
+         *
+         * @param site the site.
+         * @return the x coordinate.
+         */
+        double x(int site) {
+            return coordinates[2 * site];
+        }
+
+        /**
+         * Returns the y coordinate of a site.
+         *
+         * @param site the site.
+         * @return the y coordinate.
+         */
+        double y(int site) {
+            return coordinates[2 * site + 1];
+        }
+
+        /**
+         * Returns the cluster of a site.
+         *
+         * @param site the site.
+         * @return the cluster index, or a negative value.
+         */
+        int cluster(int site) {
+            return clusters[site];
+        }
+    }
+
+    /**
+     * The positions and clusters of the nodes that can affect the region of
+     * a cluster, and the margin used to compute it.
+     */
+    private static class Neighbourhood {
+
+        private final double margin;
+        private final Map<Node, Coordinates> positions = new HashMap<>();
+        private final Map<Node, Integer> clusters = new HashMap<>();
+
+        /**
+         * Constructs an empty neighbourhood.
+         *
+         * @param margin the margin.
+         */
+        Neighbourhood(double margin) {
+            this.margin = margin;
+        }
+
+        @Override
+        public int hashCode() {
+            return positions.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Neighbourhood)) {
+                return false;
+            }
+            Neighbourhood other = (Neighbourhood) obj;
+            return margin == other.margin && positions.equals(other.positions) && clusters.equals(other.clusters);
+        }
+    }
+
+    /**
+     * The region of a cluster computed in the previous execution.
+     */
+    private static class ClusterRegion {
+
+        private final List<double[]> rawLoops;
+        private final String graphics;
+        private final Neighbourhood neighbourhood;
+
+        /**
+         * Constructs a cluster region.
+         *
+         * @param rawLoops the raw boundaries.
+         * @param graphics the graphics added to the cluster.
+         * @param neighbourhood the neighbourhood of the cluster.
+         */
+        ClusterRegion(List<double[]> rawLoops, String graphics, Neighbourhood neighbourhood) {
+            this.rawLoops = rawLoops;
+            this.graphics = graphics;
+            this.neighbourhood = neighbourhood;
+        }
+
+        /**
+         * Verifies if the region has the given raw boundaries, in any order.
+         *
+         * @param otherLoops the other raw boundaries.
+         * @param tolerance the tolerance on the vertex coordinates.
+         * @return true if the boundaries are the same.
+         */
+        boolean hasSameBoundaries(List<double[]> otherLoops, double tolerance) {
+            if (rawLoops.size() != otherLoops.size()) {
+                return false;
+            }
+            boolean[] matched = new boolean[otherLoops.size()];
+            for (double[] loop : rawLoops) {
+                boolean found = false;
+                for (int i = 0; i < otherLoops.size() && !found; i++) {
+                    if (!matched[i] && isSameLoop(loop, otherLoops.get(i), tolerance)) {
+                        matched[i] = true;
+                        found = true;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Verifies if two closed loops pass through the same vertices in the
+         * same cyclic sequence, regardless of their first vertex and of their
+         * direction.
+         *
+         * @param loop the first packed loop.
+         * @param other the second packed loop.
+         * @param tolerance the tolerance on the vertex coordinates.
+         * @return true if the loops are the same.
+         */
+        private static boolean isSameLoop(double[] loop, double[] other, double tolerance) {
+            if (loop.length != other.length) {
+                return false;
+            }
+            int n = loop.length / 2;
+            for (int start = 0; start < n; start++) {
+                if (!isClose(loop[0], loop[1], other[2 * start], other[2 * start + 1], tolerance)) {
+                    continue;
+                }
+                for (int direction = -1; direction <= 1; direction += 2) {
+                    boolean same = true;
+                    for (int i = 1; i < n && same; i++) {
+                        int j = ((start + direction * i) % n + n) % n;
+                        same = isClose(loop[2 * i], loop[2 * i + 1], other[2 * j], other[2 * j + 1], tolerance);
+                    }
+                    if (same) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+    }
+}
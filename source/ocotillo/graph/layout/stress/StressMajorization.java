@@ -0,0 +1,583 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.stress;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Graph;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.GraphDistances;
+import ocotillo.graph.layout.fdl.impred.Impred;
+import ocotillo.graph.layout.fdl.impred.ImpredConstraint;
+import ocotillo.graph.layout.fdl.impred.ImpredForce;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Stress majorization layout. The node positions are computed so that their
+ * Euclidean distances approximate the graph theoretic distances, by iterating
+ * localized majorization updates executed in parallel on all nodes. Small
+ * graphs use the distances between all pairs of nodes, while larger graphs
+ * use the sparse model, where each node is only related to its neighbours
+ * and to a set of pivots that represent the rest of the graph. The resulting
+ * layout can be refined with ImPrEd to remove the node overlaps.
+ */
+public class StressMajorization {
+
+    private final double edgeLength;
+    private final int maxIterations;
+    private final double tolerance;
+    private final int pivots;
+    private final int threads;
+    private final Random random;
+    private final boolean useCurrentPositions;
+    private final int refinementIterations;
+
+    private static final int allPairsLimit = 2000;
+    private static final int defaultPivots = 200;
+    private static final double repulsionRange = 3;
+
+    /**
+     * Builder for StressMajorization.
+     */
+    public static class StressMajorizationBuilder {
+
+        private double edgeLength = 1;
+        private int maxIterations = 300;
+        private double tolerance = 1e-4;
+        private int pivots = -1;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        private Random random = new Random();
+        private boolean useCurrentPositions = false;
+        private int refinementIterations = 0;
+
+        /**
+         * Indicates the desired length for the edges.
+         *
+         * @param edgeLength the edge length.
+         * @return the builder.
+         */
+        public StressMajorizationBuilder withEdgeLength(double edgeLength) {
+            this.edgeLength = edgeLength;
+            return this;
+        }
+
+        /**
+         * Indicates when to stop the iterations. The computation terminates
+         * when the relative stress reduction of an iteration falls below the
+         * tolerance, or after the maximum number of iterations.
+         *
+         * @param maxIterations the maximum number of iterations.
+         * @param tolerance the relative stress reduction tolerance.
+         * @return the builder.
+         */
+        public StressMajorizationBuilder withIterations(int maxIterations, double tolerance) {
+            this.maxIterations = maxIterations;
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * Indicates the number of pivots of the sparse model. A zero value
+         * forces the use of all pairs distances. By default, all pairs are
+         * used for graphs up to 2000 nodes, and 200 pivots otherwise.
+         *
+         * @param pivots the number of pivots.
+         * @return the builder.
+         */
+        public StressMajorizationBuilder withPivots(int pivots) {
+            this.pivots = pivots;
+            return this;
+        }
+
+        /**
+         * Indicates the number of threads used for the distance computation
+         * and for the position updates.
+         *
+         * @param threads the number of threads.
+         * @return the builder.
+         */
+        public StressMajorizationBuilder withThreads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
+        /**
+         * Indicates the seed of the random initial placement.
+         *
+         * @param seed the seed.
+         * @return the builder.
+         */
+        public StressMajorizationBuilder withRandomSeed(long seed) {
+            this.random = new Random(seed);
+            return this;
+        }
+
+        /**
+         * Starts the computation from the current node positions rather than
+         * from a random placement. Coincident nodes are slightly moved apart,
+         * using the random seed, as the majorization cannot separate them.
+         *
+         * @return the builder.
+         */
+        public StressMajorizationBuilder withCurrentPositions() {
+            this.useCurrentPositions = true;
+            return this;
+        }
+
+        /**
+         * Refines the final layout with the given number of ImPrEd iterations
+         * to remove node overlaps.
+         *
+         * @param iterations the number of ImPrEd iterations.
+         * @return the builder.
+         */
+        public StressMajorizationBuilder withImpredRefinement(int iterations) {
+            this.refinementIterations = iterations;
+            return this;
+        }
+
+        /**
+         * Builds the stress majorization layout.
+         *
+         * @return the layout algorithm.
+         */
+        public StressMajorization build() {
+            if (edgeLength <= 0 || maxIterations < 0 || tolerance < 0 || threads < 1 || refinementIterations < 0) {
+                throw new IllegalArgumentException("Invalid stress majorization parameters.");
+            }
+            return new StressMajorization(edgeLength, maxIterations, tolerance, pivots, threads, random, useCurrentPositions, refinementIterations);
+        }
+    }
+
+    /**
+     * Constructs a stress majorization layout.
+     *
+     * @param edgeLength the desired edge length.
+     * @param maxIterations the maximum number of iterations.
+     * @param tolerance the relative stress reduction tolerance.
+     * @param pivots the number of pivots, zero for all pairs, negative for
+     * automatic.
+     * @param threads the number of threads.
+     * @param random the random number generator.
+     * @param useCurrentPositions true to start from the current positions.
+     * @param refinementIterations the number of ImPrEd refinement iterations.
+     */
+    private StressMajorization(double edgeLength, int maxIterations, double tolerance, int pivots, int threads, Random random, boolean useCurrentPositions, int refinementIterations) {
+        this.edgeLength = edgeLength;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+        this.pivots = pivots;
+        this.threads = threads;
+        this.random = random;
+        this.useCurrentPositions = useCurrentPositions;
+        this.refinementIterations = refinementIterations;
+    }
+
+    /**
+     * Computes the layout of a graph, setting its node positions.
+     *
+     * @param graph the graph.
+     */
+    public void execute(Graph graph) {
+        int nodeCount = graph.nodeCount();
+        if (nodeCount == 0) {
+            return;
+        }
+        int pivotCount = pivots >= 0 ? pivots : (nodeCount <= allPairsLimit ? 0 : defaultPivots);
+        StressModel model = pivotCount == 0 || pivotCount >= nodeCount
+                ? new StressModel(GraphDistances.allPairs(graph, threads), edgeLength)
+                : sparseModel(GraphDistances.fromPivots(graph, pivotCount));
+
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        double[] x = new double[nodeCount];
+        double[] y = new double[nodeCount];
+        double side = Math.sqrt(nodeCount) * edgeLength;
+        for (int i = 0; i < nodeCount; i++) {
+            if (useCurrentPositions) {
+                Coordinates position = positions.get(model.distances.node(i));
+                x[i] = position.x();
+                y[i] = position.y();
+            } else {
+                x[i] = random.nextDouble() * side;
+                y[i] = random.nextDouble() * side;
+            }
+        }
+        if (useCurrentPositions) {
+            separateCoincidentNodes(x, y);
+        }
+
+        majorize(model, x, y);
+
+        positions.startBulkNotification();
+        for (int i = 0; i < nodeCount; i++) {
+            positions.set(model.distances.node(i), new Coordinates(x[i], y[i]));
+        }
+        positions.stopBulkNotification();
+
+        if (refinementIterations > 0) {
+            Impred impred = new Impred.ImpredBuilder(graph)
+                    .withLocatorCellSize(repulsionRange * edgeLength)
+                    .withForce(new ImpredForce.EdgeAttraction(edgeLength))
+                    .withForce(new ImpredForce.NodeNodeRepulsion(edgeLength))
+                    .withConstraint(new ImpredConstraint.DecreasingMaxMovement(edgeLength))
+                    .build();
+            impred.iterate(refinementIterations);
+            impred.close();
+        }
+    }
+
+    /**
+     * Moves apart the nodes that share the same position. Each duplicate is
+     * displaced by a tiny amount in a random direction, since a majorization
+     * update cannot separate coincident nodes.
+     *
+     * @param x the x coordinates, updated in place.
+     * @param y the y coordinates, updated in place.
+     */
+    private void separateCoincidentNodes(final double[] x, final double[] y) {
+        Integer[] order = new Integer[x.length];
+        for (int i = 0; i < x.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int comparison = Double.compare(x[a], x[b]);
+                return comparison != 0 ? comparison : Double.compare(y[a], y[b]);
+            }
+        });
+        double originX = 0;
+        double originY = 0;
+        for (int k = 0; k < order.length; k++) {
+            int current = order[k];
+            if (k == 0 || x[current] != originX || y[current] != originY) {
+                originX = x[current];
+                originY = y[current];
+            } else {
+                double angle = random.nextDouble() * 2 * Math.PI;
+                double distance = 1e-3 * edgeLength * (0.5 + random.nextDouble());
+                x[current] += distance * Math.cos(angle);
+                y[current] += distance * Math.sin(angle);
+            }
+        }
+    }
+
+    /**
+     * The terms of the stress function. In the full model the terms are read
+     * directly from the distance matrix. In the sparse model, the related
+     * nodes of each node are stored with their desired distances and weights.
+     */
+    private static class StressModel {
+
+        final GraphDistances distances;
+        final double edgeLength;
+        final int disconnectedHops;
+        final int[] termStarts;
+        final int[] termNodes;
+        final float[] termDistances;
+        final float[] termWeights;
+
+        /**
+         * Constructs a full stress model. Disconnected pairs are assigned a
+         * distance slightly larger than the graph diameter.
+         *
+         * @param distances the all pairs distances.
+         * @param edgeLength the desired edge length.
+         */
+        StressModel(GraphDistances distances, double edgeLength) {
+            int diameter = 0;
+            for (int i = 0; i < distances.nodeCount(); i++) {
+                for (int j = 0; j < distances.nodeCount(); j++) {
+                    int hops = distances.hops(i, j);
+                    if (hops != GraphDistances.unreachable) {
+                        diameter = Math.max(diameter, hops);
+                    }
+                }
+            }
+            this.distances = distances;
+            this.edgeLength = edgeLength;
+            this.disconnectedHops = diameter + 1;
+            this.termStarts = null;
+            this.termNodes = null;
+            this.termDistances = null;
+            this.termWeights = null;
+        }
+
+        /**
+         * Constructs a sparse stress model.
+         *
+         * @param distances the pivot distances.
+         * @param edgeLength the desired edge length.
+         * @param termStarts the start of the terms of each node.
+         * @param termNodes the related nodes.
+         * @param termDistances the desired distances.
+         * @param termWeights the weights.
+         */
+        StressModel(GraphDistances distances, double edgeLength, int[] termStarts, int[] termNodes, float[] termDistances, float[] termWeights) {
+            this.distances = distances;
+            this.edgeLength = edgeLength;
+            this.disconnectedHops = 0;
+            this.termStarts = termStarts;
+            this.termNodes = termNodes;
+            this.termDistances = termDistances;
+            this.termWeights = termWeights;
+        }
+
+        /**
+         * Indicates whether the model uses all pairs distances.
+         *
+         * @return true for the full model.
+         */
+        boolean isFull() {
+            return termStarts == null;
+        }
+    }
+
+    /**
+     * Builds the sparse stress model. Each node is related to its neighbours
+     * and to the pivots it can reach. The weight of a pivot term is scaled by
+     * the number of nodes the pivot represents at that distance, that is, the
+     * nodes closest to the pivot that are within half the distance.
+     *
+     * @param distances the pivot distances.
+     * @return the stress model.
+     */
+    private StressModel sparseModel(GraphDistances distances) {
+        int nodeCount = distances.nodeCount();
+        int pivotCount = distances.sourceCount();
+        int[] closestPivot = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            int best = 0;
+            for (int p = 1; p < pivotCount; p++) {
+                if (distances.hops(p, i) < distances.hops(best, i)) {
+                    best = p;
+                }
+            }
+            closestPivot[i] = best;
+        }
+
+        int[][] regionCounts = new int[pivotCount][];
+        for (int p = 0; p < pivotCount; p++) {
+            int maxHops = 0;
+            for (int i = 0; i < nodeCount; i++) {
+                if (closestPivot[i] == p && distances.hops(p, i) != GraphDistances.unreachable) {
+                    maxHops = Math.max(maxHops, distances.hops(p, i));
+                }
+            }
+            regionCounts[p] = new int[maxHops + 1];
+            for (int i = 0; i < nodeCount; i++) {
+                if (closestPivot[i] == p && distances.hops(p, i) != GraphDistances.unreachable) {
+                    regionCounts[p][distances.hops(p, i)]++;
+                }
+            }
+            for (int h = 1; h <= maxHops; h++) {
+                regionCounts[p][h] += regionCounts[p][h - 1];
+            }
+        }
+
+        int[] termStarts = new int[nodeCount + 1];
+        for (int i = 0; i < nodeCount; i++) {
+            int count = distances.degree(i);
+            for (int p = 0; p < pivotCount; p++) {
+                int hops = distances.hops(p, i);
+                if (hops != 0 && hops != GraphDistances.unreachable) {
+                    count++;
+                }
+            }
+            termStarts[i + 1] = termStarts[i] + count;
+        }
+        int termCount = termStarts[nodeCount];
+        int[] termNodes = new int[termCount];
+        float[] termDistances = new float[termCount];
+        float[] termWeights = new float[termCount];
+        int term = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            for (int k = 0; k < distances.degree(i); k++) {
+                termNodes[term] = distances.neighbour(i, k);
+                termDistances[term] = (float) edgeLength;
+                termWeights[term] = (float) (1 / (edgeLength * edgeLength));
+                term++;
+            }
+            for (int p = 0; p < pivotCount; p++) {
+                int hops = distances.hops(p, i);
+                if (hops != 0 && hops != GraphDistances.unreachable) {
+                    int[] counts = regionCounts[p];
+                    int represented = counts[Math.min(hops / 2, counts.length - 1)];
+                    double distance = hops * edgeLength;
+                    termNodes[term] = distances.source(p);
+                    termDistances[term] = (float) distance;
+                    termWeights[term] = (float) (Math.max(1, represented) / (distance * distance));
+                    term++;
+                }
+            }
+        }
+        return new StressModel(distances, edgeLength, termStarts, termNodes, termDistances, termWeights);
+    }
+
+    /**
+     * Iterates the localized majorization updates until convergence. Each
+     * iteration moves every node to the weighted average of the positions
+     * suggested by its terms, computed from the previous positions, so that
+     * the nodes can be processed in parallel. If an iteration increases the
+     * stress, the computation stops and returns the previous positions.
+     *
+     * @param model the stress model.
+     * @param x the x coordinates, updated in place.
+     * @param y the y coordinates, updated in place.
+     */
+    private void majorize(final StressModel model, double[] x, double[] y) {
+        final int nodeCount = model.distances.nodeCount();
+        int chunkCount = Math.max(1, Math.min(threads, nodeCount / 64));
+        final int chunkSize = (nodeCount + chunkCount - 1) / chunkCount;
+        final double[][] current = {x, y};
+        final double[][] next = {new double[nodeCount], new double[nodeCount]};
+        final double[][] previous = {new double[nodeCount], new double[nodeCount]};
+        double[][] result = null;
+        final double[] chunkStress = new double[chunkCount];
+        ExecutorService executor = chunkCount > 1 ? Executors.newFixedThreadPool(chunkCount) : null;
+        try {
+            double previousStress = Double.POSITIVE_INFINITY;
+            for (int iteration = 0; iteration < maxIterations; iteration++) {
+                if (executor == null) {
+                    chunkStress[0] = update(model, current, next, 0, nodeCount);
+                } else {
+                    List<Future<?>> futures = new ArrayList<>();
+                    for (int c = 0; c < chunkCount; c++) {
+                        final int chunk = c;
+                        futures.add(executor.submit(new Callable<Void>() {
+                            @Override
+                            public Void call() {
+                                int start = chunk * chunkSize;
+                                chunkStress[chunk] = update(model, current, next, start, Math.min(nodeCount, start + chunkSize));
+                                return null;
+                            }
+                        }));
+                    }
+                    for (Future<?> future : futures) {
+                        future.get();
+                    }
+                }
+                double stress = 0;
+                for (double value : chunkStress) {
+                    stress += value;
+                }
+                if (iteration > 0 && stress > previousStress) {
+                    result = previous;
+                    break;
+                }
+                if (iteration > 0 && previousStress - stress <= tolerance * previousStress) {
+                    result = next;
+                    break;
+                }
+                previousStress = stress;
+
+                double[][] swap = previous.clone();
+                previous[0] = current[0];
+                previous[1] = current[1];
+                current[0] = next[0];
+                current[1] = next[1];
+                next[0] = swap[0];
+                next[1] = swap[1];
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The stress majorization has been interrupted.");
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Error while computing the stress majorization.", ex.getCause());
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        if (result == null) {
+            result = current;
+        }
+        if (result[0] != x) {
+            System.arraycopy(result[0], 0, x, 0, nodeCount);
+            System.arraycopy(result[1], 0, y, 0, nodeCount);
+        }
+    }
+
+    /**
+     * Computes the updated positions of a range of nodes.
+     *
+     * @param model the stress model.
+     * @param current the current coordinates.
+     * @param next the updated coordinates.
+     * @param start the first node of the range.
+     * @param end the end of the range, exclusive.
+     * @return the stress of the range before the update.
+     */
+    private static double update(StressModel model, double[][] current, double[][] next, int start, int end) {
+        double[] x = current[0];
+        double[] y = current[1];
+        double stress = 0;
+        for (int i = start; i < end; i++) {
+            double sumX = 0;
+            double sumY = 0;
+            double sumWeights = 0;
+            int termCount = model.isFull() ? model.distances.nodeCount() : model.termStarts[i + 1] - model.termStarts[i];
+            for (int k = 0; k < termCount; k++) {
+                int j;
+                double distance;
+                double weight;
+                if (model.isFull()) {
+                    if (k == i) {
+                        continue;
+                    }
+                    int hops = model.distances.hops(i, k);
+                    j = k;
+                    distance = (hops == GraphDistances.unreachable ? model.disconnectedHops : hops) * model.edgeLength;
+                    weight = 1 / (distance * distance);
+                } else {
+                    int t = model.termStarts[i] + k;
+                    j = model.termNodes[t];
+                    distance = model.termDistances[t];
+                    weight = model.termWeights[t];
+                }
+                double dx = x[i] - x[j];
+                double dy = y[i] - y[j];
+                double norm = Math.sqrt(dx * dx + dy * dy);
+                stress += weight * (norm - distance) * (norm - distance);
+                if (norm > 0) {
+                    sumX += weight * (x[j] + distance * dx / norm);
+                    sumY += weight * (y[j] + distance * dy / norm);
+                } else {
+                    sumX += weight * x[j];
+                    sumY += weight * y[j];
+                }
+                sumWeights += weight;
+            }
+            if (sumWeights > 0) {
+                next[0][i] = sumX / sumWeights;
+                next[1][i] = sumY / sumWeights;
+            } else {
+                next[0][i] = x[i];
+                next[1][i] = y[i];
+            }
+        }
+        return stress;
+    }
+}
@@ -26,6 +26,7 @@ import ocotillo.graph.StdAttribute;
 import ocotillo.graph.StdAttribute.ControlPoints;
 import ocotillo.graph.StdAttribute.EdgeShape;
 import ocotillo.graph.StdAttribute.NodeShape;
+import ocotillo.graph.layout.LayoutSnapshot;
 import ocotillo.graph.rendering.svg.SvgElement;
 import java.awt.Color;
 import java.awt.Graphics2D;
@@ -52,6 +53,7 @@ public class GraphRenderer {
     private final EdgeAttribute<StdAttribute.ControlPoints> edgePoints;
     private final EdgeAttribute<Color> edgeColors;
     private final HeatMap heatMap;
+    private LayoutSnapshot snapshot;
 
     /**
      * The scaling factor used in the drawing. The scaling factor has been
@@ -85,6 +87,16 @@ public class GraphRenderer {
         this.heatMap = new HeatMap();
     }
 
+    /**
+     * Sets the layout snapshot whose positions and bends are drawn in place
+     * of those in the graph attributes.
+     *
+     * @param snapshot the snapshot, or null to use the graph attributes.
+     */
+    public void setSnapshot(LayoutSnapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
     /**
      * Draws a graph into a graphics object.
      *
@@ -118,7 +130,7 @@ public class GraphRenderer {
     private void drawNodeGlyph(Graphics2D graphics2D, Node node) {
         Color fillColor = nodeColors.get(node);
         Coordinates size = nodeSizes.get(node);
-        Coordinates center = nodePositions.get(node);
+        Coordinates center = position(node);
         NodeShape shape = nodeShapes.get(node);
 
         switch (shape) {
@@ -143,7 +155,7 @@ public class GraphRenderer {
         String label = nodeLabels.get(node);
         Color color = nodeLabelColors.get(node);
         double dimension = nodeLabelScaling.get(node);
-        Coordinates position = nodePositions.get(node);
+        Coordinates position = position(node);
         Coordinates labelOffset = nodeLabelOffset.get(node);
         Coordinates labelPosition = position.plus(labelOffset);
         ElementRenderer.drawText(graphics2D, label, labelPosition, dimension, color);
@@ -159,9 +171,9 @@ public class GraphRenderer {
             Double width = edgeWidths.get(edge);
             EdgeShape shape = edgeShapes.get(edge);
             Color color = edgeColors.get(edge);
-            Coordinates startingPoint = nodePositions.get(edge.source());
-            Coordinates endingPoint = nodePositions.get(edge.target());
-            ControlPoints controlPoints = edgePoints.get(edge);
+            Coordinates startingPoint = position(edge.source());
+            Coordinates endingPoint = position(edge.target());
+            ControlPoints controlPoints = bends(edge);
 
             switch (shape) {
                 case polyline:
@@ -173,6 +185,28 @@ public class GraphRenderer {
         }
     }
 
+    /**
+     * Returns the position of a node, taken from the snapshot if present.
+     *
+     * @param node the node.
+     * @return the node position.
+     */
+    private Coordinates position(Node node) {
+        Coordinates position = snapshot != null ? snapshot.position(node) : null;
+        return position != null ? position : nodePositions.get(node);
+    }
+
+    /**
+     * Returns the bends of an edge, taken from the snapshot if present.
+     *
+     * @param edge the edge.
+     * @return the edge bends.
+     */
+    private ControlPoints bends(Edge edge) {
+        ControlPoints bends = snapshot != null ? snapshot.bends(edge) : null;
+        return bends != null ? bends : edgePoints.get(edge);
+    }
+
     /**
      * Draws the heat map.
      *
@@ -27,7 +27,7 @@ import ocotillo.graph.Node;
 import ocotillo.graph.NodeAttribute;
 import ocotillo.graph.Observer;
 import ocotillo.graph.StdAttribute;
-import ocotillo.graph.layout.Layout2D;
+import ocotillo.graph.layout.GraphBoxTracker;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
@@ -51,6 +51,7 @@ public class HeatMap {
     private Double hottestHeatValue = null;
 
     private Graph graph;
+    private GraphBoxTracker graphBoxTracker;
     private Box graphBox;
     private double[][] pixelHeat;
     private Image image;
@@ -145,8 +146,14 @@ public class HeatMap {
             observer.unregister();
         }
 
+        if (this.graph != graph || graphBoxTracker == null) {
+            if (graphBoxTracker != null) {
+                graphBoxTracker.close();
+            }
+            graphBoxTracker = new GraphBoxTracker(graph);
+        }
         this.graph = graph;
-        this.graphBox = Layout2D.graphBox(graph);
+        this.graphBox = graphBoxTracker.box();
         pixelHeat = recomputePixelHeat(graph, graphBox);
         image = recomputeImage(pixelHeat, graph, gradient, coldestHeatValue, hottestHeatValue);
 
@@ -225,6 +232,10 @@ public class HeatMap {
         for (Observer observer : observers) {
             observer.unregister();
         }
+        if (graphBoxTracker != null) {
+            graphBoxTracker.close();
+            graphBoxTracker = null;
+        }
     }
 
     /**
@@ -0,0 +1,617 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.serialization.dot;
+
+import ocotillo.graph.Graph;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.exec.DefaultExecutor;
+import org.apache.commons.exec.ExecuteStreamHandler;
+import org.apache.commons.exec.ExecuteWatchdog;
+import org.apache.commons.exec.PumpStreamHandler;
+
+/**
+ * Runs an external program that reads a dot graph from its standard input
+ * and writes a dot graph on its standard output. The input is written into
+ * the process while its output is collected, or directly parsed by a dot
+ * reader, each on its own thread, so that neither side is buffered as a
+ * whole. The executions run on
+ * a bounded pool of daemon threads, shared by default by all runners, which
+ * limits the number of concurrent processes. An execution can be cancelled
+ * through its future, and is killed if it exceeds the timeout.
+ */
+public class DotProcessRunner {
+
+    private static final int sharedPoolSize = Runtime.getRuntime().availableProcessors();
+    private static final ExecutorService sharedPool = Executors.newFixedThreadPool(sharedPoolSize, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "ocotillo-dot-process");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private static final ConcurrentMap<String, Boolean> checkedExecutables = new ConcurrentHashMap<>();
+    private static final Charset charset = Charset.forName("UTF-8");
+    private static final int maxErrorBytes = 64 * 1024;
+
+    private final String executable;
+    private final String[] arguments;
+    private final long timeout;
+    private final ExecutorService pool;
+
+    /**
+     * Builder for dot process runners.
+     */
+    public static class DotProcessRunnerBuilder {
+
+        private final String executable;
+        private String[] arguments = new String[]{};
+        private long timeout = 0;
+        private ExecutorService pool = sharedPool;
+
+        /**
+         * Constructs a dot process runner builder.
+         *
+         * @param executable the executable name.
+         */
+        public DotProcessRunnerBuilder(String executable) {
+            this.executable = executable;
+        }
+
+        /**
+         * Specifies the arguments passed to the executable.
+         *
+         * @param arguments the arguments.
+         * @return the builder.
+         */
+        public DotProcessRunnerBuilder withArguments(String[] arguments) {
+            this.arguments = arguments;
+            return this;
+        }
+
+        /**
+         * Indicates the maximum running time of a process. A zero value
+         * disables the timeout.
+         *
+         * @param milliseconds the timeout in milliseconds.
+         * @return the builder.
+         */
+        public DotProcessRunnerBuilder withTimeout(long milliseconds) {
+            this.timeout = milliseconds;
+            return this;
+        }
+
+        /**
+         * Indicates the pool on which the processes are executed. Its size
+         * bounds the number of concurrent processes.
+         *
+         * @param pool the executor service.
+         * @return the builder.
+         */
+        public DotProcessRunnerBuilder withPool(ExecutorService pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        /**
+         * Builds the dot process runner.
+         *
+         * @return the runner.
+         */
+        public DotProcessRunner build() {
+            if (executable == null || timeout < 0 || pool == null) {
+                throw new IllegalArgumentException("Invalid dot process runner parameters.");
+            }
+            return new DotProcessRunner(executable, arguments, timeout, pool);
+        }
+    }
+
+    /**
+     * Constructs a dot process runner.
+     *
+     * @param executable the executable name.
+     * @param arguments the arguments.
+     * @param timeout the timeout in milliseconds, or zero.
+     * @param pool the executor service.
+     */
+    private DotProcessRunner(String executable, String[] arguments, long timeout, ExecutorService pool) {
+        this.executable = executable;
+        this.arguments = arguments;
+        this.timeout = timeout;
+        this.pool = pool;
+    }
+
+    /**
+     * Checks if an executable exists by running the given command line. The
+     * result is computed once per command line and then reused.
+     *
+     * @param commandLine the command line to test.
+     * @param name the executable name used in the error message.
+     */
+    public static void checkExecutable(String commandLine, String name) {
+        Boolean found = checkedExecutables.get(commandLine);
+        if (found == null) {
+            try {
+                DefaultExecutor executor = new DefaultExecutor();
+                executor.setStreamHandler(new PumpStreamHandler(new ByteArrayOutputStream()));
+                executor.execute(CommandLine.parse(commandLine));
+                found = true;
+            } catch (IOException ex) {
+                found = false;
+            }
+            checkedExecutables.putIfAbsent(commandLine, found);
+        }
+        if (!found) {
+            throw new IllegalStateException(name + " executable has not been found.");
+        }
+    }
+
+    /**
+     * Runs the process on the given input and waits for its output. If the
+     * calling thread is interrupted, the process is killed.
+     *
+     * @param dotInput the dot input lines.
+     * @return the dot output lines.
+     */
+    public List<String> run(List<String> dotInput) {
+        return waitFor(submit(dotInput));
+    }
+
+    /**
+     * Runs the process on the dot description of a graph and waits for its
+     * output. The graph is written directly into the process input, and must
+     * not be modified during the execution.
+     *
+     * @param graph the input graph.
+     * @param dotWriter the writer that produces the dot input.
+     * @return the dot output lines.
+     */
+    public List<String> run(Graph graph, DotWriter dotWriter) {
+        return waitFor(submit(graph, dotWriter));
+    }
+
+    /**
+     * Runs the process on the dot description of a graph and waits for the
+     * graph it generates. The graph is written directly into the process
+     * input, and the process output is parsed while it is produced, so that
+     * neither is stored as a whole. The input graph must not be modified, and
+     * the dot reader not used elsewhere, during the execution.
+     *
+     * @param graph the input graph.
+     * @param dotWriter the writer that produces the dot input.
+     * @param dotReader the reader that parses the dot output.
+     * @return the generated graph.
+     */
+    public Graph run(Graph graph, DotWriter dotWriter, DotReader dotReader) {
+        return waitFor(submit(graph, dotWriter, dotReader));
+    }
+
+    /**
+     * Waits for the output of a submitted execution. If the calling thread is
+     * interrupted, the process is killed.
+     *
+     * @param <T> the output type.
+     * @param future the future output.
+     * @return the output.
+     */
+    private <T> T waitFor(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The execution of " + executable + " has been interrupted.");
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException("Error while executing " + executable + ".", ex.getCause());
+        }
+    }
+
+    /**
+     * Submits the process execution to the pool. Cancelling the returned
+     * future kills the process.
+     *
+     * @param dotInput the dot input lines.
+     * @return the future dot output lines.
+     */
+    public Future<List<String>> submit(final List<String> dotInput) {
+        return submit(new DotInput() {
+            @Override
+            public void write(Writer writer) throws IOException {
+                for (String line : dotInput) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        }, lineOutput);
+    }
+
+    /**
+     * Submits the process execution on the dot description of a graph to the
+     * pool. The graph is written directly into the process input, and must
+     * not be modified during the execution. Cancelling the returned future
+     * kills the process.
+     *
+     * @param graph the input graph.
+     * @param dotWriter the writer that produces the dot input.
+     * @return the future dot output lines.
+     */
+    public Future<List<String>> submit(Graph graph, DotWriter dotWriter) {
+        return submit(graphInput(graph, dotWriter), lineOutput);
+    }
+
+    /**
+     * Submits the process execution on the dot description of a graph to the
+     * pool, parsing the process output while it is produced. The input graph
+     * must not be modified, and the dot reader not used elsewhere, during the
+     * execution. Cancelling the returned future kills the process.
+     *
+     * @param graph the input graph.
+     * @param dotWriter the writer that produces the dot input.
+     * @param dotReader the reader that parses the dot output.
+     * @return the future generated graph.
+     */
+    public Future<Graph> submit(Graph graph, DotWriter dotWriter, final DotReader dotReader) {
+        return submit(graphInput(graph, dotWriter), new DotOutput<Graph>() {
+            @Override
+            public Graph read(Reader reader) {
+                return dotReader.parse(reader);
+            }
+        });
+    }
+
+    /**
+     * Builds the dot input that writes the dot description of a graph.
+     *
+     * @param graph the input graph.
+     * @param dotWriter the writer that produces the dot input.
+     * @return the dot input.
+     */
+    private static DotInput graphInput(final Graph graph, final DotWriter dotWriter) {
+        return new DotInput() {
+            @Override
+            public void write(Writer writer) throws IOException {
+                dotWriter.writeGraph(graph, writer);
+            }
+        };
+    }
+
+    /**
+     * Submits the process execution to the pool.
+     *
+     * @param <T> the output type.
+     * @param dotInput the dot input.
+     * @param dotOutput the dot output.
+     * @return the future output.
+     */
+    private <T> Future<T> submit(DotInput dotInput, DotOutput<T> dotOutput) {
+        final Execution<T> execution = new Execution<>(dotInput, dotOutput);
+        FutureTask<T> task = new FutureTask<T>(execution) {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                execution.cancel();
+                return cancelled;
+            }
+        };
+        pool.execute(task);
+        return task;
+    }
+
+    /**
+     * Writes the dot input of a process.
+     */
+    private interface DotInput {
+
+        /**
+         * Writes the dot input.
+         *
+         * @param writer the writer of the process input.
+         * @throws IOException if the process input is not writable.
+         */
+        void write(Writer writer) throws IOException;
+    }
+
+    /**
+     * Reads the dot output of a process.
+     *
+     * @param <T> the output type.
+     */
+    private interface DotOutput<T> {
+
+        /**
+         * Reads the dot output.
+         *
+         * @param reader the reader of the process output.
+         * @return the output.
+         * @throws IOException if the process output is not readable.
+         */
+        T read(Reader reader) throws IOException;
+    }
+
+    /**
+     * Dot output that collects the output lines.
+     */
+    private static final DotOutput<List<String>> lineOutput = new DotOutput<List<String>>() {
+        @Override
+        public List<String> read(Reader reader) throws IOException {
+            List<String> lines = new ArrayList<>();
+            BufferedReader bufferedReader = new BufferedReader(reader);
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                lines.add(line);
+            }
+            return lines;
+        }
+    };
+
+    /**
+     * A single execution of the process.
+     *
+     * @param <T> the output type.
+     */
+    private class Execution<T> implements Callable<T> {
+
+        private final DotInput dotInput;
+        private final DotOutput<T> dotOutput;
+        private final ExecuteWatchdog watchdog = new ExecuteWatchdog(timeout > 0 ? timeout : ExecuteWatchdog.INFINITE_TIMEOUT);
+        private volatile boolean started = false;
+        private volatile boolean cancelled = false;
+
+        /**
+         * Constructs an execution.
+         *
+         * @param dotInput the dot input.
+         * @param dotOutput the dot output.
+         */
+        Execution(DotInput dotInput, DotOutput<T> dotOutput) {
+            this.dotInput = dotInput;
+            this.dotOutput = dotOutput;
+        }
+
+        /**
+         * Cancels the execution, killing the process if running.
+         */
+        synchronized void cancel() {
+            cancelled = true;
+            if (started) {
+                watchdog.destroyProcess();
+            }
+        }
+
+        @Override
+        public T call() {
+            CommandLine cmdLine = new CommandLine(executable);
+            cmdLine.addArguments(arguments);
+            StreamingHandler<T> handler = new StreamingHandler<>(dotInput, dotOutput);
+            DefaultExecutor executor = new DefaultExecutor();
+            executor.setStreamHandler(handler);
+            executor.setWatchdog(watchdog);
+            synchronized (this) {
+                if (cancelled) {
+                    throw new CancellationException("The execution of " + executable + " has been cancelled.");
+                }
+                started = true;
+            }
+            try {
+                executor.execute(cmdLine);
+            } catch (IOException ex) {
+                if (cancelled) {
+                    throw new CancellationException("The execution of " + executable + " has been cancelled.");
+                }
+                if (watchdog.killedProcess()) {
+                    throw new IllegalStateException("The execution of " + executable + " exceeded the timeout of " + timeout + " ms.");
+                }
+                handler.checkInput();
+                System.err.println("ERROR: " + handler.errors() + "\n");
+                throw new IllegalStateException("Error while executing " + executable + ".", handler.outputError());
+            }
+            handler.checkInput();
+            handler.checkOutput();
+            return handler.output();
+        }
+    }
+
+    /**
+     * Stream handler that writes the input and reads the output of a process
+     * on separate threads.
+     *
+     * @param <T> the output type.
+     */
+    private static class StreamingHandler<T> implements ExecuteStreamHandler {
+
+        private final DotInput input;
+        private final DotOutput<T> outputReader;
+        private volatile RuntimeException inputError;
+        private volatile RuntimeException outputError;
+        private volatile T output;
+        private final ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        private OutputStream processInput;
+        private InputStream processOutput;
+        private InputStream processErrors;
+        private final List<Thread> threads = new ArrayList<>();
+
+        /**
+         * Constructs a streaming handler.
+         *
+         * @param input the dot input to write in the process input.
+         * @param outputReader the dot output that reads the process output.
+         */
+        StreamingHandler(DotInput input, DotOutput<T> outputReader) {
+            this.input = input;
+            this.outputReader = outputReader;
+        }
+
+        @Override
+        public void setProcessInputStream(OutputStream stream) {
+            this.processInput = stream;
+        }
+
+        @Override
+        public void setProcessOutputStream(InputStream stream) {
+            this.processOutput = stream;
+        }
+
+        @Override
+        public void setProcessErrorStream(InputStream stream) {
+            this.processErrors = stream;
+        }
+
+        @Override
+        public void start() {
+            startThread("ocotillo-dot-input", new Runnable() {
+                @Override
+                public void run() {
+                    try (Writer writer = new BufferedWriter(new OutputStreamWriter(processInput, charset))) {
+                        input.write(writer);
+                    } catch (IOException ex) {
+                        // The process closed its input: the exit value reports the error.
+                    } catch (RuntimeException ex) {
+                        inputError = ex;
+                    }
+                }
+            });
+            startThread("ocotillo-dot-output", new Runnable() {
+                @Override
+                public void run() {
+                    try (Reader reader = new InputStreamReader(processOutput, charset)) {
+                        output = outputReader.read(reader);
+                    } catch (IOException ex) {
+                        // The process has been killed: the exit value reports the error.
+                    } catch (RuntimeException ex) {
+                        outputError = ex;
+                    }
+                }
+            });
+            startThread("ocotillo-dot-errors", new Runnable() {
+                @Override
+                public void run() {
+                    byte[] buffer = new byte[4096];
+                    try {
+                        int read;
+                        while ((read = processErrors.read(buffer)) >= 0) {
+                            if (errors.size() < maxErrorBytes) {
+                                errors.write(buffer, 0, Math.min(read, maxErrorBytes - errors.size()));
+                            }
+                        }
+                    } catch (IOException ex) {
+                        // The process has been killed: the exit value reports the error.
+                    }
+                }
+            });
+        }
+
+        /**
+         * Starts a daemon thread handling one of the process streams.
+         *
+         * @param name the thread name.
+         * @param runnable the stream handling code.
+         */
+        private void startThread(String name, Runnable runnable) {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+
+        @Override
+        public void stop() {
+            boolean interrupted = false;
+            for (Thread thread : threads) {
+                while (thread.isAlive()) {
+                    try {
+                        thread.join();
+                    } catch (InterruptedException ex) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Checks that the input has been entirely written.
+         */
+        void checkInput() {
+            if (inputError != null) {
+                throw new IllegalStateException("Error while writing the input of the process.", inputError);
+            }
+        }
+
+        /**
+         * Checks that the output has been entirely read.
+         */
+        void checkOutput() {
+            if (outputError != null) {
+                throw new IllegalStateException("Error while reading the output of the process.", outputError);
+            }
+        }
+
+        /**
+         * Returns the error raised while reading the output, if any.
+         *
+         * @return the output error, or null.
+         */
+        RuntimeException outputError() {
+            return outputError;
+        }
+
+        /**
+         * Returns the read output.
+         *
+         * @return the output.
+         */
+        T output() {
+            return output;
+        }
+
+        /**
+         * Returns the beginning of the process error stream.
+         *
+         * @return the error text.
+         */
+        String errors() {
+            return new String(errors.toByteArray(), charset);
+        }
+    }
+}
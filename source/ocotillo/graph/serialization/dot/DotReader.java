@@ -15,26 +15,35 @@
  */
 package ocotillo.graph.serialization.dot;
 
+import ocotillo.geometry.Box;
 import ocotillo.geometry.Coordinates;
 import ocotillo.geometry.Geom2D;
+import ocotillo.geometry.Geom2DBatch;
+import ocotillo.geometry.GeomXD;
 import ocotillo.geometry.Polygon;
 import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
 import ocotillo.graph.Graph;
 import ocotillo.graph.Node;
 import ocotillo.graph.NodeAttribute;
 import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.locator.ElementLocator;
+import ocotillo.graph.layout.locator.bucketgrid.BucketGridLocator.BglBuilder;
 import ocotillo.graph.rendering.GraphicsTools;
 import ocotillo.graph.rendering.svg.SvgElement.SvgPolygon;
 import ocotillo.graph.serialization.dot.DotTools.DotAttributes;
 import ocotillo.graph.serialization.dot.DotTools.DotLineType;
+import ocotillo.graph.serialization.dot.DotTokenizer.Token;
 import ocotillo.graph.serialization.ParserTools;
 import ocotillo.graph.serialization.ParserTools.EscapedString;
 import ocotillo.graph.serialization.dot.ConversionSettings.AttributeConvSettings;
+import ocotillo.graph.serialization.dot.DotValueConverter.CoordinatesConverter;
 import java.awt.Color;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -44,6 +53,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Reads and writes graphs in dot format.
@@ -158,22 +172,64 @@ public class DotReader {
     }
 
     /**
-     * Parses a file and generates a graph.
+     * Creates a dot reader with the same settings of this one. A reader
+     * keeps the state of the graph being parsed, so readers used concurrently
+     * must be distinct copies.
+     *
+     * @return the dot reader.
+     */
+    public DotReader copy() {
+        return new DotReader(graphAttrSettings, nodeAttrSettings, edgeAttrSettings, defaultConverters, clusterBy, nodeToClusterAttrSettings, saveGmapPolygons);
+    }
+
+    /**
+     * Parses a file and generates a graph. The file is streamed through the
+     * dot tokenizer, without being loaded in memory.
      *
      * @param file the input dot file.
      * @return the generated graph.
      */
     public Graph parseFile(File file) {
-        List<String> lines = new ArrayList<>();
         try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                lines.add(line);
-            }
+            return parse(reader);
         } catch (IOException e) {
             System.err.println("The file " + file.getName() + "is not readable.");
         }
-        return parseFile(lines);
+        return parseFile(new ArrayList<String>());
+    }
+
+    /**
+     * Parses a dot input token by token and generates a graph. Nodes and
+     * edges are created as soon as their statements are parsed, so that only
+     * the global attributes and, when clustering, the attributes needed to
+     * build the clusters are retained. Statements can span several lines or
+     * share the same line.
+     *
+     * @param reader the reader of the dot input.
+     * @return the generated graph.
+     */
+    public Graph parse(Reader reader) {
+        graphAttributes.clear();
+        defaultNodeAttributes.clear();
+        defaultEdgeAttributes.clear();
+        nodeAttributes.clear();
+        edgeAttributes.clear();
+
+        Graph graph = new Graph();
+        graph.startBulkNotification();
+        try {
+            new StreamParser(graph, new DotTokenizer(reader)).parseGraph();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Error while reading the dot input.", ex);
+        }
+
+        (new GraphGlobalAS(graph)).assignAttributes();
+        (new NodeGlobalAS(graph)).assignAttributes();
+        (new EdgeGlobalAS(graph)).assignAttributes();
+        assignClusters(graph);
+        nodeAttributes.clear();
+        graph.stopBulkNotification();
+        return graph;
     }
 
     /**
@@ -437,6 +493,17 @@ public class DotReader {
             (new EdgeAS(graph, edge, entry)).assignAttributes();
         }
 
+        assignClusters(graph);
+        return graph;
+    }
+
+    /**
+     * Builds the clusters and assigns their attributes and polygons, if the
+     * reader clusters the nodes.
+     *
+     * @param graph the generated graph.
+     */
+    private void assignClusters(Graph graph) {
         if (clusterBy != null) {
             constructClusters(graph);
             assignClusterAttrInNodes(graph);
@@ -444,8 +511,276 @@ public class DotReader {
                 extractAndAssignPolygons(graph);
             }
         }
+    }
 
-        return graph;
+    /**
+     * Parses the dot statements read by a tokenizer, and builds the graph
+     * elements they define.
+     */
+    private class StreamParser {
+
+        private final Graph graph;
+        private final DotTokenizer tokenizer;
+        private final Set<String> clusterAttributes = new HashSet<>();
+        private final boolean keepAllClusterAttributes;
+
+        /**
+         * Constructs a stream parser.
+         *
+         * @param graph the graph to build.
+         * @param tokenizer the tokenizer.
+         */
+        private StreamParser(Graph graph, DotTokenizer tokenizer) {
+            this.graph = graph;
+            this.tokenizer = tokenizer;
+            if (clusterBy != null) {
+                clusterAttributes.add(clusterBy);
+                for (AttributeConvSettings settings : nodeToClusterAttrSettings.toConvert) {
+                    clusterAttributes.addAll(Arrays.asList(settings.sourceAttrId.split("[^a-zA-Z0-9]+")));
+                }
+            }
+            keepAllClusterAttributes = clusterBy != null && nodeToClusterAttrSettings.saveUnspecified;
+        }
+
+        /**
+         * Parses a whole graph. An empty input generates an empty graph.
+         *
+         * @throws IOException if the input cannot be read.
+         */
+        private void parseGraph() throws IOException {
+            if (tokenizer.peek() == Token.end) {
+                return;
+            }
+            if (isKeyword("strict")) {
+                tokenizer.next();
+                graphAttributes.put(DotTools.strictAttr, "true");
+            }
+            if (isKeyword("digraph")) {
+                graphAttributes.put(DotTools.directedAttr, "true");
+            } else if (isKeyword("graph")) {
+                graphAttributes.put(DotTools.directedAttr, "false");
+            } else {
+                throw unsupported("graph or digraph");
+            }
+            tokenizer.next();
+            if (isIdentifier(tokenizer.peek())) {
+                tokenizer.next();
+                graphAttributes.put(DotTools.graphNameAttr, tokenizer.text());
+            }
+            expect(Token.openBrace);
+            while (tokenizer.peek() != Token.closeBrace) {
+                if (tokenizer.peek() == Token.end) {
+                    throw unsupported("}");
+                }
+                parseStatement();
+            }
+            tokenizer.next();
+        }
+
+        /**
+         * Parses a single statement.
+         *
+         * @throws IOException if the input cannot be read.
+         */
+        private void parseStatement() throws IOException {
+            Token token = tokenizer.peek();
+            if (token == Token.semicolon) {
+                tokenizer.next();
+                return;
+            }
+            if (token == Token.openBrace || isKeyword("subgraph")) {
+                throw new UnsupportedOperationException("Subgraphs are not supported (line " + tokenizer.line() + ").");
+            }
+            if (!isIdentifier(token)) {
+                throw unsupported("a statement");
+            }
+
+            if (token == Token.id && (isKeyword("graph") || isKeyword("node") || isKeyword("edge"))) {
+                String keyword = tokenizer.text().toLowerCase();
+                tokenizer.next();
+                DotAttributes attributes = parseAttributeLists();
+                switch (keyword) {
+                    case "graph":
+                        graphAttributes.putAll(attributes);
+                        break;
+                    case "node":
+                        defaultNodeAttributes.putAll(attributes);
+                        break;
+                    default:
+                        defaultEdgeAttributes.putAll(attributes);
+                }
+                return;
+            }
+
+            String firstId = parseNodeId();
+            if (tokenizer.peek() == Token.equal) {
+                tokenizer.next();
+                graphAttributes.put(firstId, parseIdentifier());
+            } else if (tokenizer.peek() == Token.edgeOp) {
+                parseEdgeStatement(firstId);
+            } else {
+                parseNodeStatement(firstId);
+            }
+        }
+
+        /**
+         * Parses the rest of a node statement.
+         *
+         * @param nodeId the node id.
+         * @throws IOException if the input cannot be read.
+         */
+        private void parseNodeStatement(String nodeId) throws IOException {
+            Node node = getOrCreateNode(nodeId);
+            DotAttributes attributes = parseAttributeLists();
+            if (clusterBy != null) {
+                DotAttributes retained = nodeAttributes.get(nodeId);
+                for (Map.Entry<String, String> entry : attributes.entrySet()) {
+                    if (keepAllClusterAttributes || clusterAttributes.contains(entry.getKey())) {
+                        retained.put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            (new NodeAS(graph, node, attributes)).assignAttributes();
+        }
+
+        /**
+         * Parses the rest of an edge statement. Supports the definition of
+         * multiple edges in the same statement, as in a -- b -- c.
+         *
+         * @param firstId the id of the first node.
+         * @throws IOException if the input cannot be read.
+         */
+        private void parseEdgeStatement(String firstId) throws IOException {
+            List<String> nodeIds = new ArrayList<>();
+            List<String> operators = new ArrayList<>();
+            nodeIds.add(firstId);
+            while (tokenizer.peek() == Token.edgeOp) {
+                tokenizer.next();
+                operators.add(tokenizer.text());
+                nodeIds.add(parseNodeId());
+            }
+            DotAttributes multiEdgeAttributes = parseAttributeLists();
+            for (int i = 0; i < operators.size(); i++) {
+                Node source = getOrCreateNode(nodeIds.get(i));
+                Node target = getOrCreateNode(nodeIds.get(i + 1));
+                DotAttributes currentEdgeAttributes = new DotAttributes();
+                currentEdgeAttributes.put(DotTools.directedAttr, operators.get(i).equals("->") ? "true" : "false");
+                currentEdgeAttributes.putAll(multiEdgeAttributes);
+                Edge edge = graph.newEdge(source, target);
+                (new EdgeAS(graph, edge, currentEdgeAttributes)).assignAttributes();
+            }
+        }
+
+        /**
+         * Parses the attribute lists following a statement, if present.
+         *
+         * @return the attributes.
+         * @throws IOException if the input cannot be read.
+         */
+        private DotAttributes parseAttributeLists() throws IOException {
+            DotAttributes attributes = new DotAttributes();
+            while (tokenizer.peek() == Token.openBracket) {
+                tokenizer.next();
+                while (tokenizer.peek() != Token.closeBracket) {
+                    String attributeName = parseIdentifier();
+                    expect(Token.equal);
+                    attributes.put(attributeName, parseIdentifier());
+                    if (tokenizer.peek() == Token.comma || tokenizer.peek() == Token.semicolon) {
+                        tokenizer.next();
+                    }
+                }
+                tokenizer.next();
+            }
+            return attributes;
+        }
+
+        /**
+         * Parses a node id, skipping the eventual port.
+         *
+         * @return the node id.
+         * @throws IOException if the input cannot be read.
+         */
+        private String parseNodeId() throws IOException {
+            String nodeId = parseIdentifier();
+            for (int i = 0; i < 2 && tokenizer.peek() == Token.colon; i++) {
+                tokenizer.next();
+                parseIdentifier();
+            }
+            return nodeId;
+        }
+
+        /**
+         * Parses an identifier.
+         *
+         * @return the identifier text.
+         * @throws IOException if the input cannot be read.
+         */
+        private String parseIdentifier() throws IOException {
+            if (!isIdentifier(tokenizer.next())) {
+                throw unsupported("an identifier");
+            }
+            return tokenizer.text();
+        }
+
+        /**
+         * Consumes a token of the given type.
+         *
+         * @param expected the expected token type.
+         * @throws IOException if the input cannot be read.
+         */
+        private void expect(Token expected) throws IOException {
+            if (tokenizer.next() != expected) {
+                throw unsupported(expected.name());
+            }
+        }
+
+        /**
+         * Gets a node, creating it if it does not exist yet.
+         *
+         * @param nodeId the node id.
+         * @return the node.
+         */
+        private Node getOrCreateNode(String nodeId) {
+            if (graph.hasNode(nodeId)) {
+                return graph.getNode(nodeId);
+            }
+            if (clusterBy != null) {
+                nodeAttributes.put(nodeId, new DotAttributes());
+            }
+            return graph.newNode(nodeId);
+        }
+
+        /**
+         * Indicates whether the next token is the given unquoted keyword.
+         *
+         * @param keyword the keyword, in lower case.
+         * @return true if the next token is the keyword.
+         * @throws IOException if the input cannot be read.
+         */
+        private boolean isKeyword(String keyword) throws IOException {
+            return tokenizer.peek() == Token.id && tokenizer.text().equalsIgnoreCase(keyword);
+        }
+
+        /**
+         * Indicates whether a token type is a dot identifier.
+         *
+         * @param token the token type.
+         * @return true for unquoted, quoted and html identifiers.
+         */
+        private boolean isIdentifier(Token token) {
+            return token == Token.id || token == Token.quoted || token == Token.html;
+        }
+
+        /**
+         * Builds the exception for an unsupported syntax.
+         *
+         * @param expected the expected element.
+         * @return the exception.
+         */
+        private UnsupportedOperationException unsupported(String expected) {
+            return new UnsupportedOperationException("Expected " + expected + " but found '" + tokenizer.text()
+                    + "' at line " + tokenizer.line() + ".");
+        }
     }
 
     /**
@@ -510,31 +845,40 @@ public class DotReader {
     }
 
     /**
-     * Extracts the polygons from the relative dot attribute value.
+     * Extracts the polygons from the relative dot attribute value. When the
+     * position converter is a coordinates converter, the points are converted
+     * directly from the parsed numbers.
      *
      * @param polygonString the attribute value.
      * @return the extracted polygons.
      */
     private List<ColoredPolygon> extractPolygons(String polygonString) {
         DotValueConverter<Coordinates> converter = getPositionConverter();
-        polygonString = polygonString.replace("\\", "");
+        CoordinatesConverter coordinatesConverter = converter instanceof CoordinatesConverter
+                ? (CoordinatesConverter) converter : null;
         List<ColoredPolygon> polygons = new ArrayList<>();
 
-        String[] tokens = polygonString.split("[ \t]+");
+        PolygonTokenizer tokenizer = new PolygonTokenizer(polygonString);
         Color polygonColor = Color.WHITE;
-        for (int i = 0; i < tokens.length; i++) {
-            if (tokens[i].startsWith("-#") && tokens[i].length() > 2) {
-                polygonColor = GraphicsTools.colorHexReader(tokens[i].substring(1));
+        String token;
+        while ((token = tokenizer.next()) != null) {
+            if (token.startsWith("-#") && token.length() > 2) {
+                polygonColor = GraphicsTools.colorHexReader(token.substring(1));
                 continue;
-            } else if (!tokens[i].equals("P")) {
+            } else if (!token.equals("P")) {
                 continue;
             }
 
             Polygon polygon = new Polygon();
-            int numberOfPoints = Integer.parseInt(tokens[++i]);
+            int numberOfPoints = Integer.parseInt(tokenizer.next());
             for (int j = 0; j < numberOfPoints; j++) {
-                Coordinates point = converter.dotToGraphLib(tokens[++i] + ", " + tokens[++i]);
-                polygon.add(point);
+                String x = tokenizer.next();
+                String y = tokenizer.next();
+                if (coordinatesConverter != null) {
+                    polygon.add(coordinatesConverter.dotToGraphLib(Double.parseDouble(x), Double.parseDouble(y)));
+                } else {
+                    polygon.add(converter.dotToGraphLib(x + ", " + y));
+                }
             }
             if (numberOfPoints > 0) {
                 polygons.add(new ColoredPolygon(polygon, polygonColor));
@@ -543,6 +887,67 @@ public class DotReader {
         return polygons;
     }
 
+    /**
+     * Splits a polygon attribute value in tokens separated by spaces or tabs,
+     * ignoring the backslashes.
+     */
+    private static class PolygonTokenizer {
+
+        private final String text;
+        private int position = 0;
+
+        /**
+         * Constructs a tokenizer.
+         *
+         * @param text the attribute value.
+         */
+        PolygonTokenizer(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Returns the next token.
+         *
+         * @return the token, or null if the value has been consumed.
+         */
+        String next() {
+            while (position < text.length() && isSkipped(text.charAt(position))) {
+                position++;
+            }
+            if (position >= text.length()) {
+                return null;
+            }
+            int start = position;
+            boolean escaped = false;
+            while (position < text.length() && !isSeparator(text.charAt(position))) {
+                escaped |= text.charAt(position) == '\\';
+                position++;
+            }
+            String token = text.substring(start, position);
+            return escaped ? token.replace("\\", "") : token;
+        }
+
+        /**
+         * Indicates whether a character separates two tokens.
+         *
+         * @param character the character.
+         * @return true for spaces and tabs.
+         */
+        private static boolean isSeparator(char character) {
+            return character == ' ' || character == '\t';
+        }
+
+        /**
+         * Indicates whether a character can be skipped before a token.
+         *
+         * @param character the character.
+         * @return true for separators and backslashes.
+         */
+        private static boolean isSkipped(char character) {
+            return isSeparator(character) || character == '\\';
+        }
+    }
+
     /**
      * Extracts the position converter to provide a correct conversion of the
      * polygon points into the graph space.
@@ -611,50 +1016,142 @@ public class DotReader {
     }
 
     /**
-     * Associates the extracted polygons to their clusters.
+     * Associates the extracted polygons to their clusters. Each node is
+     * assigned to the smallest polygon that contains it, and each polygon to
+     * the cluster of one of its assigned nodes. Polygons without assigned
+     * nodes are discarded.
      *
      * @param graph the graph.
      * @param polygons the extracted polygons.
      */
     private void assignPolygons(Graph graph, List<ColoredPolygon> polygons) {
+        for (ColoredPolygon coloredPolygon : polygons) {
+            coloredPolygon.computeBounds();
+        }
         Collections.sort(polygons, new Comparator<ColoredPolygon>() {
 
             @Override
             public int compare(ColoredPolygon a, ColoredPolygon b) {
-                return new Double(Geom2D.polygonArea(a.polygon)).compareTo(Geom2D.polygonArea(b.polygon));
+                return Double.compare(a.area, b.area);
             }
         });
 
-        Map<ColoredPolygon, Set<Node>> polygonToContainedNodes = new HashMap<>();
-        Set<Node> unassignedNodes = new HashSet<>(graph.nodes());
         NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
-        for (ColoredPolygon coloredPolygon : polygons) {
-            Polygon polygon = coloredPolygon.polygon;
-            Set<Node> containedNodes = new HashSet<>();
-            for (Node node : unassignedNodes) {
-                if (Geom2D.isPointInPolygon(positions.get(node), polygon)) {
-                    containedNodes.add(node);
-                }
-            }
-            polygonToContainedNodes.put(coloredPolygon, containedNodes);
-            unassignedNodes.removeAll(containedNodes);
-        }
-
+        ElementLocator locator = new BglBuilder(graph)
+                .withNodeSizes(new NodeAttribute<>(new Coordinates(0, 0)))
+                .withEdgesToConsider(new EdgeAttribute<>(false))
+                .build();
+        List<List<Node>> polygonToContainedNodes = containedNodes(polygons, positions, locator);
+        locator.close();
+
+        Map<Node, List<Polygon>> nodeToClusterPolygons = new HashMap<>();
+        Map<Node, Graph> nodeToCluster = new HashMap<>();
         for (Graph subgraph : graph.subGraphs()) {
             List<Polygon> subGraphPolygons = new ArrayList<>();
             subgraph.newLocalGraphAttribute(DotTools.polygonIdAttr, subGraphPolygons);
+            for (Node node : subgraph.nodes()) {
+                nodeToClusterPolygons.put(node, subGraphPolygons);
+                nodeToCluster.put(node, subgraph);
+            }
+        }
 
-            for (ColoredPolygon coloredPolygon : polygonToContainedNodes.keySet()) {
-                Polygon polygon = coloredPolygon.polygon;
-                Set<Node> containedNodes = polygonToContainedNodes.get(coloredPolygon);
-                if (!containedNodes.isEmpty() && subgraph.has(containedNodes.iterator().next())) {
-                    subGraphPolygons.add(polygon);
-                    addPolygonToGraphics(subgraph, coloredPolygon, subGraphPolygons.size());
+        Set<Node> assignedNodes = new HashSet<>();
+        for (int i = 0; i < polygons.size(); i++) {
+            Node owner = null;
+            for (Node node : polygonToContainedNodes.get(i)) {
+                if (assignedNodes.add(node) && owner == null) {
+                    owner = node;
                 }
             }
+            if (owner != null && nodeToCluster.containsKey(owner)) {
+                List<Polygon> subGraphPolygons = nodeToClusterPolygons.get(owner);
+                subGraphPolygons.add(polygons.get(i).polygon);
+                addPolygonToGraphics(nodeToCluster.get(owner), polygons.get(i), subGraphPolygons.size());
+            }
         }
     }
 
+    /**
+     * Computes the nodes contained in each polygon. Only the nodes in the
+     * bounding box of a polygon are tested, and the polygons are processed in
+     * parallel.
+     *
+     * @param polygons the polygons.
+     * @param positions the node positions.
+     * @param locator the locator indexing the node positions.
+     * @return the contained nodes, sorted by id, for each polygon.
+     */
+    private static List<List<Node>> containedNodes(final List<ColoredPolygon> polygons, final NodeAttribute<Coordinates> positions, final ElementLocator locator) {
+        final List<List<Node>> containedNodes = new ArrayList<>(Collections.nCopies(polygons.size(), (List<Node>) null));
+        final int threads = Math.min(Runtime.getRuntime().availableProcessors(), polygons.size());
+        if (threads <= 1) {
+            for (int i = 0; i < polygons.size(); i++) {
+                containedNodes.set(i, containedNodes(polygons.get(i), positions, locator));
+            }
+            return containedNodes;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int firstIndex = t;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = firstIndex; i < polygons.size(); i += threads) {
+                            containedNodes.set(i, containedNodes(polygons.get(i), positions, locator));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The polygon assignment has been interrupted.");
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Error while assigning the polygons.", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return containedNodes;
+    }
+
+    /**
+     * Computes the nodes contained in a polygon. The candidate nodes are
+     * tested against the polygon in a single batch.
+     *
+     * @param coloredPolygon the polygon.
+     * @param positions the node positions.
+     * @param locator the locator indexing the node positions.
+     * @return the contained nodes, sorted by id.
+     */
+    private static List<Node> containedNodes(ColoredPolygon coloredPolygon, NodeAttribute<Coordinates> positions, ElementLocator locator) {
+        List<Node> candidateNodes = new ArrayList<>();
+        List<Coordinates> candidatePositions = new ArrayList<>();
+        for (Node node : locator.getNodesPartiallyInBox(coloredPolygon.box)) {
+            Coordinates position = positions.get(node);
+            if (coloredPolygon.box.contains(position)) {
+                candidateNodes.add(node);
+                candidatePositions.add(position);
+            }
+        }
+        boolean[] inside = new boolean[candidateNodes.size()];
+        Geom2DBatch.pointsInPolygon(Geom2DBatch.pack(candidatePositions), Geom2DBatch.pack(coloredPolygon.polygon), inside);
+
+        List<Node> containedNodes = new ArrayList<>();
+        for (int i = 0; i < inside.length; i++) {
+            if (inside[i]) {
+                containedNodes.add(candidateNodes.get(i));
+            }
+        }
+        Collections.sort(containedNodes);
+        return containedNodes;
+    }
+
     /**
      * Adds the given colored polygon to the graphics attribute of the subgraph.
      *
@@ -676,11 +1173,22 @@ public class DotReader {
 
         protected Polygon polygon;
         protected Color fillColor;
+        protected double area;
+        protected Box box;
 
         protected ColoredPolygon(Polygon polygon, Color fillColor) {
             this.polygon = polygon;
             this.fillColor = fillColor;
         }
+
+        /**
+         * Computes the area and the bounding box of the polygon, slightly
+         * enlarged to include the points on its boundary.
+         */
+        protected void computeBounds() {
+            area = Geom2D.polygonArea(polygon);
+            box = Box.boundingBox(polygon, GeomXD.epsilon);
+        }
     }
 
     /**
@@ -829,8 +1337,13 @@ public class DotReader {
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         protected void writeAttributeValue(String attrId, Object value, Object defaultValue) {
-            graph.newNodeAttribute(attrId, value);
+            if (graph.hasNodeAttribute(attrId)) {
+                graph.<Object>nodeAttribute(attrId).setDefault(value);
+            } else {
+                graph.newNodeAttribute(attrId, value);
+            }
         }
     }
 
@@ -846,8 +1359,13 @@ public class DotReader {
         }
 
         @Override
+        @SuppressWarnings("unchecked")
         protected void writeAttributeValue(String attrId, Object value, Object defaultValue) {
-            graph.newEdgeAttribute(attrId, value);
+            if (graph.hasEdgeAttribute(attrId)) {
+                graph.<Object>edgeAttribute(attrId).setDefault(value);
+            } else {
+                graph.newEdgeAttribute(attrId, value);
+            }
         }
     }
 
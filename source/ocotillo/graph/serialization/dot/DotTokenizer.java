@@ -0,0 +1,376 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.serialization.dot;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Splits a dot input in tokens, reading it one buffer at a time. Comments,
+ * preprocessor lines and white spaces are skipped. Quoted strings are returned
+ * without the enclosing quotes, with the escape sequences left untouched apart
+ * from the escaped line breaks, which are removed. Quoted strings joined by
+ * the + operator are returned as a single token.
+ */
+class DotTokenizer {
+
+    /**
+     * The types of dot tokens.
+     */
+    enum Token {
+
+        id,
+        quoted,
+        html,
+        edgeOp,
+        openBrace,
+        closeBrace,
+        openBracket,
+        closeBracket,
+        equal,
+        semicolon,
+        comma,
+        colon,
+        end
+    }
+
+    private static final int bufferSize = 8192;
+
+    private final Reader reader;
+    private final char[] buffer = new char[bufferSize];
+    private int bufferLength = 0;
+    private int bufferPosition = 0;
+    private boolean lineStart = true;
+    private int line = 1;
+
+    private final StringBuilder text = new StringBuilder();
+    private Token peeked;
+    private String peekedText;
+
+    /**
+     * Constructs a tokenizer.
+     *
+     * @param reader the reader of the dot input.
+     */
+    DotTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Returns the type of the next token without consuming it.
+     *
+     * @return the type of the next token.
+     * @throws IOException if the input cannot be read.
+     */
+    Token peek() throws IOException {
+        if (peeked == null) {
+            peeked = read();
+            peekedText = text.toString();
+        }
+        return peeked;
+    }
+
+    /**
+     * Consumes the next token.
+     *
+     * @return the type of the consumed token.
+     * @throws IOException if the input cannot be read.
+     */
+    Token next() throws IOException {
+        Token token = peek();
+        peeked = null;
+        return token;
+    }
+
+    /**
+     * Returns the text of the last peeked or consumed token.
+     *
+     * @return the token text.
+     */
+    String text() {
+        return peekedText;
+    }
+
+    /**
+     * Returns the current line of the input.
+     *
+     * @return the line number, starting from 1.
+     */
+    int line() {
+        return line;
+    }
+
+    /**
+     * Reads the next token from the input.
+     *
+     * @return the token type.
+     * @throws IOException if the input cannot be read.
+     */
+    private Token read() throws IOException {
+        text.setLength(0);
+        int character = skipIgnored();
+        if (character < 0) {
+            return Token.end;
+        }
+        consume();
+        switch (character) {
+            case '{':
+                return punctuation(Token.openBrace, character);
+            case '}':
+                return punctuation(Token.closeBrace, character);
+            case '[':
+                return punctuation(Token.openBracket, character);
+            case ']':
+                return punctuation(Token.closeBracket, character);
+            case '=':
+                return punctuation(Token.equal, character);
+            case ';':
+                return punctuation(Token.semicolon, character);
+            case ',':
+                return punctuation(Token.comma, character);
+            case ':':
+                return punctuation(Token.colon, character);
+            case '"':
+                readQuoted();
+                while (skipIgnored() == '+') {
+                    consume();
+                    if (skipIgnored() != '"') {
+                        throw new UnsupportedOperationException("Invalid string concatenation at line " + line + ".");
+                    }
+                    consume();
+                    readQuoted();
+                }
+                return Token.quoted;
+            case '<':
+                readHtml();
+                return Token.html;
+            case '-':
+                int following = current();
+                if (following == '-' || following == '>') {
+                    consume();
+                    text.append('-').append((char) following);
+                    return Token.edgeOp;
+                }
+                break;
+            default:
+        }
+        if (!isIdCharacter(character)) {
+            throw new UnsupportedOperationException("Unexpected character '" + (char) character + "' at line " + line + ".");
+        }
+        text.append((char) character);
+        while (isIdCharacter(current()) && !startsEdgeOperator()) {
+            text.append((char) consume());
+        }
+        return Token.id;
+    }
+
+    /**
+     * Records the text of a punctuation token.
+     *
+     * @param token the token type.
+     * @param character the punctuation character.
+     * @return the token type.
+     */
+    private Token punctuation(Token token, int character) {
+        text.append((char) character);
+        return token;
+    }
+
+    /**
+     * Reads the content of a quoted string, after the opening quote.
+     *
+     * @throws IOException if the input cannot be read.
+     */
+    private void readQuoted() throws IOException {
+        while (true) {
+            int character = consume();
+            if (character < 0) {
+                throw new UnsupportedOperationException("Unterminated string at line " + line + ".");
+            } else if (character == '"') {
+                return;
+            } else if (character == '\\') {
+                int escaped = consume();
+                if (escaped == '\r' && current() == '\n') {
+                    consume();
+                } else if (escaped != '\n' && escaped != '\r') {
+                    text.append('\\');
+                    if (escaped >= 0) {
+                        text.append((char) escaped);
+                    }
+                }
+            } else {
+                text.append((char) character);
+            }
+        }
+    }
+
+    /**
+     * Reads the content of an html string, after the opening angle bracket.
+     *
+     * @throws IOException if the input cannot be read.
+     */
+    private void readHtml() throws IOException {
+        int depth = 1;
+        while (true) {
+            int character = consume();
+            if (character < 0) {
+                throw new UnsupportedOperationException("Unterminated html string at line " + line + ".");
+            } else if (character == '<') {
+                depth++;
+            } else if (character == '>' && --depth == 0) {
+                return;
+            }
+            text.append((char) character);
+        }
+    }
+
+    /**
+     * Skips white spaces, comments and preprocessor lines.
+     *
+     * @return the first character not skipped, or -1 at the end of the input.
+     * @throws IOException if the input cannot be read.
+     */
+    private int skipIgnored() throws IOException {
+        while (true) {
+            int character = current();
+            if (character == '#' && lineStart) {
+                skipLine();
+            } else if (character == '/' && peekSecond() == '/') {
+                skipLine();
+            } else if (character == '/' && peekSecond() == '*') {
+                consume();
+                consume();
+                int previous = 0;
+                while ((character = consume()) >= 0 && !(previous == '*' && character == '/')) {
+                    previous = character;
+                }
+            } else if (character >= 0 && Character.isWhitespace(character)) {
+                consume();
+            } else {
+                return character;
+            }
+        }
+    }
+
+    /**
+     * Skips the rest of the current line.
+     *
+     * @throws IOException if the input cannot be read.
+     */
+    private void skipLine() throws IOException {
+        int character;
+        while ((character = current()) >= 0 && character != '\n') {
+            consume();
+        }
+    }
+
+    /**
+     * Indicates whether the input continues with an edge operator.
+     *
+     * @return true if the next characters are -- or ->.
+     * @throws IOException if the input cannot be read.
+     */
+    private boolean startsEdgeOperator() throws IOException {
+        if (current() != '-') {
+            return false;
+        }
+        int second = peekSecond();
+        return second == '-' || second == '>';
+    }
+
+    /**
+     * Indicates whether a character can be part of an unquoted id.
+     *
+     * @param character the character.
+     * @return true for letters, digits, underscores, dots and minus signs.
+     */
+    private static boolean isIdCharacter(int character) {
+        return character >= 0 && (Character.isLetterOrDigit(character)
+                || character == '_' || character == '.' || character == '-' || character > 127);
+    }
+
+    /**
+     * Returns the current character without consuming it.
+     *
+     * @return the character, or -1 at the end of the input.
+     * @throws IOException if the input cannot be read.
+     */
+    private int current() throws IOException {
+        if (bufferPosition >= bufferLength && !fill()) {
+            return -1;
+        }
+        return buffer[bufferPosition];
+    }
+
+    /**
+     * Returns the character after the current one without consuming them.
+     *
+     * @return the character, or -1 at the end of the input.
+     * @throws IOException if the input cannot be read.
+     */
+    private int peekSecond() throws IOException {
+        if (bufferPosition + 1 >= bufferLength) {
+            if (current() < 0) {
+                return -1;
+            }
+            System.arraycopy(buffer, bufferPosition, buffer, 0, bufferLength - bufferPosition);
+            bufferLength -= bufferPosition;
+            bufferPosition = 0;
+            int read = reader.read(buffer, bufferLength, buffer.length - bufferLength);
+            if (read > 0) {
+                bufferLength += read;
+            }
+            if (bufferPosition + 1 >= bufferLength) {
+                return -1;
+            }
+        }
+        return buffer[bufferPosition + 1];
+    }
+
+    /**
+     * Consumes the current character.
+     *
+     * @return the consumed character, or -1 at the end of the input.
+     * @throws IOException if the input cannot be read.
+     */
+    private int consume() throws IOException {
+        int character = current();
+        if (character >= 0) {
+            bufferPosition++;
+            lineStart = character == '\n';
+            if (lineStart) {
+                line++;
+            }
+        }
+        return character;
+    }
+
+    /**
+     * Refills the buffer.
+     *
+     * @return true if new characters have been read.
+     * @throws IOException if the input cannot be read.
+     */
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        bufferPosition = 0;
+        bufferLength = Math.max(read, 0);
+        return read > 0;
+    }
+}
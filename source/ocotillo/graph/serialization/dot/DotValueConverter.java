@@ -58,6 +58,37 @@ public abstract class DotValueConverter<T> {
         return null;
     }
 
+    /**
+     * Formats a double value with two decimal digits, producing the same
+     * string as String.format(Locale.ENGLISH, "%.2f", value). Values that are
+     * too large, negative values rounding to zero and values lying on a
+     * rounding tie are delegated to String.format.
+     *
+     * @param value the value.
+     * @return the formatted value.
+     */
+    protected static String formatTwoDecimals(double value) {
+        double scaled = value * 100;
+        if (!(Math.abs(scaled) < 1e9) || Math.abs(scaled - Math.floor(scaled) - 0.5) < 1e-6) {
+            return String.format(Locale.ENGLISH, "%.2f", value);
+        }
+        long rounded = Math.round(scaled);
+        if (rounded == 0 && (value < 0 || 1 / value < 0)) {
+            return String.format(Locale.ENGLISH, "%.2f", value);
+        }
+        StringBuilder builder = new StringBuilder(16);
+        if (rounded < 0) {
+            builder.append('-');
+            rounded = -rounded;
+        }
+        long decimals = rounded % 100;
+        builder.append(rounded / 100).append('.');
+        if (decimals < 10) {
+            builder.append('0');
+        }
+        return builder.append(decimals).toString();
+    }
+
     /**
      * Converter for boolean values.
      */
@@ -159,11 +190,21 @@ public abstract class DotValueConverter<T> {
             return coordinates;
         }
 
+        /**
+         * Converts a pair of already parsed dot coordinates, producing the
+         * same value obtained by converting their string representation.
+         *
+         * @param x the dot x coordinate.
+         * @param y the dot y coordinate.
+         * @return the graph coordinates.
+         */
+        public Coordinates dotToGraphLib(double x, double y) {
+            return new Coordinates(x * scaling, y * scaling, 0);
+        }
+
         @Override
         public String graphLibToDot(Coordinates value) {
-            String x = String.format(Locale.ENGLISH, "%.2f", value.x() / scaling);
-            String y = String.format(Locale.ENGLISH, "%.2f", value.y() / scaling);
-            return x + "," + y;
+            return formatTwoDecimals(value.x() / scaling) + "," + formatTwoDecimals(value.y() / scaling);
         }
 
         @Override
@@ -207,7 +248,7 @@ public abstract class DotValueConverter<T> {
 
         @Override
         public String graphLibToDot(Coordinates value) {
-            return String.format(Locale.ENGLISH, "%.2f", value.get(dimensionIdx) / scaling);
+            return formatTwoDecimals(value.get(dimensionIdx) / scaling);
         }
     }
 
@@ -24,15 +24,25 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DotWriter {
 
@@ -41,12 +51,16 @@ public class DotWriter {
     private final ConversionSettings edgeAttrSettings;
     private final ConversionSettings clusterToNodeAttrSettings;
     private final DefaultDotConverters defaultConverters;
+    private final int threads;
 
     private final DotAttributes graphAttributes = new DotAttributes();
     private final DotAttributes defaultNodeAttributes = new DotAttributes();
     private final DotAttributes defaultEdgeAttributes = new DotAttributes();
-    private final Map<String, DotAttributes> nodeAttributes = new HashMap<>();
-    private final List<DotAttributes> edgeAttributes = new ArrayList<>();
+    private final Map<Node, DotAttributes> clusterAttributes = new HashMap<>();
+    private Set<String> unspecifiedNodeAttributes;
+    private Set<String> unspecifiedEdgeAttributes;
+
+    private static final int chunkSize = 1024;
 
     /**
      * Builder for dot writers.
@@ -75,22 +89,55 @@ public class DotWriter {
          */
         public final DefaultDotConverters defaultConverters = new DefaultDotConverters();
 
+        private int threads = 1;
+
+        /**
+         * Indicates the number of threads used to format the node and edge
+         * lines. The lines are formatted in chunks and written in order.
+         *
+         * @param threads the number of threads.
+         * @return the builder.
+         */
+        public DotWriterBuilder withThreads(int threads) {
+            this.threads = threads;
+            return this;
+        }
+
         /**
          * Constructs a dot writer.
          *
          * @return
          */
         public DotWriter build() {
-            return new DotWriter(graphAttributes, nodeAttributes, edgeAttributes, clusterToNodeAttributes, defaultConverters);
+            if (threads < 1) {
+                throw new IllegalArgumentException("Invalid dot writer parameters.");
+            }
+            return new DotWriter(graphAttributes, nodeAttributes, edgeAttributes, clusterToNodeAttributes, defaultConverters, threads);
         }
     }
 
     public DotWriter(ConversionSettings graphAttrSettings, ConversionSettings nodeAttrSettings, ConversionSettings edgeAttrSettings, ConversionSettings clusterToNodeAttrSettings, DefaultDotConverters defaultConverters) {
+        this(graphAttrSettings, nodeAttrSettings, edgeAttrSettings, clusterToNodeAttrSettings, defaultConverters, 1);
+    }
+
+    public DotWriter(ConversionSettings graphAttrSettings, ConversionSettings nodeAttrSettings, ConversionSettings edgeAttrSettings, ConversionSettings clusterToNodeAttrSettings, DefaultDotConverters defaultConverters, int threads) {
         this.graphAttrSettings = graphAttrSettings;
         this.nodeAttrSettings = nodeAttrSettings;
         this.edgeAttrSettings = edgeAttrSettings;
         this.clusterToNodeAttrSettings = clusterToNodeAttrSettings;
         this.defaultConverters = defaultConverters;
+        this.threads = threads;
+    }
+
+    /**
+     * Creates a dot writer with the same settings of this one. A writer
+     * keeps the state of the graph being written, so writers used
+     * concurrently must be distinct copies.
+     *
+     * @return the dot writer.
+     */
+    public DotWriter copy() {
+        return new DotWriter(graphAttrSettings, nodeAttrSettings, edgeAttrSettings, clusterToNodeAttrSettings, defaultConverters, threads);
     }
 
     /**
@@ -101,79 +148,89 @@ public class DotWriter {
      */
     public void writeGraph(Graph graph, File file) {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
-            List<String> lines = writeGraph(graph);
-            for (String line : lines) {
-                writer.write(line);
-                writer.newLine();
-            }
+            writeGraph(graph, writer);
         } catch (IOException ex) {
             System.err.println("The file " + file.getName() + "is not writable.");
         }
     }
 
     /**
-     * Writes the graph in dot format.
+     * Writes the graph in dot format on the given stream, using the UTF-8
+     * encoding. The stream is flushed but not closed.
      *
      * @param graph the graph.
-     * @return the dot lines.
+     * @param stream the output stream.
+     * @throws IOException if the stream is not writable.
      */
-    public List<String> writeGraph(Graph graph) {
-        graphAttributes.clear();
-        defaultNodeAttributes.clear();
-        defaultEdgeAttributes.clear();
-        nodeAttributes.clear();
-        edgeAttributes.clear();
-
-        (new GraphGlobalAS(graph)).fillDotAttributes();
-        (new NodeGlobalAS(graph)).fillDotAttributes();
-        (new EdgeGlobalAS(graph)).fillDotAttributes();
-
-        extractNodeAttributes(graph);
-        extractEdgeAttributes(graph);
-        extractClusterAttributes(graph);
-
-        return writeDotLines();
+    public void writeGraph(Graph graph, OutputStream stream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(stream, Charset.forName("UTF-8")));
+        writeGraph(graph, writer);
+        writer.flush();
     }
 
     /**
-     * Extracts the node attributes from a graph and inserts them in the dot
-     * attribute maps.
+     * Writes the graph in dot format.
      *
      * @param graph the graph.
+     * @return the dot lines.
      */
-    private void extractNodeAttributes(Graph graph) {
-        for (Node node : graph.nodes()) {
-            DotAttributes attributes = new DotAttributes();
-            (new NodeAS(graph, node, attributes)).fillDotAttributes();
-            nodeAttributes.put(node.id(), attributes);
+    public List<String> writeGraph(Graph graph) {
+        StringBuilder output = new StringBuilder();
+        try {
+            writeGraph(graph, output);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Error while writing the dot lines.", ex);
         }
+        output.setLength(output.length() - 1);
+        return new ArrayList<>(Arrays.asList(output.toString().split("\n", -1)));
     }
 
     /**
-     * Extracts the edge attributes from a graph and inserts them in the dot
-     * attribute maps.
+     * Writes the graph in dot format on the given output. The node and edge
+     * lines are formatted one at a time and appended directly to the output,
+     * so that the dot text is never held in memory as a whole.
      *
      * @param graph the graph.
+     * @param output the output.
+     * @throws IOException if the output is not writable.
      */
-    private void extractEdgeAttributes(Graph graph) {
+    public void writeGraph(Graph graph, Appendable output) throws IOException {
+        graphAttributes.clear();
+        defaultNodeAttributes.clear();
+        defaultEdgeAttributes.clear();
+        clusterAttributes.clear();
+
+        (new GraphGlobalAS(graph)).fillDotAttributes();
+        (new NodeGlobalAS(graph)).fillDotAttributes();
+        (new EdgeGlobalAS(graph)).fillDotAttributes();
+        unspecifiedNodeAttributes = null;
+        unspecifiedEdgeAttributes = null;
+        unspecifiedNodeAttributes = (new NodeAS(graph, null, null)).unspecifiedAttributes();
+        unspecifiedEdgeAttributes = (new EdgeAS(graph, null, null)).unspecifiedAttributes();
+        extractClusterAttributes(graph);
+
+        output.append(writeOpeningLine()).append('\n');
+        output.append(writeGraphGlobalLine()).append('\n');
+        output.append(writeNodeGlobalLine()).append('\n');
+        output.append(writeEdgeGlobalLine()).append('\n');
+
+        List<Node> orderedNodes = new ArrayList<>(graph.nodes());
+        Collections.sort(orderedNodes);
         List<Edge> orderedEdges = new ArrayList<>(graph.edges());
         Collections.sort(orderedEdges);
-        for (Edge edge : orderedEdges) {
-            DotAttributes attributes = new DotAttributes();
-            attributes.put(DotTools.edgeSourceAttr, edge.source().id());
-            attributes.put(DotTools.edgeTargetAttr, edge.target().id());
-            if (graph.hasEdgeAttribute(DotTools.directedAttr)
-                    && graph.<Boolean>edgeAttribute(DotTools.directedAttr).get(edge)) {
-                attributes.put(DotTools.directedAttr, "true");
-            }
-            (new EdgeAS(graph, edge, attributes)).fillDotAttributes();
-            edgeAttributes.add(attributes);
+        if (threads == 1) {
+            writeElements(graph, orderedNodes, orderedEdges, 0, orderedNodes.size() + orderedEdges.size(), output);
+        } else {
+            writeElementsInParallel(graph, orderedNodes, orderedEdges, output);
         }
+
+        output.append("}\n");
+        clusterAttributes.clear();
     }
 
     /**
-     * Extracts the cluster attributes from a graph and inserts them in the dot
-     * attribute maps as node attributes.
+     * Extracts the cluster attributes from a graph, and associates them to
+     * the nodes of each cluster.
      *
      * @param graph the graph.
      */
@@ -182,35 +239,88 @@ public class DotWriter {
             DotAttributes clusterAttr = new DotAttributes();
             (new ClusterAS(cluster, clusterAttr)).fillDotAttributes();
             for (Node node : cluster.nodes()) {
-                nodeAttributes.get(node.id()).putAll(clusterAttr);
+                DotAttributes previousAttr = clusterAttributes.get(node);
+                if (previousAttr == null) {
+                    clusterAttributes.put(node, clusterAttr);
+                } else {
+                    DotAttributes mergedAttr = new DotAttributes(previousAttr);
+                    mergedAttr.putAll(clusterAttr);
+                    clusterAttributes.put(node, mergedAttr);
+                }
             }
         }
     }
 
     /**
-     * Writes the attributes in the maps as dot lines.
+     * Writes the lines of a range of elements, where the nodes are indexed
+     * before the edges.
      *
-     * @return the dot lines.
+     * @param graph the graph.
+     * @param nodes the ordered nodes.
+     * @param edges the ordered edges.
+     * @param start the index of the first element.
+     * @param end the index after the last element.
+     * @param output the output.
+     * @throws IOException if the output is not writable.
      */
-    private List<String> writeDotLines() {
-        List<String> dotLines = new ArrayList<>();
-        dotLines.add(writeOpeningLine());
-        dotLines.add(writeGraphGlobalLine());
-        dotLines.add(writeNodeGlobalLine());
-        dotLines.add(writeEdgeGlobalLine());
-
-        List<String> orderedNodeIds = new ArrayList<>(nodeAttributes.keySet());
-        Collections.sort(orderedNodeIds);
-        for (String nodeId : orderedNodeIds) {
-            dotLines.add(writeNodeLine(nodeId, nodeAttributes.get(nodeId)));
+    private void writeElements(Graph graph, List<Node> nodes, List<Edge> edges, int start, int end, Appendable output) throws IOException {
+        DotAttributes attributes = new DotAttributes();
+        StringBuilder line = new StringBuilder();
+        for (int i = start; i < end; i++) {
+            attributes.clear();
+            line.setLength(0);
+            if (i < nodes.size()) {
+                writeNodeLine(graph, nodes.get(i), attributes, line);
+            } else {
+                writeEdgeLine(graph, edges.get(i - nodes.size()), attributes, line);
+            }
+            output.append(line);
         }
+    }
 
-        for (DotAttributes entry : edgeAttributes) {
-            dotLines.add(writeEdgeLine(entry));
+    /**
+     * Writes the lines of nodes and edges formatting them in parallel. The
+     * elements are split in chunks that are formatted by a thread pool and
+     * written in order. Only a limited number of chunks is formatted ahead of
+     * the output.
+     *
+     * @param graph the graph.
+     * @param nodes the ordered nodes.
+     * @param edges the ordered edges.
+     * @param output the output.
+     * @throws IOException if the output is not writable.
+     */
+    private void writeElementsInParallel(final Graph graph, final List<Node> nodes, final List<Edge> edges, Appendable output) throws IOException {
+        int elementCount = nodes.size() + edges.size();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Deque<Future<StringBuilder>> pending = new ArrayDeque<>();
+        try {
+            int nextStart = 0;
+            while (nextStart < elementCount || !pending.isEmpty()) {
+                while (nextStart < elementCount && pending.size() < 2 * threads) {
+                    final int start = nextStart;
+                    final int end = Math.min(start + chunkSize, elementCount);
+                    pending.add(pool.submit(new Callable<StringBuilder>() {
+
+                        @Override
+                        public StringBuilder call() throws IOException {
+                            StringBuilder chunk = new StringBuilder();
+                            writeElements(graph, nodes, edges, start, end, chunk);
+                            return chunk;
+                        }
+                    }));
+                    nextStart = end;
+                }
+                output.append(pending.poll().get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The dot writing has been interrupted.");
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Error while writing the dot lines.", ex.getCause());
+        } finally {
+            pool.shutdownNow();
         }
-
-        dotLines.add("}");
-        return dotLines;
     }
 
     /**
@@ -246,7 +356,9 @@ public class DotWriter {
         attributes.remove(DotTools.strictAttr);
         attributes.remove(DotTools.directedAttr);
         attributes.remove(DotTools.graphNameAttr);
-        return "\tgraph [" + writeAttributes(attributes) + "];";
+        StringBuilder line = new StringBuilder("\tgraph [");
+        writeAttributes(attributes, line);
+        return line.append("];").toString();
     }
 
     /**
@@ -255,8 +367,9 @@ public class DotWriter {
      * @return the default node attribute line.
      */
     private String writeNodeGlobalLine() {
-        DotAttributes attributes = new DotAttributes(defaultNodeAttributes);
-        return "\tnode [" + writeAttributes(attributes) + "];";
+        StringBuilder line = new StringBuilder("\tnode [");
+        writeAttributes(defaultNodeAttributes, line);
+        return line.append("];").toString();
     }
 
     /**
@@ -269,65 +382,74 @@ public class DotWriter {
         attributes.remove(DotTools.edgeSourceAttr);
         attributes.remove(DotTools.edgeTargetAttr);
         attributes.remove(DotTools.directedAttr);
-        return "\tedge [" + writeAttributes(attributes) + "];";
+        StringBuilder line = new StringBuilder("\tedge [");
+        writeAttributes(attributes, line);
+        return line.append("];").toString();
     }
 
     /**
-     * Writes the line of a node.
+     * Writes the line of a node, terminated by a line break.
      *
-     * @return the node line.
+     * @param graph the graph.
+     * @param node the node.
+     * @param attributes an empty map to be filled with the node attributes.
+     * @param line the builder where the line is written.
      */
-    private String writeNodeLine(String nodeId, DotAttributes nodeAttributes) {
-        DotAttributes attributes = new DotAttributes(nodeAttributes);
-        return "\t" + nodeId + " [" + writeAttributes(attributes) + "];";
+    private void writeNodeLine(Graph graph, Node node, DotAttributes attributes, StringBuilder line) {
+        (new NodeAS(graph, node, attributes)).fillDotAttributes();
+        DotAttributes clusterAttr = clusterAttributes.get(node);
+        if (clusterAttr != null) {
+            attributes.putAll(clusterAttr);
+        }
+        line.append('\t').append(node.id()).append(" [");
+        writeAttributes(attributes, line);
+        line.append("];\n");
     }
 
     /**
-     * Writes the line of an edge.
+     * Writes the line of an edge, terminated by a line break.
      *
-     * @return the edge line.
+     * @param graph the graph.
+     * @param edge the edge.
+     * @param attributes an empty map to be filled with the edge attributes.
+     * @param line the builder where the line is written.
      */
-    private String writeEdgeLine(DotAttributes nodeAttributes) {
-        DotAttributes attributes = new DotAttributes(nodeAttributes);
-        String edgeSource = attributes.get(DotTools.edgeSourceAttr);
-        String edgeTarget = attributes.get(DotTools.edgeTargetAttr);
-        String edge;
-        if (attributes.containsKey(DotTools.directedAttr)
-                && attributes.get(DotTools.directedAttr).equals("true")) {
-            edge = " -> ";
-        } else {
-            edge = " -- ";
+    private void writeEdgeLine(Graph graph, Edge edge, DotAttributes attributes, StringBuilder line) {
+        if (graph.hasEdgeAttribute(DotTools.directedAttr)
+                && graph.<Boolean>edgeAttribute(DotTools.directedAttr).get(edge)) {
+            attributes.put(DotTools.directedAttr, "true");
         }
-
+        (new EdgeAS(graph, edge, attributes)).fillDotAttributes();
+        String directed = attributes.remove(DotTools.directedAttr);
         attributes.remove(DotTools.edgeSourceAttr);
         attributes.remove(DotTools.edgeTargetAttr);
-        attributes.remove(DotTools.directedAttr);
-        return "\t" + edgeSource + edge + edgeTarget + " [" + writeAttributes(attributes) + "];";
+
+        line.append('\t').append(edge.source().id());
+        line.append("true".equals(directed) ? " -> " : " -- ");
+        line.append(edge.target().id()).append(" [");
+        writeAttributes(attributes, line);
+        line.append("];\n");
     }
 
     /**
      * Write a sequence of attributes in the dot format.
      *
      * @param attributes the attributes.
-     * @return the attribute line.
+     * @param line the builder where the attributes are written.
      */
-    private String writeAttributes(DotAttributes attributes) {
+    private static void writeAttributes(DotAttributes attributes, StringBuilder line) {
         if (attributes.isEmpty()) {
-            return " ";
-        }
-        String line = "";
-        List<Map.Entry<String, String>> orderedAttributes = new ArrayList<>(attributes.entrySet());
-        Collections.sort(orderedAttributes, new Comparator<Map.Entry<String, String>>() {
-
-            @Override
-            public int compare(Map.Entry<String, String> a, Map.Entry<String, String> b) {
-                return a.getKey().compareTo(b.getKey());
+            line.append(' ');
+            return;
+        }
+        String[] orderedKeys = attributes.keySet().toArray(new String[attributes.size()]);
+        Arrays.sort(orderedKeys);
+        for (int i = 0; i < orderedKeys.length; i++) {
+            if (i > 0) {
+                line.append(", ");
             }
-        });
-        for (Map.Entry<String, String> entry : orderedAttributes) {
-            line += entry.getKey() + "=\"" + entry.getValue() + "\", ";
+            line.append(orderedKeys[i]).append("=\"").append(attributes.get(orderedKeys[i])).append('"');
         }
-        return line.substring(0, line.length() - 2);
     }
 
     /**
@@ -342,6 +464,7 @@ public class DotWriter {
         protected Graph graph;
         protected DotAttributes dotAttributes;
         protected ConversionSettings convSettings;
+        protected Set<String> unspecifiedAttributes;
 
         /**
          * Extract graph library attributes and fills the map on dot attributes.
@@ -351,15 +474,27 @@ public class DotWriter {
                 convertValue(attributeSettings);
             }
             if (convSettings.saveUnspecified) {
-                Set<String> unspecifiedToconvert = getAllAttributeIds();
-                unspecifiedToconvert.removeAll(specifiedAttributes(convSettings.toConvert));
-                unspecifiedToconvert.removeAll(convSettings.toIgnore);
-                for (String attrId : unspecifiedToconvert) {
+                for (String attrId : unspecifiedAttributes()) {
                     convertValue(new AttributeConvSettings(attrId, attrId));
                 }
             }
         }
 
+        /**
+         * Gets the attributes to be converted without explicit settings. The
+         * set is computed once per setter unless already provided.
+         *
+         * @return the unspecified attribute IDs.
+         */
+        protected Set<String> unspecifiedAttributes() {
+            if (unspecifiedAttributes == null) {
+                unspecifiedAttributes = getAllAttributeIds();
+                unspecifiedAttributes.removeAll(specifiedAttributes(convSettings.toConvert));
+                unspecifiedAttributes.removeAll(convSettings.toIgnore);
+            }
+            return unspecifiedAttributes;
+        }
+
         /**
          * Performs the conversion of a given attribute,
          *
@@ -525,6 +660,7 @@ public class DotWriter {
             this.node = node;
             this.convSettings = nodeAttrSettings;
             this.dotAttributes = attributes;
+            this.unspecifiedAttributes = unspecifiedNodeAttributes;
         }
 
         @Override
@@ -555,6 +691,7 @@ public class DotWriter {
             this.edge = edge;
             this.convSettings = edgeAttrSettings;
             this.dotAttributes = attributes;
+            this.unspecifiedAttributes = unspecifiedEdgeAttributes;
         }
 
         @Override
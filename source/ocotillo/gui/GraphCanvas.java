@@ -25,8 +25,10 @@ import ocotillo.graph.Graph;
 import ocotillo.graph.GraphAttribute;
 import ocotillo.graph.GraphAttributeObserver;
 import ocotillo.graph.GraphObserver;
+import ocotillo.graph.Node;
 import ocotillo.graph.Observer;
 import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.LayoutSnapshot;
 import ocotillo.graph.rendering.GraphRenderer;
 import static ocotillo.graph.rendering.GraphRenderer.scaling;
 import ocotillo.graph.rendering.Rendering2D;
@@ -36,18 +38,21 @@ import java.awt.RenderingHints;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.swing.JPanel;
 
 /**
- * Panned-zoomed canvas for depicting graphs.
+ * Panned-zoomed canvas for depicting graphs. The canvas can also listen to a
+ * layout computed on another thread, drawing its latest snapshot.
  */
-public class GraphCanvas extends JPanel {
+public class GraphCanvas extends JPanel implements LayoutSnapshot.Listener {
 
     private final Graph graph;
     private final GraphRenderer rendered;
 
     private final ZoomAndPanListener zoomAndPanListener;
     private final List<Observer> observers = new ArrayList<>();
+    private final AtomicReference<LayoutSnapshot> snapshot = new AtomicReference<>();
 
     private boolean firstPaint = true;
     private static final long serialVersionUID = 1L;
@@ -83,6 +88,29 @@ public class GraphCanvas extends JPanel {
         for (ElementAttribute<?, ?> attribute : StdAttribute.thatAffectRendering.edgeAttributes(graph)) {
             addElementAttributeObserver(attribute);
         }
+        observers.add(new ElementAttributeObserver<Node>(graph.<Coordinates>nodeAttribute(StdAttribute.nodePosition)) {
+
+            @Override
+            public void update(Collection<Node> changedElements) {
+                discardCompleteSnapshot();
+            }
+
+            @Override
+            public void updateAll() {
+                discardCompleteSnapshot();
+            }
+        });
+    }
+
+    /**
+     * Stops drawing the complete snapshot, if any, once the graph positions
+     * have been updated.
+     */
+    private void discardCompleteSnapshot() {
+        LayoutSnapshot current = snapshot.get();
+        if (current != null && current.isComplete()) {
+            snapshot.compareAndSet(current, null);
+        }
     }
 
     /**
@@ -148,6 +176,19 @@ public class GraphCanvas extends JPanel {
         });
     }
 
+    /**
+     * Shows the published snapshot at the next repaint. A complete snapshot
+     * is shown until the node positions of the graph are updated, usually
+     * when it is applied to the graph. Can be called from any thread.
+     *
+     * @param snapshot the published snapshot.
+     */
+    @Override
+    public void snapshotPublished(LayoutSnapshot snapshot) {
+        this.snapshot.set(snapshot);
+        repaint();
+    }
+
     /**
      * Close the graph canvas preventing memory leaks.
      */
@@ -172,6 +213,7 @@ public class GraphCanvas extends JPanel {
             firstPaint = false;
         }
         graphics2D.setTransform(zoomAndPanListener.getTransform());
+        rendered.setSnapshot(snapshot.get());
         rendered.draw(graphics2D);
     }
 }
@@ -22,6 +22,7 @@ import javax.swing.SwingUtilities;
 
 public class QuickView extends JFrame {
 
+    private final GraphCanvas canvas;
     private static final long serialVersionUID = 1L;
 
     /**
@@ -31,12 +32,23 @@ public class QuickView extends JFrame {
      */
     public QuickView(Graph graph) {
         setTitle("Graph QuickView");
-        add(new GraphCanvas(graph));
+        canvas = new GraphCanvas(graph);
+        add(canvas);
         setSize(800, 800);
         setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         setLocationRelativeTo(null);
     }
 
+    /**
+     * Returns the canvas that draws the graph. The canvas can be registered
+     * as listener of a layout runner to show the layout progress.
+     *
+     * @return the graph canvas.
+     */
+    public GraphCanvas canvas() {
+        return canvas;
+    }
+
     /**
      * Runs a new instance of QuickView to display the given graph.
      *
@@ -0,0 +1,81 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.geometry;
+
+import java.util.Random;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class DelaunayTriangulationTest {
+
+    @Test
+    public void testSquare() {
+        double[] points = {0, 0, 1, 0, 1, 1, 0, 1};
+        DelaunayTriangulation triangulation = new DelaunayTriangulation(points);
+        assertThat(triangulation.triangleCount(), is(2));
+        int hullEdges = 0;
+        for (int halfedge : triangulation.halfedges()) {
+            if (halfedge == -1) {
+                hullEdges++;
+            }
+        }
+        assertThat(hullEdges, is(4));
+    }
+
+    @Test
+    public void testDegenerateInputs() {
+        assertThat(new DelaunayTriangulation(new double[]{}).triangleCount(), is(0));
+        assertThat(new DelaunayTriangulation(new double[]{0, 0, 1, 1}).triangleCount(), is(0));
+        assertThat(new DelaunayTriangulation(new double[]{0, 0, 1, 1, 2, 2, 3, 3}).triangleCount(), is(0));
+        assertThat(new DelaunayTriangulation(new double[]{0, 0, 1, 0, 0, 1, 0, 1}).triangleCount(), is(1));
+    }
+
+    @Test
+    public void testDelaunayProperty() {
+        Random random = new Random(42);
+        int pointCount = 500;
+        double[] points = new double[2 * pointCount];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextDouble() * 100;
+        }
+        DelaunayTriangulation triangulation = new DelaunayTriangulation(points);
+        int[] triangles = triangulation.triangles();
+        int[] halfedges = triangulation.halfedges();
+
+        int hullEdges = 0;
+        for (int e = 0; e < halfedges.length; e++) {
+            if (halfedges[e] == -1) {
+                hullEdges++;
+            } else {
+                assertThat(halfedges[halfedges[e]], is(e));
+                assertThat(triangles[halfedges[e]], is(triangles[DelaunayTriangulation.next(e)]));
+            }
+        }
+        assertThat(triangulation.triangleCount(), is(2 * pointCount - 2 - hullEdges));
+
+        for (int t = 0; t < triangulation.triangleCount(); t++) {
+            Coordinates center = triangulation.circumcenter(t);
+            int a = triangles[3 * t];
+            double radius = Math.hypot(points[2 * a] - center.x(), points[2 * a + 1] - center.y());
+            for (int i = 0; i < pointCount; i++) {
+                double distance = Math.hypot(points[2 * i] - center.x(), points[2 * i + 1] - center.y());
+                assertThat(radius - distance, lessThan(1e-9));
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.geometry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the running time of the batch geometry methods with the scalar
+ * ones in Geom2D. Run with "ant benchmark".
+ */
+public class Geom2DBatchBenchmark {
+
+    private static final int count = 100000;
+    private static final int warmUpRounds = 10;
+    private static final int measuredRounds = 20;
+
+    /**
+     * A benchmarked operation.
+     */
+    private interface Operation {
+
+        /**
+         * Runs the operation once.
+         *
+         * @return a value depending on the result, to avoid dead code
+         * elimination.
+         */
+        double run();
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args the command line arguments (unused).
+     */
+    public static void main(String[] args) {
+        final double[] points = randomValues(2 * count);
+        final double[] segments = randomValues(4 * count);
+        final List<Coordinates> pointList = new ArrayList<>(count);
+        final List<Coordinates> segmentList = new ArrayList<>(2 * count);
+        for (int i = 0; i < count; i++) {
+            pointList.add(new Coordinates(points[2 * i], points[2 * i + 1]));
+            segmentList.add(new Coordinates(segments[4 * i], segments[4 * i + 1]));
+            segmentList.add(new Coordinates(segments[4 * i + 2], segments[4 * i + 3]));
+        }
+        final Coordinates a = new Coordinates(10, 20);
+        final Coordinates b = new Coordinates(60, 35);
+        final Polygon polygon = new Polygon();
+        for (int i = 0; i < 32; i++) {
+            double angle = 2 * Math.PI * i / 32;
+            double radius = i % 2 == 0 ? 45 : 25;
+            polygon.add(new Coordinates(50 + radius * Math.cos(angle), 50 + radius * Math.sin(angle)));
+        }
+        final double[] packedPolygon = Geom2DBatch.pack(polygon);
+        final double[] distances = new double[count];
+        final boolean[] flags = new boolean[count];
+
+        compare("point-segment distance", new Operation() {
+            @Override
+            public double run() {
+                double sum = 0;
+                for (Coordinates point : pointList) {
+                    sum += Geom2D.pointToSegmentDistance(point, a, b);
+                }
+                return sum;
+            }
+        }, new Operation() {
+            @Override
+            public double run() {
+                Geom2DBatch.pointToSegmentDistances(points, a.x(), a.y(), b.x(), b.y(), distances);
+                return distances[count / 2];
+            }
+        });
+
+        compare("segment-segment intersection", new Operation() {
+            @Override
+            public double run() {
+                double crossings = 0;
+                for (int i = 0; i < count; i++) {
+                    if (Geom2D.segmSegmIntersection(segmentList.get(2 * i), segmentList.get(2 * i + 1), a, b) != null) {
+                        crossings++;
+                    }
+                }
+                return crossings;
+            }
+        }, new Operation() {
+            @Override
+            public double run() {
+                Geom2DBatch.segmentIntersectionTests(segments, a.x(), a.y(), b.x(), b.y(), flags);
+                return flags[count / 2] ? 1 : 0;
+            }
+        });
+
+        compare("point in polygon", new Operation() {
+            @Override
+            public double run() {
+                double insideCount = 0;
+                for (int i = 0; i < count / 10; i++) {
+                    if (Geom2D.isPointInPolygon(pointList.get(i), polygon)) {
+                        insideCount++;
+                    }
+                }
+                return insideCount;
+            }
+        }, new Operation() {
+            @Override
+            public double run() {
+                Geom2DBatch.pointsInPolygon(points, packedPolygon, flags);
+                return flags[count / 2] ? 1 : 0;
+            }
+        }, 10);
+    }
+
+    /**
+     * Compares a scalar and a batch operation processing the same elements.
+     *
+     * @param name the operation name.
+     * @param scalar the scalar operation.
+     * @param batch the batch operation.
+     */
+    private static void compare(String name, Operation scalar, Operation batch) {
+        compare(name, scalar, batch, 1);
+    }
+
+    /**
+     * Compares a scalar and a batch operation.
+     *
+     * @param name the operation name.
+     * @param scalar the scalar operation.
+     * @param batch the batch operation.
+     * @param scalarFraction the batch elements processed for each scalar
+     * element, when the scalar operation is too slow to run on all of them.
+     */
+    private static void compare(String name, Operation scalar, Operation batch, int scalarFraction) {
+        double scalarTime = measure(scalar) * scalarFraction;
+        double batchTime = measure(batch);
+        System.out.println(String.format("%-30s scalar %9.3f ms   batch %9.3f ms   speed-up %6.1fx",
+                name, scalarTime, batchTime, scalarTime / batchTime));
+    }
+
+    /**
+     * Measures the average running time of an operation.
+     *
+     * @param operation the operation.
+     * @return the average time in milliseconds.
+     */
+    private static double measure(Operation operation) {
+        double sink = 0;
+        for (int i = 0; i < warmUpRounds; i++) {
+            sink += operation.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < measuredRounds; i++) {
+            sink += operation.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == Double.MIN_VALUE) {
+            System.out.println(sink);
+        }
+        return elapsed / 1e6 / measuredRounds;
+    }
+
+    /**
+     * Generates random values in [0, 100).
+     *
+     * @param size the number of values.
+     * @return the values.
+     */
+    private static double[] randomValues(int size) {
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = GeomXD.randomDouble(100);
+        }
+        return values;
+    }
+}
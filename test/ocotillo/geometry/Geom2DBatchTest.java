@@ -0,0 +1,208 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.geometry;
+
+import static ocotillo.geometry.matchers.CoreMatchers.isAlmost;
+import static org.hamcrest.CoreMatchers.is;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class Geom2DBatchTest {
+
+    private static final int count = 1000;
+
+    private final Random random = new Random(11);
+
+    @Test
+    public void testPack() {
+        double[] packed = Geom2DBatch.pack(Arrays.asList(new Coordinates(1, 2), new Coordinates(3, 4)));
+        assertThat(packed.length, is(4));
+        assertThat(packed[0], is(1.0));
+        assertThat(packed[1], is(2.0));
+        assertThat(packed[2], is(3.0));
+        assertThat(packed[3], is(4.0));
+    }
+
+    @Test
+    public void testPointToSegmentDistances() {
+        double[] points = randomValues(2 * count);
+        double[] segments = randomValues(4 * count);
+        double[] distances = new double[count];
+
+        Geom2DBatch.pointToSegmentDistances(points, 10, 20, 60, 35, distances);
+        for (int i = 0; i < count; i++) {
+            assertThat(distances[i], isAlmost(Geom2D.pointToSegmentDistance(point(points, i),
+                    new Coordinates(10, 20), new Coordinates(60, 35))));
+        }
+
+        Geom2DBatch.pointToSegmentDistances(points, segments, distances);
+        for (int i = 0; i < count; i++) {
+            assertThat(distances[i], isAlmost(Geom2D.pointToSegmentDistance(point(points, i),
+                    point(segments, 2 * i), point(segments, 2 * i + 1))));
+        }
+
+        Geom2DBatch.pointToSegmentDistances(new double[]{3, 4}, 0, 0, 0, 0, distances = new double[1]);
+        assertThat(distances[0], isAlmost(5));
+    }
+
+    @Test
+    public void testClosestSegmentPoints() {
+        double[] points = randomValues(2 * count);
+        double[] closest = new double[2 * count];
+        Geom2DBatch.closestSegmentPoints(points, 10, 20, 60, 35, closest);
+        for (int i = 0; i < count; i++) {
+            assertThat(point(closest, i), isAlmost(Geom2D.closestSegmentPoint(point(points, i),
+                    new Coordinates(10, 20), new Coordinates(60, 35))));
+        }
+    }
+
+    @Test
+    public void testPointOnLineProjections() {
+        double[] points = randomValues(2 * count);
+        double[] projections = new double[2 * count];
+        Geom2DBatch.pointOnLineProjections(points, 10, 20, 60, 35, projections);
+        for (int i = 0; i < count; i++) {
+            assertThat(point(projections, i), isAlmost(Geom2D.pointOnLineProjection(point(points, i),
+                    new Coordinates(10, 20), new Coordinates(60, 35))));
+        }
+    }
+
+    @Test
+    public void testSegmentIntersectionTests() {
+        double[] segmentsA = randomValues(4 * count);
+        double[] segmentsB = randomValues(4 * count);
+        boolean[] intersect = new boolean[count];
+
+        Geom2DBatch.segmentIntersectionTests(segmentsA, segmentsB, intersect);
+        for (int i = 0; i < count; i++) {
+            boolean expected = Geom2D.segmSegmIntersection(point(segmentsA, 2 * i), point(segmentsA, 2 * i + 1),
+                    point(segmentsB, 2 * i), point(segmentsB, 2 * i + 1)) != null;
+            assertThat(intersect[i], is(expected));
+        }
+
+        Geom2DBatch.segmentIntersectionTests(segmentsA, 10, 20, 60, 35, intersect);
+        for (int i = 0; i < count; i++) {
+            boolean expected = Geom2D.segmSegmIntersection(point(segmentsA, 2 * i), point(segmentsA, 2 * i + 1),
+                    new Coordinates(10, 20), new Coordinates(60, 35)) != null;
+            assertThat(intersect[i], is(expected));
+        }
+
+        double[] degenerate = new double[]{
+            0, 0, 2, 0,
+            2, 0, 4, 0,
+            3, 0, 5, 0,
+            1, 0, 1, 0,
+            1, 1, 1, 1};
+        intersect = new boolean[5];
+        Geom2DBatch.segmentIntersectionTests(degenerate, 0, 0, 2, 0, intersect);
+        assertThat(intersect[0], is(true));
+        assertThat(intersect[1], is(true));
+        assertThat(intersect[2], is(false));
+        assertThat(intersect[3], is(true));
+        assertThat(intersect[4], is(false));
+    }
+
+    @Test
+    public void testPointsInPolygon() {
+        Polygon polygon = new Polygon();
+        polygon.add(new Coordinates(0, 0));
+        polygon.add(new Coordinates(80, 10));
+        polygon.add(new Coordinates(40, 40));
+        polygon.add(new Coordinates(90, 90));
+        polygon.add(new Coordinates(10, 70));
+        double[] packedPolygon = Geom2DBatch.pack(polygon);
+
+        double[] points = randomValues(2 * count);
+        boolean[] inside = new boolean[count];
+        Geom2DBatch.pointsInPolygon(points, packedPolygon, inside);
+        for (int i = 0; i < count; i++) {
+            if (boundaryDistance(point(points, i), polygon) > 1) {
+                assertThat(inside[i], is(Geom2D.isPointInPolygon(point(points, i), polygon)));
+            }
+        }
+
+        double[] clear = new double[]{20, 20, 60, 15, 60, 70, 20, 60, 70, 40, 95, 50, 50, -5, 5, 50};
+        inside = new boolean[8];
+        Geom2DBatch.pointsInPolygon(clear, packedPolygon, inside);
+        assertThat(inside[0], is(true));
+        assertThat(inside[1], is(true));
+        assertThat(inside[2], is(true));
+        assertThat(inside[3], is(true));
+        assertThat(inside[4], is(false));
+        assertThat(inside[5], is(false));
+        assertThat(inside[6], is(false));
+        assertThat(inside[7], is(false));
+
+        double[] special = new double[]{0, 0, 40, 5, 40, 40, 10, 40, 85, 50, -1, 0};
+        inside = new boolean[6];
+        Geom2DBatch.pointsInPolygon(special, packedPolygon, inside);
+        assertThat(inside[0], is(true));
+        assertThat(inside[1], is(true));
+        assertThat(inside[2], is(true));
+        assertThat(inside[3], is(true));
+        assertThat(inside[4], is(false));
+        assertThat(inside[5], is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongSizes() {
+        Geom2DBatch.pointToSegmentDistances(new double[4], 0, 0, 1, 1, new double[3]);
+    }
+
+    /**
+     * Generates random values in [0, 100).
+     *
+     * @param size the number of values.
+     * @return the values.
+     */
+    private double[] randomValues(int size) {
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextDouble() * 100;
+        }
+        return values;
+    }
+
+    /**
+     * Computes the distance between a point and the boundary of a polygon.
+     *
+     * @param point the point.
+     * @param polygon the polygon.
+     * @return the distance from the closest polygon edge.
+     */
+    private static double boundaryDistance(Coordinates point, Polygon polygon) {
+        double distance = Double.POSITIVE_INFINITY;
+        Coordinates previous = polygon.get(polygon.size() - 1);
+        for (Coordinates current : polygon) {
+            distance = Math.min(distance, Geom2D.pointToSegmentDistance(point, previous, current));
+            previous = current;
+        }
+        return distance;
+    }
+
+    /**
+     * Extracts a point from a packed array.
+     *
+     * @param packed the packed coordinates.
+     * @param index the point index.
+     * @return the point.
+     */
+    private static Coordinates point(double[] packed, int index) {
+        return new Coordinates(packed[2 * index], packed[2 * index + 1]);
+    }
+}
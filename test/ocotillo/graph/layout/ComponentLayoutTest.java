@@ -0,0 +1,176 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout;
+
+import ocotillo.geometry.Box;
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.StdAttribute.ControlPoints;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class ComponentLayoutTest {
+
+    @Test
+    public void testConnectedComponents() {
+        Graph graph = new Graph();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        Node c = graph.newNode();
+        Node d = graph.newNode();
+        graph.newNode();
+        graph.newEdge(a, b);
+        graph.newEdge(c, b);
+        graph.newEdge(d, d);
+
+        List<Set<Node>> components = ComponentLayout.connectedComponents(graph);
+        assertThat(components.size(), is(3));
+        int totalSize = 0;
+        for (Set<Node> component : components) {
+            totalSize += component.size();
+            if (component.contains(a)) {
+                assertThat(component.size(), is(3));
+                assertThat(component.contains(c), is(true));
+            }
+        }
+        assertThat(totalSize, is(5));
+    }
+
+    @Test
+    public void testPackBoxes() {
+        List<Box> boxes = Arrays.asList(
+                new Box(0, 0, 4, 4),
+                new Box(10, 10, 11, 12),
+                new Box(-5, -5, -3, -2),
+                new Box(0, 0, 3, 1));
+        List<Coordinates> offsets = ComponentLayout.packBoxes(boxes, 1);
+
+        List<Box> packed = new ArrayList<>();
+        for (int i = 0; i < boxes.size(); i++) {
+            Box box = boxes.get(i);
+            Coordinates offset = offsets.get(i);
+            packed.add(new Box(box.bottom + offset.y(), box.left + offset.x(), box.top + offset.y(), box.right + offset.x()));
+        }
+        for (int i = 0; i < packed.size(); i++) {
+            for (int j = i + 1; j < packed.size(); j++) {
+                assertThat(packed.get(i).intersect(packed.get(j)) == null, is(true));
+            }
+        }
+        assertThat(Box.combine(packed).width(), is(lessThan(10.0)));
+    }
+
+    @Test
+    public void testExecute() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        EdgeAttribute<ControlPoints> bends = graph.edgeAttribute(StdAttribute.edgePoints);
+        List<Edge> edges = new ArrayList<>();
+        for (int c = 0; c < 20; c++) {
+            Node a = graph.newNode();
+            Node b = graph.newNode();
+            edges.add(graph.newEdge(a, b));
+        }
+        bends.set(edges.get(0), new ControlPoints(new Coordinates(7, 7)));
+        graph.newNode();
+
+        final AtomicInteger executions = new AtomicInteger();
+        ComponentLayout layout = new ComponentLayout.ComponentLayoutBuilder(new ComponentLayout.Engine() {
+            @Override
+            public void execute(Graph component) {
+                executions.incrementAndGet();
+                NodeAttribute<Coordinates> componentPositions = component.nodeAttribute(StdAttribute.nodePosition);
+                EdgeAttribute<ControlPoints> componentBends = component.edgeAttribute(StdAttribute.edgePoints);
+                Edge edge = component.edges().iterator().next();
+                componentPositions.set(edge.source(), new Coordinates(0, 0));
+                componentPositions.set(edge.target(), new Coordinates(2, 0));
+                componentBends.set(edge, new ControlPoints(new Coordinates(1, 1)));
+            }
+        }).withSpacing(1).withThreads(4).build();
+        layout.execute(graph);
+
+        assertThat(executions.get(), is(20));
+        for (Edge edge : edges) {
+            Coordinates source = positions.get(edge.source());
+            Coordinates target = positions.get(edge.target());
+            assertThat(target.minus(source).x(), is(2.0));
+            assertThat(target.minus(source).y(), is(0.0));
+            assertThat(bends.get(edge).get(0).minus(source).x(), is(1.0));
+            assertThat(bends.get(edge).get(0).minus(source).y(), is(1.0));
+        }
+        assertThat(Layout2D.doNodesOverlap(graph), is(false));
+    }
+
+    @Test
+    public void testExecuteCopiesLayoutAttributes() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> sizes = graph.nodeAttribute(StdAttribute.nodeSize);
+        NodeAttribute<StdAttribute.NodeShape> shapes = graph.nodeAttribute(StdAttribute.nodeShape);
+        EdgeAttribute<Double> widths = graph.edgeAttribute(StdAttribute.edgeWidth);
+        shapes.setDefault(StdAttribute.NodeShape.cuboid);
+        widths.setDefault(0.5);
+        Node a = graph.newNode("a");
+        Node b = graph.newNode("b");
+        Edge ab = graph.newEdge("ab", a, b);
+        graph.newEdge("cd", graph.newNode("c"), graph.newNode("d"));
+        sizes.set(a, new Coordinates(3, 2));
+        shapes.set(a, StdAttribute.NodeShape.spheroid);
+        widths.set(ab, 10.0);
+
+        final Coordinates defaultSize = sizes.getDefault();
+        final List<String> failures = new ArrayList<>();
+        ComponentLayout layout = new ComponentLayout.ComponentLayoutBuilder(new ComponentLayout.Engine() {
+            @Override
+            public void execute(Graph component) {
+                NodeAttribute<Coordinates> componentSizes = component.nodeAttribute(StdAttribute.nodeSize);
+                NodeAttribute<StdAttribute.NodeShape> componentShapes = component.nodeAttribute(StdAttribute.nodeShape);
+                EdgeAttribute<Double> componentWidths = component.edgeAttribute(StdAttribute.edgeWidth);
+                if (componentShapes.getDefault() != StdAttribute.NodeShape.cuboid || componentWidths.getDefault() != 0.5
+                        || componentSizes.getDefault() == defaultSize || !componentSizes.getDefault().equals(defaultSize)) {
+                    failures.add("defaults");
+                }
+                if (component.hasNode("a")) {
+                    if (!componentSizes.get(component.getNode("a")).equals(new Coordinates(3, 2))
+                            || componentShapes.get(component.getNode("a")) != StdAttribute.NodeShape.spheroid
+                            || componentWidths.get(component.getEdge("ab")) != 10.0) {
+                        failures.add("values");
+                    }
+                }
+                for (Edge edge : component.edges()) {
+                    component.<Coordinates>nodeAttribute(StdAttribute.nodePosition).set(edge.source(), new Coordinates(0, 0));
+                    component.<Coordinates>nodeAttribute(StdAttribute.nodePosition).set(edge.target(), new Coordinates(0, 10));
+                }
+            }
+        }).withSpacing(0).build();
+        layout.execute(graph);
+
+        assertThat(failures.isEmpty(), is(true));
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        double distance = Math.abs(positions.get(graph.getNode("c")).x() - positions.get(a).x());
+        assertThat(distance >= 10.0 + 0.5, is(true));
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout;
+
+import ocotillo.geometry.Box;
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.GeomXD;
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.StdAttribute.ControlPoints;
+import static org.hamcrest.CoreMatchers.is;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class GraphBoxTrackerTest {
+
+    @Test
+    public void testBox() {
+        Graph graph = new Graph();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        Edge ab = graph.newEdge(a, b);
+        NodeAttribute<Coordinates> positions = graph.newNodeAttribute(StdAttribute.nodePosition, new Coordinates(0, 0));
+        NodeAttribute<Coordinates> sizes = graph.newNodeAttribute(StdAttribute.nodeSize, new Coordinates(2, 2));
+        EdgeAttribute<ControlPoints> edgePoints = graph.newEdgeAttribute(StdAttribute.edgePoints, new ControlPoints());
+        EdgeAttribute<Double> edgeWidths = graph.newEdgeAttribute(StdAttribute.edgeWidth, 0.0);
+        positions.set(b, new Coordinates(4, 2));
+
+        GraphBoxTracker tracker = new GraphBoxTracker(graph);
+        assertBox(tracker.box(), -1, -1, 3, 5);
+
+        positions.set(b, new Coordinates(1, 1));
+        assertBox(tracker.box(), -1, -1, 2, 2);
+
+        edgePoints.set(ab, new ControlPoints(new Coordinates(5, -3)));
+        assertBox(tracker.box(), -3, -1, 2, 5);
+
+        edgeWidths.set(ab, 2.0);
+        assertBox(tracker.box(), -5, -2, 3, 7);
+
+        sizes.set(a, new Coordinates(10, 10));
+        assertBox(tracker.box(), -5, -5, 5, 7);
+
+        graph.remove(ab);
+        assertBox(tracker.box(), -5, -5, 5, 5);
+
+        graph.remove(a);
+        assertBox(tracker.box(), 0, 0, 2, 2);
+
+        Node c = graph.newNode();
+        positions.set(c, new Coordinates(-10, 0));
+        assertBox(tracker.box(), -1, -11, 2, 2);
+
+        tracker.close();
+        positions.set(c, new Coordinates(0, 0));
+        assertBox(tracker.box(), -1, -11, 2, 2);
+    }
+
+    @Test
+    public void testAgainstGraphBox() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.newNodeAttribute(StdAttribute.nodePosition, new Coordinates(0, 0));
+        NodeAttribute<Coordinates> sizes = graph.newNodeAttribute(StdAttribute.nodeSize, new Coordinates(1, 1));
+        EdgeAttribute<ControlPoints> edgePoints = graph.newEdgeAttribute(StdAttribute.edgePoints, new ControlPoints());
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Node node = graph.newNode();
+            positions.set(node, new Coordinates(GeomXD.randomDouble(100), GeomXD.randomDouble(100)));
+            nodes.add(node);
+        }
+        List<Edge> edges = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            edges.add(graph.newEdge(nodes.get(i), nodes.get((i + 1) % nodes.size())));
+        }
+
+        GraphBoxTracker tracker = new GraphBoxTracker(graph, positions, sizes, edgePoints, null);
+        for (int round = 0; round < 50; round++) {
+            positions.startBulkNotification();
+            for (int i = 0; i < 5; i++) {
+                Node node = nodes.get((int) GeomXD.randomDouble(nodes.size()));
+                positions.set(node, new Coordinates(GeomXD.randomDouble(120) - 10, GeomXD.randomDouble(120) - 10));
+            }
+            positions.stopBulkNotification();
+            Edge edge = edges.get((int) GeomXD.randomDouble(edges.size()));
+            edgePoints.set(edge, new ControlPoints(new Coordinates(GeomXD.randomDouble(140) - 20, GeomXD.randomDouble(140) - 20)));
+            Node node = nodes.get((int) GeomXD.randomDouble(nodes.size()));
+            sizes.set(node, new Coordinates(GeomXD.randomDouble(10), GeomXD.randomDouble(10)));
+
+            Box expected = Layout2D.graphBox(graph, positions, sizes, edgePoints, null);
+            Box actual = tracker.box();
+            assertBox(actual, expected.bottom, expected.left, expected.top, expected.right);
+        }
+        tracker.close();
+    }
+
+    /**
+     * Checks the sides of a box.
+     *
+     * @param box the box.
+     * @param bottom the expected bottom.
+     * @param left the expected left.
+     * @param top the expected top.
+     * @param right the expected right.
+     */
+    private static void assertBox(Box box, double bottom, double left, double top, double right) {
+        assertThat(box.bottom, is(bottom));
+        assertThat(box.left, is(left));
+        assertThat(box.top, is(top));
+        assertThat(box.right, is(right));
+    }
+}
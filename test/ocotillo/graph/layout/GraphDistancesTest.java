@@ -0,0 +1,89 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout;
+
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import java.util.ArrayList;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class GraphDistancesTest {
+
+    /**
+     * Builds a path graph.
+     *
+     * @param graph the graph.
+     * @param length the number of nodes.
+     * @return the nodes in path order.
+     */
+    private static List<Node> path(Graph graph, int length) {
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < length; i++) {
+            Node node = graph.newNode();
+            if (i > 0) {
+                graph.newEdge(nodes.get(i - 1), node);
+            }
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    @Test
+    public void testAllPairs() {
+        Graph graph = new Graph();
+        List<Node> nodes = path(graph, 20);
+        graph.newEdge(nodes.get(5), nodes.get(5));
+        Node isolated = graph.newNode();
+
+        GraphDistances distances = GraphDistances.allPairs(graph, 4);
+        assertThat(distances.nodeCount(), is(21));
+        assertThat(distances.sourceCount(), is(21));
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 20; j++) {
+                int source = distances.index(nodes.get(i));
+                assertThat(distances.hops(source, distances.index(nodes.get(j))), is(Math.abs(i - j)));
+            }
+        }
+        int isolatedIndex = distances.index(isolated);
+        assertThat(distances.hops(isolatedIndex, distances.index(nodes.get(0))), is(GraphDistances.unreachable));
+        assertThat(distances.degree(isolatedIndex), is(0));
+        assertThat(distances.degree(distances.index(nodes.get(5))), is(2));
+    }
+
+    @Test
+    public void testPivots() {
+        Graph graph = new Graph();
+        List<Node> nodes = path(graph, 30);
+
+        GraphDistances distances = GraphDistances.fromPivots(graph, 3);
+        assertThat(distances.sourceCount(), is(3));
+        int first = distances.source(0);
+        int second = distances.source(1);
+        int third = distances.source(2);
+        assertThat(distances.node(second) == nodes.get(0) || distances.node(second) == nodes.get(29), is(true));
+        assertThat(distances.hops(1, first) + distances.hops(1, third) >= 29, is(true));
+        for (int p = 0; p < 3; p++) {
+            Node pivot = distances.node(distances.source(p));
+            int position = nodes.indexOf(pivot);
+            for (int i = 0; i < 30; i++) {
+                assertThat(distances.hops(p, distances.index(nodes.get(i))), is(Math.abs(position - i)));
+            }
+        }
+    }
+}
@@ -17,6 +17,8 @@ package ocotillo.graph.layout;
 
 import ocotillo.geometry.Box;
 import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.Geom2D;
+import ocotillo.geometry.GeomXD;
 import static ocotillo.geometry.matchers.CoreMatchers.isAlmost;
 import ocotillo.graph.Edge;
 import ocotillo.graph.EdgeAttribute;
@@ -29,6 +31,9 @@ import ocotillo.graph.StdAttribute.NodeShape;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.lessThan;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import static org.junit.Assert.assertThat;
 import org.junit.Test;
 
@@ -335,4 +340,183 @@ public class Layout2DTest {
         assertThat(Layout2D.doNodesOverlap(graph), is(true));
     }
 
+    @Test
+    public void testNodeOverlaps() {
+        Graph graph = new Graph();
+        Node a = graph.newNode("a");
+        Node b = graph.newNode("b");
+        Node c = graph.newNode("c");
+        Node d = graph.newNode("d");
+        NodeAttribute<Coordinates> positions = graph.newNodeAttribute(StdAttribute.nodePosition, new Coordinates(0, 0));
+        graph.newNodeAttribute(StdAttribute.nodeSize, new Coordinates(2, 2));
+        positions.set(b, new Coordinates(1, 1.5));
+        positions.set(c, new Coordinates(3, 0));
+        positions.set(d, new Coordinates(10, 10));
+
+        Layout2D.NodeOverlaps overlaps = Layout2D.nodeOverlaps(graph);
+        assertThat(overlaps.exist(), is(true));
+        assertThat(overlaps.count(), is(2));
+        for (Layout2D.NodeOverlap overlap : overlaps.pairs()) {
+            assertThat(overlap.involves(d), is(false));
+        }
+
+        positions.set(b, new Coordinates(0, 5));
+        positions.set(c, new Coordinates(5, 0));
+        overlaps = Layout2D.nodeOverlaps(graph);
+        assertThat(overlaps.exist(), is(false));
+        assertThat(overlaps.count(), is(0));
+    }
+
+    @Test
+    public void testNodeOverlapsAgainstPairwiseCheck() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.newNodeAttribute(StdAttribute.nodePosition, new Coordinates(0, 0));
+        NodeAttribute<Coordinates> sizes = graph.newNodeAttribute(StdAttribute.nodeSize, new Coordinates(1, 1));
+        for (int i = 0; i < 300; i++) {
+            Node node = graph.newNode();
+            positions.set(node, new Coordinates(GeomXD.randomDouble(100), GeomXD.randomDouble(100)));
+            sizes.set(node, new Coordinates(GeomXD.randomDouble(0.5, 6), GeomXD.randomDouble(0.5, 6)));
+        }
+
+        int expected = 0;
+        for (Node node : graph.nodes()) {
+            for (Node otherNode : graph.nodes()) {
+                if (node.compareTo(otherNode) < 0
+                        && Layout2D.nodeBox(node, graph).intersect(Layout2D.nodeBox(otherNode, graph)) != null) {
+                    expected++;
+                }
+            }
+        }
+
+        assertThat(Layout2D.nodeOverlaps(graph).count(), is(expected));
+        assertThat(Layout2D.doNodesOverlap(graph), is(expected > 0));
+    }
+
+    @Test
+    public void testEdgeCrossings() {
+        Graph graph = new Graph();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        Node c = graph.newNode();
+        Node d = graph.newNode();
+        Edge ab = graph.newEdge(a, b);
+        Edge cd = graph.newEdge(c, d);
+        Edge ac = graph.newEdge(a, c);
+        NodeAttribute<Coordinates> positions = graph.newNodeAttribute(StdAttribute.nodePosition, new Coordinates(0, 0));
+        EdgeAttribute<ControlPoints> points = graph.newEdgeAttribute(StdAttribute.edgePoints, new ControlPoints());
+
+        positions.set(a, new Coordinates(0, 0));
+        positions.set(b, new Coordinates(4, 4));
+        positions.set(c, new Coordinates(0, 4));
+        positions.set(d, new Coordinates(4, 0));
+
+        Layout2D.EdgeCrossings crossings = Layout2D.edgeCrossings(graph);
+        assertThat(crossings.count(), is(1));
+        assertThat(crossings.crossings().get(0).involves(ab), is(true));
+        assertThat(crossings.crossings().get(0).involves(cd), is(true));
+        assertThat(crossings.crossings().get(0).point(), isAlmost(new Coordinates(2, 2)));
+        assertThat(Layout2D.edgeCrossingCount(graph), is(1));
+        assertThat(Layout2D.edgeCrossingCount(graph, Arrays.asList(ac)), is(0));
+        assertThat(Layout2D.edgeCrossingCount(graph, Arrays.asList(cd)), is(1));
+
+        points.set(ab, new ControlPoints(new Coordinates(2, 2)));
+        assertThat(Layout2D.edgeCrossingCount(graph), is(1));
+
+        points.set(ab, new ControlPoints(new Coordinates(2, 2), new Coordinates(0, 2)));
+        assertThat(Layout2D.edgeCrossingCount(graph), is(1));
+        assertThat(Layout2D.edgeCrossings(graph).crossings().get(0).point(), isAlmost(new Coordinates(4.0 / 3.0, 8.0 / 3.0)));
+
+        points.set(ab, new ControlPoints(new Coordinates(1, 1), new Coordinates(3, 3), new Coordinates(0, 3)));
+        assertThat(Layout2D.edgeCrossingCount(graph), is(3));
+
+        points.set(ab, new ControlPoints(new Coordinates(5, -1), new Coordinates(5, 5)));
+        assertThat(Layout2D.edgeCrossingCount(graph), is(0));
+    }
+
+    @Test
+    public void testEdgeCrossingsDegenerateCases() {
+        Graph graph = new Graph();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        Node c = graph.newNode();
+        Node d = graph.newNode();
+        Edge ab = graph.newEdge(a, b);
+        Edge cd = graph.newEdge(c, d);
+        NodeAttribute<Coordinates> positions = graph.newNodeAttribute(StdAttribute.nodePosition, new Coordinates(0, 0));
+        EdgeAttribute<ControlPoints> points = graph.newEdgeAttribute(StdAttribute.edgePoints, new ControlPoints());
+
+        positions.set(a, new Coordinates(0, 0));
+        positions.set(b, new Coordinates(4, 0));
+        positions.set(c, new Coordinates(2, 2));
+        positions.set(d, new Coordinates(2, -2));
+        points.set(cd, new ControlPoints(new Coordinates(2, 0)));
+        assertThat(Layout2D.edgeCrossingCount(graph), is(1));
+
+        points.set(cd, new ControlPoints(new Coordinates(2, 0), new Coordinates(3, 1)));
+        positions.set(d, new Coordinates(3, 3));
+        assertThat(Layout2D.edgeCrossingCount(graph), is(0));
+
+        points.set(cd, new ControlPoints());
+        positions.set(c, new Coordinates(1, 0));
+        positions.set(d, new Coordinates(6, 0));
+        Layout2D.EdgeCrossings crossings = Layout2D.edgeCrossings(graph);
+        assertThat(crossings.count(), is(1));
+        assertThat(crossings.collinearCount(), is(1));
+
+        positions.set(c, new Coordinates(4, 0));
+        assertThat(Layout2D.edgeCrossingCount(graph), is(0));
+
+        positions.set(c, new Coordinates(2, 0));
+        positions.set(d, new Coordinates(2, 2));
+        assertThat(Layout2D.edgeCrossingCount(graph), is(0));
+
+        Edge bd = graph.newEdge(b, d);
+        positions.set(d, new Coordinates(4, 4));
+        positions.set(c, new Coordinates(10, 10));
+        assertThat(Layout2D.edgeCrossingCount(graph, Arrays.asList(bd)), is(0));
+    }
+
+    @Test
+    public void testEdgeCrossingsAgainstPairwiseCheck() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.newNodeAttribute(StdAttribute.nodePosition, new Coordinates(0, 0));
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Node node = graph.newNode();
+            positions.set(node, new Coordinates(GeomXD.randomDouble(100), GeomXD.randomDouble(100)));
+            nodes.add(node);
+        }
+        List<Edge> edges = new ArrayList<>();
+        for (int i = 0; i < 80; i++) {
+            Node source = nodes.get((int) GeomXD.randomDouble(nodes.size()));
+            Node target = nodes.get((int) GeomXD.randomDouble(nodes.size()));
+            if (source != target && graph.fromToEdges(source, target).isEmpty()
+                    && graph.fromToEdges(target, source).isEmpty()) {
+                edges.add(graph.newEdge(source, target));
+            }
+        }
+
+        int expected = 0;
+        int expectedSelected = 0;
+        List<Edge> selected = edges.subList(0, 10);
+        for (int i = 0; i < edges.size(); i++) {
+            for (int j = i + 1; j < edges.size(); j++) {
+                Edge first = edges.get(i);
+                Edge second = edges.get(j);
+                if (!first.isNodeExtremity(second.source()) && !first.isNodeExtremity(second.target())
+                        && Geom2D.segmSegmIntersection(positions.get(first.source()), positions.get(first.target()),
+                                positions.get(second.source()), positions.get(second.target())) != null) {
+                    expected++;
+                    if (selected.contains(first) || selected.contains(second)) {
+                        expectedSelected++;
+                    }
+                }
+            }
+        }
+
+        assertThat(Layout2D.edgeCrossings(graph).count(), is(expected));
+        assertThat(Layout2D.edgeCrossingCount(graph), is(expected));
+        assertThat(Layout2D.edgeCrossingCount(graph, selected), is(expectedSelected));
+    }
+
 }
@@ -0,0 +1,193 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Graph;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.StdAttribute.ControlPoints;
+import ocotillo.graph.layout.LayoutCache.LayoutCacheBuilder;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class LayoutCacheTest {
+
+    /**
+     * Builds a small graph with explicit ids.
+     *
+     * @param reversed true to insert the elements in reverse order.
+     * @return the graph.
+     */
+    private static Graph pathGraph(boolean reversed) {
+        Graph graph = new Graph();
+        String[] ids = reversed ? new String[]{"c", "b", "a"} : new String[]{"a", "b", "c"};
+        for (String id : ids) {
+            graph.newNode(id);
+        }
+        if (reversed) {
+            graph.newEdge("bc", graph.getNode("b"), graph.getNode("c"));
+            graph.newEdge("ab", graph.getNode("a"), graph.getNode("b"));
+        } else {
+            graph.newEdge("ab", graph.getNode("a"), graph.getNode("b"));
+            graph.newEdge("bc", graph.getNode("b"), graph.getNode("c"));
+        }
+        return graph;
+    }
+
+    /**
+     * Layout engine that places the nodes on a diagonal, bends the first edge
+     * and counts its executions.
+     */
+    private static class CountingEngine implements ComponentLayout.Engine {
+
+        private final AtomicInteger executions = new AtomicInteger();
+
+        @Override
+        public void execute(Graph graph) {
+            executions.incrementAndGet();
+            NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+            EdgeAttribute<ControlPoints> bends = graph.edgeAttribute(StdAttribute.edgePoints);
+            positions.set(graph.getNode("a"), new Coordinates(1, 1));
+            positions.set(graph.getNode("b"), new Coordinates(2, 2));
+            positions.set(graph.getNode("c"), new Coordinates(3, 3));
+            bends.set(graph.getEdge("ab"), new ControlPoints(new Coordinates(1, 2)));
+        }
+    }
+
+    /**
+     * Checks that a graph has the layout computed by the counting engine.
+     *
+     * @param graph the graph.
+     */
+    private static void assertEngineLayout(Graph graph) {
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        EdgeAttribute<ControlPoints> bends = graph.edgeAttribute(StdAttribute.edgePoints);
+        assertThat(positions.get(graph.getNode("a")), is(new Coordinates(1, 1)));
+        assertThat(positions.get(graph.getNode("b")), is(new Coordinates(2, 2)));
+        assertThat(positions.get(graph.getNode("c")), is(new Coordinates(3, 3)));
+        assertThat(bends.get(graph.getEdge("ab")), is(new ControlPoints(new Coordinates(1, 2))));
+        assertThat(bends.isDefault(graph.getEdge("bc")), is(true));
+    }
+
+    @Test
+    public void testKey() {
+        LayoutCache cache = new LayoutCacheBuilder().build();
+        Graph graph = pathGraph(false);
+        String key = cache.key(graph, "engine");
+        assertThat(key.length(), is(32));
+        assertThat(cache.key(pathGraph(true), "engine"), is(key));
+        assertThat(cache.key(graph, "other engine"), is(not(key)));
+
+        graph.<Coordinates>nodeAttribute(StdAttribute.nodeSize).set(graph.getNode("a"), new Coordinates(2, 1));
+        String resizedKey = cache.key(graph, "engine");
+        assertThat(resizedKey, is(not(key)));
+
+        graph.nodeAttribute(StdAttribute.label).set(graph.getNode("a"), "label");
+        assertThat(cache.key(graph, "engine"), is(resizedKey));
+
+        Graph rewired = pathGraph(false);
+        rewired.remove(rewired.getEdge("bc"));
+        rewired.newEdge("bc", rewired.getNode("a"), rewired.getNode("c"));
+        assertThat(cache.key(rewired, "engine"), is(not(key)));
+    }
+
+    @Test
+    public void testMemoryTier() {
+        LayoutCache cache = new LayoutCacheBuilder().build();
+        CountingEngine engine = new CountingEngine();
+
+        Graph first = pathGraph(false);
+        assertThat(cache.execute(first, "engine", engine), is(false));
+        assertEngineLayout(first);
+
+        Graph second = pathGraph(true);
+        assertThat(cache.execute(second, "engine", engine), is(true));
+        assertEngineLayout(second);
+
+        assertThat(engine.executions.get(), is(1));
+        assertThat(cache.hits(), is(1L));
+        assertThat(cache.memoryHits(), is(1L));
+        assertThat(cache.diskHits(), is(0L));
+        assertThat(cache.misses(), is(1L));
+        assertThat(cache.hitRatio(), is(0.5));
+    }
+
+    @Test
+    public void testRepeatedExecution() {
+        LayoutCache cache = new LayoutCacheBuilder().build();
+        CountingEngine engine = new CountingEngine();
+        Graph graph = pathGraph(false);
+        String key = cache.key(graph, "engine");
+        assertThat(cache.execute(graph, "engine", engine), is(false));
+        assertThat(cache.key(graph, "engine"), is(key));
+        assertThat(cache.execute(graph, "engine", engine), is(true));
+        assertThat(engine.executions.get(), is(1));
+
+        LayoutCache startCache = new LayoutCacheBuilder().withKeyAttributes(StdAttribute.thatAffectlayout).build();
+        Graph other = pathGraph(false);
+        String startKey = startCache.key(other, "engine");
+        startCache.execute(other, "engine", engine);
+        assertThat(startCache.key(other, "engine"), is(not(startKey)));
+    }
+
+    @Test
+    public void testEviction() {
+        LayoutCache cache = new LayoutCacheBuilder().withMaxEntries(1).build();
+        CountingEngine engine = new CountingEngine();
+        cache.execute(pathGraph(false), "first", engine);
+        cache.execute(pathGraph(false), "second", engine);
+        assertThat(cache.memorySize(), is(1));
+        cache.execute(pathGraph(false), "first", engine);
+        assertThat(engine.executions.get(), is(3));
+        cache.execute(pathGraph(false), "first", engine);
+        assertThat(engine.executions.get(), is(3));
+        assertThat(cache.memoryHits(), is(1L));
+    }
+
+    @Test
+    public void testDiskTier() throws Exception {
+        File directory = Files.createTempDirectory("layoutCache").toFile();
+        try {
+            CountingEngine engine = new CountingEngine();
+            LayoutCache cache = new LayoutCacheBuilder().withDirectory(directory).build();
+            cache.execute(pathGraph(false), "engine", engine);
+            assertThat(directory.listFiles().length, is(1));
+
+            LayoutCache newCache = new LayoutCacheBuilder().withDirectory(directory).build();
+            Graph graph = pathGraph(true);
+            assertThat(newCache.execute(graph, "engine", engine), is(true));
+            assertEngineLayout(graph);
+            assertThat(newCache.diskHits(), is(1L));
+            assertThat(newCache.memorySize(), is(1));
+
+            newCache.execute(pathGraph(false), "engine", engine);
+            assertThat(newCache.memoryHits(), is(1L));
+            assertThat(engine.executions.get(), is(1));
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.defragmenter;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Edge;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.Layout2D;
+import ocotillo.graph.layout.fdl.defragmenter.ClusterPlacer.OriginalLayoutClusterPlacer;
+import ocotillo.graph.layout.fdl.defragmenter.ClusterPlacer.PackingClusterPlacer;
+import ocotillo.graph.layout.or.prism.PrismOverlapRemover;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ClusterPlacerTest {
+
+    /**
+     * Builds a graph with clusters of random size and position.
+     *
+     * @param clusterCount the number of clusters.
+     * @return the graph.
+     */
+    private static Graph clusteredGraph(int clusterCount) {
+        Random random = new Random(11);
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        for (int c = 0; c < clusterCount; c++) {
+            double x = random.nextDouble() * 100;
+            double y = random.nextDouble() * 100;
+            List<Node> nodes = new ArrayList<>();
+            int clusterSize = 1 + random.nextInt(20);
+            for (int i = 0; i < clusterSize; i++) {
+                Node node = graph.newNode("c" + c + "n" + i);
+                positions.set(node, new Coordinates(x + random.nextDouble(), y + random.nextDouble()));
+                nodes.add(node);
+            }
+            Graph cluster = graph.newSubGraph(nodes, new ArrayList<Edge>());
+            cluster.newLocalGraphAttribute(StdAttribute.label, "cluster" + c);
+        }
+        return graph;
+    }
+
+    @Test
+    public void testPackingClusterPlacer() {
+        Graph graph = clusteredGraph(2000);
+        Graph barycenters = ClusterPlacer.barycenterPlacing(graph, 5);
+        Graph placement = new PackingClusterPlacer(5, 1).computePlacing(graph);
+
+        assertThat(placement.nodeCount(), is(2000));
+        assertThat(Layout2D.doNodesOverlap(placement), is(false));
+
+        NodeAttribute<Coordinates> originalPositions = barycenters.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> positions = placement.nodeAttribute(StdAttribute.nodePosition);
+        List<Node> nodes = new ArrayList<>(placement.nodes());
+        for (int i = 0; i < nodes.size(); i += 7) {
+            for (int j = 0; j < nodes.size(); j += 5) {
+                Node a = nodes.get(i);
+                Node b = nodes.get(j);
+                Coordinates originalA = originalPositions.get(barycenters.getNode(a.id()));
+                Coordinates originalB = originalPositions.get(barycenters.getNode(b.id()));
+                if (originalA.y() > originalB.y()) {
+                    assertTrue(positions.get(a).y() >= positions.get(b).y());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPackingClusterPlacerRow() {
+        Graph graph = clusteredGraph(3);
+        Graph placement = new PackingClusterPlacer(5, 1).computePlacing(graph);
+        Graph barycenters = ClusterPlacer.barycenterPlacing(graph, 5);
+        NodeAttribute<Coordinates> originalPositions = barycenters.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> positions = placement.nodeAttribute(StdAttribute.nodePosition);
+        assertThat(Layout2D.doNodesOverlap(placement), is(false));
+        for (Node a : placement.nodes()) {
+            for (Node b : placement.nodes()) {
+                if (positions.get(a).y() == positions.get(b).y()) {
+                    double originalDx = originalPositions.get(barycenters.getNode(a.id())).x() - originalPositions.get(barycenters.getNode(b.id())).x();
+                    double dx = positions.get(a).x() - positions.get(b).x();
+                    assertThat(Math.signum(dx), is(Math.signum(originalDx)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOriginalLayoutClusterPlacerFallback() {
+        Random random = new Random(3);
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        for (int c = 0; c < 600; c++) {
+            List<Node> nodes = new ArrayList<>();
+            int clusterSize = 5 + random.nextInt(16);
+            for (int i = 0; i < clusterSize; i++) {
+                Node node = graph.newNode("c" + c + "n" + i);
+                positions.set(node, new Coordinates(c % 2, 0));
+                nodes.add(node);
+            }
+            Graph cluster = graph.newSubGraph(nodes, new ArrayList<Edge>());
+            cluster.newLocalGraphAttribute(StdAttribute.label, "cluster" + c);
+        }
+
+        PrismOverlapRemover prism = new PrismOverlapRemover.PrismOverlapRemoverBuilder().withMargin(1.0).build();
+        assertThat(prism.execute(ClusterPlacer.barycenterPlacing(graph, 0.2)), is(false));
+
+        Graph placement = new OriginalLayoutClusterPlacer(0.2, prism).computePlacing(graph);
+        assertThat(placement.nodeCount(), is(600));
+        NodeAttribute<Coordinates> placementPositions = placement.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> placementSizes = placement.nodeAttribute(StdAttribute.nodeSize);
+        NodeAttribute<Coordinates> enlargedSizes = new NodeAttribute<>(new Coordinates(0, 0));
+        for (Node node : placement.nodes()) {
+            enlargedSizes.set(node, placementSizes.get(node).plus(new Coordinates(1.99, 1.99)));
+        }
+        assertThat(Layout2D.doNodesOverlap(placement, placementPositions, enlargedSizes), is(false));
+    }
+}
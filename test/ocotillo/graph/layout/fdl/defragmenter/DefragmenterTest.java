@@ -0,0 +1,104 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.defragmenter;
+
+import ocotillo.geometry.Box;
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Edge;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.Layout2D;
+import ocotillo.graph.layout.fdl.defragmenter.Defragmenter.DefragmenterBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class DefragmenterTest {
+
+    /**
+     * Builds a graph with interleaved clusters, each connected by a tree.
+     *
+     * @param clusterCount the number of clusters.
+     * @param clusterSize the number of nodes per cluster.
+     * @return the graph.
+     */
+    private static Graph fragmentedGraph(int clusterCount, int clusterSize) {
+        Random random = new Random(7);
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        for (int c = 0; c < clusterCount; c++) {
+            List<Node> nodes = new ArrayList<>();
+            List<Edge> edges = new ArrayList<>();
+            for (int i = 0; i < clusterSize; i++) {
+                Node node = graph.newNode("c" + c + "n" + i);
+                positions.set(node, new Coordinates(c * 10 + random.nextDouble() * 30, random.nextDouble() * 30));
+                if (i > 0) {
+                    edges.add(graph.newEdge("c" + c + "e" + i, nodes.get(random.nextInt(i)), node));
+                }
+                nodes.add(node);
+            }
+            Graph cluster = graph.newSubGraph(nodes, edges);
+            cluster.newLocalGraphAttribute(StdAttribute.label, "cluster" + c);
+        }
+        return graph;
+    }
+
+    @Test
+    public void testParallelClusters() {
+        Graph graph = fragmentedGraph(3, 15);
+        new DefragmenterBuilder().withParallelClusters(3, 5).build().defragment(graph, 2, 20);
+
+        assertThat(graph.nodeCount(), is(45));
+        assertThat(graph.edgeCount(), is(42));
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        List<Box> boxes = new ArrayList<>();
+        for (Graph cluster : graph.subGraphs()) {
+            boxes.add(Layout2D.graphBox(cluster, positions, null, null, null));
+        }
+        for (int i = 0; i < boxes.size(); i++) {
+            for (int j = i + 1; j < boxes.size(); j++) {
+                Box a = boxes.get(i);
+                Box b = boxes.get(j);
+                boolean separated = a.right < b.left || b.right < a.left || a.top < b.bottom || b.top < a.bottom;
+                assertThat(separated, is(true));
+            }
+        }
+    }
+
+    @Test
+    public void testAssignClusters() {
+        Graph graph = new Graph();
+        Node shared = graph.newNode("shared");
+        List<Graph> clusters = new ArrayList<>();
+        for (int c = 9; c >= 0; c--) {
+            Graph cluster = graph.newSubGraph(Arrays.asList(shared, graph.newNode("n" + c)), new ArrayList<Edge>());
+            cluster.newLocalGraphAttribute(StdAttribute.label, "cluster" + c);
+            clusters.add(cluster);
+        }
+
+        Map<Node, Graph> nodeClusters = Defragmenter.assignClusters(graph);
+        assertThat(nodeClusters.size(), is(11));
+        assertThat(nodeClusters.get(shared), is(clusters.get(9)));
+        assertThat(nodeClusters.get(graph.getNode("n4")), is(clusters.get(5)));
+    }
+}
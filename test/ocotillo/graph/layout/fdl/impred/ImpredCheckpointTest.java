@@ -0,0 +1,168 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.impred;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.StdAttribute.ControlPoints;
+import ocotillo.graph.layout.fdl.impred.Impred.ImpredBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class ImpredCheckpointTest {
+
+    /**
+     * Builds a small graph with fixed ids and positions.
+     *
+     * @return the graph.
+     */
+    private static Graph graph() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        EdgeAttribute<ControlPoints> bends = graph.edgeAttribute(StdAttribute.edgePoints);
+        for (int i = 0; i < 12; i++) {
+            Node node = graph.newNode("n" + i);
+            positions.set(node, new Coordinates((i * 7) % 5, (i * 3) % 4));
+        }
+        for (int i = 1; i < 12; i++) {
+            graph.newEdge("e" + i, graph.getNode("n" + (i / 2)), graph.getNode("n" + i));
+        }
+        bends.set(graph.getEdge("e3"), new ControlPoints(new Coordinates(2.5, 1.5)));
+        return graph;
+    }
+
+    /**
+     * Builds an ImPrEd instance with stateful elements.
+     *
+     * @param graph the graph.
+     * @param checkpointFile the checkpoint file, or null.
+     * @return the ImPrEd instance.
+     */
+    private static Impred impred(Graph graph, File checkpointFile) {
+        ImpredBuilder builder = new ImpredBuilder(graph)
+                .withForce(new ImpredForce.EdgeAttraction(2))
+                .withForce(new ImpredForce.NodeNodeRepulsion(2))
+                .withConstraint(new ImpredConstraint.DecreasingMaxMovement(2))
+                .withConstraint(new ImpredConstraint.MovementAcceleration(2))
+                .withRandomSeed(42);
+        if (checkpointFile != null) {
+            builder.withCheckpoints(checkpointFile, 10);
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testResumeFromFile() throws Exception {
+        File checkpointFile = File.createTempFile("impred", ".checkpoint");
+        checkpointFile.deleteOnExit();
+
+        Graph original = graph();
+        Impred originalImpred = impred(original, checkpointFile);
+        originalImpred.iterate(25);
+        originalImpred.close();
+
+        Graph resumed = graph();
+        Impred resumedImpred = impred(resumed, null);
+        try (InputStream input = new FileInputStream(checkpointFile)) {
+            resumedImpred.resume(input);
+        }
+        resumedImpred.close();
+
+        NodeAttribute<Coordinates> originalPositions = original.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> resumedPositions = resumed.nodeAttribute(StdAttribute.nodePosition);
+        for (Node node : original.nodes()) {
+            Coordinates expected = originalPositions.get(node);
+            Coordinates actual = resumedPositions.get(resumed.getNode(node.id()));
+            assertThat(actual.x(), is(closeTo(expected.x(), 1e-9)));
+            assertThat(actual.y(), is(closeTo(expected.y(), 1e-9)));
+        }
+        ControlPoints expectedBends = original.<ControlPoints>edgeAttribute(StdAttribute.edgePoints).get(original.getEdge("e3"));
+        ControlPoints actualBends = resumed.<ControlPoints>edgeAttribute(StdAttribute.edgePoints).get(resumed.getEdge("e3"));
+        assertThat(actualBends.size(), is(1));
+        assertThat(actualBends.get(0).x(), is(closeTo(expectedBends.get(0).x(), 1e-9)));
+        assertThat(actualBends.get(0).y(), is(closeTo(expectedBends.get(0).y(), 1e-9)));
+    }
+
+    @Test
+    public void testWriteFailure() throws Exception {
+        File directory = File.createTempFile("impred", ".checkpoint");
+        directory.delete();
+        Impred impred = impred(graph(), new File(directory, "missing.checkpoint"));
+        impred.iterate(10);
+        try {
+            impred.close();
+            fail();
+        } catch (IllegalStateException ex) {
+            assertThat(ex.getCause(), is(instanceOf(IOException.class)));
+        }
+    }
+
+    @Test
+    public void testRestoreState() throws Exception {
+        Graph original = graph();
+        Impred originalImpred = impred(original, null);
+        originalImpred.iterate(7);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        originalImpred.writeCheckpoint(output);
+
+        Graph restored = graph();
+        Impred restoredImpred = impred(restored, null);
+        restoredImpred.resume(new ByteArrayInputStream(output.toByteArray()));
+
+        NodeAttribute<Coordinates> originalPositions = original.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> restoredPositions = restored.nodeAttribute(StdAttribute.nodePosition);
+        for (Node node : original.nodes()) {
+            assertThat(restoredPositions.get(restored.getNode(node.id())), is(originalPositions.get(node)));
+        }
+
+        ImpredConstraint.MovementAcceleration originalAcceleration = (ImpredConstraint.MovementAcceleration) originalImpred.elements().get(4);
+        ImpredConstraint.MovementAcceleration restoredAcceleration = (ImpredConstraint.MovementAcceleration) restoredImpred.elements().get(4);
+        assertThat(restoredAcceleration.previousMovements.size(), is(originalAcceleration.previousMovements.size()));
+        for (Node node : original.nodes()) {
+            Node restoredNode = restored.getNode(node.id());
+            assertThat(restoredAcceleration.previousMovements.get(restoredNode), is(originalAcceleration.previousMovements.get(node)));
+            assertThat(restoredAcceleration.previousAngles.get(restoredNode), is(originalAcceleration.previousAngles.get(node)));
+        }
+        assertThat(restoredImpred.random.nextLong(), is(originalImpred.random.nextLong()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchingGraph() {
+        Impred originalImpred = impred(graph(), null);
+        originalImpred.iterate(2);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        originalImpred.writeCheckpoint(output);
+
+        Graph other = graph();
+        other.newNode("extra");
+        impred(other, null).resume(new ByteArrayInputStream(output.toByteArray()));
+    }
+}
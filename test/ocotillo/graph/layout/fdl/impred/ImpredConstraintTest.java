@@ -184,4 +184,24 @@ public class ImpredConstraintTest {
         assertThat(constraints.get(b), is(0.0));
         assertThat(constraints.get(c), is(Double.POSITIVE_INFINITY));
     }
+
+    @Test
+    public void testCombinedConstraints() {
+        Graph graph = new Graph();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+
+        Impred impred = new ImpredBuilder(graph)
+                .withConstraint(new ImpredConstraint.DecreasingMaxMovement(5))
+                .withConstraint(new ImpredConstraint.PinnedNodes(Arrays.asList(a)))
+                .build();
+
+        NodeAttribute<Double> constraints = Whitebox.getInternalState(impred, "constraints");
+
+        impred.iterate(1);
+
+        assertThat(constraints.get(a), is(0.0));
+        assertThat(constraints.get(b), is(lessThan(5.1)));
+        assertThat(constraints.get(b), is(constraints.getDefault()));
+    }
 }
@@ -0,0 +1,117 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.impred;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.Geom2D;
+import ocotillo.geometry.GeomXD;
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.StdAttribute.NodeShape;
+import ocotillo.graph.layout.Layout2D;
+import java.util.ArrayList;
+import java.util.List;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class ImpredGlyphCacheTest {
+
+    @Test
+    public void testAgainstLayout2D() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> sizes = graph.nodeAttribute(StdAttribute.nodeSize);
+        NodeAttribute<NodeShape> shapes = graph.nodeAttribute(StdAttribute.nodeShape);
+        EdgeAttribute<Double> edgeWidths = graph.edgeAttribute(StdAttribute.edgeWidth);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Node node = graph.newNode();
+            positions.set(node, new Coordinates(GeomXD.randomDouble(100), GeomXD.randomDouble(100)));
+            sizes.set(node, new Coordinates(GeomXD.randomDouble(10) + 0.5, GeomXD.randomDouble(10) + 0.5));
+            shapes.set(node, i % 2 == 0 ? NodeShape.cuboid : NodeShape.spheroid);
+            nodes.add(node);
+        }
+        List<Edge> edges = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Edge edge = graph.newEdge(nodes.get(i), nodes.get(i + 10));
+            edgeWidths.set(edge, GeomXD.randomDouble(2));
+            edges.add(edge);
+        }
+
+        ImpredGlyphCache cache = new ImpredGlyphCache(graph, positions);
+        cache.refresh();
+
+        for (Node node : nodes) {
+            for (int i = 0; i < 16; i++) {
+                double angle = 2 * Math.PI * i / 16 + 0.1;
+                double expected = Layout2D.nodeGlyphRadiusAtAngle(graph, node, angle, sizes, shapes);
+                assertThat(cache.radius(node, 3 * Math.cos(angle), 3 * Math.sin(angle)), closeTo(expected, 1e-9));
+            }
+        }
+
+        for (Node a : nodes) {
+            for (Node b : nodes) {
+                if (a != b) {
+                    double expected = Layout2D.nodeNodeGlyphDistance(graph, a, b, positions, sizes, shapes);
+                    assertThat(cache.nodeNodeDistance(a, b), closeTo(expected, 1e-9));
+                }
+            }
+        }
+
+        for (Node node : nodes) {
+            for (Edge edge : edges) {
+                if (edge.source() == node || edge.target() == node) {
+                    continue;
+                }
+                double expected = Layout2D.nodeEdgeGlyphDistance(graph, node, edge, positions, sizes, shapes, edgeWidths, null, null);
+                assertThat(cache.nodeEdgeDistance(node, edge), closeTo(expected, 1e-6));
+                Coordinates position = positions.get(node);
+                Coordinates closest = Layout2D.closestEdgePoint(graph, position, edge, positions, null, null);
+                assertThat(cache.centerEdgeDistance(node, edge), closeTo(Geom2D.magnitude(closest.minus(position)), 1e-6));
+            }
+        }
+    }
+
+    @Test
+    public void testRefresh() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> sizes = graph.nodeAttribute(StdAttribute.nodeSize);
+        NodeAttribute<NodeShape> shapes = graph.nodeAttribute(StdAttribute.nodeShape);
+        shapes.setDefault(NodeShape.cuboid);
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        positions.set(b, new Coordinates(10, 0));
+
+        ImpredGlyphCache cache = new ImpredGlyphCache(graph, positions);
+        cache.refresh();
+        assertThat(cache.nodeNodeDistance(a, b), closeTo(9, 1e-9));
+
+        sizes.set(a, new Coordinates(4, 4));
+        assertThat(cache.nodeNodeDistance(a, b), closeTo(9, 1e-9));
+        cache.refresh();
+        assertThat(cache.nodeNodeDistance(a, b), closeTo(7.5, 1e-9));
+
+        Node c = graph.newNode();
+        positions.set(c, new Coordinates(0, 10));
+        assertThat(cache.nodeNodeDistance(a, c), closeTo(7.5, 1e-9));
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.impred;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.Geom2D;
+import ocotillo.graph.Edge;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.fdl.impred.Impred.ImpredBuilder;
+import ocotillo.graph.layout.GraphDistances;
+import java.util.Random;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class ImpredInitialPlacementTest {
+
+    /**
+     * Builds a grid graph.
+     *
+     * @param columns the number of columns.
+     * @param rows the number of rows.
+     * @return the grid graph.
+     */
+    private static Graph grid(int columns, int rows) {
+        Graph graph = new Graph();
+        Node[] nodes = new Node[columns * rows];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graph.newNode();
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                if (column + 1 < columns) {
+                    graph.newEdge(nodes[row * columns + column], nodes[row * columns + column + 1]);
+                }
+                if (row + 1 < rows) {
+                    graph.newEdge(nodes[row * columns + column], nodes[(row + 1) * columns + column]);
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Computes the normalised stress of a layout with respect to the graph
+     * theoretic distances.
+     *
+     * @param graph the graph.
+     * @param edgeLength the unit distance.
+     * @return the stress.
+     */
+    private static double stress(Graph graph, double edgeLength) {
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        GraphDistances distances = GraphDistances.allPairs(graph, 1);
+        double stress = 0;
+        for (int i = 0; i < distances.nodeCount(); i++) {
+            for (int j = i + 1; j < distances.nodeCount(); j++) {
+                double desired = distances.hops(i, j) * edgeLength;
+                double actual = Geom2D.magnitude(positions.get(distances.node(i)).minus(positions.get(distances.node(j))));
+                stress += (actual - desired) * (actual - desired) / (desired * desired);
+            }
+        }
+        return stress;
+    }
+
+    @Test
+    public void testPivotMds() {
+        Graph graph = grid(12, 8);
+        new ImpredInitialPlacement.PivotMds(10, 2).place(graph, graph.<Coordinates>nodeAttribute(StdAttribute.nodePosition), new Random(1));
+
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        double totalLength = 0;
+        for (Edge edge : graph.edges()) {
+            totalLength += Geom2D.magnitude(positions.get(edge.source()).minus(positions.get(edge.target())));
+        }
+        assertThat(totalLength / graph.edgeCount(), is(closeTo(2, 0.02)));
+        assertThat(stress(graph, 2) / (graph.nodeCount() * graph.nodeCount()), is(lessThan(0.05)));
+    }
+
+    @Test
+    public void testFasterConvergence() {
+        Graph randomGraph = grid(15, 15);
+        NodeAttribute<Coordinates> randomPositions = randomGraph.nodeAttribute(StdAttribute.nodePosition);
+        Random random = new Random(3);
+        for (Node node : randomGraph.nodes()) {
+            randomPositions.set(node, new Coordinates(random.nextDouble() * 15, random.nextDouble() * 15));
+        }
+        Impred randomImpred = impred(new ImpredBuilder(randomGraph));
+        randomImpred.iterate(30);
+        randomImpred.close();
+
+        Graph placedGraph = grid(15, 15);
+        Impred placedImpred = impred(new ImpredBuilder(placedGraph)
+                .withInitialPlacement(new ImpredInitialPlacement.PivotMds(20, 1)));
+        placedImpred.iterate(30);
+        placedImpred.close();
+
+        assertThat(stress(placedGraph, 1), is(lessThan(stress(randomGraph, 1) / 2)));
+    }
+
+    /**
+     * Completes an ImPrEd builder with a standard force system.
+     *
+     * @param builder the builder.
+     * @return the ImPrEd instance.
+     */
+    private static Impred impred(ImpredBuilder builder) {
+        return builder
+                .withForce(new ImpredForce.EdgeAttraction(1))
+                .withForce(new ImpredForce.NodeNodeRepulsion(1))
+                .withConstraint(new ImpredConstraint.DecreasingMaxMovement(1))
+                .withRandomSeed(5)
+                .build();
+    }
+}
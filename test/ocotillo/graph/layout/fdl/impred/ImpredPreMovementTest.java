@@ -16,6 +16,7 @@
 package ocotillo.graph.layout.fdl.impred;
 
 import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.GeomXD;
 import static ocotillo.geometry.matchers.IsAlmostNumber.isAlmost;
 import ocotillo.graph.Graph;
 import ocotillo.graph.Node;
@@ -25,8 +26,10 @@ import ocotillo.graph.layout.fdl.impred.ImpredPreMovement.VectorFieldSmoothing.N
 import java.util.List;
 import static org.hamcrest.CoreMatchers.is;
 import org.hamcrest.Matchers;
+import static org.hamcrest.Matchers.closeTo;
 import static org.junit.Assert.assertThat;
 import org.junit.Test;
+import org.ejml.simple.SimpleMatrix;
 import org.powermock.reflect.Whitebox;
 
 public class ImpredPreMovementTest {
@@ -171,4 +174,46 @@ public class ImpredPreMovementTest {
         assertThat(Whitebox.<List<Integer>>invokeMethod(vectorField, "getNeighborCorners", 19), Matchers.containsInAnyOrder(15, 18));
     }
 
+    @Test
+    public void testCornersVectorsAgainstDenseSolution() throws Exception {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        for (int i = 0; i < 40; i++) {
+            Node node = graph.newNode();
+            positions.set(node, new Coordinates(GeomXD.randomDouble(100), GeomXD.randomDouble(100)));
+        }
+
+        ImpredPreMovement vectorField = new ImpredPreMovement.VectorFieldSmoothing(5);
+
+        Impred impred = new Impred.ImpredBuilder(graph)
+                .withForce(new ImpredForce.NodeNodeRepulsion(10))
+                .withPreMovmement(vectorField)
+                .build();
+
+        for (int iteration = 0; iteration < 3; iteration++) {
+            impred.iterate(1);
+
+            int rowCount = Whitebox.<Integer>getInternalState(vectorField, "rowCount");
+            int cornersCount = Whitebox.<Integer>getInternalState(vectorField, "cornersCount");
+            int[] rowStarts = Whitebox.getInternalState(vectorField, "rowStarts");
+            int[] columns = Whitebox.getInternalState(vectorField, "columns");
+            double[] coefficients = Whitebox.getInternalState(vectorField, "coefficients");
+            double[] xB = Whitebox.getInternalState(vectorField, "xB");
+            double[] xV = Whitebox.getInternalState(vectorField, "xV");
+
+            SimpleMatrix A = new SimpleMatrix(rowCount, cornersCount);
+            SimpleMatrix B = new SimpleMatrix(rowCount, 1);
+            for (int row = 0; row < rowCount; row++) {
+                for (int entry = rowStarts[row]; entry < rowStarts[row + 1]; entry++) {
+                    A.set(row, columns[entry], coefficients[entry]);
+                }
+                B.set(row, 0, xB[row]);
+            }
+            SimpleMatrix expected = A.solve(B);
+            for (int corner = 0; corner < cornersCount; corner++) {
+                assertThat(xV[corner], closeTo(expected.get(corner), 1e-6 * Math.max(1, Math.abs(expected.get(corner)))));
+            }
+        }
+    }
+
 }
@@ -0,0 +1,137 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.impred;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.Geom2D;
+import static ocotillo.geometry.matchers.CoreMatchers.isAlmost;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.LayoutSnapshot;
+import ocotillo.graph.layout.fdl.impred.Impred.ImpredBuilder;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class ImpredRunnerTest {
+
+    /**
+     * Builds an ImPrEd instance that separates two nearby nodes.
+     *
+     * @param graph the graph.
+     * @param a the first node.
+     * @param b the second node.
+     * @param iterationTime the minimum iteration time.
+     * @return the ImPrEd instance.
+     */
+    private static Impred repulsion(Graph graph, Node a, Node b, long iterationTime) {
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        positions.set(a, new Coordinates(0, 0));
+        positions.set(b, new Coordinates(0, 2));
+        return new ImpredBuilder(graph)
+                .withForce(new ImpredForce.NodeNodeRepulsion(5))
+                .withConstraint(new ImpredConstraint.DecreasingMaxMovement(3))
+                .withPostProcessing(new ImpredPostProcessing.MinIterationTime(iterationTime))
+                .build();
+    }
+
+    @Test
+    public void testSnapshots() throws Exception {
+        Graph graph = new Graph();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        Impred impred = repulsion(graph, a, b, 0);
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+
+        ImpredRunner runner = new ImpredRunner.ImpredRunnerBuilder(impred, 20)
+                .withPublicationInterval(5, 0)
+                .build();
+        final List<LayoutSnapshot> published = new CopyOnWriteArrayList<>();
+        runner.addListener(new LayoutSnapshot.Listener() {
+            @Override
+            public void snapshotPublished(LayoutSnapshot snapshot) {
+                published.add(snapshot);
+            }
+        });
+
+        Future<LayoutSnapshot> result = runner.start();
+        LayoutSnapshot finalSnapshot = result.get(10, TimeUnit.SECONDS);
+
+        assertThat(finalSnapshot.isComplete(), is(true));
+        assertThat(finalSnapshot.iteration(), is(20));
+        assertThat(published.size(), is(4));
+        assertThat(published.get(0).iteration(), is(5));
+        assertThat(published.get(2).iteration(), is(15));
+        assertThat(published.get(2).isComplete(), is(false));
+        assertThat(runner.latestSnapshot(), is(finalSnapshot));
+        assertThat(positions.get(b), isAlmost(new Coordinates(0, 2)));
+
+        finalSnapshot.applyTo(graph);
+        assertThat(finalSnapshot.position(a), isAlmost(positions.get(a)));
+        assertThat(finalSnapshot.position(b), isAlmost(positions.get(b)));
+        assertThat(Geom2D.magnitude(positions.get(b).minus(positions.get(a))), is(greaterThan(5.0)));
+    }
+
+    @Test
+    public void testPauseAndResume() throws Exception {
+        Graph graph = new Graph();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        Impred impred = repulsion(graph, a, b, 5);
+
+        ImpredRunner runner = new ImpredRunner.ImpredRunnerBuilder(impred, 40)
+                .withPublicationInterval(1, 0)
+                .build();
+        Future<LayoutSnapshot> result = runner.start();
+        runner.pause();
+        Thread.sleep(50);
+        LayoutSnapshot pausedSnapshot = runner.latestSnapshot();
+        Thread.sleep(50);
+
+        assertThat(runner.isPaused(), is(true));
+        assertThat(result.isDone(), is(false));
+        assertThat(runner.latestSnapshot(), is(pausedSnapshot));
+
+        runner.resume();
+        assertThat(result.get(10, TimeUnit.SECONDS).iteration(), is(40));
+    }
+
+    @Test(expected = CancellationException.class)
+    public void testCancel() throws Exception {
+        Graph graph = new Graph();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        Impred impred = repulsion(graph, a, b, 5);
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+
+        ImpredRunner runner = new ImpredRunner.ImpredRunnerBuilder(impred, 1000).build();
+        Future<LayoutSnapshot> result = runner.start();
+        Thread.sleep(30);
+        assertThat(runner.cancel(), is(true));
+        assertThat(result.isCancelled(), is(true));
+        assertThat(Geom2D.magnitude(positions.get(b).minus(positions.get(a))), is(lessThan(2.5)));
+        result.get();
+    }
+}
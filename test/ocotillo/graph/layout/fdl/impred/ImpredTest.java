@@ -31,6 +31,9 @@ import ocotillo.graph.layout.fdl.impred.Impred.ImpredBuilder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.lessThan;
@@ -342,4 +345,85 @@ public class ImpredTest {
         assertThat(edgePoints.get(ab).get(4), is(new Coordinates(0, 51)));
     }
 
+    @Test
+    public void testIncrementalIteration() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> sizes = graph.newNodeAttribute(StdAttribute.nodeSize, new Coordinates(0, 0));
+        List<Node> path = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Node node = graph.newNode();
+            positions.set(node, new Coordinates(5 * i, 0));
+            if (i > 0) {
+                graph.newEdge(path.get(i - 1), node);
+            }
+            path.add(node);
+        }
+
+        Impred impred = new ImpredBuilder(graph)
+                .withForce(new ImpredForce.EdgeAttraction(5))
+                .withForce(new ImpredForce.NodeNodeRepulsion(5))
+                .withConstraint(new ImpredConstraint.DecreasingMaxMovement(3))
+                .withIncrementalNeighbourhood(1, 0)
+                .build();
+        impred.iterate(1);
+
+        Map<Node, Coordinates> initialPositions = new HashMap<>();
+        for (Node node : path) {
+            initialPositions.put(node, new Coordinates(positions.get(node)));
+        }
+
+        Impred.ChangeCollector changes = new Impred.ChangeCollector(graph);
+        Node anchor = path.get(10);
+        Node newNode = graph.newNode();
+        graph.newEdge(anchor, newNode);
+        impred.iterateIncrementally(changes.changedElements(), 20);
+        changes.clear();
+
+        assertThat(Geom2D.magnitude(positions.get(newNode).minus(positions.get(anchor))), is(greaterThan(3.0)));
+        assertThat(Geom2D.magnitude(positions.get(newNode).minus(positions.get(anchor))), is(lessThan(7.0)));
+        for (int i = 0; i < path.size(); i++) {
+            if (i < 9 || i > 11) {
+                assertThat(positions.get(path.get(i)), isAlmost(initialPositions.get(path.get(i))));
+            }
+        }
+        assertThat(changes.changedElements().isEmpty(), is(true));
+    }
+
+    @Test
+    public void testFullIterationAfterIncrementalSmoothing() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        graph.newNodeAttribute(StdAttribute.nodeSize, new Coordinates(0, 0));
+        List<Node> path = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Node node = graph.newNode();
+            positions.set(node, new Coordinates(5 * i, (i % 2) * 3));
+            if (i > 0) {
+                graph.newEdge(path.get(i - 1), node);
+            }
+            path.add(node);
+        }
+
+        Impred impred = new ImpredBuilder(graph)
+                .withForce(new ImpredForce.EdgeAttraction(5))
+                .withForce(new ImpredForce.NodeNodeRepulsion(5))
+                .withConstraint(new ImpredConstraint.DecreasingMaxMovement(3))
+                .withPreMovmement(new ImpredPreMovement.VectorFieldSmoothing(4))
+                .withIncrementalNeighbourhood(1, 0)
+                .build();
+
+        Impred.ChangeCollector changes = new Impred.ChangeCollector(graph);
+        Node newNode = graph.newNode();
+        graph.newEdge(path.get(20), newNode);
+        impred.iterateIncrementally(changes.changedElements(), 5);
+        changes.clear();
+        impred.iterate(5);
+        impred.close();
+
+        for (Node node : graph.nodes()) {
+            assertThat(Double.isNaN(positions.get(node).x()), is(false));
+            assertThat(Double.isNaN(positions.get(node).y()), is(false));
+        }
+    }
 }
@@ -0,0 +1,118 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.multilevel;
+
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class CoarsenerTest {
+
+    @Test
+    public void testEdgeMatching() {
+        Graph graph = grid(6, 5);
+        Map<Node, Node> groups = new Coarsener.EdgeMatching().computeGroups(graph, new NodeAttribute<>(1.0), new EdgeAttribute<>(1.0));
+
+        Map<Node, Integer> groupSizes = groupSizes(graph, groups);
+        for (Node node : graph.nodes()) {
+            Node representative = groups.get(node);
+            assertThat(groups.get(representative), is(representative));
+            if (representative != node) {
+                assertThat(graph.fromToEdges(node, representative).size() + graph.fromToEdges(representative, node).size(), is(1));
+            }
+            assertThat(groupSizes.get(representative), is(lessThanOrEqualTo(2)));
+        }
+        assertThat(groupSizes.size(), is(lessThanOrEqualTo(20)));
+    }
+
+    @Test
+    public void testMaximalIndependentSet() {
+        Graph graph = new Graph();
+        Node hub = graph.newNode();
+        for (int i = 0; i < 10; i++) {
+            graph.newEdge(hub, graph.newNode());
+        }
+        Map<Node, Node> groups = new Coarsener.MaximalIndependentSet().computeGroups(graph, new NodeAttribute<>(1.0), new EdgeAttribute<>(1.0));
+        for (Node node : graph.nodes()) {
+            assertThat(groups.get(node), is(hub));
+        }
+
+        graph = grid(6, 5);
+        groups = new Coarsener.MaximalIndependentSet().computeGroups(graph, new NodeAttribute<>(1.0), new EdgeAttribute<>(1.0));
+        for (Node node : graph.nodes()) {
+            Node representative = groups.get(node);
+            assertThat(representative, is(notNullValue()));
+            assertThat(groups.get(representative), is(representative));
+            if (representative != node) {
+                assertThat(graph.fromToEdges(node, representative).size() + graph.fromToEdges(representative, node).size(), is(1));
+            }
+        }
+    }
+
+    /**
+     * Builds a grid graph.
+     *
+     * @param columns the number of columns.
+     * @param rows the number of rows.
+     * @return the grid graph.
+     */
+    static Graph grid(int columns, int rows) {
+        Graph graph = new Graph();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < columns * rows; i++) {
+            nodes.add(graph.newNode());
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                Node node = nodes.get(row * columns + column);
+                if (column + 1 < columns) {
+                    graph.newEdge(node, nodes.get(row * columns + column + 1));
+                }
+                if (row + 1 < rows) {
+                    graph.newEdge(node, nodes.get((row + 1) * columns + column));
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Counts the size of each group.
+     *
+     * @param graph the graph.
+     * @param groups the group representatives.
+     * @return the size of the group of each representative.
+     */
+    private static Map<Node, Integer> groupSizes(Graph graph, Map<Node, Node> groups) {
+        Map<Node, Integer> sizes = new HashMap<>();
+        for (Node node : graph.nodes()) {
+            Node representative = groups.get(node);
+            Integer size = sizes.get(representative);
+            sizes.put(representative, size == null ? 1 : size + 1);
+        }
+        return sizes;
+    }
+}
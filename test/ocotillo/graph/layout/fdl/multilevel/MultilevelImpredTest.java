@@ -0,0 +1,118 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.multilevel;
+
+import ocotillo.geometry.Box;
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.Geom2D;
+import ocotillo.graph.Edge;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.Layout2D;
+import java.util.ArrayList;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class MultilevelImpredTest {
+
+    @Test
+    public void testGrid() {
+        Graph graph = CoarsenerTest.grid(15, 15);
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> sizes = graph.nodeAttribute(StdAttribute.nodeSize);
+        sizes.setDefault(new Coordinates(0.2, 0.2));
+
+        MultilevelImpred layout = new MultilevelImpred.MultilevelImpredBuilder()
+                .withEdgeLength(2)
+                .withCoarsestSize(20)
+                .build();
+        layout.execute(graph);
+
+        double totalLength = 0;
+        for (Edge edge : graph.edges()) {
+            totalLength += Geom2D.magnitude(positions.get(edge.source()).minus(positions.get(edge.target())));
+        }
+        double averageLength = totalLength / graph.edgeCount();
+        assertThat(averageLength, is(greaterThan(1.0)));
+        assertThat(averageLength, is(lessThan(4.0)));
+        assertThat(Layout2D.doNodesOverlap(graph), is(false));
+
+        Box box = Layout2D.graphBox(graph);
+        assertThat(box.width(), is(lessThan(60.0)));
+        assertThat(box.height(), is(lessThan(60.0)));
+    }
+
+    @Test
+    public void testComponents() {
+        Graph graph = new Graph();
+        List<List<Node>> components = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            List<Node> component = new ArrayList<>();
+            Node previous = null;
+            for (int i = 0; i < 30; i++) {
+                Node node = graph.newNode();
+                if (previous != null) {
+                    graph.newEdge(previous, node);
+                }
+                previous = node;
+                component.add(node);
+            }
+            components.add(component);
+        }
+        Node isolated = graph.newNode();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> sizes = graph.nodeAttribute(StdAttribute.nodeSize);
+
+        new MultilevelImpred.MultilevelImpredBuilder()
+                .withEdgeLength(2)
+                .withCoarsestSize(8)
+                .withThreads(4)
+                .build()
+                .execute(graph);
+
+        List<Box> boxes = new ArrayList<>();
+        for (List<Node> component : components) {
+            List<Box> nodeBoxes = new ArrayList<>();
+            for (Node node : component) {
+                nodeBoxes.add(Layout2D.nodeBox(node, positions, sizes));
+            }
+            boxes.add(Box.combine(nodeBoxes));
+        }
+        boxes.add(Layout2D.nodeBox(isolated, positions, sizes));
+        for (int i = 0; i < boxes.size(); i++) {
+            for (int j = i + 1; j < boxes.size(); j++) {
+                assertThat(overlap(boxes.get(i), boxes.get(j)), is(false));
+            }
+        }
+    }
+
+    /**
+     * Checks whether two boxes overlap.
+     *
+     * @param a the first box.
+     * @param b the second box.
+     * @return true if they overlap.
+     */
+    private static boolean overlap(Box a, Box b) {
+        return a.left < b.right && b.left < a.right && a.bottom < b.top && b.bottom < a.top;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.sfdp;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.ComponentLayout;
+import ocotillo.graph.serialization.dot.DotProcessRunner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class SfdpExecutorTest {
+
+    @Test
+    public void testConcurrentComponents() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        List<Node[]> components = new ArrayList<>();
+        for (int c = 0; c < 16; c++) {
+            Node[] nodes = new Node[2000];
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = graph.newNode();
+                positions.set(nodes[i], new Coordinates(c * 1000 + i, c));
+                if (i > 0) {
+                    graph.newEdge(nodes[i - 1], nodes[i]);
+                }
+            }
+            components.add(nodes);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            DotProcessRunner runner = new DotProcessRunner.DotProcessRunnerBuilder("cat").withPool(pool).build();
+            final SfdpExecutor executor = new SfdpExecutor.SfdpBuilder().build(runner);
+            ComponentLayout layout = new ComponentLayout.ComponentLayoutBuilder(new ComponentLayout.Engine() {
+                @Override
+                public void execute(Graph component) {
+                    executor.execute(component);
+                }
+            }).withThreads(8).build();
+            layout.execute(graph);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // The output of sfdp is in points, and is converted into inches.
+        for (Node[] nodes : components) {
+            Coordinates first = positions.get(nodes[0]);
+            for (int i = 1; i < nodes.length; i++) {
+                Coordinates shift = positions.get(nodes[i]).minus(first);
+                assertThat(shift.x(), closeTo(i / 72.0, 1e-6));
+                assertThat(shift.y(), closeTo(0, 1e-6));
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.fdl.sfdp;
+
+import ocotillo.geometry.Box;
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.Geom2D;
+import ocotillo.graph.Edge;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.Layout2D;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class SfdpLayoutTest {
+
+    /**
+     * Builds a grid graph.
+     *
+     * @param columns the number of columns.
+     * @param rows the number of rows.
+     * @return the grid graph.
+     */
+    private static Graph grid(int columns, int rows) {
+        Graph graph = new Graph();
+        Node[] nodes = new Node[columns * rows];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graph.newNode();
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                if (column + 1 < columns) {
+                    graph.newEdge(nodes[row * columns + column], nodes[row * columns + column + 1]);
+                }
+                if (row + 1 < rows) {
+                    graph.newEdge(nodes[row * columns + column], nodes[(row + 1) * columns + column]);
+                }
+            }
+        }
+        return graph;
+    }
+
+    @Test
+    public void testGrid() {
+        Graph graph = grid(40, 40);
+        new SfdpLayout.SfdpLayoutBuilder()
+                .withEdgeLength(2)
+                .withThreads(4)
+                .withRandomSeed(7)
+                .build()
+                .execute(graph);
+
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        double totalLength = 0;
+        double maxLength = 0;
+        for (Edge edge : graph.edges()) {
+            double length = Geom2D.magnitude(positions.get(edge.source()).minus(positions.get(edge.target())));
+            totalLength += length;
+            maxLength = Math.max(maxLength, length);
+        }
+        assertThat(totalLength / graph.edgeCount(), is(closeTo(2, 1e-6)));
+        assertThat(maxLength, is(lessThan(6.0)));
+
+        Box box = Layout2D.graphBox(graph);
+        assertThat(box.width(), is(greaterThan(40.0)));
+        assertThat(box.width(), is(lessThan(160.0)));
+        assertThat(box.height(), is(greaterThan(40.0)));
+        assertThat(box.height(), is(lessThan(160.0)));
+    }
+
+    @Test
+    public void testDisconnected() {
+        Graph graph = grid(5, 5);
+        graph.newNode();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        graph.newEdge(a, b);
+        graph.newEdge(a, a);
+
+        new SfdpLayout.SfdpLayoutBuilder()
+                .withCoarsestSize(4)
+                .build()
+                .execute(graph);
+
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        for (Node node : graph.nodes()) {
+            assertThat(Double.isNaN(positions.get(node).x()), is(false));
+            assertThat(Double.isNaN(positions.get(node).y()), is(false));
+        }
+        assertThat(Geom2D.magnitude(positions.get(a).minus(positions.get(b))), is(greaterThan(0.1)));
+    }
+}
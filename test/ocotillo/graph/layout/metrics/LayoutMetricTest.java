@@ -0,0 +1,221 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.metrics;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.GeomXD;
+import static ocotillo.geometry.matchers.CoreMatchers.isAlmost;
+import ocotillo.graph.Edge;
+import ocotillo.graph.EdgeAttribute;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.StdAttribute.ControlPoints;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class LayoutMetricTest {
+
+    @Test
+    public void testStress() {
+        Graph graph = new Graph();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        Node c = graph.newNode();
+        graph.newNode();
+        graph.newEdge(a, b);
+        graph.newEdge(b, c);
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        positions.set(a, new Coordinates(0, 0));
+        positions.set(b, new Coordinates(1, 0));
+        positions.set(c, new Coordinates(2, 0));
+
+        LayoutMetric stress = new LayoutMetric.Stress(graph, 1);
+        assertThat(stress.value(), isAlmost(0));
+
+        positions.set(c, new Coordinates(3, 0));
+        assertThat(stress.value(), isAlmost(1.25));
+
+        stress = new LayoutMetric.Stress(graph, 2);
+        assertThat(stress.value(), isAlmost(0.25 + 0.25 * 0.25));
+    }
+
+    @Test
+    public void testEdgeLengthDeviation() {
+        Graph graph = new Graph();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        Node c = graph.newNode();
+        Edge ab = graph.newEdge(a, b);
+        graph.newEdge(b, c);
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        EdgeAttribute<ControlPoints> edgePoints = graph.edgeAttribute(StdAttribute.edgePoints);
+        positions.set(a, new Coordinates(0, 0));
+        positions.set(b, new Coordinates(1, 0));
+        positions.set(c, new Coordinates(4, 0));
+
+        assertThat(new LayoutMetric.EdgeLengthDeviation(graph).value(), isAlmost(0.5));
+        assertThat(new LayoutMetric.EdgeLengthDeviation(graph, 2).value(), isAlmost(0.5));
+        assertThat(new LayoutMetric.EdgeLengthDeviation(graph, 1).value(), isAlmost(Math.sqrt(2)));
+
+        edgePoints.set(ab, new ControlPoints(new Coordinates(0, 1), new Coordinates(1, 1)));
+        assertThat(new LayoutMetric.EdgeLengthDeviation(graph).value(), isAlmost(0));
+    }
+
+    @Test
+    public void testAngularResolution() {
+        Graph graph = new Graph();
+        Node center = graph.newNode();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        Node c = graph.newNode();
+        graph.newEdge(center, a);
+        Edge bc = graph.newEdge(b, center);
+        graph.newEdge(center, c);
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        EdgeAttribute<ControlPoints> edgePoints = graph.edgeAttribute(StdAttribute.edgePoints);
+        positions.set(center, new Coordinates(0, 0));
+        positions.set(a, new Coordinates(1, 0));
+        positions.set(b, new Coordinates(0, 1));
+        positions.set(c, new Coordinates(-1, 0));
+
+        LayoutMetric resolution = new LayoutMetric.AngularResolution(graph);
+        assertThat(resolution.value(), isAlmost(Math.PI / 2));
+
+        edgePoints.set(bc, new ControlPoints(new Coordinates(0, 2), new Coordinates(1, 1)));
+        assertThat(resolution.value(), isAlmost(Math.PI / 4));
+
+        Graph single = new Graph();
+        single.newEdge(single.newNode(), single.newNode());
+        assertThat(new LayoutMetric.AngularResolution(single).value(), isAlmost(2 * Math.PI));
+    }
+
+    @Test
+    public void testNodeEdgeClearance() {
+        Graph graph = new Graph();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        Node c = graph.newNode();
+        Edge ab = graph.newEdge(a, b);
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> sizes = graph.nodeAttribute(StdAttribute.nodeSize);
+        EdgeAttribute<Double> edgeWidths = graph.edgeAttribute(StdAttribute.edgeWidth);
+        sizes.setDefault(new Coordinates(0, 0));
+        edgeWidths.set(ab, 2.0);
+        positions.set(a, new Coordinates(0, 0));
+        positions.set(b, new Coordinates(10, 0));
+        positions.set(c, new Coordinates(5, 4));
+
+        LayoutMetric clearance = new LayoutMetric.NodeEdgeClearance(graph, 5);
+        assertThat(clearance.value(), isAlmost(3));
+
+        positions.set(c, new Coordinates(5, 20));
+        assertThat(clearance.value(), isAlmost(5));
+
+        positions.set(c, new Coordinates(5, 0.5));
+        assertThat(clearance.value(), isAlmost(-0.5));
+    }
+
+    @Test
+    public void testNodeOverlapArea() {
+        Graph graph = new Graph();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        Node c = graph.newNode();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> sizes = graph.nodeAttribute(StdAttribute.nodeSize);
+        sizes.setDefault(new Coordinates(2, 2));
+        positions.set(a, new Coordinates(0, 0));
+        positions.set(b, new Coordinates(1, 1));
+        positions.set(c, new Coordinates(10, 0));
+
+        LayoutMetric overlapArea = new LayoutMetric.NodeOverlapArea(graph);
+        assertThat(overlapArea.value(), isAlmost(1));
+
+        positions.set(c, new Coordinates(0, 1));
+        assertThat(overlapArea.value(), isAlmost(1 + 2 + 2));
+    }
+
+    @Test
+    public void testAutoSync() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> sizes = graph.nodeAttribute(StdAttribute.nodeSize);
+        EdgeAttribute<ControlPoints> edgePoints = graph.edgeAttribute(StdAttribute.edgePoints);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Node node = graph.newNode();
+            positions.set(node, new Coordinates(GeomXD.randomDouble(100), GeomXD.randomDouble(100)));
+            sizes.set(node, new Coordinates(1 + GeomXD.randomDouble(4), 1 + GeomXD.randomDouble(4)));
+            nodes.add(node);
+        }
+        List<Edge> edges = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            Node source = nodes.get((int) GeomXD.randomDouble(nodes.size()));
+            Node target = nodes.get((int) GeomXD.randomDouble(nodes.size()));
+            if (source != target) {
+                edges.add(graph.newEdge(source, target));
+            }
+        }
+
+        List<LayoutMetric> syncedMetrics = Arrays.asList(
+                new LayoutMetric.Stress(graph, 10),
+                new LayoutMetric.EdgeLengthDeviation(graph),
+                new LayoutMetric.AngularResolution(graph),
+                new LayoutMetric.NodeEdgeClearance(graph, 5),
+                new LayoutMetric.NodeOverlapArea(graph));
+        for (LayoutMetric metric : syncedMetrics) {
+            metric.setAutoSync(true);
+            metric.value();
+        }
+
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 10; i++) {
+                Node node = nodes.get((int) GeomXD.randomDouble(nodes.size()));
+                positions.set(node, new Coordinates(GeomXD.randomDouble(100), GeomXD.randomDouble(100)));
+            }
+            Edge edge = edges.get((int) GeomXD.randomDouble(edges.size()));
+            edgePoints.set(edge, new ControlPoints(new Coordinates(GeomXD.randomDouble(100), GeomXD.randomDouble(100))));
+            if (round == 3) {
+                Node node = graph.newNode();
+                positions.set(node, new Coordinates(50, 50));
+                graph.newEdge(node, nodes.get(0));
+            }
+
+            List<LayoutMetric> freshMetrics = Arrays.asList(
+                    new LayoutMetric.Stress(graph, 10),
+                    new LayoutMetric.EdgeLengthDeviation(graph),
+                    new LayoutMetric.AngularResolution(graph),
+                    new LayoutMetric.NodeEdgeClearance(graph, 5),
+                    new LayoutMetric.NodeOverlapArea(graph));
+            for (int i = 0; i < syncedMetrics.size(); i++) {
+                double expected = freshMetrics.get(i).value();
+                assertThat(syncedMetrics.get(i).value(), closeTo(expected, 1e-9 * Math.max(1, Math.abs(expected))));
+            }
+        }
+
+        for (LayoutMetric metric : syncedMetrics) {
+            metric.close();
+            assertThat(metric.isAutoSync(), is(false));
+        }
+    }
+}
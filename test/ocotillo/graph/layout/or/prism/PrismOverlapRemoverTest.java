@@ -0,0 +1,122 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.or.prism;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.Layout2D;
+import ocotillo.graph.layout.or.prism.PrismOverlapRemover.PrismOverlapRemoverBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class PrismOverlapRemoverTest {
+
+    @Test
+    public void testRandomBoxes() {
+        Random random = new Random(42);
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> sizes = graph.nodeAttribute(StdAttribute.nodeSize);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            Node node = graph.newNode("n" + i);
+            positions.set(node, new Coordinates(random.nextDouble() * 100, random.nextDouble() * 100));
+            sizes.set(node, new Coordinates(1 + random.nextDouble() * 4, 1 + random.nextDouble() * 4));
+            nodes.add(node);
+        }
+        List<Coordinates> original = new ArrayList<>();
+        for (Node node : nodes) {
+            original.add(new Coordinates(positions.get(node)));
+        }
+        assertThat(Layout2D.doNodesOverlap(graph), is(true));
+
+        assertThat(new PrismOverlapRemoverBuilder().build().execute(graph), is(true));
+        assertThat(Layout2D.doNodesOverlap(graph), is(false));
+
+        int preserved = 0;
+        int compared = 0;
+        for (int k = 0; k < 5000; k++) {
+            int i = random.nextInt(nodes.size());
+            int j = random.nextInt(nodes.size());
+            double before = original.get(i).x() - original.get(j).x();
+            if (i == j || Math.abs(before) < 20) {
+                continue;
+            }
+            double after = positions.get(nodes.get(i)).x() - positions.get(nodes.get(j)).x();
+            compared++;
+            if (Math.signum(before) == Math.signum(after)) {
+                preserved++;
+            }
+        }
+        assertTrue(preserved > 0.95 * compared);
+    }
+
+    @Test
+    public void testCoincidentNodes() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> sizes = graph.nodeAttribute(StdAttribute.nodeSize);
+        for (int i = 0; i < 10; i++) {
+            sizes.set(graph.newNode("n" + i), new Coordinates(2, 2));
+        }
+        PrismOverlapRemover.run(graph, 0.5);
+        assertThat(Layout2D.doNodesOverlap(graph), is(false));
+    }
+
+    @Test
+    public void testMargin() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> sizes = graph.nodeAttribute(StdAttribute.nodeSize);
+        Node a = graph.newNode("a");
+        Node b = graph.newNode("b");
+        positions.set(a, new Coordinates(0, 0));
+        positions.set(b, new Coordinates(3, 0));
+        sizes.set(a, new Coordinates(2, 2));
+        sizes.set(b, new Coordinates(2, 2));
+        PrismOverlapRemover.run(graph, 1);
+        double gap = Math.abs(positions.get(b).x() - positions.get(a).x()) - 2;
+        assertTrue(gap >= 2 - 1e-6);
+        assertTrue(positions.get(b).x() > positions.get(a).x());
+    }
+
+    @Test
+    public void testCollinearNodes() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        NodeAttribute<Coordinates> sizes = graph.nodeAttribute(StdAttribute.nodeSize);
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Node node = graph.newNode("n" + i);
+            positions.set(node, new Coordinates(i, 0));
+            sizes.set(node, new Coordinates(4, 4));
+            nodes.add(node);
+        }
+        assertThat(new PrismOverlapRemoverBuilder().build().execute(graph), is(true));
+        assertThat(Layout2D.doNodesOverlap(graph), is(false));
+        for (int i = 1; i < nodes.size(); i++) {
+            assertTrue(positions.get(nodes.get(i)).x() > positions.get(nodes.get(i - 1)).x());
+            assertTrue(Math.abs(positions.get(nodes.get(i)).x()) < 100);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.other.gmap;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.Geom2DBatch;
+import ocotillo.geometry.Polygon;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.other.gmap.GmapRegions.GmapRegionsBuilder;
+import ocotillo.graph.rendering.GraphicsTools;
+import ocotillo.graph.serialization.dot.DotTools;
+import java.util.List;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class GmapRegionsTest {
+
+    /**
+     * Creates a cluster with a row of nodes.
+     *
+     * @param graph the graph.
+     * @param label the cluster label.
+     * @param x the x coordinate of the first node.
+     * @param y the y coordinate of the nodes.
+     * @return the cluster.
+     */
+    private static Graph row(Graph graph, String label, double x, double y) {
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        Graph cluster = graph.newSubGraph();
+        cluster.newLocalGraphAttribute(StdAttribute.label, label);
+        Node previous = null;
+        for (int i = 0; i < 3; i++) {
+            Node node = graph.newNode();
+            positions.set(node, new Coordinates(x + i, y));
+            cluster.add(node);
+            if (previous != null) {
+                graph.newEdge(previous, node);
+            }
+            previous = node;
+        }
+        return cluster;
+    }
+
+    /**
+     * Returns the node of a cluster at the given x coordinate.
+     *
+     * @param graph the graph.
+     * @param cluster the cluster.
+     * @param x the node x coordinate.
+     * @return the node.
+     */
+    private static Node nodeAt(Graph graph, Graph cluster, double x) {
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        for (Node node : cluster.nodes()) {
+            if (positions.get(node).x() == x) {
+                return node;
+            }
+        }
+        throw new IllegalArgumentException("No node at " + x);
+    }
+
+    /**
+     * Returns the polygons of a cluster.
+     *
+     * @param cluster the cluster.
+     * @return the polygons.
+     */
+    private static List<Polygon> polygons(Graph cluster) {
+        return cluster.<List<Polygon>>graphAttribute(DotTools.polygonIdAttr).get();
+    }
+
+    /**
+     * Verifies if a point is in one of the given polygons. The exact batch
+     * test is used, since Geom2D.isPointInPolygon casts a random ray.
+     *
+     * @param point the point.
+     * @param polygons the polygons.
+     * @return true if a polygon contains the point.
+     */
+    private static boolean isInPolygons(Coordinates point, List<Polygon> polygons) {
+        boolean[] inside = new boolean[1];
+        for (Polygon polygon : polygons) {
+            Geom2DBatch.pointsInPolygon(new double[]{point.x(), point.y()}, Geom2DBatch.pack(polygon), inside);
+            if (inside[0]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void testRegions() {
+        Graph graph = new Graph();
+        Graph first = row(graph, "first", 0, 0);
+        Graph second = row(graph, "second", 0, 1.5);
+        Graph third = row(graph, "third", 20, 0);
+        new GmapRegionsBuilder().withMargin(0.5).build().execute(graph);
+
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        for (Graph cluster : graph.subGraphs()) {
+            assertThat(polygons(cluster).size(), is(1));
+            for (Node node : graph.nodes()) {
+                assertThat(isInPolygons(positions.get(node), polygons(cluster)), is(cluster.has(node)));
+            }
+        }
+        assertThat(isInPolygons(new Coordinates(10, 0), polygons(first)), is(false));
+        assertThat(isInPolygons(new Coordinates(10, 0), polygons(third)), is(false));
+        assertThat(GraphicsTools.getLocalGraphics(second).get().contains("second_GmapPolygon1"), is(true));
+    }
+
+    @Test
+    public void testIncrementalUpdate() {
+        Graph graph = new Graph();
+        Graph first = row(graph, "first", 0, 0);
+        Graph second = row(graph, "second", 20, 0);
+        GraphicsTools.addLocalGraphicLast(first, "<text id=\"title\"/>");
+        GmapRegions regions = new GmapRegionsBuilder().withMargin(0.5).build();
+        regions.execute(graph);
+
+        List<Polygon> firstPolygons = polygons(first);
+        List<Polygon> secondPolygons = polygons(second);
+        String firstGraphics = GraphicsTools.getLocalGraphics(first).get();
+        regions.execute(graph);
+        assertThat(polygons(first), is(sameInstance(firstPolygons)));
+        assertThat(polygons(second), is(sameInstance(secondPolygons)));
+
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        Node moved = nodeAt(graph, first, 0);
+        positions.set(moved, positions.get(moved).plus(new Coordinates(0, 0.3)));
+        regions.execute(graph);
+        assertThat(polygons(first), is(not(sameInstance(firstPolygons))));
+        assertThat(polygons(second), is(sameInstance(secondPolygons)));
+        assertThat(isInPolygons(positions.get(moved), polygons(first)), is(true));
+
+        String newGraphics = GraphicsTools.getLocalGraphics(first).get();
+        assertThat(newGraphics, is(not(firstGraphics)));
+        assertThat(newGraphics.split("first_GmapPolygon1").length, is(2));
+        assertThat(newGraphics.endsWith("<text id=\"title\"/>"), is(true));
+    }
+
+    @Test
+    public void testUnaffectedNeighbourhoodChange() {
+        Graph graph = new Graph();
+        Graph first = row(graph, "first", 0, 0);
+        Graph second = row(graph, "second", 0, 3.5);
+        GmapRegions regions = new GmapRegionsBuilder().withMargin(0.5).build();
+        regions.execute(graph);
+        List<Polygon> firstPolygons = polygons(first);
+        List<Polygon> secondPolygons = polygons(second);
+
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        positions.set(graph.newNode(), new Coordinates(5.5, 0));
+        regions.execute(graph);
+        assertThat(polygons(first), is(sameInstance(firstPolygons)));
+        assertThat(polygons(second), is(sameInstance(secondPolygons)));
+
+        Node moved = nodeAt(graph, second, 2);
+        positions.set(moved, positions.get(moved).plus(new Coordinates(0.1, 0)));
+        regions.execute(graph);
+        assertThat(polygons(first), is(sameInstance(firstPolygons)));
+        assertThat(polygons(second), is(not(sameInstance(secondPolygons))));
+    }
+
+    @Test
+    public void testIncrementalUpdateWithDefaultMargin() {
+        Graph graph = new Graph();
+        Graph first = row(graph, "first", 0, 0);
+        Graph second = row(graph, "second", 20, 0);
+        GmapRegions regions = new GmapRegionsBuilder().build();
+        regions.execute(graph);
+        List<Polygon> firstPolygons = polygons(first);
+        List<Polygon> secondPolygons = polygons(second);
+
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        Node moved = nodeAt(graph, first, 2);
+        positions.set(moved, positions.get(moved).plus(new Coordinates(0.4, 0.2)));
+        regions.execute(graph);
+        assertThat(polygons(first), is(not(sameInstance(firstPolygons))));
+        assertThat(polygons(second), is(sameInstance(secondPolygons)));
+        assertThat(isInPolygons(positions.get(moved), polygons(first)), is(true));
+    }
+}
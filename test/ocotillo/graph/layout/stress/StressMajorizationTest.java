@@ -0,0 +1,153 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.layout.stress;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.geometry.Geom2D;
+import ocotillo.graph.Edge;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import ocotillo.graph.layout.Layout2D;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class StressMajorizationTest {
+
+    /**
+     * Builds a grid graph.
+     *
+     * @param columns the number of columns.
+     * @param rows the number of rows.
+     * @return the grid graph.
+     */
+    private static Graph grid(int columns, int rows) {
+        Graph graph = new Graph();
+        Node[] nodes = new Node[columns * rows];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = graph.newNode();
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                if (column + 1 < columns) {
+                    graph.newEdge(nodes[row * columns + column], nodes[row * columns + column + 1]);
+                }
+                if (row + 1 < rows) {
+                    graph.newEdge(nodes[row * columns + column], nodes[(row + 1) * columns + column]);
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Computes the average edge length of a graph.
+     *
+     * @param graph the graph.
+     * @return the average edge length.
+     */
+    private static double averageEdgeLength(Graph graph) {
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        double totalLength = 0;
+        for (Edge edge : graph.edges()) {
+            totalLength += Geom2D.magnitude(positions.get(edge.source()).minus(positions.get(edge.target())));
+        }
+        return totalLength / graph.edgeCount();
+    }
+
+    @Test
+    public void testAllPairs() {
+        Graph graph = grid(10, 10);
+        new StressMajorization.StressMajorizationBuilder()
+                .withEdgeLength(2)
+                .withRandomSeed(1)
+                .build()
+                .execute(graph);
+
+        assertThat(averageEdgeLength(graph), is(greaterThan(1.8)));
+        assertThat(averageEdgeLength(graph), is(lessThan(2.8)));
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        Node corner = null;
+        for (Node node : graph.nodes()) {
+            if (graph.degree(node) == 2 && corner == null) {
+                corner = node;
+            }
+        }
+        double diagonal = 0;
+        for (Node node : graph.nodes()) {
+            diagonal = Math.max(diagonal, Geom2D.magnitude(positions.get(corner).minus(positions.get(node))));
+        }
+        assertThat(diagonal, is(greaterThan(20.0)));
+    }
+
+    @Test
+    public void testPivots() {
+        Graph graph = grid(20, 20);
+        new StressMajorization.StressMajorizationBuilder()
+                .withPivots(20)
+                .withThreads(3)
+                .withRandomSeed(2)
+                .build()
+                .execute(graph);
+
+        assertThat(averageEdgeLength(graph), is(greaterThan(0.8)));
+        assertThat(averageEdgeLength(graph), is(lessThan(1.4)));
+        assertThat(Layout2D.graphBox(graph).width(), is(lessThan(40.0)));
+    }
+
+    @Test
+    public void testDisconnected() {
+        Graph graph = grid(3, 3);
+        graph.newNode();
+        Node a = graph.newNode();
+        Node b = graph.newNode();
+        graph.newEdge(a, b);
+
+        new StressMajorization.StressMajorizationBuilder()
+                .withImpredRefinement(20)
+                .build()
+                .execute(graph);
+
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        for (Node node : graph.nodes()) {
+            assertThat(Double.isNaN(positions.get(node).x()), is(false));
+            assertThat(Double.isNaN(positions.get(node).y()), is(false));
+        }
+        assertThat(Layout2D.doNodesOverlap(graph), is(false));
+    }
+
+    @Test
+    public void testCoincidentCurrentPositions() {
+        Graph graph = grid(5, 5);
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        for (Node node : graph.nodes()) {
+            positions.set(node, new Coordinates(3, 3));
+        }
+
+        new StressMajorization.StressMajorizationBuilder()
+                .withCurrentPositions()
+                .withRandomSeed(4)
+                .build()
+                .execute(graph);
+
+        assertThat(averageEdgeLength(graph), is(greaterThan(0.8)));
+        assertThat(averageEdgeLength(graph), is(lessThan(1.4)));
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2014-2015 Paolo Simonetto
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package ocotillo.graph.serialization.dot;
+
+import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Graph;
+import ocotillo.graph.Node;
+import ocotillo.graph.NodeAttribute;
+import ocotillo.graph.StdAttribute;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class DotProcessRunnerTest {
+
+    @Test
+    public void testStreaming() {
+        List<String> input = new ArrayList<>();
+        input.add("digraph {");
+        for (int i = 0; i < 20000; i++) {
+            input.add("  n" + i + " -> n" + (i + 1) + " [label=\"è\"];");
+        }
+        input.add("}");
+
+        DotProcessRunner runner = new DotProcessRunner.DotProcessRunnerBuilder("cat").build();
+        assertThat(runner.run(input), is(input));
+    }
+
+    @Test
+    public void testGraphInput() {
+        Graph graph = new Graph();
+        for (int i = 0; i < 5000; i++) {
+            graph.newNode("n" + i);
+        }
+        DotWriter writer = new DotWriter.DotWriterBuilder().build();
+
+        DotProcessRunner runner = new DotProcessRunner.DotProcessRunnerBuilder("cat").build();
+        assertThat(runner.run(graph, writer), is(writer.writeGraph(graph)));
+    }
+
+    @Test
+    public void testGraphOutput() {
+        Graph graph = new Graph();
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        Node previous = null;
+        for (int i = 0; i < 5000; i++) {
+            Node node = graph.newNode("n" + i);
+            positions.set(node, new Coordinates(i, -i));
+            if (previous != null) {
+                graph.newEdge(previous, node);
+            }
+            previous = node;
+        }
+        DotWriter.DotWriterBuilder writerBuilder = new DotWriter.DotWriterBuilder();
+        writerBuilder.nodeAttributes.convert(StdAttribute.nodePosition, "pos", new DotValueConverter.PositionConverter());
+        DotWriter writer = writerBuilder.build();
+        DotReader.DotReaderBuilder readerBuilder = new DotReader.DotReaderBuilder();
+        readerBuilder.nodeAttributes.convert("pos", StdAttribute.nodePosition, new DotValueConverter.PositionConverter());
+        DotReader reader = readerBuilder.build();
+
+        DotProcessRunner runner = new DotProcessRunner.DotProcessRunnerBuilder("cat").build();
+        Graph generatedGraph = runner.run(graph, writer, reader);
+        assertThat(generatedGraph.nodeCount(), is(graph.nodeCount()));
+        assertThat(generatedGraph.edgeCount(), is(graph.edgeCount()));
+        NodeAttribute<Coordinates> generatedPositions = generatedGraph.nodeAttribute(StdAttribute.nodePosition);
+        for (Node node : graph.nodes()) {
+            Coordinates position = generatedPositions.get(generatedGraph.getNode(node.id()));
+            assertThat(position.x(), is(closeTo(positions.get(node).x(), 1e-6)));
+            assertThat(position.y(), is(closeTo(positions.get(node).y(), 1e-6)));
+        }
+    }
+
+    @Test
+    public void testTimeout() {
+        DotProcessRunner runner = new DotProcessRunner.DotProcessRunnerBuilder("sleep")
+                .withArguments(new String[]{"10"})
+                .withTimeout(100)
+                .build();
+        long start = System.nanoTime();
+        try {
+            runner.run(Arrays.asList("graph {}"));
+            assertThat("The timeout has not been triggered.", false, is(true));
+        } catch (IllegalStateException ex) {
+            assertThat((System.nanoTime() - start) / 1000000, is(lessThan(5000L)));
+        }
+    }
+
+    @Test(expected = CancellationException.class)
+    public void testCancel() throws Exception {
+        DotProcessRunner runner = new DotProcessRunner.DotProcessRunnerBuilder("sleep")
+                .withArguments(new String[]{"10"})
+                .build();
+        Future<List<String>> result = runner.submit(Arrays.asList("graph {}"));
+        Thread.sleep(100);
+        assertThat(result.cancel(true), is(true));
+        assertThat(result.isCancelled(), is(true));
+        result.get();
+    }
+
+    @Test
+    public void testCheckExecutable() {
+        DotProcessRunner.checkExecutable("cat --version", "cat");
+        DotProcessRunner.checkExecutable("cat --version", "cat");
+        try {
+            DotProcessRunner.checkExecutable("ocotillo-missing-executable -V", "missing");
+            assertThat("The missing executable has been found.", false, is(true));
+        } catch (IllegalStateException ex) {
+            assertThat(ex.getMessage(), is("missing executable has not been found."));
+        }
+    }
+}
@@ -27,6 +27,7 @@ import ocotillo.graph.serialization.dot.DotReader.ColoredPolygon;
 import ocotillo.graph.serialization.dot.DotReader.DotReaderBuilder;
 import ocotillo.graph.serialization.dot.DotTools.DotAttributes;
 import java.awt.Color;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -520,4 +521,126 @@ public class DotReaderTest {
             }
         }
     }
+
+    @Test
+    public void nestedPolygonsTest() {
+        List<String> lines = new ArrayList<>();
+        lines.add("graph {");
+        lines.add("	graph [ _draw_=\" \\");
+        lines.add("		c 9 -#ff4d4d88 C 9 -#ff4d4d88 P 4  -300.0 -300.0 300.0 -300.0 300.0 300.0 -300.0 300.0  \\");
+        lines.add("		c 9 -#decbe488 C 9 -#decbe488 P 4  50.0 0.0 150.0 0.0 150.0 100.0 50.0 100.0  \\");
+        lines.add("		c 9 -#fbb4ae88 C 9 -#fbb4ae88 P 3  400.0 400.0 500.0 400.0 450.0 500.0  \"];");
+        lines.add("    4 [cluster=\"1\", pos=\"100.0,50.0\"];");
+        lines.add("    11 [cluster=\"2\", pos=\"-100.0,-50.0\"];");
+        lines.add("    4 -- 11;");
+        lines.add("}");
+        lines.add("");
+
+        DotReaderBuilder builder = new DotReader.DotReaderBuilder();
+        builder.nodeAttributes.convert("pos", StdAttribute.nodePosition, Coordinates.class);
+        builder.clusterBy("cluster")
+                .convert("cluster", "cluster", String.class);
+
+        DotReader reader = builder.build();
+        Graph graph = reader.parseFile(lines);
+
+        assertThat(graph.subGraphs().size(), is(2));
+        for (Graph subGraph : graph.subGraphs()) {
+            String clusterId = subGraph.<String>graphAttribute("cluster").get();
+            List<Polygon> polygons = subGraph.<List<Polygon>>graphAttribute(DotTools.polygonIdAttr).get();
+            assertThat(polygons.size(), is(1));
+            switch (clusterId) {
+                case "1":
+                    assertThat(polygons.get(0).contains(new Coordinates(150, 100, 0)), is(true));
+                    break;
+                case "2":
+                    assertThat(polygons.get(0).contains(new Coordinates(300, 300, 0)), is(true));
+                    break;
+                default:
+                    assertThat(false, is(true));
+            }
+        }
+    }
+
+    @Test
+    public void streamParsingTest() {
+        String text = "graph {\n"
+                + "\tgraph [ outputorder=edgesfirst, _draw_=\" \\\n"
+                + "\t\tc 9 -#ff4d4d88 C 9 -#ff4d4d88 P 3  0.0 0.0 200.0 0.0 100.0 100.0  \\\n"
+                + "\t\tc 9 -#ff4d4d88 C 9 -#ff4d4d88 P 3  -0.0 -0.0 -200.0 -0.0 -100.0 -100.0  \"];\n"
+                + "    4 [cluster=\"1\", label=\"ugly purple\", pos=\"100.53,50.75\"];\n"
+                + "    11 [cluster=\"2\", label=\"denim blue\", pos=\"-100.97,-50.64\"];\n"
+                + "    4 -- 11 [len=\"0.09877587\", weight=\"0.01179\"];\n"
+                + "}\n";
+
+        DotReaderBuilder builder = new DotReader.DotReaderBuilder();
+        builder.nodeAttributes.convert("pos", StdAttribute.nodePosition, Coordinates.class);
+        builder.clusterBy("cluster")
+                .convert("cluster", "cluster", String.class);
+
+        DotReader reader = builder.build();
+        Graph graph = reader.parse(new StringReader(text));
+
+        assertThat(graph.nodeCount(), is(2));
+        assertThat(graph.edgeCount(), is(1));
+        Edge edge = graph.edges().iterator().next();
+        assertThat(edge.source().id(), is("4"));
+        assertThat(edge.target().id(), is("11"));
+        NodeAttribute<Coordinates> positions = graph.nodeAttribute(StdAttribute.nodePosition);
+        assertThat(positions.get(graph.getNode("4")), is(new Coordinates(100.53, 50.75)));
+
+        assertThat(graph.subGraphs().size(), is(2));
+        for (Graph subGraph : graph.subGraphs()) {
+            String clusterId = subGraph.<String>graphAttribute("cluster").get();
+            List<Polygon> polygons = subGraph.<List<Polygon>>graphAttribute(DotTools.polygonIdAttr).get();
+            assertThat(subGraph.nodeCount(), is(1));
+            assertThat(subGraph.hasNode(clusterId.equals("1") ? "4" : "11"), is(true));
+            assertThat(polygons.size(), is(1));
+        }
+    }
+
+    @Test
+    public void streamStatementLayoutTest() {
+        String text = "/* A graph\n   with comments */\n"
+                + "#preprocessor line\n"
+                + "strict digraph \"my graph\" { node [shape=box]; a [label=\"first \\\"quoted\\\" node\"]; a -> b\n"
+                + "  -> c [color=\"#ff0000\"] // a trailing comment\n"
+                + "  c\n"
+                + "  [label = \"th\" + \"ird\",\n"
+                + "   shape = ellipse]\n"
+                + "}";
+
+        DotReaderBuilder builder = new DotReader.DotReaderBuilder();
+        builder.nodeAttributes.convert("label", StdAttribute.label, String.class)
+                .convert("shape", "shape", String.class);
+        builder.edgeAttributes.convert("color", StdAttribute.color, Color.class);
+
+        DotReader reader = builder.build();
+        Graph graph = reader.parse(new StringReader(text));
+
+        assertThat(graph.nodeCount(), is(3));
+        assertThat(graph.edgeCount(), is(2));
+        NodeAttribute<String> labels = graph.nodeAttribute(StdAttribute.label);
+        NodeAttribute<String> shapes = graph.nodeAttribute("shape");
+        assertThat(labels.get(graph.getNode("a")), is("first \\\"quoted\\\" node"));
+        assertThat(labels.get(graph.getNode("c")), is("third"));
+        assertThat(shapes.get(graph.getNode("b")), is("box"));
+        assertThat(shapes.get(graph.getNode("c")), is("ellipse"));
+        for (Edge edge : graph.edges()) {
+            assertThat(graph.<Color>edgeAttribute(StdAttribute.color).get(edge), is(Color.RED));
+        }
+    }
+
+    @Test
+    public void streamEmptyInputTest() {
+        DotReader reader = new DotReader.DotReaderBuilder().build();
+        Graph graph = reader.parse(new StringReader(""));
+        assertThat(graph.nodeCount(), is(0));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void streamSubgraphTest() {
+        DotReader reader = new DotReader.DotReaderBuilder().build();
+        reader.parse(new StringReader("graph { subgraph cluster0 { a; } }"));
+    }
 }
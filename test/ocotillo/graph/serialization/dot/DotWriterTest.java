@@ -16,11 +16,16 @@
 package ocotillo.graph.serialization.dot;
 
 import ocotillo.geometry.Coordinates;
+import ocotillo.graph.Edge;
 import ocotillo.graph.Graph;
 import ocotillo.graph.Node;
+import ocotillo.graph.StdAttribute;
 import ocotillo.graph.serialization.dot.DotWriter.DotWriterBuilder;
 import ocotillo.graph.serialization.dot.DotValueConverter.CoordDimensionConverter;
+import java.io.ByteArrayOutputStream;
 import java.util.List;
+import java.util.Locale;
+import java.util.Random;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertThat;
 import org.junit.Test;
@@ -142,4 +147,57 @@ public class DotWriterTest {
         assertThat(dotLines.get(6), is("\torange [cluster=\"round\", clusterName=\"Round Fruit!\"];"));
         assertThat(dotLines.get(7), is("}"));
     }
+
+    @Test
+    public void writeGraphOnStreams() throws Exception {
+        Random random = new Random(7);
+        Graph graph = new Graph();
+        graph.newNodeAttribute("nodeAttr", "~");
+        graph.newEdgeAttribute(DotTools.directedAttr, false);
+        for (int i = 0; i < 3000; i++) {
+            Node node = graph.newNode("n" + i);
+            graph.<Coordinates>nodeAttribute(StdAttribute.nodePosition).set(node, new Coordinates(random.nextGaussian(), random.nextGaussian()));
+            if (i % 3 == 0) {
+                graph.<String>nodeAttribute("nodeAttr").set(node, "node " + i);
+            }
+        }
+        for (int i = 1; i < 3000; i++) {
+            Edge edge = graph.newEdge(graph.getNode("n" + (i - 1)), graph.getNode("n" + i));
+            graph.<Boolean>edgeAttribute(DotTools.directedAttr).set(edge, i % 2 == 0);
+        }
+
+        DotWriterBuilder builder = new DotWriterBuilder();
+        builder.nodeAttributes.convert(StdAttribute.nodePosition, "pos")
+                .saveUnspecified(true);
+        List<String> dotLines = builder.build().writeGraph(graph);
+        assertThat(dotLines.size(), is(6004));
+        assertThat(dotLines.contains("\tn1 -> n2 [ ];"), is(true));
+        assertThat(dotLines.contains("\tn2 -- n3 [ ];"), is(true));
+
+        StringBuilder expected = new StringBuilder();
+        for (String line : dotLines) {
+            expected.append(line).append('\n');
+        }
+
+        StringBuilder sequential = new StringBuilder();
+        builder.build().writeGraph(graph, sequential);
+        assertThat(sequential.toString(), is(expected.toString()));
+
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        builder.withThreads(3).build().writeGraph(graph, parallel);
+        assertThat(parallel.toString("UTF-8"), is(expected.toString()));
+    }
+
+    @Test
+    public void formatTwoDecimals() {
+        Random random = new Random(3);
+        double[] values = {0, -0.0, 0.005, -0.004, 1.005, 2.675, -0.125, 9.999, 1e12, Double.NaN};
+        for (double value : values) {
+            assertThat(DotValueConverter.formatTwoDecimals(value), is(String.format(Locale.ENGLISH, "%.2f", value)));
+        }
+        for (int i = 0; i < 10000; i++) {
+            double value = random.nextGaussian() * 1000;
+            assertThat(DotValueConverter.formatTwoDecimals(value), is(String.format(Locale.ENGLISH, "%.2f", value)));
+        }
+    }
 }